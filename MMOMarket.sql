@@ -120,7 +120,8 @@ CREATE TABLE IF NOT EXISTS Products (
     FOREIGN KEY (created_by) REFERENCES Users(id),
     FOREIGN KEY (deleted_by) REFERENCES Users(id),
     INDEX idx_seller_id (seller_id),
-    INDEX idx_category_id (category_id)
+    INDEX idx_category_id (category_id),
+    INDEX idx_products_created_at (created_at) -- Sắp xếp danh sách sản phẩm theo mới nhất
 );
 
 -- Bảng ProductVariants - Quản lý biến thể sản phẩm
@@ -130,6 +131,7 @@ CREATE TABLE IF NOT EXISTS ProductVariants (
     variant_name VARCHAR(255) NOT NULL, -- Tên biến thể
     price BIGINT NOT NULL, -- Giá
 	status VARCHAR(20) DEFAULT 'Pending', 
+    available_stock BIGINT NOT NULL DEFAULT 0, -- Số tài khoản còn bán (Available), cập nhật khi upload/bán/xóa
     created_at DATETIME DEFAULT CURRENT_TIMESTAMP, -- Thời gian tạo
     updated_at DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP, -- Thời gian cập nhật
     created_by BIGINT, -- Người tạo
@@ -172,6 +174,8 @@ CREATE TABLE IF NOT EXISTS Transactions (
     created_by BIGINT,
     deleted_by BIGINT,
     isDelete TINYINT(1) DEFAULT 0,
+    INDEX idx_tx_status (status),
+    INDEX idx_tx_created_at (created_at), -- Phân trang danh sách giao dịch (admin) theo ngày tạo
 
 	FOREIGN KEY (customer_id) REFERENCES Users(id),
     FOREIGN KEY (seller_id) REFERENCES Users(id),
@@ -186,6 +190,7 @@ CREATE TABLE IF NOT EXISTS ProductVariantAccounts (
     id BIGINT AUTO_INCREMENT PRIMARY KEY,
     variant_id BIGINT NOT NULL,
     account_data TEXT NOT NULL,
+    username_fp CHAR(64) NULL, -- HMAC-SHA256 (hex) của username đã chuẩn hóa, dùng kiểm tra trùng mà không cần giải mã
     status ENUM('Available', 'Sold') NOT NULL DEFAULT 'Available',
     transaction_id BIGINT NULL,
     is_activated TINYINT(1) DEFAULT 0,
@@ -200,7 +205,47 @@ CREATE TABLE IF NOT EXISTS ProductVariantAccounts (
     FOREIGN KEY (transaction_id) REFERENCES Transactions(id) ON DELETE SET NULL,
     FOREIGN KEY (created_by) REFERENCES Users(id),
     FOREIGN KEY (deleted_by) REFERENCES Users(id),
-    INDEX idx_variant_id_status (variant_id, status)
+    INDEX idx_variant_id_status (variant_id, status),
+    INDEX idx_username_fp (username_fp, isDelete) -- Kiểm tra trùng username theo danh mục khi tải lên
+);
+
+-- Bảng AccountImportJobs - Job nhập tài khoản từ file CSV của người bán (chạy nền, theo từng lô, có thể tiếp tục khi lỗi)
+CREATE TABLE IF NOT EXISTS AccountImportJobs (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY, -- Mã job
+    variant_id BIGINT NOT NULL, -- Biến thể nhận tài khoản
+    seller_id BIGINT NOT NULL, -- Người bán tải file lên
+    status VARCHAR(20) NOT NULL DEFAULT 'PENDING', -- PENDING, RUNNING, COMPLETED, FAILED
+    file_name VARCHAR(255), -- Tên file gốc
+    staged_path VARCHAR(500) NOT NULL, -- Bản sao file trong thư mục riêng (không công khai), xóa khi hoàn tất
+    node_id VARCHAR(100) NOT NULL, -- Node giữ file tạm trên đĩa cục bộ; chỉ node này chạy và khôi phục job
+    dedupe TINYINT(1) NOT NULL DEFAULT 1, -- Bỏ qua tài khoản trùng trong danh mục
+    total_rows BIGINT NOT NULL DEFAULT 0, -- Số dòng dữ liệu trong file
+    processed_rows BIGINT NOT NULL DEFAULT 0, -- Số dòng đã xử lý và commit (điểm tiếp tục)
+    created_count BIGINT NOT NULL DEFAULT 0, -- Số tài khoản đã thêm
+    skipped_count BIGINT NOT NULL DEFAULT 0, -- Số dòng trùng đã bỏ qua
+    error_message VARCHAR(500), -- Lý do thất bại
+    created_at DATETIME DEFAULT CURRENT_TIMESTAMP,
+    updated_at DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+
+    FOREIGN KEY (variant_id) REFERENCES ProductVariants(id) ON DELETE CASCADE,
+    FOREIGN KEY (seller_id) REFERENCES Users(id),
+    INDEX idx_import_seller_created (seller_id, created_at),
+    INDEX idx_import_node_status_updated (node_id, status, updated_at) -- Mỗi node quét job bị treo của mình để chạy lại
+);
+
+-- Bảng ReencryptionCheckpoints - Điểm dừng của job mã hóa lại dữ liệu tài khoản sau khi đổi khóa (mỗi lô một lần commit)
+CREATE TABLE IF NOT EXISTS ReencryptionCheckpoints (
+    name VARCHAR(100) PRIMARY KEY, -- Bảng/cột đang được mã hóa lại
+    target_key_id VARCHAR(16) NOT NULL, -- Khóa đích (ENCRYPTION_KEY_ID hiện tại); đổi khóa thì quét lại từ đầu
+    last_id BIGINT NOT NULL DEFAULT 0, -- Id cuối cùng đã xử lý (điểm tiếp tục)
+    rows_rewritten BIGINT NOT NULL DEFAULT 0, -- Số dòng đã mã hóa lại
+    rows_failed BIGINT NOT NULL DEFAULT 0, -- Số dòng không giải mã được trong lượt quét hiện tại
+    failed_last_pass BIGINT NOT NULL DEFAULT 0, -- Số dòng lỗi của lượt quét trước (còn lỗi thì quét lại, chưa hoàn tất)
+    completed_at DATETIME NULL, -- Thời điểm quét xong với khóa đích (chỉ khi không còn dòng lỗi)
+    enabled TINYINT(1) NOT NULL DEFAULT 1, -- Tạm dừng/tiếp tục (dùng chung cho mọi node, đổi qua /actuator/reencryption)
+    max_rows_per_second INT NOT NULL DEFAULT 2000, -- Giới hạn tốc độ chung cho mọi node (<= 0: không giới hạn)
+    next_chunk_at DATETIME(3) NULL, -- Thời điểm sớm nhất được chạy lô kế tiếp (thực thi giới hạn tốc độ)
+    updated_at DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
 );
 
 -- Bảng CoinDeposits - Cập nhật để tích hợp SePay Webhook
@@ -225,7 +270,8 @@ CREATE TABLE IF NOT EXISTS CoinDeposits (
     FOREIGN KEY (created_by) REFERENCES Users(id),
     FOREIGN KEY (deleted_by) REFERENCES Users(id),
 
-    INDEX idx_sepay_ref_code (sepay_reference_code)    -- Index để tìm kiếm nhanh theo mã tham chiếu
+    INDEX idx_sepay_ref_code (sepay_reference_code),   -- Index để tìm kiếm nhanh theo mã tham chiếu
+    INDEX idx_coin_deposit_created_at (created_at)     -- Phân trang danh sách nạp tiền (admin)
 );
 
 -- Bảng Withdrawals - Quản lý yêu cầu rút tiền của Seller
@@ -248,7 +294,8 @@ CREATE TABLE IF NOT EXISTS Withdrawals (
 	FOREIGN KEY (seller_id) REFERENCES Users(id) ON DELETE NO ACTION,
     FOREIGN KEY (bank_info_id) REFERENCES SellerBankInfo(id) ON DELETE NO ACTION,
     FOREIGN KEY (created_by) REFERENCES Users(id),
-    FOREIGN KEY (deleted_by) REFERENCES Users(id)
+    FOREIGN KEY (deleted_by) REFERENCES Users(id),
+    INDEX idx_withdrawal_created_at (created_at) -- Phân trang danh sách rút tiền (admin)
 );
 
 -- Bảng Complaints - Quản lý khiếu nại
@@ -317,7 +364,27 @@ CREATE TABLE IF NOT EXISTS Chats (
     FOREIGN KEY (receiver_id) REFERENCES Users(id) ON DELETE NO ACTION,
     FOREIGN KEY (complaint_id) REFERENCES Complaints(id) ON DELETE SET NULL,
     FOREIGN KEY (created_by) REFERENCES Users(id),
-    FOREIGN KEY (deleted_by) REFERENCES Users(id)
+    FOREIGN KEY (deleted_by) REFERENCES Users(id),
+    INDEX idx_chats_pair (sender_id, receiver_id, id) -- Phân trang lịch sử hội thoại theo con trỏ (id)
+);
+
+-- Bảng ConversationThreads - Tóm tắt hội thoại (tin nhắn cuối, số tin chưa đọc) cho sidebar chat
+CREATE TABLE IF NOT EXISTS ConversationThreads (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY, -- Mã ID tự tăng
+    user_a_id BIGINT NOT NULL, -- Người dùng có ID nhỏ hơn trong cặp
+    user_b_id BIGINT NOT NULL, -- Người dùng có ID lớn hơn trong cặp
+    last_chat_id BIGINT NOT NULL, -- Mã tin nhắn cuối
+    last_sender_id BIGINT NOT NULL, -- Người gửi tin nhắn cuối
+    last_message VARCHAR(255), -- Xem trước tin nhắn cuối
+    last_message_at DATETIME NOT NULL, -- Thời gian tin nhắn cuối
+    unread_a INT NOT NULL DEFAULT 0, -- Số tin chưa đọc của user_a
+    unread_b INT NOT NULL DEFAULT 0, -- Số tin chưa đọc của user_b
+    updated_at DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP, -- Thời gian cập nhật
+    FOREIGN KEY (user_a_id) REFERENCES Users(id) ON DELETE NO ACTION,
+    FOREIGN KEY (user_b_id) REFERENCES Users(id) ON DELETE NO ACTION,
+    UNIQUE KEY uq_thread_pair (user_a_id, user_b_id),
+    INDEX idx_thread_a_last (user_a_id, last_message_at), -- Sidebar theo hoạt động gần nhất
+    INDEX idx_thread_b_last (user_b_id, last_message_at)
 );
 
 -- Bảng Blogs - Quản lý bài viết blog với đếm số lượt thích
@@ -373,9 +440,28 @@ CREATE TABLE IF NOT EXISTS Notifications (
     isDelete TINYINT(1) DEFAULT 0, -- Trạng thái xóa mềm
     FOREIGN KEY (user_id) REFERENCES Users(id) ON DELETE CASCADE,
     FOREIGN KEY (created_by) REFERENCES Users(id),
-    FOREIGN KEY (deleted_by) REFERENCES Users(id)
+    FOREIGN KEY (deleted_by) REFERENCES Users(id),
+    INDEX idx_notifications_user_status (user_id, status, isDelete, created_at), -- Badge chưa đọc + dropdown header, đánh dấu đã đọc
+    INDEX idx_notifications_user_created (user_id, created_at), -- Trang "Thông báo của tôi" (mới nhất trước)
+    INDEX idx_notifications_status_updated (status, updated_at) -- Job lưu trữ: thông báo đã đọc quá hạn
 );
 
+-- Bảng NotificationsArchive - Lưu trữ lạnh thông báo đã đọc quá hạn (NotificationRetentionJob chuyển sang theo lô)
+-- Không có khóa ngoại để việc chuyển dữ liệu không phụ thuộc bảng Users
+CREATE TABLE IF NOT EXISTS NotificationsArchive (
+    id BIGINT PRIMARY KEY, -- Giữ nguyên ID của bảng Notifications
+    user_id BIGINT NOT NULL, -- Mã người dùng
+    title VARCHAR(255) NOT NULL, -- Tiêu đề thông báo
+    content TEXT, -- Nội dung thông báo
+    status VARCHAR(20), -- Trạng thái khi lưu trữ
+    created_at DATETIME, -- Thời gian tạo gốc
+    updated_at DATETIME, -- Thời gian cập nhật cuối (thời điểm đọc)
+    created_by BIGINT, -- Người tạo
+    isDelete TINYINT(1) DEFAULT 0, -- Trạng thái xóa mềm khi lưu trữ
+    archived_at DATETIME DEFAULT CURRENT_TIMESTAMP, -- Thời điểm lưu trữ
+    INDEX idx_notif_archive_user_created (user_id, created_at)
+) ROW_FORMAT=COMPRESSED;
+
 CREATE TABLE IF NOT EXISTS Orders (
     id BIGINT AUTO_INCREMENT PRIMARY KEY,
     request_id VARCHAR(255) NULL,
@@ -391,6 +477,7 @@ CREATE TABLE IF NOT EXISTS Orders (
     processed_at DATETIME,
     INDEX idx_status (status),
     INDEX idx_customer (customer_id),
+    INDEX idx_orders_transaction_id (transaction_id), -- JOIN Orders theo giao dịch
     UNIQUE KEY uk_orders_request_id (request_id),
     FOREIGN KEY (customer_id) REFERENCES Users(id),
     FOREIGN KEY (product_id) REFERENCES Products(id),
@@ -431,7 +518,8 @@ CREATE TABLE IF NOT EXISTS ShopPointPurchases (
     points_after BIGINT NOT NULL,
     created_at DATETIME DEFAULT CURRENT_TIMESTAMP,
     FOREIGN KEY (user_id) REFERENCES Users(id) ON DELETE NO ACTION,
-    INDEX idx_user_id (user_id)
+    INDEX idx_user_id (user_id),
+    INDEX idx_spp_created_at (created_at)
 );
 
 CREATE TABLE IF NOT EXISTS ShopFlags (
@@ -453,6 +541,48 @@ CREATE TABLE IF NOT EXISTS ShopFlags (
     INDEX idx_shop_status (shop_id, status) -- Index để query nhanh các Shop đang bị cờ Active
 );
 
+-- Bảng ProductStats - Thống kê sản phẩm (denormalized) cho trang chủ, danh mục, tìm kiếm và shop
+CREATE TABLE IF NOT EXISTS ProductStats (
+    product_id BIGINT PRIMARY KEY,                  -- Mã sản phẩm
+    sold_count BIGINT NOT NULL DEFAULT 0,           -- Số giao dịch COMPLETED
+    rating_sum BIGINT NOT NULL DEFAULT 0,           -- Tổng điểm đánh giá
+    rating_count BIGINT NOT NULL DEFAULT 0,         -- Số lượt đánh giá
+    min_price BIGINT NULL,                          -- Giá thấp nhất của biến thể đang hoạt động
+    available_stock BIGINT NOT NULL DEFAULT 0,      -- Số tài khoản Available
+    updated_at DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    FOREIGN KEY (product_id) REFERENCES Products(id) ON DELETE CASCADE,
+    INDEX idx_ps_sold_count (sold_count),
+    INDEX idx_ps_min_price (min_price)
+);
+
+-- Khởi tạo tồn kho từng biến thể từ dữ liệu hiện có
+UPDATE ProductVariants v
+SET v.available_stock = (SELECT COUNT(*) FROM ProductVariantAccounts a
+                         WHERE a.variant_id = v.id AND a.isDelete = 0 AND a.status = 'Available');
+
+-- Khởi tạo ProductStats từ dữ liệu hiện có
+INSERT INTO ProductStats (product_id, sold_count, rating_sum, rating_count, min_price, available_stock)
+SELECT p.id,
+       (SELECT COUNT(*) FROM Transactions t WHERE t.product_id = p.id AND t.isDelete = 0 AND t.status = 'COMPLETED'),
+       (SELECT COALESCE(SUM(r.rating), 0) FROM Reviews r WHERE r.product_id = p.id AND r.isDelete = 0),
+       (SELECT COUNT(*) FROM Reviews r WHERE r.product_id = p.id AND r.isDelete = 0),
+       (SELECT MIN(v.price) FROM ProductVariants v WHERE v.product_id = p.id AND v.isDelete = 0),
+       (SELECT COUNT(*) FROM ProductVariantAccounts a JOIN ProductVariants v ON v.id = a.variant_id
+         WHERE v.product_id = p.id AND v.isDelete = 0 AND a.isDelete = 0 AND a.status = 'Available')
+FROM Products p
+ON DUPLICATE KEY UPDATE sold_count = VALUES(sold_count), rating_sum = VALUES(rating_sum),
+    rating_count = VALUES(rating_count), min_price = VALUES(min_price), available_stock = VALUES(available_stock);
+
+-- Khởi tạo ConversationThreads từ lịch sử chat hiện có (số tin chưa đọc bắt đầu từ 0)
+INSERT INTO ConversationThreads (user_a_id, user_b_id, last_chat_id, last_sender_id, last_message, last_message_at)
+SELECT l.user_a_id, l.user_b_id, c.id, c.sender_id, LEFT(c.message, 255), COALESCE(c.created_at, NOW())
+FROM (SELECT LEAST(sender_id, receiver_id) AS user_a_id, GREATEST(sender_id, receiver_id) AS user_b_id, MAX(id) AS last_chat_id
+      FROM Chats WHERE isDelete = 0
+      GROUP BY LEAST(sender_id, receiver_id), GREATEST(sender_id, receiver_id)) l
+JOIN Chats c ON c.id = l.last_chat_id
+ON DUPLICATE KEY UPDATE last_chat_id = VALUES(last_chat_id), last_sender_id = VALUES(last_sender_id),
+    last_message = VALUES(last_message), last_message_at = VALUES(last_message_at);
+
 -- Trigger update points with transaction completed
 DELIMITER $$
 
@@ -29,6 +29,8 @@ public class AsyncConfig {
         t.setMaxPoolSize(50);
         t.setQueueCapacity(500);
         t.setThreadNamePrefix("notif-exec-");
+        // Saturated: the producer runs the task itself (backpressure instead of lost notifications)
+        t.setRejectedExecutionHandler(new java.util.concurrent.ThreadPoolExecutor.CallerRunsPolicy());
         t.initialize();
         return t;
     }
@@ -44,5 +46,61 @@ public class AsyncConfig {
         t.initialize();
         return t;
     }
-}
 
+    // Drains the per-connection SSE event queues: at most one task per connection is queued or running,
+    // so the queue only needs to hold one entry per open connection
+    @Bean(name = "sseDeliveryExecutor")
+    public Executor sseDeliveryExecutor() {
+        ThreadPoolTaskExecutor t = new ThreadPoolTaskExecutor();
+        // The queue never fills, so max is only reached through UserEventStreamService.checkStalledSends, which
+        // raises the core by one per write blocked on a stalled client
+        t.setCorePoolSize(16);
+        t.setMaxPoolSize(64);
+        t.setAllowCoreThreadTimeOut(true);
+        t.setQueueCapacity(10000);
+        t.setThreadNamePrefix("sse-delivery-");
+        t.initialize();
+        return t;
+    }
+
+    // Background refresh of in-memory caches: one thread, at most one queued refresh, extra requests dropped
+    @Bean(name = "cacheRefreshExecutor")
+    public Executor cacheRefreshExecutor() {
+        ThreadPoolTaskExecutor t = new ThreadPoolTaskExecutor();
+        t.setCorePoolSize(1);
+        t.setMaxPoolSize(1);
+        t.setQueueCapacity(1);
+        t.setThreadNamePrefix("cache-refresh-");
+        t.setRejectedExecutionHandler(new java.util.concurrent.ThreadPoolExecutor.DiscardPolicy());
+        t.initialize();
+        return t;
+    }
+
+    // Seller account CSV imports: few threads (each one already encrypts on all cores), overflow stays PENDING
+    // and is picked up again by AccountImportService.recoverStalled
+    @Bean(name = "accountImportExecutor")
+    public Executor accountImportExecutor() {
+        ThreadPoolTaskExecutor t = new ThreadPoolTaskExecutor();
+        t.setCorePoolSize(2);
+        t.setMaxPoolSize(2);
+        t.setQueueCapacity(100);
+        t.setThreadNamePrefix("account-import-");
+        t.initialize();
+        return t;
+    }
+
+    // Re-encryption workers of AccountReencryptionChunkWriter: the chunk thread waits for them, so no queue
+    // beyond one slice per thread is needed; saturated, the chunk thread encrypts the slice itself
+    @Bean(name = "reencryptionExecutor")
+    public Executor reencryptionExecutor() {
+        ThreadPoolTaskExecutor t = new ThreadPoolTaskExecutor();
+        t.setCorePoolSize(4);
+        t.setMaxPoolSize(4);
+        t.setAllowCoreThreadTimeOut(true);
+        t.setQueueCapacity(16);
+        t.setThreadNamePrefix("reencrypt-");
+        t.setRejectedExecutionHandler(new java.util.concurrent.ThreadPoolExecutor.CallerRunsPolicy());
+        t.initialize();
+        return t;
+    }
+}
@@ -112,8 +112,10 @@ public class SecurityConfig {
                         ).permitAll()
                         // admin area
                         .requestMatchers("/admin/**").hasAuthority("ADMIN")
+                        .requestMatchers("/actuator/reencryption/**", "/actuator/reencryption").hasAuthority("ADMIN")
                         // Chat endpoints - require authentication
                         .requestMatchers("/chat/**").authenticated()
+                        .requestMatchers("/events/**").authenticated()
                         // existing allowed posts
                         .requestMatchers(HttpMethod.POST, "/customer/topup").permitAll()
                         // static assets
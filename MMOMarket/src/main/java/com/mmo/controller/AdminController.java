@@ -71,6 +71,7 @@ import com.mmo.service.AuthService;
 import com.mmo.service.FileStorageService;
 import com.mmo.service.FileStorageService;
 
+import com.mmo.repository.PagedJpqlQuery;
 import com.mmo.repository.ShopPointPurchaseRepository;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
@@ -213,40 +214,29 @@ public class AdminController {
                                      @RequestParam(name = "search", defaultValue = "") String search,
                                      @RequestParam(name = "sort", defaultValue = "date_desc") String sort,
                                      Model model) {
-        // Build base JPQL
-        StringBuilder sb = new StringBuilder("SELECT w FROM Withdrawal w LEFT JOIN FETCH w.seller s WHERE 1=1");
+        PagedJpqlQuery q = new PagedJpqlQuery("COUNT(w)", "FROM Withdrawal w JOIN w.seller s");
         if (!"All".equalsIgnoreCase(status)) {
-            sb.append(" AND LOWER(w.status) = LOWER(:status)");
+            q.where("w.status = :status", "status", status);
         }
         if (search != null && !search.isBlank()) {
-            sb.append(" AND (LOWER(s.fullName) LIKE LOWER(:search) OR LOWER(s.email) LIKE LOWER(:search) OR CAST(w.id AS string) LIKE :search)");
+            q.where("LOWER(s.fullName) LIKE LOWER(:search) OR LOWER(s.email) LIKE LOWER(:search) OR CAST(w.id AS string) LIKE :search",
+                    "search", "%" + search + "%");
         }
 
         // Determine ordering based on sort param
-        String orderField = "w.createdAt";
         String orderDir = "DESC";
         if (sort != null) {
             String s = sort.trim().toLowerCase();
             if ("date_asc".equals(s) || "created_at_asc".equals(s)) orderDir = "ASC";
-            else orderDir = "DESC";
         }
-        sb.append(" ORDER BY ").append(orderField).append(" ").append(orderDir);
+        q.orderBy("w.createdAt " + orderDir + ", w.id " + orderDir);
 
-        jakarta.persistence.Query query = entityManager.createQuery(sb.toString(), Withdrawal.class);
-        if (!"All".equalsIgnoreCase(status)) {
-            query.setParameter("status", status);
-        }
-        if (search != null && !search.isBlank()) {
-            query.setParameter("search", "%" + search + "%");
-        }
-
-        List<Withdrawal> all = query.getResultList();
-        int total = all.size();
-        int totalPages = (int) Math.ceil((double) total / 10);
-        List<Withdrawal> pageList = all.stream()
-                .skip((long) page * 10)
-                .limit(10)
-                .toList();
+        Page<AdminWithdrawalListItem> result = q.fetch(entityManager,
+                "new com.mmo.dto.AdminWithdrawalListItem(w.id, w.amount, w.status, w.bankName, w.accountNumber, w.branch, " +
+                        "w.createdAt, s.fullName, s.email)",
+                AdminWithdrawalListItem.class, page, 10);
+        int totalPages = result.getTotalPages();
+        List<AdminWithdrawalListItem> pageList = result.getContent();
 
         model.addAttribute("withdrawals", pageList);
         model.addAttribute("currentStatus", status);
@@ -500,45 +490,35 @@ public class AdminController {
                                   @RequestParam(name = "search", defaultValue = "") String search,
                                   @RequestParam(name = "sort", defaultValue = "date_desc") String sort,
                                   Model model) {
-        String queryStr = "SELECT c FROM CoinDeposit c WHERE 1=1";
+        PagedJpqlQuery q = new PagedJpqlQuery("COUNT(c)", "FROM CoinDeposit c LEFT JOIN c.user u");
         if (!"All".equalsIgnoreCase(status)) {
-            queryStr += " AND LOWER(c.status) = LOWER(:status)";
+            q.where("c.status = :status", "status", status);
         }
         if (!search.isBlank()) {
-            queryStr += " AND (LOWER(c.user.fullName) LIKE LOWER(:search) OR LOWER(c.user.email) LIKE LOWER(:search) OR CAST(c.id AS string) LIKE :search OR LOWER(c.sepayReferenceCode) LIKE LOWER(:search))";
+            q.where("LOWER(u.fullName) LIKE LOWER(:search) OR LOWER(u.email) LIKE LOWER(:search) OR CAST(c.id AS string) LIKE :search OR LOWER(c.sepayReferenceCode) LIKE LOWER(:search)",
+                    "search", "%" + search + "%");
         }
 
         // Apply sorting based on sort parameter
-        String orderClause;
         switch (sort.toLowerCase()) {
             case "date_asc":
-                orderClause = " ORDER BY c.createdAt ASC";
+                q.orderBy("c.createdAt ASC, c.id ASC");
                 break;
             case "amount_desc":
-                orderClause = " ORDER BY c.amount DESC";
+                q.orderBy("c.amount DESC, c.id DESC");
                 break;
             case "amount_asc":
-                orderClause = " ORDER BY c.amount ASC";
+                q.orderBy("c.amount ASC, c.id ASC");
                 break;
             default: // date_desc
-                orderClause = " ORDER BY c.createdAt DESC";
+                q.orderBy("c.createdAt DESC, c.id DESC");
         }
-        queryStr += orderClause;
 
-        jakarta.persistence.Query query = entityManager.createQuery(queryStr, CoinDeposit.class);
-        if (!"All".equalsIgnoreCase(status)) {
-            query.setParameter("status", status);
-        }
-        if (!search.isBlank()) {
-            query.setParameter("search", "%" + search + "%");
-        }
-        List<CoinDeposit> all = query.getResultList();
-        int total = all.size();
-        int totalPages = (int) Math.ceil((double) total / 10);
-        List<CoinDeposit> pageList = all.stream()
-                .skip((long) page * 10)
-                .limit(10)
-                .toList();
+        Page<AdminCoinDepositListItem> result = q.fetch(entityManager,
+                "new com.mmo.dto.AdminCoinDepositListItem(c.id, c.amount, c.status, c.gateway, c.content, c.createdAt, u.fullName, u.email)",
+                AdminCoinDepositListItem.class, page, 10);
+        int totalPages = result.getTotalPages();
+        List<AdminCoinDepositListItem> pageList = result.getContent();
 
         model.addAttribute("coinDeposits", pageList);
         model.addAttribute("currentStatus", status);
@@ -836,117 +816,57 @@ public class AdminController {
                                          @RequestParam(name = "search", defaultValue = "") String search,
                                          @RequestParam(name = "sort", defaultValue = "date_desc") String sort,
                                          Model model) {
-        // Build base JPQL for transactions + eager parts
-        StringBuilder sb = new StringBuilder("SELECT t FROM Transaction t " +
-                " LEFT JOIN FETCH t.product p " +
-                " LEFT JOIN FETCH t.variant v " +
-                " LEFT JOIN FETCH t.customer c " +
-                " LEFT JOIN FETCH t.seller s " +
-                " WHERE 1=1");
+        // Orders is joined so the orderStatus filter runs in SQL, before paging
+        PagedJpqlQuery q = new PagedJpqlQuery("COUNT(t)", "FROM Transaction t " +
+                "JOIN t.product p JOIN t.variant v JOIN t.customer c JOIN t.seller s " +
+                "LEFT JOIN Orders o ON o.transactionId = t.id");
+        // Transactions.status uses a case-insensitive collation, a plain comparison can use idx_tx_status
         if (!"All".equalsIgnoreCase(txStatus)) {
-            sb.append(" AND LOWER(t.status) = LOWER(:txStatus)");
+            q.where("t.status = :txStatus", "txStatus", txStatus);
+        }
+        if (!"All".equalsIgnoreCase(orderStatus)) {
+            try {
+                q.where("o.status = :orderStatus", "orderStatus", Orders.QueueStatus.valueOf(orderStatus.trim().toUpperCase()));
+            } catch (IllegalArgumentException ignored) {
+                // Unknown value from the query string: ignore the filter
+            }
         }
         if (search != null && !search.isBlank()) {
-            sb.append(" AND (" +
-                    " CAST(t.id AS string) LIKE :kw " +
+            q.where("CAST(t.id AS string) LIKE :kw " +
                     " OR LOWER(c.fullName) LIKE LOWER(:kw) OR LOWER(c.email) LIKE LOWER(:kw) " +
                     " OR LOWER(s.fullName) LIKE LOWER(:kw) OR LOWER(s.email) LIKE LOWER(:kw) " +
-                    " OR LOWER(p.name) LIKE LOWER(:kw) " +
-                    ")");
+                    " OR LOWER(p.name) LIKE LOWER(:kw)", "kw", "%" + search + "%");
         }
 
-        // Apply sorting based on sort parameter
-        String orderClause;
+        // Apply sorting based on sort parameter; t.id breaks ties so pages don't overlap
         switch (sort.toLowerCase()) {
             case "date_asc":
-                orderClause = " ORDER BY t.createdAt ASC";
+                q.orderBy("t.createdAt ASC, t.id ASC");
                 break;
             case "amount_desc":
-                orderClause = " ORDER BY t.amount DESC";
+                q.orderBy("t.amount DESC, t.id DESC");
                 break;
             case "amount_asc":
-                orderClause = " ORDER BY t.amount ASC";
+                q.orderBy("t.amount ASC, t.id ASC");
                 break;
             case "quantity_desc":
-                orderClause = " ORDER BY t.quantity DESC";
+                q.orderBy("t.quantity DESC, t.id DESC");
                 break;
             case "quantity_asc":
-                orderClause = " ORDER BY t.quantity ASC";
+                q.orderBy("t.quantity ASC, t.id ASC");
                 break;
             default: // date_desc
-                orderClause = " ORDER BY t.createdAt DESC";
+                q.orderBy("t.createdAt DESC, t.id DESC");
         }
-        sb.append(orderClause);
 
-        jakarta.persistence.Query tq = entityManager.createQuery(sb.toString(), com.mmo.entity.Transaction.class);
-        if (!"All".equalsIgnoreCase(txStatus)) {
-            tq.setParameter("txStatus", txStatus);
-        }
-        if (search != null && !search.isBlank()) {
-            tq.setParameter("kw", "%" + search + "%");
-        }
-        java.util.List<com.mmo.entity.Transaction> all = tq.getResultList();
-
-        int total = all.size();
-        int size = 10;
-        int totalPages = (int) Math.ceil((double) total / size);
-        java.util.List<com.mmo.entity.Transaction> pageList = all.stream()
-                .skip((long) page * size)
-                .limit(size)
-                .toList();
-
-        // Load Orders for the page transactions to simulate JOIN view
-        java.util.Set<Long> txIds = pageList.stream().map(com.mmo.entity.Transaction::getId).collect(java.util.stream.Collectors.toSet());
-        java.util.Map<Long, com.mmo.entity.Orders> orderByTxId = new java.util.HashMap<>();
-        if (!txIds.isEmpty()) {
-            entityManager.createQuery("SELECT o FROM Orders o LEFT JOIN FETCH o.transaction WHERE o.transaction.id IN :ids", com.mmo.entity.Orders.class)
-                    .setParameter("ids", txIds)
-                    .getResultList()
-                    .forEach(o -> orderByTxId.put(o.getTransaction() != null ? o.getTransaction().getId() : o.getTransactionId(), o));
-        }
-
-        // If orderStatus filter is applied, re-filter page list using the loaded orders
-        if (!"All".equalsIgnoreCase(orderStatus)) {
-            pageList = pageList.stream()
-                    .filter(t -> {
-                        com.mmo.entity.Orders o = orderByTxId.get(t.getId());
-                        String os = o != null && o.getStatus() != null ? o.getStatus().name() : null;
-                        return os != null && os.equalsIgnoreCase(orderStatus);
-                    })
-                    .toList();
-        }
-
-        // Map to list items
-        java.util.List<com.mmo.dto.AdminTransactionListItem> items = new java.util.ArrayList<>();
-        for (com.mmo.entity.Transaction t : pageList) {
-            com.mmo.entity.Orders o = orderByTxId.get(t.getId());
-            String productName = t.getProduct() != null ? t.getProduct().getName() : "";
-            String variantName = t.getVariant() != null ? t.getVariant().getVariantName() : "";
-            String customerName = t.getCustomer() != null ? t.getCustomer().getFullName() : "";
-            String customerEmail = t.getCustomer() != null ? t.getCustomer().getEmail() : "";
-            String sellerName = t.getSeller() != null ? t.getSeller().getFullName() : "";
-            String sellerEmail = t.getSeller() != null ? t.getSeller().getEmail() : "";
-            Long qty = (o != null && o.getQuantity() != null) ? o.getQuantity() : (t.getQuantity() != null ? t.getQuantity() : 0L);
-            items.add(new com.mmo.dto.AdminTransactionListItem(
-                    t.getId(),
-                    o != null ? o.getId() : null,
-                    o != null ? o.getRequestId() : null,
-                    o != null && o.getStatus() != null ? o.getStatus().name() : null,
-                    t.getStatus(),
-                    t.getAmount(),
-                    t.getCoinSeller(),
-                    t.getCoinAdmin(),
-                    qty,
-                    productName,
-                    variantName,
-                    customerName,
-                    customerEmail,
-                    sellerName,
-                    sellerEmail,
-                    t.getCreatedAt(),
-                    o != null ? o.getProcessedAt() : null
-            ));
-        }
+        Page<com.mmo.dto.AdminTransactionListItem> result = q.fetch(entityManager,
+                "new com.mmo.dto.AdminTransactionListItem(" +
+                        "t.id, o.id, o.requestId, o.status, t.status, t.amount, t.coinSeller, t.coinAdmin, " +
+                        "COALESCE(o.quantity, t.quantity, 0L), p.name, v.variantName, " +
+                        "c.fullName, c.email, s.fullName, s.email, t.createdAt, o.processedAt)",
+                com.mmo.dto.AdminTransactionListItem.class, page, 10);
+        int totalPages = result.getTotalPages();
+        List<com.mmo.dto.AdminTransactionListItem> items = result.getContent();
 
         model.addAttribute("transactions", items);
         model.addAttribute("currentStatus", txStatus);
@@ -1059,43 +979,39 @@ public class AdminController {
                                  @RequestParam(name = "search", defaultValue = "") String search,
                                  @RequestParam(name = "sort", defaultValue = "date_desc") String sort,
                                  Model model) {
-        String queryStr = "SELECT p FROM ShopPointPurchase p LEFT JOIN FETCH p.user WHERE 1=1";
+        PagedJpqlQuery q = new PagedJpqlQuery("COUNT(p)", "FROM ShopPointPurchase p LEFT JOIN p.user u");
         if (!search.isBlank()) {
-            queryStr += " AND (LOWER(p.user.fullName) LIKE LOWER(:search) OR LOWER(p.user.email) LIKE LOWER(:search) OR CAST(p.id AS string) LIKE :search OR CAST(p.user.id AS string) LIKE :search)";
+            q.where("LOWER(u.fullName) LIKE LOWER(:search) OR LOWER(u.email) LIKE LOWER(:search) OR CAST(p.id AS string) LIKE :search OR CAST(u.id AS string) LIKE :search",
+                    "search", "%" + search + "%");
         }
 
         // Apply sorting
         switch (sort.toLowerCase()) {
             case "date_asc":
-                queryStr += " ORDER BY p.createdAt ASC";
+                q.orderBy("p.createdAt ASC, p.id ASC");
                 break;
             case "points_desc":
-                queryStr += " ORDER BY p.pointsBought DESC";
+                q.orderBy("p.pointsBought DESC, p.id DESC");
                 break;
             case "points_asc":
-                queryStr += " ORDER BY p.pointsBought ASC";
+                q.orderBy("p.pointsBought ASC, p.id ASC");
                 break;
             case "coins_desc":
-                queryStr += " ORDER BY p.coinsSpent DESC";
+                q.orderBy("p.coinsSpent DESC, p.id DESC");
                 break;
             case "coins_asc":
-                queryStr += " ORDER BY p.coinsSpent ASC";
+                q.orderBy("p.coinsSpent ASC, p.id ASC");
                 break;
             default: // date_desc
-                queryStr += " ORDER BY p.createdAt DESC";
+                q.orderBy("p.createdAt DESC, p.id DESC");
         }
 
-        jakarta.persistence.Query query = entityManager.createQuery(queryStr, ShopPointPurchase.class);
-        if (!search.isBlank()) {
-            query.setParameter("search", "%" + search + "%");
-        }
-        List<ShopPointPurchase> all = query.getResultList();
-        int total = all.size();
-        int totalPages = (int) Math.ceil((double) total / 10);
-        List<ShopPointPurchase> pageList = all.stream()
-                .skip((long) page * 10)
-                .limit(10)
-                .toList();
+        Page<AdminPointPurchaseListItem> result = q.fetch(entityManager,
+                "new com.mmo.dto.AdminPointPurchaseListItem(p.id, p.pointsBought, p.coinsSpent, p.pointsBefore, p.pointsAfter, " +
+                        "p.createdAt, u.id, u.fullName, u.email)",
+                AdminPointPurchaseListItem.class, page, 10);
+        int totalPages = result.getTotalPages();
+        List<AdminPointPurchaseListItem> pageList = result.getContent();
 
         model.addAttribute("purchases", pageList);
         model.addAttribute("currentPage", page);
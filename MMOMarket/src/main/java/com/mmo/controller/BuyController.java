@@ -6,7 +6,6 @@ import com.mmo.entity.Orders;
 import com.mmo.mq.BuyAccountPublisher;
 import com.mmo.repository.OrdersRepository;
 import com.mmo.repository.ProductRepository;
-import com.mmo.repository.ProductVariantAccountRepository;
 import com.mmo.repository.ProductVariantRepository;
 import com.mmo.repository.UserRepository;
 import org.springframework.http.ResponseEntity;
@@ -33,20 +32,17 @@ public class BuyController {
 
     private final ProductRepository productRepository;
     private final ProductVariantRepository productVariantRepository;
-    private final ProductVariantAccountRepository productVariantAccountRepository;
     private final UserRepository userRepository;
     private final OrdersRepository ordersRepository;
     private final BuyAccountPublisher buyAccountPublisher;
 
     public BuyController(ProductRepository productRepository,
                          ProductVariantRepository productVariantRepository,
-                         ProductVariantAccountRepository productVariantAccountRepository,
                          UserRepository userRepository,
                          OrdersRepository ordersRepository,
                          BuyAccountPublisher buyAccountPublisher) {
         this.productRepository = productRepository;
         this.productVariantRepository = productVariantRepository;
-        this.productVariantAccountRepository = productVariantAccountRepository;
         this.userRepository = userRepository;
         this.ordersRepository = ordersRepository;
         this.buyAccountPublisher = buyAccountPublisher;
@@ -97,7 +93,7 @@ public class BuyController {
             unitPrice = chosen.getPrice() != null ? chosen.getPrice() : 0L;
             variantName = StringUtils.hasText(chosen.getVariantName()) ? chosen.getVariantName() : variantName;
             chosenVariantId = chosen.getId();
-            stock = productVariantAccountRepository.countByVariant_IdAndIsDeleteFalseAndStatus(chosen.getId(), "Available");
+            stock = chosen.getAvailableStock() != null ? chosen.getAvailableStock() : 0L;
         }
 
         int q = (quantity != null) ? quantity : 1;
@@ -164,7 +160,7 @@ public class BuyController {
             ra.addAttribute("msg", "Invalid variant");
             return "redirect:/productdetail?id=" + productId;
         }
-        long stock = productVariantAccountRepository.countByVariant_IdAndIsDeleteFalseAndStatus(variantId, "Available");
+        long stock = optV.get().getAvailableStock() != null ? optV.get().getAvailableStock() : 0L;
         if (stock <= 0) {
             ra.addAttribute("buyConfirmed", 0);
             ra.addAttribute("msg", "Out of stock");
@@ -198,7 +194,7 @@ public class BuyController {
                 return ResponseEntity.badRequest().body("Invalid variant");
 
             // Use current price; cap quantity by current stock snapshot (final validation occurs in consumer)
-            long stock = productVariantAccountRepository.countByVariant_IdAndIsDeleteFalseAndStatus(variantId, "Available");
+            long stock = variantOpt.get().getAvailableStock() != null ? variantOpt.get().getAvailableStock() : 0L;
             if (stock <= 0) return ResponseEntity.badRequest().body("Out of stock");
             if (q > stock) q = (int) stock;
             long unitPrice = variantOpt.get().getPrice() == null ? 0L : variantOpt.get().getPrice();
@@ -5,7 +5,7 @@ import com.mmo.dto.ConversationSummaryDto;
 import com.mmo.entity.User;
 import com.mmo.service.AuthService;
 import com.mmo.service.ChatService;
-import com.mmo.service.ChatSseService;
+import com.mmo.service.UserEventStreamService;
 import com.mmo.service.FileStorageService;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.MediaType;
@@ -33,17 +33,17 @@ import java.util.UUID;
 public class ChatController {
     private final ChatService chatService;
     private final AuthService authService;
-    private final ChatSseService chatSseService;
+    private final UserEventStreamService userEventStreamService;
     private final FileStorageService fileStorageService;
 
     @Value("${upload.chat.dir:uploads/chat}")
     private String uploadDir;
 
-    public ChatController(ChatService chatService, AuthService authService, ChatSseService chatSseService,
+    public ChatController(ChatService chatService, AuthService authService, UserEventStreamService userEventStreamService,
                          FileStorageService fileStorageService) {
         this.chatService = chatService;
         this.authService = authService;
-        this.chatSseService = chatSseService;
+        this.userEventStreamService = userEventStreamService;
         this.fileStorageService = fileStorageService;
     }
 
@@ -101,8 +101,8 @@ public class ChatController {
         return "chat/chat";
     }
 
-    // SSE stream for real-time chat updates
-    @GetMapping(value = "/chat/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    // Per-user SSE stream (chat, notifications, order status, balance); /chat/stream kept for older clients
+    @GetMapping(value = {"/events/stream", "/chat/stream"}, produces = MediaType.TEXT_EVENT_STREAM_VALUE)
     @ResponseBody
     public SseEmitter subscribe(Authentication authentication) {
         User current = getCurrentUser(authentication);
@@ -113,20 +113,24 @@ public class ChatController {
             return emitter;
         }
 
-        return chatSseService.subscribe(current.getId());
+        return userEventStreamService.subscribe(current.getId());
     }
 
-    // Messages API
+    // Messages API (cursor paged): latest page by default, ?before=<id> for older messages, ?after=<id> to catch up
     @GetMapping("/chat/messages/{partnerId}")
     @ResponseBody
-    public ResponseEntity<List<ChatMessageDto>> loadMessages(@PathVariable Long partnerId, Authentication authentication) {
+    public ResponseEntity<List<ChatMessageDto>> loadMessages(@PathVariable Long partnerId,
+                                                             @RequestParam(value = "before", required = false) Long before,
+                                                             @RequestParam(value = "after", required = false) Long after,
+                                                             @RequestParam(value = "limit", defaultValue = "50") int limit,
+                                                             Authentication authentication) {
         User current = getCurrentUser(authentication);
 
         if (current == null) {
             return ResponseEntity.status(401).build();
         }
 
-        List<ChatMessageDto> messages = chatService.getMessages(current.getId(), partnerId);
+        List<ChatMessageDto> messages = chatService.getMessages(current.getId(), partnerId, before, after, limit);
         return ResponseEntity.ok(messages);
     }
 
@@ -2,12 +2,11 @@ package com.mmo.controller;
 
 import com.mmo.entity.User;
 import com.mmo.repository.NotificationRepository;
-import com.mmo.service.AuthService;
+import com.mmo.service.CurrentUserContext;
+import com.mmo.service.HeaderBadgeCache;
 import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.Authentication;
-import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
-import org.springframework.security.oauth2.core.user.OAuth2User;
 import org.springframework.stereotype.Controller;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -22,7 +21,10 @@ public class NotificationController {
     private NotificationRepository notificationRepository;
 
     @Autowired
-    private AuthService authService;
+    private CurrentUserContext currentUserContext;
+
+    @Autowired
+    private HeaderBadgeCache headerBadgeCache;
 
     @PostMapping("/notifications/mark-all-read")
     @Transactional
@@ -30,18 +32,13 @@ public class NotificationController {
         if (authentication == null || !authentication.isAuthenticated()) {
             return "redirect:/authen/login";
         }
-        String email = authentication.getName();
-        if (authentication instanceof OAuth2AuthenticationToken oauth2Token) {
-            OAuth2User oauthUser = oauth2Token.getPrincipal();
-            String mail = oauthUser.getAttribute("email");
-            if (mail != null) email = mail;
-        }
-        User user = email != null ? authService.findByEmail(email) : null;
+        User user = currentUserContext.getUser(authentication);
         if (user != null) {
             int updated = notificationRepository.updateStatusForUserId(user.getId(), "Unread", "Readed");
             if (updated == 0) {
                 notificationRepository.updateStatusForUserEmail(user.getEmail(), "Unread", "Readed");
             }
+            headerBadgeCache.invalidate(user.getId());
         }
         String referer = request.getHeader("Referer");
         return "redirect:" + (referer != null ? referer : "/homepage");
@@ -59,13 +56,10 @@ public class NotificationController {
             String referer = request.getHeader("Referer");
             return "redirect:" + (referer != null ? referer : "/account/notifications");
         }
-        String email = authentication.getName();
-        if (authentication instanceof OAuth2AuthenticationToken oauth2Token) {
-            OAuth2User oauthUser = oauth2Token.getPrincipal();
-            String mail = oauthUser.getAttribute("email");
-            if (mail != null) email = mail;
-        }
+        String email = CurrentUserContext.resolveEmail(authentication);
         notificationRepository.updateStatusForIdsAndEmail(email, ids, "Unread", "Readed");
+        User user = currentUserContext.getUser(authentication);
+        if (user != null) headerBadgeCache.invalidate(user.getId());
         String referer = request.getHeader("Referer");
         return "redirect:" + (referer != null ? referer : "/account/notifications");
     }
@@ -189,11 +189,12 @@ public class OrderController {
         } catch (Exception ignored) { }
         model.addAttribute("variant", variant);
 
-        // Load delivered accounts linked to this order's transaction (exclude soft-deleted)
-        java.util.List<ProductVariantAccount> accounts = java.util.Collections.emptyList();
+        // Load delivered accounts linked to this order's transaction (exclude soft-deleted).
+        // Id and activation only: account data is fetched per account by the /data endpoint when the buyer opens it
+        java.util.List<ProductVariantAccountRepository.AccountStatusView> accounts = java.util.Collections.emptyList();
         try {
             if (order.getTransactionId() != null) {
-                accounts = productVariantAccountRepository.findByTransaction_IdAndIsDeleteFalse(order.getTransactionId());
+                accounts = productVariantAccountRepository.findDeliveredStatus(order.getTransactionId());
             }
         } catch (Exception ignored) { }
         model.addAttribute("accounts", accounts);
@@ -239,7 +240,7 @@ public class OrderController {
         boolean activated = false;
         try {
             if (accounts != null && !accounts.isEmpty()) {
-                for (ProductVariantAccount a : accounts) { if (a.isActivated()) activatedCount++; }
+                for (var a : accounts) { if (Boolean.TRUE.equals(a.getActivated())) activatedCount++; }
                 activated = activatedCount == accounts.size();
             }
         } catch (Exception ignored) { }
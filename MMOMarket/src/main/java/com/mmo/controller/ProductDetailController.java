@@ -1,11 +1,10 @@
 package com.mmo.controller;
 
 import com.mmo.service.ProductService;
-import com.mmo.service.AuthService;
+import com.mmo.service.CurrentUserContext;
 import com.mmo.entity.User;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.oauth2.core.user.OAuth2User;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
@@ -14,11 +13,11 @@ import org.springframework.web.bind.annotation.*;
 public class ProductDetailController {
 
     private final ProductService productService;
-    private final AuthService authService;
+    private final CurrentUserContext currentUserContext;
 
-    public ProductDetailController(ProductService productService, AuthService authService) {
+    public ProductDetailController(ProductService productService, CurrentUserContext currentUserContext) {
         this.productService = productService;
-        this.authService = authService;
+        this.currentUserContext = currentUserContext;
     }
 
     /**
@@ -26,34 +25,11 @@ public class ProductDetailController {
      * Handles both OAuth2 (Google) and form-based login
      */
     private User getCurrentUser(Authentication auth) {
-        if (auth == null || !auth.isAuthenticated() || "anonymousUser".equals(auth.getPrincipal())) {
-            return null;
+        if (auth != null && auth.getPrincipal() instanceof User user) {
+            return user;
         }
-
-        Object principal = auth.getPrincipal();
-
-        // Case 1: Form-based login - principal is User object
-        if (principal instanceof User) {
-            return (User) principal;
-        }
-
-        // Case 2: OAuth2 login - principal is OAuth2User
-        if (principal instanceof OAuth2User) {
-            OAuth2User oauth2User = (OAuth2User) principal;
-            String email = oauth2User.getAttribute("email");
-            if (email != null) {
-                return authService.findByEmail(email);
-            }
-        }
-
-        // Case 3: Principal is string (username/email)
-        if (principal instanceof String) {
-            String identifier = (String) principal;
-            return authService.findByEmail(identifier);
-        }
-
-        // Fallback: try to get email from authentication name
-        return authService.findByEmail(auth.getName());
+        // Shared with GlobalModelAttributes: the user is looked up once per request
+        return currentUserContext.getUser(auth);
     }
 
     /**
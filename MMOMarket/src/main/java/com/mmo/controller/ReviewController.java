@@ -6,6 +6,8 @@ import com.mmo.entity.User;
 import com.mmo.repository.OrdersRepository;
 import com.mmo.repository.ReviewRepository;
 import com.mmo.repository.UserRepository;
+import com.mmo.service.HomePageCache;
+import com.mmo.service.ProductStatsService;
 import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -32,6 +34,10 @@ public class ReviewController {
     private OrdersRepository ordersRepository;
     @Autowired
     private UserRepository userRepository;
+    @Autowired
+    private ProductStatsService productStatsService;
+    @Autowired
+    private HomePageCache homePageCache;
 
     private String resolveEmail(Authentication authentication) {
         if (authentication == null || !authentication.isAuthenticated()) return null;
@@ -97,7 +103,7 @@ public class ReviewController {
             displayImage = "/images/home.jpg"; // fallback
         }
         Double avg = 0.0;
-        try { avg = reviewRepository.getAverageRatingByProduct(productId); } catch (Exception ignored) {}
+        try { avg = productStatsService.getStats(productId).getAverageRating(); } catch (Exception ignored) {}
         if (avg == null) avg = 0.0;
         int avgRounded = (int) Math.round(avg);
         List<Review> reviews = reviewRepository.findByProductIdAndIsDeleteFalseOrderByCreatedAtDesc(productId);
@@ -187,7 +193,7 @@ public class ReviewController {
         if (displayImage == null) displayImage = "/images/home.jpg";
 
         Double avg = 0.0;
-        try { avg = reviewRepository.getAverageRatingByProduct(productId); } catch (Exception ignored) {}
+        try { avg = productStatsService.getStats(productId).getAverageRating(); } catch (Exception ignored) {}
         if (avg == null) avg = 0.0;
         int avgRounded = (int) Math.round(avg);
         List<Review> reviews = reviewRepository.findByProductIdAndIsDeleteFalseOrderByCreatedAtDesc(productId);
@@ -291,6 +297,8 @@ public class ReviewController {
         r.setCreatedBy(user.getId());
         r.setDelete(false);
         reviewRepository.save(r);
+        productStatsService.recordReviewAdded(order.getProductId(), r.getRating());
+        homePageCache.markStale();
         return "redirect:/account/orders"; // could redirect to product detail later
     }
 
@@ -319,9 +327,14 @@ public class ReviewController {
             if (days > 7) return "redirect:/account/orders";
         }
         if (rating == null || rating < 1 || rating > 5) return "redirect:/account/orders/" + orderId + "/review/view";
+        int previousRating = mine.getRating() != null ? mine.getRating() : rating;
         mine.setRating(rating);
         mine.setComment(comment != null ? comment : "");
         reviewRepository.save(mine);
+        if (mine.getProduct() != null) {
+            productStatsService.recordReviewChanged(mine.getProduct().getId(), previousRating, rating);
+            homePageCache.markStale();
+        }
         return "redirect:/account/orders/" + orderId + "/review/view";
     }
 
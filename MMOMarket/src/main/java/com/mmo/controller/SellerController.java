@@ -11,6 +11,9 @@ import com.mmo.service.*;
 
 import com.mmo.dto.SellerTransactionListItem;
 import com.mmo.dto.SellerComplaintListItem;
+import com.mmo.dto.SellerReviewListItem;
+import com.mmo.repository.PagedJpqlQuery;
+import org.springframework.data.domain.Page;
 import com.mmo.entity.Complaint;
 import com.mmo.entity.SellerBankInfo;
 import com.mmo.entity.ShopInfo;
@@ -67,6 +70,9 @@ public class SellerController {
     @Autowired
     private ProductVariantAccountService productVariantAccountService;
 
+    @Autowired
+    private AccountImportService accountImportService;
+
     @Autowired
     private SellerBankInfoService sellerBankInfoService;
 
@@ -127,6 +133,18 @@ public class SellerController {
     @Autowired
     private FileStorageService fileStorageService;
 
+    @Autowired
+    private SearchIndexService searchIndexService;
+
+    @Autowired
+    private HomePageCache homePageCache;
+
+    @Autowired
+    private ProductStatsService productStatsService;
+
+    @Autowired
+    private VariantStockService variantStockService;
+
     private static final long REGISTRATION_FEE = 200_000L;
 
     @GetMapping("/register")
@@ -760,12 +778,14 @@ public class SellerController {
 
         // Calculate sales count and percentage for each product
         List<com.mmo.dto.TopProductDTO> topProductDTO = new ArrayList<>();
-        long totalSales = topProducts.stream()
-                .mapToLong(p -> productRepository.countSalesForProduct(p.getId()))
+        Map<Long, com.mmo.entity.ProductStats> topStats = productStatsService.getStats(
+                topProducts.stream().map(com.mmo.entity.Product::getId).toList());
+        long totalSales = topStats.values().stream()
+                .mapToLong(com.mmo.entity.ProductStats::getSoldCount)
                 .sum();
 
         for (com.mmo.entity.Product product : topProducts) {
-            Long salesCount = productRepository.countSalesForProduct(product.getId());
+            Long salesCount = topStats.get(product.getId()).getSoldCount();
             if (salesCount == null) salesCount = 0L;
 
             double percentage = 0.0;
@@ -2250,32 +2270,27 @@ public class SellerController {
             if (!st.equals("all") && !st.equals("available") && !st.equals("sold")) st = "all";
             int p = (page == null || page < 1) ? 1 : page;
             int sz = (size == null || size < 1 || size > 200) ? 50 : size; // cap to 200 per page
-            int offset = (p - 1) * sz;
             String like = (search == null || search.isBlank()) ? null : search.trim().toLowerCase(Locale.ROOT);
 
-            // Build base HQL
-            String base = "FROM ProductVariantAccount a WHERE a.isDelete = false AND a.variant.id = :vid";
-            String baseCount = "SELECT COUNT(a) " + base;
-            if (st.equals("available")) base += " AND a.status = 'Available'";
-            else if (st.equals("sold")) base += " AND a.status = 'Sold'";
-            base += " ORDER BY a.createdAt DESC";
-
-            // Fetch page
-            jakarta.persistence.TypedQuery<ProductVariantAccount> q = entityManager.createQuery("SELECT a " + base, ProductVariantAccount.class)
-                    .setParameter("vid", variantId)
-                    .setFirstResult(offset)
-                    .setMaxResults(sz);
-            java.util.List<ProductVariantAccount> rows = q.getResultList();
-
-            // Total count
-            Long total = entityManager.createQuery(baseCount + (st.equals("available") ? " AND a.status = 'Available'" : st.equals("sold") ? " AND a.status = 'Sold'" : ""), Long.class)
-                    .setParameter("vid", variantId)
-                    .getSingleResult();
+            // Projection page: no entity hydration; only the rows on this page are decrypted for display
+            String statusFilter = st.equals("available") ? "Available" : st.equals("sold") ? "Sold" : null;
+            var rows = productVariantAccountRepository.findPageForSeller(variantId, statusFilter,
+                    org.springframework.data.domain.PageRequest.of(p - 1, sz));
+            long total = productVariantAccountRepository.countForSeller(variantId, statusFilter);
 
             // Map to DTOs and optional search filtering (by username contains)
             java.util.List<Map<String, Object>> items = new java.util.ArrayList<>();
-            for (ProductVariantAccount a : rows) {
-                String ad = a.getPlainAccountData() == null ? "" : a.getPlainAccountData();
+            for (var a : rows) {
+                Map<String, Object> m = new HashMap<>();
+                String ad;
+                try {
+                    ad = a.getAccountData() == null ? "" : com.mmo.util.EncryptionUtil.toPlainText(a.getAccountData());
+                } catch (RuntimeException ex) {
+                    // Key configuration problem: report it in the row instead of showing ciphertext as credentials
+                    System.err.println("Account " + a.getId() + " could not be decrypted: " + ex.getMessage());
+                    ad = "";
+                    m.put("error", "Could not decrypt account data");
+                }
                 String uname = ad;
                 String pass = "";
                 int idx = ad.indexOf(':');
@@ -2283,7 +2298,6 @@ public class SellerController {
                     uname = ad.substring(0, idx);
                     pass = ad.substring(idx + 1);
                 }
-                Map<String, Object> m = new HashMap<>();
                 m.put("id", a.getId());
                 m.put("username", uname);
                 m.put("password", pass);
@@ -2350,23 +2364,11 @@ public class SellerController {
             if (!fieldErrors.isEmpty())
                 return ResponseEntity.badRequest().body(Map.of("message", "Validation failed", "fieldErrors", fieldErrors));
 
-            // Duplicate check within the same variant (exclude current account id)
+            // Duplicate check within the same variant (exclude current account id), by username fingerprint
             Long vid = acc.getVariant().getId();
-            java.util.List<ProductVariantAccount> accounts = entityManager.createQuery(
-                    "select a from ProductVariantAccount a where a.variant.id = :vid and a.isDelete = false and a.id <> :id",
-                    ProductVariantAccount.class
-            ).setParameter("vid", vid).setParameter("id", acc.getId()).getResultList();
-            java.util.Set<String> usernames = new java.util.HashSet<>();
-            if (accounts != null) {
-                for (ProductVariantAccount a : accounts) {
-                    String s = a.getPlainAccountData(); // Automatically decrypted
-                    if (s == null) continue;
-                    int idx = s.indexOf(':');
-                    String u = (idx >= 0 ? s.substring(0, idx) : s);
-                    if (u != null) usernames.add(u.trim());
-                }
-            }
-            if (usernames.contains(username)) {
+            long sameUsername = productVariantAccountRepository.countSameUsernameInVariant(
+                    vid, com.mmo.util.UsernameFingerprint.of(username), acc.getId());
+            if (sameUsername > 0) {
                 return ResponseEntity.badRequest().body(Map.of(
                         "message", "Duplicate username detected. This account already exists in this variant.",
                         "fieldErrors", Map.of("username", "Duplicate username")
@@ -2509,6 +2511,8 @@ public class SellerController {
         }
 
         java.util.List<java.util.Map<String, Object>> rows = new java.util.ArrayList<>();
+        java.util.Map<Long, com.mmo.entity.ProductStats> statsById = productStatsService.getStats(
+                products.stream().map(com.mmo.entity.Product::getId).toList());
         for (com.mmo.entity.Product p : products) {
             java.util.Map<String, Object> row = new java.util.HashMap<>();
             row.put("id", p.getId());
@@ -2539,9 +2543,8 @@ public class SellerController {
             Long lowest = (variants == null || variants.isEmpty()) ? 0L : variants.stream().map(com.mmo.entity.ProductVariant::getPrice).filter(java.util.Objects::nonNull).min(Long::compareTo).orElse(0L);
             row.put("lowestPrice", lowest);
 
-            // Total sold from repository
-            Long totalSold = productRepository.getTotalSoldForProduct(p.getId());
-            row.put("totalSold", totalSold != null ? totalSold : 0L);
+            // Total sold from ProductStats
+            row.put("totalSold", statsById.get(p.getId()).getSoldCount());
 
             rows.add(row);
         }
@@ -2727,6 +2730,8 @@ public class SellerController {
         p.setDelete(next);
         p.setDeletedBy(next ? user.getId() : null);
         entityManager.merge(p);
+        searchIndexService.indexProduct(p);
+        homePageCache.markStale();
         return ResponseEntity.ok(Map.of("id", p.getId(), "hidden", next));
     }
 
@@ -2959,6 +2964,10 @@ public class SellerController {
                     "UPDATE SellerBankInfo s SET s.isDelete = true, s.deletedBy = :uid WHERE s.isDelete = false AND s.user.id = :sellerId"
             ).setParameter("uid", uid).setParameter("sellerId", sellerId).executeUpdate();
 
+            // Drop the shop from the search index before it is soft-deleted
+            shopInfoRepository.findByUserIdAndIsDeleteFalse(sellerId)
+                    .ifPresent(si -> searchIndexService.removeShop(si.getId()));
+
             // Soft delete ShopInfo - Note: ShopInfo.deletedBy is a User entity, not Long
             entityManager.createQuery(
                     "UPDATE ShopInfo s SET s.isDelete = true, s.deletedBy = :userEntity WHERE s.isDelete = false AND s.user.id = :sellerId"
@@ -3279,13 +3288,9 @@ public class SellerController {
 
         java.util.List<com.mmo.dto.ProductVariantDto> dtos = new java.util.ArrayList<>();
         for (com.mmo.entity.ProductVariant v : variants) {
-            long stock = 0L;
+            // available accounts = status 'Available' (maintained counter on the variant row)
+            long stock = v.getAvailableStock() != null ? v.getAvailableStock() : 0L;
             long sold = 0L;
-            try {
-                // available accounts = status 'Available'
-                stock = productVariantAccountRepository.countByVariant_IdAndIsDeleteFalseAndStatus(v.getId(), "Available");
-            } catch (Exception ignored) {
-            }
             try {
                 // sold accounts = status 'Sold'
                 sold = productVariantAccountRepository.countByVariant_IdAndIsDeleteFalseAndStatus(v.getId(), "Sold");
@@ -3367,6 +3372,7 @@ public class SellerController {
         v.setDelete(false);
         v.setCreatedBy(user.getId());
         entityManager.persist(v);
+        productStatsService.refreshInventory(p.getId());
         return ResponseEntity.status(HttpStatus.CREATED).body(Map.of("message", "Created", "id", v.getId()));
     }
 
@@ -3437,6 +3443,7 @@ public class SellerController {
         v.setVariantName(variantName);
         v.setPrice(price);
         entityManager.merge(v);
+        productStatsService.refreshInventory(v.getProduct().getId());
         return ResponseEntity.ok(Map.of("message", "Updated"));
     }
 
@@ -3468,6 +3475,7 @@ public class SellerController {
         v.setDelete(next);
         v.setDeletedBy(next ? user.getId() : null);
         entityManager.merge(v);
+        productStatsService.refreshInventory(v.getProduct().getId());
         return ResponseEntity.ok(Map.of("id", v.getId(), "hidden", next));
     }
 
@@ -3726,6 +3734,9 @@ public class SellerController {
             }
             entityManager.persist(p);
             entityManager.flush(); // Force immediate database insert
+            searchIndexService.indexProduct(p);
+            homePageCache.markStale();
+            productStatsService.refreshInventory(p.getId());
 
             Map<String, Object> res = new HashMap<>();
             res.put("message", "Created successfully");
@@ -3835,6 +3846,8 @@ public class SellerController {
             // Persist changes
             entityManager.merge(p);
             entityManager.flush();
+            searchIndexService.indexProduct(p);
+            homePageCache.markStale();
 
             Map<String, Object> res = new HashMap<>();
             res.put("message", "Updated successfully");
@@ -3880,10 +3893,10 @@ public class SellerController {
         }
     }
 
-    // Preview or confirm upload of accounts for a variant via Excel/CSV
+    // Preview or confirm upload of accounts for a variant via Excel/CSV.
+    // Confirm starts a background import job (no transaction here: the job row must be committed before it runs)
     @PostMapping(path = "/products/variants/{variantId}/upload-excel", consumes = MediaType.MULTIPART_FORM_DATA_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
     @ResponseBody
-    @Transactional
     public ResponseEntity<?> uploadVariantAccounts(@PathVariable Long variantId,
                                                    @RequestParam("file") org.springframework.web.multipart.MultipartFile file,
                                                    @RequestParam(name = "preview", required = false, defaultValue = "false") boolean preview,
@@ -3930,21 +3943,70 @@ public class SellerController {
                         "rows", rows
                 ));
             } else {
-                try {
-                    var ur = productVariantAccountService.confirmUpload(user, v, file, dedupe);
-                    return ResponseEntity.ok(Map.of("created", ur.getCreated(), "skipped", ur.getSkipped()));
-                } catch (IllegalArgumentException iae) {
-                    // Invalid rows: respond 400 with message
-                    return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of("message", iae.getMessage()));
-                }
+                var job = accountImportService.start(user, v, file, dedupe);
+                return ResponseEntity.status(HttpStatus.ACCEPTED).body(importJobBody(job));
             }
         } catch (org.springframework.web.multipart.MultipartException mex) {
             return ResponseEntity.badRequest().body(Map.of("message", "Upload error: " + mex.getMessage()));
+        } catch (java.io.IOException ioe) {
+            return ResponseEntity.badRequest().body(Map.of("message", ioe.getMessage()));
         } catch (Exception ex) {
             return ResponseEntity.status(500).body(Map.of("message", "Internal error: " + ex.getMessage()));
         }
     }
 
+    // Progress of a background account import (polled by the product detail page)
+    @GetMapping(path = "/products/variants/import-jobs/{jobId}", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseBody
+    public ResponseEntity<?> getAccountImportJob(@PathVariable Long jobId, Authentication authentication) {
+        User user = resolveImportJobOwner(authentication);
+        if (user == null) return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("message", "Unauthorized"));
+        var job = accountImportService.getJob(jobId).orElse(null);
+        if (job == null || !Objects.equals(job.getSellerId(), user.getId())) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("message", "Import job not found"));
+        }
+        return ResponseEntity.ok(importJobBody(job));
+    }
+
+    // Resume a failed import after the last committed chunk
+    @PostMapping(path = "/products/variants/import-jobs/{jobId}/resume", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseBody
+    public ResponseEntity<?> resumeAccountImportJob(@PathVariable Long jobId, Authentication authentication) {
+        User user = resolveImportJobOwner(authentication);
+        if (user == null) return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("message", "Unauthorized"));
+        var job = accountImportService.getJob(jobId).orElse(null);
+        if (job == null || !Objects.equals(job.getSellerId(), user.getId())) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("message", "Import job not found"));
+        }
+        if (!accountImportService.resume(job)) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("message", "Import is " + job.getStatus().toLowerCase() + " and cannot be resumed"));
+        }
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(Map.of("jobId", job.getId(), "status", AccountImportJob.PENDING));
+    }
+
+    private User resolveImportJobOwner(Authentication authentication) {
+        if (authentication == null || !authentication.isAuthenticated()) return null;
+        String email = authentication.getName();
+        if (authentication.getPrincipal() instanceof OidcUser oidc) email = oidc.getEmail();
+        else if (authentication.getPrincipal() instanceof OAuth2User ou) {
+            Object mailAttr = ou.getAttributes().get("email");
+            if (mailAttr != null) email = mailAttr.toString();
+        }
+        return userRepository.findByEmail(email).orElse(null);
+    }
+
+    private static Map<String, Object> importJobBody(AccountImportJob job) {
+        Map<String, Object> body = new HashMap<>();
+        body.put("jobId", job.getId());
+        body.put("status", job.getStatus());
+        body.put("totalRows", job.getTotalRows());
+        body.put("processedRows", job.getProcessedRows());
+        body.put("created", job.getCreatedCount());
+        body.put("skipped", job.getSkippedCount());
+        body.put("message", job.getErrorMessage());
+        return body;
+    }
+
     // Preview edited rows from JSON (supports inline edit/delete during preview) with pagination
     @PostMapping(path = "/products/variants/{variantId}/upload-json/preview", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
     @ResponseBody
@@ -4100,6 +4162,7 @@ public class SellerController {
 
             try {
                 var ur = productVariantAccountService.confirmRows(user, variant, simple, dedupe);
+                productStatsService.refreshInventory(variant.getProduct().getId());
                 return ResponseEntity.ok(Map.of("created", ur.getCreated(), "skipped", ur.getSkipped()));
             } catch (IllegalArgumentException iae) {
                 return ResponseEntity.badRequest().body(Map.of("message", iae.getMessage()));
@@ -4144,6 +4207,8 @@ public class SellerController {
             acc.setDelete(true);
             acc.setDeletedBy(user.getId());
             entityManager.merge(acc);
+            variantStockService.recordRemoved(acc.getVariant().getId(), 1L);
+            productStatsService.refreshInventory(acc.getVariant().getProduct().getId());
             return ResponseEntity.ok(Map.of(
                     "message", "Deleted successfully",
                     "id", acc.getId()
@@ -4173,17 +4238,15 @@ public class SellerController {
                 return "redirect:/authen/login";
             }
 
-            // Build JPQL query to get reviews for seller's products
-            StringBuilder sb = new StringBuilder(
-                    "SELECT r FROM Review r " +
-                            "LEFT JOIN FETCH r.product p " +
-                            "LEFT JOIN FETCH r.user u " +
-                            "LEFT JOIN FETCH r.order o " +  // NEW: Fetch order info
-                            "WHERE r.isDelete = false AND p.seller.id = :sellerId"
-            );
+            // Reviews for the seller's products, paged in the database
+            PagedJpqlQuery q = new PagedJpqlQuery("COUNT(r)",
+                    "FROM Review r JOIN r.product p LEFT JOIN r.user u LEFT JOIN r.order o")
+                    .where("r.isDelete = false")
+                    .where("p.seller.id = :sellerId", "sellerId", seller.getId());
 
             if (search != null && !search.isBlank()) {
-                sb.append(" AND (LOWER(p.name) LIKE LOWER(:search) OR CAST(p.id AS string) LIKE :search OR CAST(u.id AS string) LIKE :search OR CAST(r.id AS string) LIKE :search)");
+                q.where("LOWER(p.name) LIKE LOWER(:search) OR CAST(p.id AS string) LIKE :search OR CAST(u.id AS string) LIKE :search OR CAST(r.id AS string) LIKE :search",
+                        "search", "%" + search + "%");
             }
 
             // Determine ordering
@@ -4205,22 +4268,13 @@ public class SellerController {
                     orderDir = "DESC";
                 }
             }
-            sb.append(" ORDER BY ").append(orderField).append(" ").append(orderDir);
-
-            jakarta.persistence.TypedQuery<com.mmo.entity.Review> query = entityManager.createQuery(sb.toString(), com.mmo.entity.Review.class);
-            query.setParameter("sellerId", seller.getId());
-
-            if (search != null && !search.isBlank()) {
-                query.setParameter("search", "%" + search + "%");
-            }
+            q.orderBy(orderField + " " + orderDir + ", r.id " + orderDir);
 
-            List<com.mmo.entity.Review> all = query.getResultList();
-            int total = all.size();
-            int totalPages = (int) Math.ceil((double) total / 10);
-            List<com.mmo.entity.Review> pageList = all.stream()
-                    .skip((long) page * 10)
-                    .limit(10)
-                    .toList();
+            Page<SellerReviewListItem> result = q.fetch(entityManager,
+                    "new com.mmo.dto.SellerReviewListItem(r.id, r.rating, r.comment, r.createdAt, p.id, p.name, u.id, o.id)",
+                    SellerReviewListItem.class, page, 10);
+            int totalPages = result.getTotalPages();
+            List<SellerReviewListItem> pageList = result.getContent();
 
             model.addAttribute("reviews", pageList);
             model.addAttribute("currentPage", page);
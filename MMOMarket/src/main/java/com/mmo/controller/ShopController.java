@@ -4,8 +4,9 @@ package com.mmo.controller;
 import com.mmo.entity.ShopInfo;
 import com.mmo.entity.User;
 import com.mmo.service.ProductService;
+import com.mmo.service.ProductStatsService;
 import com.mmo.service.ShopService;
-import com.mmo.service.AuthService;
+import com.mmo.service.CurrentUserContext;
 import com.mmo.repository.ProductRepository;
 import com.mmo.repository.ReviewRepository;
 import com.mmo.repository.ShopInfoRepository;
@@ -14,7 +15,6 @@ import com.mmo.repository.CategoryRepository;
 import com.mmo.util.TierNameUtil;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.oauth2.core.user.OAuth2User;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -33,7 +33,8 @@ public class ShopController {
     private final ReviewRepository reviewRepository;
     private final CategoryRepository categoryRepository;
     private final ShopService shopService;
-    private final AuthService authService;
+    private final CurrentUserContext currentUserContext;
+    private final ProductStatsService productStatsService;
 
     public ShopController(ProductService productService,
                           UserRepository userRepository,
@@ -42,7 +43,8 @@ public class ShopController {
                           ReviewRepository reviewRepository,
                           CategoryRepository categoryRepository,
                           ShopService shopService,
-                          AuthService authService) {
+                          CurrentUserContext currentUserContext,
+                          ProductStatsService productStatsService) {
         this.productService = productService;
         this.userRepository = userRepository;
         this.shopInfoRepository = shopInfoRepository;
@@ -50,7 +52,8 @@ public class ShopController {
         this.reviewRepository = reviewRepository;
         this.categoryRepository = categoryRepository;
         this.shopService = shopService;
-        this.authService = authService;
+        this.currentUserContext = currentUserContext;
+        this.productStatsService = productStatsService;
     }
 
     /**
@@ -58,34 +61,11 @@ public class ShopController {
      * Handles both OAuth2 (Google) and form-based login
      */
     private User getCurrentUser(Authentication auth) {
-        if (auth == null || !auth.isAuthenticated() || "anonymousUser".equals(auth.getPrincipal())) {
-            return null;
+        if (auth != null && auth.getPrincipal() instanceof User user) {
+            return user;
         }
-
-        Object principal = auth.getPrincipal();
-
-        // Case 1: Form-based login - principal is User object
-        if (principal instanceof User) {
-            return (User) principal;
-        }
-
-        // Case 2: OAuth2 login - principal is OAuth2User
-        if (principal instanceof OAuth2User) {
-            OAuth2User oauth2User = (OAuth2User) principal;
-            String email = oauth2User.getAttribute("email");
-            if (email != null) {
-                return authService.findByEmail(email);
-            }
-        }
-
-        // Case 3: Principal is string (username/email)
-        if (principal instanceof String) {
-            String identifier = (String) principal;
-            return authService.findByEmail(identifier);
-        }
-
-        // Fallback: try to get email from authentication name
-        return authService.findByEmail(auth.getName());
+        // Shared with GlobalModelAttributes: the user is looked up once per request
+        return currentUserContext.getUser(auth);
     }
 
     /**
@@ -158,11 +138,10 @@ public class ShopController {
                 ? shop.getShopName()
                 : (seller.getFullName() != null && !seller.getFullName().isEmpty() ? seller.getFullName() : "Shop");
 
-        Long totalSold = productRepository.getTotalSoldForSeller(sellerId);
-        if (totalSold == null) totalSold = 0L;
+        ProductStatsService.SellerTotals sellerTotals = productStatsService.getSellerTotals(sellerId);
+        Long totalSold = sellerTotals.soldCount();
 
-        Double avgRating = shopService.getSellerAverageRating(sellerId);
-        if (avgRating == null) avgRating = 0.0;
+        Double avgRating = sellerTotals.averageRating();
 
         Double successRate = 30.0;
         if (avgRating > 4.0) successRate = 90.0;
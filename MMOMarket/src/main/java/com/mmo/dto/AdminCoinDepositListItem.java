@@ -0,0 +1,41 @@
+package com.mmo.dto;
+
+import java.util.Date;
+
+public class AdminCoinDepositListItem {
+    private final Long id;
+    private final Long amount;
+    private final String status;
+    private final String gateway;
+    private final String content;
+    private final Date createdAt;
+    private final String userName;
+    private final String userEmail;
+
+    public AdminCoinDepositListItem(Long id,
+                                    Long amount,
+                                    String status,
+                                    String gateway,
+                                    String content,
+                                    Date createdAt,
+                                    String userName,
+                                    String userEmail) {
+        this.id = id;
+        this.amount = amount;
+        this.status = status;
+        this.gateway = gateway;
+        this.content = content;
+        this.createdAt = createdAt;
+        this.userName = userName;
+        this.userEmail = userEmail;
+    }
+
+    public Long getId() { return id; }
+    public Long getAmount() { return amount; }
+    public String getStatus() { return status; }
+    public String getGateway() { return gateway; }
+    public String getContent() { return content; }
+    public Date getCreatedAt() { return createdAt; }
+    public String getUserName() { return userName; }
+    public String getUserEmail() { return userEmail; }
+}
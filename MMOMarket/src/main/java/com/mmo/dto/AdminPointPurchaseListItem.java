@@ -0,0 +1,45 @@
+package com.mmo.dto;
+
+import java.util.Date;
+
+public class AdminPointPurchaseListItem {
+    private final Long id;
+    private final Long pointsBought;
+    private final Long coinsSpent;
+    private final Long pointsBefore;
+    private final Long pointsAfter;
+    private final Date createdAt;
+    private final Long userId;
+    private final String userName;
+    private final String userEmail;
+
+    public AdminPointPurchaseListItem(Long id,
+                                      Long pointsBought,
+                                      Long coinsSpent,
+                                      Long pointsBefore,
+                                      Long pointsAfter,
+                                      Date createdAt,
+                                      Long userId,
+                                      String userName,
+                                      String userEmail) {
+        this.id = id;
+        this.pointsBought = pointsBought;
+        this.coinsSpent = coinsSpent;
+        this.pointsBefore = pointsBefore;
+        this.pointsAfter = pointsAfter;
+        this.createdAt = createdAt;
+        this.userId = userId;
+        this.userName = userName;
+        this.userEmail = userEmail;
+    }
+
+    public Long getId() { return id; }
+    public Long getPointsBought() { return pointsBought; }
+    public Long getCoinsSpent() { return coinsSpent; }
+    public Long getPointsBefore() { return pointsBefore; }
+    public Long getPointsAfter() { return pointsAfter; }
+    public Date getCreatedAt() { return createdAt; }
+    public Long getUserId() { return userId; }
+    public String getUserName() { return userName; }
+    public String getUserEmail() { return userEmail; }
+}
@@ -1,5 +1,7 @@
 package com.mmo.dto;
 
+import com.mmo.entity.Orders;
+
 import java.util.Date;
 
 public class AdminTransactionListItem {
@@ -57,6 +59,29 @@ public class AdminTransactionListItem {
         this.processedAt = processedAt;
     }
 
+    // JPQL constructor expression: Orders.status arrives as the enum (null when the transaction has no order)
+    public AdminTransactionListItem(Long id,
+                                    Long orderId,
+                                    String orderRequestId,
+                                    Orders.QueueStatus orderStatus,
+                                    String status,
+                                    Long amount,
+                                    Long coinSeller,
+                                    Long coinAdmin,
+                                    Long quantity,
+                                    String productName,
+                                    String variantName,
+                                    String customerName,
+                                    String customerEmail,
+                                    String sellerName,
+                                    String sellerEmail,
+                                    Date createdAt,
+                                    Date processedAt) {
+        this(id, orderId, orderRequestId, orderStatus != null ? orderStatus.name() : null, status, amount,
+                coinSeller, coinAdmin, quantity, productName, variantName, customerName, customerEmail,
+                sellerName, sellerEmail, createdAt, processedAt);
+    }
+
     public Long getId() { return id; }
     public Long getOrderId() { return orderId; }
     public String getOrderRequestId() { return orderRequestId; }
@@ -0,0 +1,45 @@
+package com.mmo.dto;
+
+import java.util.Date;
+
+public class AdminWithdrawalListItem {
+    private final Long id;
+    private final Long amount;
+    private final String status;
+    private final String bankName;
+    private final String accountNumber;
+    private final String branch;
+    private final Date createdAt;
+    private final String sellerName;
+    private final String sellerEmail;
+
+    public AdminWithdrawalListItem(Long id,
+                                   Long amount,
+                                   String status,
+                                   String bankName,
+                                   String accountNumber,
+                                   String branch,
+                                   Date createdAt,
+                                   String sellerName,
+                                   String sellerEmail) {
+        this.id = id;
+        this.amount = amount;
+        this.status = status;
+        this.bankName = bankName;
+        this.accountNumber = accountNumber;
+        this.branch = branch;
+        this.createdAt = createdAt;
+        this.sellerName = sellerName;
+        this.sellerEmail = sellerEmail;
+    }
+
+    public Long getId() { return id; }
+    public Long getAmount() { return amount; }
+    public String getStatus() { return status; }
+    public String getBankName() { return bankName; }
+    public String getAccountNumber() { return accountNumber; }
+    public String getBranch() { return branch; }
+    public Date getCreatedAt() { return createdAt; }
+    public String getSellerName() { return sellerName; }
+    public String getSellerEmail() { return sellerEmail; }
+}
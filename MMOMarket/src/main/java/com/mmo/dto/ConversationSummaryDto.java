@@ -8,6 +8,7 @@ public class ConversationSummaryDto {
     private String lastMessage;
     private Date lastMessageTime;
     private boolean isSentByMe;
+    private int unreadCount; // messages from the partner not yet opened by the current user
     private boolean admin; // New: mark if this conversation is with Admin (Support)
 
     public Long getPartnerId() { return partnerId; }
@@ -25,6 +26,9 @@ public class ConversationSummaryDto {
     public boolean isSentByMe() { return isSentByMe; }
     public void setSentByMe(boolean sentByMe) { isSentByMe = sentByMe; }
 
+    public int getUnreadCount() { return unreadCount; }
+    public void setUnreadCount(int unreadCount) { this.unreadCount = unreadCount; }
+
     public boolean isAdmin() { return admin; }
     public void setAdmin(boolean admin) { this.admin = admin; }
 }
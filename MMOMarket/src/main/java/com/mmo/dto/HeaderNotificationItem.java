@@ -0,0 +1,27 @@
+package com.mmo.dto;
+
+import lombok.Getter;
+
+import java.util.Date;
+
+// One row of the header notification dropdown; immutable, so HeaderBadgeCache can share it across requests
+@Getter
+public class HeaderNotificationItem {
+    private final Long id;
+    private final String title;
+    private final String content;
+    private final String status;
+    private final Date createdAt;
+
+    public HeaderNotificationItem(Long id, String title, String content, String status, Date createdAt) {
+        this.id = id;
+        this.title = title;
+        this.content = content;
+        this.status = status;
+        this.createdAt = createdAt != null ? new Date(createdAt.getTime()) : null;
+    }
+
+    public Date getCreatedAt() {
+        return createdAt != null ? new Date(createdAt.getTime()) : null;
+    }
+}
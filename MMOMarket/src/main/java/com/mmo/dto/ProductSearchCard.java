@@ -0,0 +1,33 @@
+package com.mmo.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Product card shown on /search; base fields come from a JPQL constructor projection,
+// price/sold/rating are filled in from grouped queries over the whole result page
+@Data
+@NoArgsConstructor
+public class ProductSearchCard {
+    private Long id;
+    private String name;
+    private String image;
+    private Long sellerId;
+    private Long shopId;
+    private String shopName;
+
+    private Long price = 0L;
+    private Long totalSold = 0L;
+    private Double averageRating = 0.0;
+
+    public ProductSearchCard(Long id, String name, String image, Long sellerId,
+                             Long shopId, String shopName, String sellerName) {
+        this.id = id;
+        this.name = name != null ? name : "";
+        this.image = (image != null && !image.isBlank()) ? image : "/images/default.jpg";
+        this.sellerId = sellerId;
+        this.shopId = shopId;
+        // Fall back to the seller's name when the shop row is missing
+        if (shopName != null && !shopName.isBlank()) this.shopName = shopName;
+        else this.shopName = sellerName != null ? sellerName : "Shop";
+    }
+}
@@ -0,0 +1,41 @@
+package com.mmo.dto;
+
+import java.util.Date;
+
+public class SellerReviewListItem {
+    private final Long id;
+    private final Integer rating;
+    private final String comment;
+    private final Date createdAt;
+    private final Long productId;
+    private final String productName;
+    private final Long userId;
+    private final Long orderId;
+
+    public SellerReviewListItem(Long id,
+                                Integer rating,
+                                String comment,
+                                Date createdAt,
+                                Long productId,
+                                String productName,
+                                Long userId,
+                                Long orderId) {
+        this.id = id;
+        this.rating = rating;
+        this.comment = comment;
+        this.createdAt = createdAt;
+        this.productId = productId;
+        this.productName = productName;
+        this.userId = userId;
+        this.orderId = orderId;
+    }
+
+    public Long getId() { return id; }
+    public Integer getRating() { return rating; }
+    public String getComment() { return comment; }
+    public Date getCreatedAt() { return createdAt; }
+    public Long getProductId() { return productId; }
+    public String getProductName() { return productName; }
+    public Long getUserId() { return userId; }
+    public Long getOrderId() { return orderId; }
+}
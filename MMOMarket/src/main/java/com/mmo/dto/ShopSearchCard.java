@@ -0,0 +1,33 @@
+package com.mmo.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Shop card shown on /search; rating/sold are filled in from grouped queries over the result page
+@Data
+@NoArgsConstructor
+public class ShopSearchCard {
+    private Long id;
+    private Long shopId;
+    private String shopName;
+    private Long sellerId;
+    private String avatar = "/images/default-avatar.svg";
+
+    private Double ratingAverage = 0.0;
+    private Long totalSold = 0L;
+    private Double successRate = 30.0;
+
+    public ShopSearchCard(Long id, String shopName, Long sellerId) {
+        this.id = id;
+        this.shopId = id;
+        this.shopName = shopName != null ? shopName : "";
+        this.sellerId = sellerId;
+    }
+
+    // Same bands as the homepage seller cards
+    public void setRatingAverage(Double ratingAverage) {
+        this.ratingAverage = ratingAverage != null ? ratingAverage : 0.0;
+        double r = this.ratingAverage;
+        this.successRate = r > 4.0 ? 90.0 : r > 3.0 ? 70.0 : r > 2.0 ? 50.0 : 30.0;
+    }
+}
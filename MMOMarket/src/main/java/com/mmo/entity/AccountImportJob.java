@@ -0,0 +1,76 @@
+package com.mmo.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.Date;
+
+// Background import of a seller's account CSV into a variant (see AccountImportService).
+// processed_rows is committed together with each inserted chunk, so a failed or interrupted job resumes after it.
+@Entity
+@Getter
+@Setter
+@Table(name = "AccountImportJobs", indexes = {
+        @Index(name = "idx_import_seller_created", columnList = "seller_id, created_at"),
+        @Index(name = "idx_import_node_status_updated", columnList = "node_id, status, updated_at")
+})
+public class AccountImportJob {
+
+    public static final String PENDING = "PENDING";
+    public static final String RUNNING = "RUNNING";
+    public static final String COMPLETED = "COMPLETED";
+    public static final String FAILED = "FAILED";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "variant_id", nullable = false)
+    private Long variantId;
+
+    @Column(name = "seller_id", nullable = false)
+    private Long sellerId;
+
+    @Column(name = "status", nullable = false, length = 20)
+    private String status = PENDING;
+
+    @Column(name = "file_name", length = 255)
+    private String fileName;
+
+    // Private staging copy of the upload (never under the public uploads/ folder); removed once the job completes
+    @Column(name = "staged_path", nullable = false, length = 500)
+    private String stagedPath;
+
+    // Node whose local staging dir holds the file: only that node runs or recovers the job
+    @Column(name = "node_id", nullable = false, length = 100)
+    private String nodeId;
+
+    @Column(name = "dedupe", nullable = false)
+    private boolean dedupe = true;
+
+    // Non-empty data rows in the file (known after validation)
+    @Column(name = "total_rows", nullable = false)
+    private long totalRows;
+
+    // Non-empty data rows already handled (created or skipped) and committed
+    @Column(name = "processed_rows", nullable = false)
+    private long processedRows;
+
+    @Column(name = "created_count", nullable = false)
+    private long createdCount;
+
+    @Column(name = "skipped_count", nullable = false)
+    private long skippedCount;
+
+    @Column(name = "error_message", length = 500)
+    private String errorMessage;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name = "created_at", columnDefinition = "DATETIME DEFAULT CURRENT_TIMESTAMP", insertable = false, updatable = false)
+    private Date createdAt;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name = "updated_at", columnDefinition = "DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP", insertable = false, updatable = false)
+    private Date updatedAt;
+}
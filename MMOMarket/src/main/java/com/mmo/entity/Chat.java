@@ -12,7 +12,8 @@ import java.util.Date;
 @Table(name = "Chats", indexes = {
         @Index(name = "idx_sender_id", columnList = "sender_id"),
         @Index(name = "idx_receiver_id", columnList = "receiver_id"),
-        @Index(name = "idx_complaint_id", columnList = "complaint_id")
+        @Index(name = "idx_complaint_id", columnList = "complaint_id"),
+        @Index(name = "idx_chats_pair", columnList = "sender_id, receiver_id, id")
 })
 public class Chat {
 
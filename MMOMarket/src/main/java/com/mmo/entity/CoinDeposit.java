@@ -11,7 +11,8 @@ import java.util.Date;
 @Setter
 @Table(name = "CoinDeposits", indexes = {
         @Index(name = "idx_user_id", columnList = "user_id"),
-        @Index(name = "idx_sepay_ref_code", columnList = "sepay_reference_code")
+        @Index(name = "idx_sepay_ref_code", columnList = "sepay_reference_code"),
+        @Index(name = "idx_coin_deposit_created_at", columnList = "created_at")
 })
 public class CoinDeposit {
 
@@ -0,0 +1,58 @@
+package com.mmo.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.Date;
+
+// One row per chat pair (user_a_id < user_b_id) holding the latest message and per-side unread counts for the sidebar.
+// Written only through ConversationThreadRepository.upsertOnMessage so concurrent sends can't lose updates.
+@Entity
+@Getter
+@Setter
+@Table(name = "ConversationThreads",
+        uniqueConstraints = @UniqueConstraint(name = "uq_thread_pair", columnNames = {"user_a_id", "user_b_id"}),
+        indexes = {
+                @Index(name = "idx_thread_a_last", columnList = "user_a_id, last_message_at"),
+                @Index(name = "idx_thread_b_last", columnList = "user_b_id, last_message_at")
+        })
+public class ConversationThread {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // Smaller user id of the pair
+    @Column(name = "user_a_id", nullable = false)
+    private Long userAId;
+
+    // Larger user id of the pair
+    @Column(name = "user_b_id", nullable = false)
+    private Long userBId;
+
+    @Column(name = "last_chat_id", nullable = false)
+    private Long lastChatId;
+
+    @Column(name = "last_sender_id", nullable = false)
+    private Long lastSenderId;
+
+    // Preview of the latest message, truncated
+    @Column(name = "last_message", length = 255)
+    private String lastMessage;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name = "last_message_at", nullable = false)
+    private Date lastMessageAt;
+
+    // Messages received by user A since A last opened the conversation
+    @Column(name = "unread_a", nullable = false)
+    private Integer unreadA = 0;
+
+    @Column(name = "unread_b", nullable = false)
+    private Integer unreadB = 0;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name = "updated_at", columnDefinition = "DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP", insertable = false, updatable = false)
+    private Date updatedAt;
+}
@@ -9,7 +9,11 @@ import java.util.Date;
 @Entity
 @Getter
 @Setter
-@Table(name = "Notifications")
+@Table(name = "Notifications", indexes = {
+        @Index(name = "idx_notifications_user_status", columnList = "user_id, status, isDelete, created_at"),
+        @Index(name = "idx_notifications_user_created", columnList = "user_id, created_at"),
+        @Index(name = "idx_notifications_status_updated", columnList = "status, updated_at")
+})
 public class Notification {
 
     @Id
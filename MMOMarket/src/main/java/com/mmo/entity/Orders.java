@@ -10,7 +10,8 @@ import java.util.Date;
 @Setter
 @Table(name = "Orders", indexes = {
         @Index(name = "idx_status", columnList = "status"),
-        @Index(name = "idx_customer", columnList = "customer_id")
+        @Index(name = "idx_customer", columnList = "customer_id"),
+        @Index(name = "idx_orders_transaction_id", columnList = "transaction_id")
 }, uniqueConstraints = {
         @UniqueConstraint(name = "uk_orders_request_id", columnNames = "request_id")
 })
@@ -14,7 +14,8 @@ import java.util.Set;
         name = "Products",
         indexes = {
                 @Index(name = "idx_seller_id", columnList = "seller_id"),
-                @Index(name = "idx_category_id", columnList = "category_id")
+                @Index(name = "idx_category_id", columnList = "category_id"),
+                @Index(name = "idx_products_created_at", columnList = "created_at")
         }
 )
 @NamedEntityGraph(
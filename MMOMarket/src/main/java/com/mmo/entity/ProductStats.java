@@ -0,0 +1,56 @@
+package com.mmo.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.Date;
+
+// Denormalized per-product counters read by listing pages instead of aggregating Transactions/Reviews
+@Entity
+@Table(name = "ProductStats", indexes = {
+        @Index(name = "idx_ps_sold_count", columnList = "sold_count"),
+        @Index(name = "idx_ps_min_price", columnList = "min_price")
+})
+@Getter
+@Setter
+public class ProductStats {
+
+    @Id
+    @Column(name = "product_id")
+    private Long productId;
+
+    // Number of COMPLETED transactions
+    @Column(name = "sold_count", nullable = false)
+    private Long soldCount = 0L;
+
+    @Column(name = "rating_sum", nullable = false)
+    private Long ratingSum = 0L;
+
+    @Column(name = "rating_count", nullable = false)
+    private Long ratingCount = 0L;
+
+    // Lowest price among non-deleted variants; null when the product has no active variant
+    @Column(name = "min_price")
+    private Long minPrice;
+
+    // Accounts with status 'Available' across non-deleted variants
+    @Column(name = "available_stock", nullable = false)
+    private Long availableStock = 0L;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name = "updated_at", columnDefinition = "DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP", insertable = false, updatable = false)
+    private Date updatedAt;
+
+    public ProductStats() {
+    }
+
+    public ProductStats(Long productId) {
+        this.productId = productId;
+    }
+
+    public double getAverageRating() {
+        if (ratingCount == null || ratingCount <= 0 || ratingSum == null) return 0.0;
+        return (double) ratingSum / ratingCount;
+    }
+}
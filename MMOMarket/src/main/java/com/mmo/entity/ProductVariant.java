@@ -36,6 +36,11 @@ public class ProductVariant {
     @Column(name = "status", length = 20, columnDefinition = "VARCHAR(20) DEFAULT 'Pending'")
     private String status = "Pending";
 
+    // Counter of Available accounts, maintained only through VariantStockService (atomic UPDATEs),
+    // never written by entity saves so a stale copy can't overwrite it
+    @Column(name = "available_stock", columnDefinition = "BIGINT NOT NULL DEFAULT 0", insertable = false, updatable = false)
+    private Long availableStock = 0L;
+
     @Temporal(TemporalType.TIMESTAMP)
     @Column(name = "created_at", columnDefinition = "DATETIME DEFAULT CURRENT_TIMESTAMP", insertable = false, updatable = false)
     private Date createdAt;
@@ -1,6 +1,7 @@
 package com.mmo.entity;
 
 import com.mmo.util.EncryptionUtil;
+import com.mmo.util.UsernameFingerprint;
 import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.Setter;
@@ -10,7 +11,8 @@ import java.util.Date;
 @Getter
 @Setter
 @Table(name = "ProductVariantAccounts", indexes = {
-    @Index(name = "idx_variant_id_status", columnList = "variant_id, status")
+    @Index(name = "idx_variant_id_status", columnList = "variant_id, status"),
+    @Index(name = "idx_username_fp", columnList = "username_fp, isDelete")
 })
 public class ProductVariantAccount {
     @Id
@@ -25,7 +27,11 @@ public class ProductVariantAccount {
     @Column(name = "account_data", columnDefinition = "TEXT", nullable = false)
     private String accountData;
 
-    // Transient field for plain text access (not stored in DB)
+    // Keyed hash of the username part, for duplicate checks without decryption (see UsernameFingerprint)
+    @Column(name = "username_fp", length = 64)
+    private String usernameFingerprint;
+
+    // Transient field for plain text access (not stored in DB); decrypted on first access only
     @Transient
     private String plainAccountData;
 
@@ -69,54 +75,29 @@ public class ProductVariantAccount {
     private User deletedByUser;
 
     /**
-     * Get decrypted account data
+     * Get decrypted account data (decrypted here on first call; loading the entity does not decrypt)
      * @return Plain text account data
      */
     public String getPlainAccountData() {
         if (plainAccountData == null && accountData != null && !accountData.isEmpty()) {
-            try {
-                plainAccountData = EncryptionUtil.decrypt(accountData);
-            } catch (Exception e) {
-                // If decryption fails, data might not be encrypted yet (legacy data)
-                plainAccountData = accountData;
-            }
+            // Rows stored before encryption was introduced are still plaintext. Ciphertext that does not decrypt is
+            // a key configuration problem: fail instead of handing the ciphertext out as credentials
+            plainAccountData = EncryptionUtil.toPlainText(accountData);
         }
         return plainAccountData;
     }
 
     /**
-     * Set plain text account data (will be encrypted before saving)
+     * Set plain text account data. Encrypted (and the username fingerprinted) right away: account_data itself
+     * changes, so Hibernate's dirty check picks the edit up, and loading or updating an entity for anything else
+     * (status, transaction, activation) never encrypts or decrypts
      * @param plainData Plain text account data
      */
     public void setPlainAccountData(String plainData) {
         this.plainAccountData = plainData;
-        // Encryption will happen in @PrePersist and @PreUpdate
-    }
-
-    /**
-     * Encrypt data before inserting into database
-     */
-    @PrePersist
-    @PreUpdate
-    private void encryptData() {
-        if (plainAccountData != null && !plainAccountData.isEmpty()) {
-            this.accountData = EncryptionUtil.encrypt(plainAccountData);
-        }
-    }
-
-    /**
-     * Decrypt data after loading from database
-     */
-    @PostLoad
-    private void decryptData() {
-        if (accountData != null && !accountData.isEmpty()) {
-            try {
-                this.plainAccountData = EncryptionUtil.decrypt(accountData);
-            } catch (Exception e) {
-                // If decryption fails, data might not be encrypted yet (legacy data)
-                this.plainAccountData = accountData;
-            }
+        if (plainData != null && !plainData.isEmpty()) {
+            this.accountData = EncryptionUtil.encrypt(plainData);
+            this.usernameFingerprint = UsernameFingerprint.ofAccountData(plainData);
         }
     }
 }
-
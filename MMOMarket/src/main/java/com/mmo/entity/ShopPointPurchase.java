@@ -10,7 +10,8 @@ import java.util.Date;
 @Getter
 @Setter
 @Table(name = "ShopPointPurchases", indexes = {
-        @Index(name = "idx_user_id", columnList = "user_id")
+        @Index(name = "idx_user_id", columnList = "user_id"),
+        @Index(name = "idx_spp_created_at", columnList = "created_at")
 })
 public class ShopPointPurchase {
 
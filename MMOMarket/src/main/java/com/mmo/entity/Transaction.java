@@ -14,7 +14,8 @@ import java.util.Date;
         @Index(name = "idx_tx_seller_id", columnList = "seller_id"),
         @Index(name = "idx_tx_product_id", columnList = "product_id"),
         @Index(name = "idx_tx_variant_id", columnList = "variant_id"),
-        @Index(name = "idx_tx_status", columnList = "status")
+        @Index(name = "idx_tx_status", columnList = "status"),
+        @Index(name = "idx_tx_created_at", columnList = "created_at")
 })
 public class Transaction {
 
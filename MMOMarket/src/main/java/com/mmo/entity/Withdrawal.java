@@ -9,7 +9,9 @@ import java.util.Date;
 @Entity
 @Getter
 @Setter
-@Table(name = "Withdrawals")
+@Table(name = "Withdrawals", indexes = {
+        @Index(name = "idx_withdrawal_created_at", columnList = "created_at")
+})
 public class Withdrawal {
 
     @Id
@@ -0,0 +1,591 @@
+package com.mmo.mq;
+
+import com.mmo.entity.*;
+import com.mmo.repository.*;
+import com.mmo.service.HomePageCache;
+import com.mmo.service.NotificationService;
+import com.mmo.service.ProductStatsService;
+import com.mmo.service.SystemConfigurationService;
+import com.mmo.service.UserEventStreamService;
+import com.mmo.service.VariantStockService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.*;
+
+/**
+ * Order fulfilment for the buy-account queue: deduct coins, open an ESCROW transaction and hand out accounts.
+ * processOne handles a single order with entity saves; processBatch handles a whole consumer batch in one
+ * transaction: orders, variants, products, balances and commissions are read once per batch, stock is checked and
+ * accounts are claimed once per variant, and transactions, accounts and orders are written with JDBC batches.
+ * Kept apart from BuyAccountListener so each call goes through the transactional proxy (the listener falls back to
+ * processOne per order when a batch fails).
+ * Accounts are claimed with SKIP LOCKED and never waited on. A short claim while other buyers still hold
+ * Available rows (VariantStockService.countAvailableCommitted) is not reported as out of stock: processOne throws
+ * StockContended (rolling the order back) and processBatch returns the order as deferred, and the listener retries
+ * it after a backoff. Only the listener's last attempt fails such an order.
+ */
+@Component
+public class BuyAccountOrderProcessor {
+    private static final Logger log = LoggerFactory.getLogger(BuyAccountOrderProcessor.class);
+
+    private static final String INSERT_TX_SQL =
+            "INSERT INTO Transactions (customer_id, seller_id, product_id, variant_id, quantity, amount, commission, " +
+            "coinAdmin, coinSeller, status, escrow_release_date, created_by, isDelete) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, 'ESCROW', ?, ?, 0)";
+
+    private static final String MARK_SOLD_SQL =
+            "UPDATE ProductVariantAccounts SET status = 'Sold', transaction_id = ?, is_activated = 0 WHERE id = ?";
+
+    private static final String UPDATE_ORDER_SQL =
+            "UPDATE Orders SET status = ?, error_message = ?, transaction_id = ?, processed_at = ? WHERE id = ?";
+
+    private final OrdersRepository ordersRepository;
+    private final UserRepository userRepository;
+    private final ProductRepository productRepository;
+    private final ProductVariantRepository productVariantRepository;
+    private final ProductVariantAccountRepository productVariantAccountRepository;
+    private final TransactionRepository transactionRepository;
+    private final NotificationService notificationService;
+    private final SystemConfigurationService systemConfigurationService;
+    private final ShopInfoRepository shopInfoRepository;
+    private final ProductStatsService productStatsService;
+    private final VariantStockService variantStockService;
+    private final HomePageCache homePageCache;
+    private final UserEventStreamService userEventStreamService;
+    private final JdbcTemplate jdbcTemplate;
+
+    // One order of a batch that passed the stock and coin checks
+    private static final class Purchase {
+        final Orders order;
+        final Product product;
+        final long quantity;
+        final long total;
+        long fee;
+        long sellerCoins;
+        List<Long> accountIds;
+        Long transactionId;
+
+        Purchase(Orders order, Product product, long quantity, long total) {
+            this.order = order;
+            this.product = product;
+            this.quantity = quantity;
+            this.total = total;
+        }
+    }
+
+    private record Notice(Long userId, String title, String content) {}
+
+    // Short claim while other buyers hold Available rows: the order is rolled back and retried by the listener
+    static final class StockContended extends RuntimeException {
+        StockContended(Long orderId, Long variantId) {
+            super("Accounts of variant " + variantId + " are held by concurrent orders (order " + orderId + ")");
+        }
+    }
+
+    public BuyAccountOrderProcessor(OrdersRepository ordersRepository,
+                                    UserRepository userRepository,
+                                    ProductRepository productRepository,
+                                    ProductVariantRepository productVariantRepository,
+                                    ProductVariantAccountRepository productVariantAccountRepository,
+                                    TransactionRepository transactionRepository,
+                                    NotificationService notificationService,
+                                    SystemConfigurationService systemConfigurationService,
+                                    ShopInfoRepository shopInfoRepository,
+                                    ProductStatsService productStatsService,
+                                    VariantStockService variantStockService,
+                                    HomePageCache homePageCache,
+                                    UserEventStreamService userEventStreamService,
+                                    JdbcTemplate jdbcTemplate) {
+        this.ordersRepository = ordersRepository;
+        this.userRepository = userRepository;
+        this.productRepository = productRepository;
+        this.productVariantRepository = productVariantRepository;
+        this.productVariantAccountRepository = productVariantAccountRepository;
+        this.transactionRepository = transactionRepository;
+        this.notificationService = notificationService;
+        this.systemConfigurationService = systemConfigurationService;
+        this.shopInfoRepository = shopInfoRepository;
+        this.productStatsService = productStatsService;
+        this.variantStockService = variantStockService;
+        this.homePageCache = homePageCache;
+        this.userEventStreamService = userEventStreamService;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Transactional
+    public void processOne(Long orderId) {
+        processOne(orderId, true);
+    }
+
+    // lastAttempt = false: throw StockContended instead of failing the order when other buyers hold the stock
+    @Transactional
+    public void processOne(Long orderId, boolean lastAttempt) {
+        long t0 = System.nanoTime();
+        log.info("Processing buy-account orderId={}", orderId);
+
+        Orders order = ordersRepository.findById(orderId).orElse(null);
+        if (order == null) {
+            log.warn("Order {} not found", orderId);
+            return;
+        }
+        if (order.getStatus() == Orders.QueueStatus.COMPLETED || order.getStatus() == Orders.QueueStatus.FAILED) {
+            log.info("Order {} already in terminal status {}", orderId, order.getStatus());
+            return;
+        }
+        order.setStatus(Orders.QueueStatus.PROCESSING);
+        order.setProcessedAt(new Date());
+        ordersRepository.save(order);
+
+        try {
+            // Load entities
+            Optional<User> customerOpt = userRepository.findById(order.getCustomerId());
+            Optional<ProductVariant> variantOpt = productVariantRepository.findById(order.getVariantId());
+            Optional<Product> productOpt = productRepository.findById(order.getProductId());
+            if (customerOpt.isEmpty() || variantOpt.isEmpty() || productOpt.isEmpty()) {
+                failOrder(order, "Reference not found: customer/product/variant");
+                return;
+            }
+            User customer = customerOpt.get();
+            ProductVariant variant = variantOpt.get();
+            Product product = productOpt.get();
+            long quantity = order.getQuantity() == null ? 1L : order.getQuantity();
+            long unitPrice = variant.getPrice() == null ? 0L : variant.getPrice();
+            long total = unitPrice * quantity;
+
+            // Stock revalidation from the counter (fresh read; the locked allocation below stays authoritative)
+            long stock = variantStockService.getAvailableStock(variant.getId());
+            if (stock < quantity) {
+                failOrder(order, "Out of stock. Available: " + stock);
+                return;
+            }
+
+            // Deduct coins atomically
+            int updated = userRepository.deductCoinsIfEnough(customer.getId(), total);
+            if (updated == 0) {
+                failOrder(order, "Insufficient coins");
+                try { notificationService.createNotificationForUser(customer.getId(), "Purchase failed", "You don't have enough coins to complete this order."); } catch (Exception ignored) {}
+                return;
+            }
+            publishBalance(customer.getId(), -total);
+
+            BigDecimal commissionPercent = commissionPercent(product.getSeller().getId());
+            long fee = fee(total, commissionPercent);
+            long sellerCoins = Math.max(total - fee, 0);
+
+            // Create Transaction in ESCROW
+            Transaction tx = new Transaction();
+            tx.setCustomer(customer);
+            tx.setSeller(product.getSeller());
+            tx.setProduct(product);
+            tx.setVariant(variant);
+            tx.setQuantity(quantity);
+            tx.setAmount(total);
+            tx.setCommission(fee);
+            tx.setCoinAdmin(fee);
+            tx.setCoinSeller(sellerCoins);
+            tx.setStatus("ESCROW");
+            tx.setEscrowReleaseDate(escrowReleaseDate());
+            tx.setCreatedBy(customer.getId());
+            transactionRepository.save(tx);
+
+            // Allocate accounts with lock; SKIP LOCKED lets concurrent consumers of the same variant take disjoint rows
+            List<ProductVariantAccount> accounts = productVariantAccountRepository.claimAvailableSkipLocked(variant.getId(), Math.toIntExact(quantity));
+            if (accounts.size() < quantity && !lastAttempt
+                    && variantStockService.countAvailableCommitted(variant.getId()) > accounts.size()) {
+                // Skipped rows may belong to a buyer that rolls back: retry later rather than wait for their locks
+                throw new StockContended(orderId, variant.getId());
+            }
+            if (accounts.size() < quantity) {
+                // Refund coins and fail
+                userRepository.addCoins(customer.getId(), total);
+                publishBalance(customer.getId(), total);
+                failOrder(order, "Insufficient stock during allocation");
+                return;
+            }
+            for (int i = 0; i < quantity; i++) {
+                ProductVariantAccount acc = accounts.get(i);
+                acc.setStatus("Sold");
+                acc.setTransaction(tx);
+                acc.setActivated(false);
+                acc.setUpdatedAt(new Date());
+            }
+            productVariantAccountRepository.saveAll(accounts.subList(0, Math.toIntExact(quantity)));
+            variantStockService.recordRemoved(variant.getId(), quantity);
+            productStatsService.recordAccountsSold(product.getId(), quantity);
+            homePageCache.markStale();
+
+            // Update order to completed
+            order.setTransactionId(tx.getId());
+            order.setStatus(Orders.QueueStatus.COMPLETED);
+            order.setProcessedAt(new Date());
+            ordersRepository.save(order);
+            publishOrderStatus(order, productName(product));
+
+            try {
+                notificationService.createNotificationForUser(customer.getId(), "Purchase successful",
+                        successMessage(order.getId(), total, product));
+            } catch (Exception ignored) {}
+
+            long t1 = System.nanoTime();
+            log.info("[Metrics] Order {} done in {} ms (tx={})", order.getId(), Math.round((t1 - t0)/1_000_000.0), tx.getId());
+        } catch (StockContended ex) {
+            // Rolls back the coin deduction and the escrow transaction with the rest of the order
+            throw ex;
+        } catch (Exception ex) {
+            log.error("Error processing order {}: {}", orderId, ex.getMessage(), ex);
+            order.setStatus(Orders.QueueStatus.FAILED);
+            order.setErrorMessage(ex.getMessage());
+            order.setProcessedAt(new Date());
+            ordersRepository.save(order);
+            publishOrderStatus(order, null);
+        }
+    }
+
+    // Returns the orders deferred because other buyers held their stock; they are left untouched for a retry
+    @Transactional
+    public List<Long> processBatch(List<Long> orderIds) {
+        long t0 = System.nanoTime();
+        List<Orders> orders = new ArrayList<>();
+        for (Orders o : ordersRepository.findBatchForUpdate(new HashSet<>(orderIds))) {
+            if (o.getStatus() == Orders.QueueStatus.COMPLETED || o.getStatus() == Orders.QueueStatus.FAILED) {
+                log.info("Order {} already in terminal status {}", o.getId(), o.getStatus());
+                continue;
+            }
+            orders.add(o);
+        }
+        // Oldest order first within a variant, as with one message at a time (the query sorts by id)
+        List<Long> deferred = new ArrayList<>();
+        if (orders.isEmpty()) return deferred;
+
+        Set<Long> variantIds = new HashSet<>();
+        Set<Long> productIds = new HashSet<>();
+        Set<Long> customerIds = new HashSet<>();
+        for (Orders o : orders) {
+            variantIds.add(o.getVariantId());
+            productIds.add(o.getProductId());
+            customerIds.add(o.getCustomerId());
+        }
+        Map<Long, ProductVariant> variants = new HashMap<>();
+        productVariantRepository.findAllById(variantIds).forEach(v -> variants.put(v.getId(), v));
+        Map<Long, Product> products = new HashMap<>();
+        productRepository.findAllById(productIds).forEach(p -> products.put(p.getId(), p));
+        Set<Long> knownCustomers = new HashSet<>();
+        for (Object[] r : userRepository.findCoinsByIds(customerIds)) knownCustomers.add(((Number) r[0]).longValue());
+
+        Date now = new Date();
+        List<Orders> failed = new ArrayList<>();
+        List<Purchase> purchases = new ArrayList<>();
+        List<Notice> notices = new ArrayList<>();
+        Map<Long, Long> balanceDelta = new LinkedHashMap<>();
+        Map<Long, List<Orders>> byVariant = new LinkedHashMap<>();
+        for (Orders o : orders) {
+            if (!knownCustomers.contains(o.getCustomerId()) || !variants.containsKey(o.getVariantId())
+                    || !products.containsKey(o.getProductId())) {
+                fail(o, "Reference not found: customer/product/variant", now, failed, notices);
+                continue;
+            }
+            byVariant.computeIfAbsent(o.getVariantId(), k -> new ArrayList<>()).add(o);
+        }
+
+        for (Map.Entry<Long, List<Orders>> group : byVariant.entrySet()) {
+            Long variantId = group.getKey();
+            ProductVariant variant = variants.get(variantId);
+            long unitPrice = variant.getPrice() == null ? 0L : variant.getPrice();
+            // One counter read for the group; orders beyond it fail without touching balances
+            long stock = variantStockService.getAvailableStock(variantId);
+            List<Purchase> accepted = new ArrayList<>();
+            long wanted = 0;
+            for (Orders o : group.getValue()) {
+                long quantity = o.getQuantity() == null ? 1L : o.getQuantity();
+                if (stock < quantity) {
+                    fail(o, "Out of stock. Available: " + stock, now, failed, notices);
+                    continue;
+                }
+                long total = unitPrice * quantity;
+                if (userRepository.deductCoinsIfEnough(o.getCustomerId(), total) == 0) {
+                    fail(o, "Insufficient coins", now, failed, notices);
+                    notices.add(new Notice(o.getCustomerId(), "Purchase failed", "You don't have enough coins to complete this order."));
+                    continue;
+                }
+                balanceDelta.merge(o.getCustomerId(), -total, Long::sum);
+                stock -= quantity;
+                wanted += quantity;
+                accepted.add(new Purchase(o, products.get(o.getProductId()), quantity, total));
+            }
+            if (accepted.isEmpty()) continue;
+
+            // One locked claim for the whole group, handed out in order; SKIP LOCKED keeps other consumers disjoint
+            List<Long> claimed = productVariantAccountRepository.claimAvailableIdsSkipLocked(variantId, Math.toIntExact(wanted));
+            // Skipped rows may belong to a buyer that rolls back: defer the orders left short instead of waiting
+            boolean contended = claimed.size() < wanted
+                    && variantStockService.countAvailableCommitted(variantId) > claimed.size();
+            int next = 0;
+            long sold = 0;
+            for (Purchase p : accepted) {
+                if (claimed.size() - next < p.quantity) {
+                    userRepository.addCoins(p.order.getCustomerId(), p.total);
+                    balanceDelta.merge(p.order.getCustomerId(), p.total, Long::sum);
+                    if (contended) {
+                        deferred.add(p.order.getId());
+                    } else {
+                        fail(p.order, "Insufficient stock during allocation", now, failed, notices);
+                    }
+                    continue;
+                }
+                p.accountIds = claimed.subList(next, next + Math.toIntExact(p.quantity));
+                next += Math.toIntExact(p.quantity);
+                sold += p.quantity;
+                purchases.add(p);
+            }
+            variantStockService.recordRemoved(variantId, sold);
+        }
+
+        if (!purchases.isEmpty()) {
+            writeTransactions(purchases, now);
+            List<Object[]> soldRows = new ArrayList<>();
+            Map<Long, Long> soldByProduct = new HashMap<>();
+            for (Purchase p : purchases) {
+                for (Long accountId : p.accountIds) soldRows.add(new Object[]{p.transactionId, accountId});
+                soldByProduct.merge(p.product.getId(), p.quantity, Long::sum);
+                p.order.setStatus(Orders.QueueStatus.COMPLETED);
+                p.order.setTransactionId(p.transactionId);
+                p.order.setProcessedAt(now);
+            }
+            jdbcTemplate.batchUpdate(MARK_SOLD_SQL, soldRows, soldRows.size(), (ps, r) -> {
+                ps.setLong(1, (Long) r[0]);
+                ps.setLong(2, (Long) r[1]);
+            });
+            soldByProduct.forEach(productStatsService::recordAccountsSold);
+            homePageCache.markStale();
+        }
+
+        List<Orders> finished = new ArrayList<>(failed);
+        for (Purchase p : purchases) finished.add(p.order);
+        jdbcTemplate.batchUpdate(UPDATE_ORDER_SQL, finished, finished.size(), (ps, o) -> {
+            ps.setString(1, o.getStatus().name());
+            ps.setString(2, o.getErrorMessage());
+            if (o.getTransactionId() != null) ps.setLong(3, o.getTransactionId()); else ps.setNull(3, java.sql.Types.BIGINT);
+            ps.setTimestamp(4, new Timestamp(o.getProcessedAt().getTime()));
+            ps.setLong(5, o.getId());
+        });
+
+        // Events are deferred to commit by UserEventStreamService; notifications are enqueued after commit below
+        if (!balanceDelta.isEmpty()) {
+            Map<Long, Long> coins = new HashMap<>();
+            for (Object[] r : userRepository.findCoinsByIds(balanceDelta.keySet())) {
+                coins.put(((Number) r[0]).longValue(), ((Number) r[1]).longValue());
+            }
+            balanceDelta.forEach((userId, delta) -> {
+                if (delta != 0) userEventStreamService.publishBalanceChanged(userId, coins.get(userId), delta);
+            });
+        }
+        for (Orders o : failed) publishOrderStatus(o, null);
+        for (Purchase p : purchases) {
+            publishOrderStatus(p.order, productName(p.product));
+            notices.add(new Notice(p.order.getCustomerId(), "Purchase successful",
+                    successMessage(p.order.getId(), p.total, p.product)));
+        }
+        notifyAfterCommit(notices);
+
+        log.info("[Metrics] Buy-account batch of {} orders ({} completed, {} failed, {} deferred) done in {} ms",
+                orders.size(), purchases.size(), failed.size(), deferred.size(),
+                Math.round((System.nanoTime() - t0) / 1_000_000.0));
+        return deferred;
+    }
+
+    // Last resort for an order that also failed on its own: record the failure so the message is not redelivered forever
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void markFailed(Long orderId, String message) {
+        Orders order = ordersRepository.findById(orderId).orElse(null);
+        if (order == null || order.getStatus() == Orders.QueueStatus.COMPLETED || order.getStatus() == Orders.QueueStatus.FAILED) return;
+        failOrder(order, message != null ? message : "Order could not be processed");
+    }
+
+    // Escrow transactions of the batch in one multi-row insert; generated ids come back in insert order
+    private void writeTransactions(List<Purchase> purchases, Date now) {
+        Map<Long, BigDecimal> commissions = commissionPercents(purchases);
+        Timestamp release = new Timestamp(escrowReleaseDate().getTime());
+        for (Purchase p : purchases) {
+            p.fee = fee(p.total, commissions.get(p.product.getSeller().getId()));
+            p.sellerCoins = Math.max(p.total - p.fee, 0);
+        }
+        KeyHolder keys = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(con -> con.prepareStatement(INSERT_TX_SQL, Statement.RETURN_GENERATED_KEYS),
+                new org.springframework.jdbc.core.BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws java.sql.SQLException {
+                        Purchase p = purchases.get(i);
+                        ps.setLong(1, p.order.getCustomerId());
+                        ps.setLong(2, p.product.getSeller().getId());
+                        ps.setLong(3, p.product.getId());
+                        ps.setLong(4, p.order.getVariantId());
+                        ps.setLong(5, p.quantity);
+                        ps.setLong(6, p.total);
+                        ps.setLong(7, p.fee);
+                        ps.setLong(8, p.fee);
+                        ps.setLong(9, p.sellerCoins);
+                        ps.setTimestamp(10, release);
+                        ps.setLong(11, p.order.getCustomerId());
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return purchases.size();
+                    }
+                }, keys);
+        List<Map<String, Object>> generated = keys.getKeyList();
+        if (generated.size() != purchases.size()) {
+            throw new IllegalStateException("Expected " + purchases.size() + " transaction ids, got " + generated.size());
+        }
+        for (int i = 0; i < purchases.size(); i++) {
+            purchases.get(i).transactionId = ((Number) generated.get(i).values().iterator().next()).longValue();
+        }
+    }
+
+    // Commission percent per seller from ShopInfo (non-deleted shop preferred), one query for the batch
+    private Map<Long, BigDecimal> commissionPercents(List<Purchase> purchases) {
+        Set<Long> sellerIds = new HashSet<>();
+        for (Purchase p : purchases) sellerIds.add(p.product.getSeller().getId());
+        Map<Long, ShopInfo> shopBySeller = new HashMap<>();
+        try {
+            for (ShopInfo si : shopInfoRepository.findByUser_IdIn(sellerIds)) {
+                if (si.getUser() == null) continue;
+                shopBySeller.merge(si.getUser().getId(), si, (a, b) -> a.isDelete() && !b.isDelete() ? b : a);
+            }
+        } catch (Exception ex) {
+            log.warn("Could not read ShopInfo commissions for sellers {}: {}", sellerIds, ex.getMessage());
+        }
+        Map<Long, BigDecimal> out = new HashMap<>();
+        for (Long sellerId : sellerIds) {
+            ShopInfo si = shopBySeller.get(sellerId);
+            out.put(sellerId, withDefault(si != null ? si.getCommission() : null));
+        }
+        return out;
+    }
+
+    // Commission percent from seller's ShopInfo if available; fallback to system default
+    private BigDecimal commissionPercent(Long sellerId) {
+        BigDecimal commissionPercent = null;
+        try {
+            var shopOpt = shopInfoRepository.findByUserIdAndIsDeleteFalse(sellerId)
+                    .or(() -> shopInfoRepository.findByUser_Id(sellerId));
+            if (shopOpt.isPresent() && shopOpt.get().getCommission() != null) {
+                commissionPercent = shopOpt.get().getCommission();
+            }
+        } catch (Exception ex) {
+            log.warn("Could not read ShopInfo commission for seller {}: {}", sellerId, ex.getMessage());
+        }
+        return withDefault(commissionPercent);
+    }
+
+    private BigDecimal withDefault(BigDecimal commissionPercent) {
+        if (commissionPercent == null) commissionPercent = systemConfigurationService.getDefaultCommissionPercentage();
+        if (commissionPercent == null) commissionPercent = new BigDecimal("5.00");
+        return commissionPercent;
+    }
+
+    private static long fee(long total, BigDecimal commissionPercent) {
+        long fee = new BigDecimal(total).multiply(commissionPercent).divide(new BigDecimal("100"), 0, RoundingMode.HALF_UP).longValue();
+        return Math.max(fee, 0);
+    }
+
+    private static Date escrowReleaseDate() {
+        Calendar cal = Calendar.getInstance();
+        cal.setTime(new Date());
+        cal.add(Calendar.DAY_OF_MONTH, 3);
+        return cal.getTime();
+    }
+
+    private static String productName(Product product) {
+        return product.getName() != null ? product.getName() : ("Product #" + product.getId());
+    }
+
+    // One notification per purchase: the coin deduction is part of it instead of a separate "Payment authorized"
+    private static String successMessage(Long orderId, long total, Product product) {
+        return "Your accounts are ready. " + String.format("%,d", total) + " coins were deducted for " + productName(product) +
+                ". You can view and activate them in My Orders (Order #" + orderId + ").";
+    }
+
+    private void fail(Orders order, String message, Date now, List<Orders> failed, List<Notice> notices) {
+        order.setStatus(Orders.QueueStatus.FAILED);
+        order.setErrorMessage(message);
+        order.setProcessedAt(now);
+        failed.add(order);
+        notices.add(new Notice(order.getCustomerId(), "Purchase failed", message));
+        log.warn("Order {} failed: {}", order.getId(), message);
+    }
+
+    private void notifyAfterCommit(List<Notice> notices) {
+        if (notices.isEmpty()) return;
+        Runnable send = () -> {
+            for (Notice n : notices) {
+                try {
+                    notificationService.createNotificationForUser(n.userId(), n.title(), n.content());
+                } catch (Exception ignored) {}
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    send.run();
+                }
+            });
+        } else {
+            send.run();
+        }
+    }
+
+    private void failOrder(Orders order, String message) {
+        order.setStatus(Orders.QueueStatus.FAILED);
+        order.setErrorMessage(message);
+        order.setProcessedAt(new Date());
+        ordersRepository.save(order);
+        publishOrderStatus(order, null);
+        try {
+            notificationService.createNotificationForUser(order.getCustomerId(), "Purchase failed", message);
+        } catch (Exception ignored) {}
+        log.warn("Order {} failed: {}", order.getId(), message);
+    }
+
+    // Same shape as GET /api/orders/{id}/status; delivered after this transaction commits
+    private void publishOrderStatus(Orders order, String productName) {
+        try {
+            Map<String, Object> payload = new HashMap<>();
+            payload.put("orderId", order.getId());
+            payload.put("status", order.getStatus() != null ? order.getStatus().name() : "UNKNOWN");
+            payload.put("errorMessage", order.getErrorMessage());
+            payload.put("transactionId", order.getTransactionId());
+            if (order.getStatus() == Orders.QueueStatus.COMPLETED) {
+                payload.put("productName", productName);
+                payload.put("quantity", order.getQuantity());
+                payload.put("totalPrice", order.getTotalPrice());
+            }
+            userEventStreamService.publish(order.getCustomerId(), UserEventStreamService.EVENT_ORDER_STATUS, payload);
+        } catch (Exception ex) {
+            log.warn("Could not publish status of order {}: {}", order.getId(), ex.getMessage());
+        }
+    }
+
+    private void publishBalance(Long userId, long delta) {
+        try {
+            userEventStreamService.publishBalanceChanged(userId, userRepository.findCoinsById(userId), delta);
+        } catch (Exception ex) {
+            log.warn("Could not publish balance of user {}: {}", userId, ex.getMessage());
+        }
+    }
+}
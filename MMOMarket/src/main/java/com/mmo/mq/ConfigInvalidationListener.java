@@ -0,0 +1,26 @@
+package com.mmo.mq;
+
+import com.mmo.mq.dto.ConfigInvalidationMessage;
+import com.mmo.service.SystemConfigurationService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.stereotype.Component;
+
+@Component
+public class ConfigInvalidationListener {
+    private static final Logger log = LoggerFactory.getLogger(ConfigInvalidationListener.class);
+
+    private final SystemConfigurationService systemConfigurationService;
+
+    public ConfigInvalidationListener(SystemConfigurationService systemConfigurationService) {
+        this.systemConfigurationService = systemConfigurationService;
+    }
+
+    @RabbitListener(queues = "#{configInvalidationQueue.name}")
+    public void handle(ConfigInvalidationMessage msg) {
+        if (msg == null || RabbitConfig.NODE_ID.equals(msg.originNode())) return;
+        log.info("Config invalidation from node {} keys={}", msg.originNode(), msg.keys());
+        systemConfigurationService.invalidateLocal();
+    }
+}
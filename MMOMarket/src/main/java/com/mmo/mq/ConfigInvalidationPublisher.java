@@ -0,0 +1,31 @@
+package com.mmo.mq;
+
+import com.mmo.mq.dto.ConfigInvalidationMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+@Component
+public class ConfigInvalidationPublisher {
+    private static final Logger log = LoggerFactory.getLogger(ConfigInvalidationPublisher.class);
+
+    private final RabbitTemplate rabbitTemplate;
+
+    public ConfigInvalidationPublisher(RabbitTemplate rabbitTemplate) {
+        this.rabbitTemplate = rabbitTemplate;
+    }
+
+    public void publish(List<String> keys) {
+        try {
+            rabbitTemplate.convertAndSend(RabbitConfig.CONFIG_INVALIDATION_EXCHANGE, "",
+                    new ConfigInvalidationMessage(RabbitConfig.NODE_ID, keys));
+            log.info("Published config invalidation keys={}", keys);
+        } catch (Exception ex) {
+            // Local cache is already cleared; other nodes fall back to the cache TTL
+            log.warn("Could not broadcast config invalidation: {}", ex.getMessage());
+        }
+    }
+}
@@ -9,9 +9,12 @@ import org.springframework.amqp.rabbit.core.RabbitAdmin;
 import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
 import org.springframework.amqp.rabbit.config.RetryInterceptorBuilder;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.UUID;
+
 @EnableRabbit
 @Configuration
 public class RabbitConfig {
@@ -34,6 +37,19 @@ public class RabbitConfig {
     public static final String BUY_ACCOUNT_ROUTING_KEY = "buy.account.requested";
     public static final String BUY_ACCOUNT_QUEUE = "buy.account.requests";
 
+    // New: fanout exchange so every node drops its cached system configuration after an admin update
+    public static final String CONFIG_INVALIDATION_EXCHANGE = "system.config.invalidation";
+
+    // Fanout exchange so every node applies incremental search index changes to its in-memory index
+    public static final String SEARCH_INDEX_EXCHANGE = "search.index.updates";
+
+    // Fanout exchange carrying user events (chat, notifications, order status, balance) to every web node
+    // (see UserEventFanoutRabbitConfig)
+    public static final String USER_EVENTS_EXCHANGE = "user.events";
+
+    // Identifies this JVM so fanout listeners can skip broadcasts it sent itself
+    public static final String NODE_ID = UUID.randomUUID().toString();
+
     @Bean
     public DirectExchange withdrawalExchange() {
         return new DirectExchange(EXCHANGE, true, false);
@@ -97,6 +113,38 @@ public class RabbitConfig {
         return BindingBuilder.bind(buyAccountQueue).to(buyAccountExchange).with(BUY_ACCOUNT_ROUTING_KEY);
     }
 
+    // Config invalidation broadcast: one server-named, auto-delete queue per node bound to the fanout exchange
+    @Bean
+    public FanoutExchange configInvalidationExchange() {
+        return new FanoutExchange(CONFIG_INVALIDATION_EXCHANGE, true, false);
+    }
+
+    @Bean
+    public Queue configInvalidationQueue() {
+        return new AnonymousQueue();
+    }
+
+    @Bean
+    public Binding configInvalidationBinding(Queue configInvalidationQueue, FanoutExchange configInvalidationExchange) {
+        return BindingBuilder.bind(configInvalidationQueue).to(configInvalidationExchange);
+    }
+
+    // Search index broadcast: one server-named, auto-delete queue per node bound to the fanout exchange
+    @Bean
+    public FanoutExchange searchIndexExchange() {
+        return new FanoutExchange(SEARCH_INDEX_EXCHANGE, true, false);
+    }
+
+    @Bean
+    public Queue searchIndexQueue() {
+        return new AnonymousQueue();
+    }
+
+    @Bean
+    public Binding searchIndexBinding(Queue searchIndexQueue, FanoutExchange searchIndexExchange) {
+        return BindingBuilder.bind(searchIndexQueue).to(searchIndexExchange);
+    }
+
     @Bean
     public Jackson2JsonMessageConverter messageConverter() {
         return new Jackson2JsonMessageConverter();
@@ -147,4 +195,33 @@ public class RabbitConfig {
         factory.setAdviceChain(retry);
         return factory;
     }
+
+    // Batch consumer for buy-account: up to batch-size messages (or what arrived within receive-timeout-ms) are
+    // delivered as one List and acknowledged together. Prefetch covers a full batch per consumer
+    @Bean
+    public SimpleRabbitListenerContainerFactory buyAccountBatchListenerContainerFactory(
+            ConnectionFactory connectionFactory,
+            Jackson2JsonMessageConverter converter,
+            @Value("${buy-account.listener.batch-size:50}") int batchSize,
+            @Value("${buy-account.listener.receive-timeout-ms:50}") long receiveTimeoutMs) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        factory.setConnectionFactory(connectionFactory);
+        factory.setMessageConverter(converter);
+        factory.setDefaultRequeueRejected(true);
+        factory.setMissingQueuesFatal(false);
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(batchSize);
+        factory.setReceiveTimeout(receiveTimeoutMs);
+        factory.setPrefetchCount(batchSize * 2);
+        factory.setConcurrentConsumers(2);
+        factory.setMaxConcurrentConsumers(5);
+        // Only infrastructure failures reach here (the listener isolates bad orders itself); retry the whole batch
+        Advice retry = RetryInterceptorBuilder.stateless()
+                .maxAttempts(5)
+                .backOffOptions(1000, 2.0, 10000)
+                .build();
+        factory.setAdviceChain(retry);
+        return factory;
+    }
 }
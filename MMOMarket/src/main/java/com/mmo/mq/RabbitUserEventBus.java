@@ -0,0 +1,46 @@
+package com.mmo.mq;
+
+import com.mmo.mq.dto.UserEventMessage;
+import com.mmo.service.UserEventBus;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+@Component
+@ConditionalOnProperty(name = "events.fanout.mode", havingValue = "rabbit", matchIfMissing = true)
+public class RabbitUserEventBus implements UserEventBus {
+    private static final Logger log = LoggerFactory.getLogger(RabbitUserEventBus.class);
+
+    private final RabbitTemplate rabbitTemplate;
+    private final Counter publishedCounter;
+    private final Counter failedCounter;
+
+    public RabbitUserEventBus(RabbitTemplate rabbitTemplate, MeterRegistry meterRegistry) {
+        this.rabbitTemplate = rabbitTemplate;
+        this.publishedCounter = Counter.builder("events.fanout.published")
+                .description("User events published to the other nodes")
+                .register(meterRegistry);
+        this.failedCounter = Counter.builder("events.fanout.publish.failures")
+                .description("User events that could not be published")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void publish(List<Long> userIds, String type, String payload) {
+        try {
+            rabbitTemplate.convertAndSend(RabbitConfig.USER_EVENTS_EXCHANGE, "",
+                    new UserEventMessage(RabbitConfig.NODE_ID, userIds, type, payload));
+            publishedCounter.increment();
+        } catch (Exception ex) {
+            // The event is stored and delivered locally; users on other nodes see it on their next page load or catch-up
+            failedCounter.increment();
+            log.warn("Could not fan out {} event for users {}: {}", type, userIds, ex.getMessage());
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.mmo.mq;
+
+import com.mmo.mq.dto.SearchIndexMessage;
+import com.mmo.service.SearchIndexService;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.stereotype.Component;
+
+@Component
+public class SearchIndexListener {
+
+    private final SearchIndexService searchIndexService;
+
+    public SearchIndexListener(SearchIndexService searchIndexService) {
+        this.searchIndexService = searchIndexService;
+    }
+
+    @RabbitListener(queues = "#{searchIndexQueue.name}")
+    public void handle(SearchIndexMessage msg) {
+        if (msg == null || RabbitConfig.NODE_ID.equals(msg.originNode())) return;
+        searchIndexService.applyRemote(msg);
+    }
+}
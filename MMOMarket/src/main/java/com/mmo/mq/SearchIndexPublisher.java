@@ -0,0 +1,27 @@
+package com.mmo.mq;
+
+import com.mmo.mq.dto.SearchIndexMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.stereotype.Component;
+
+@Component
+public class SearchIndexPublisher {
+    private static final Logger log = LoggerFactory.getLogger(SearchIndexPublisher.class);
+
+    private final RabbitTemplate rabbitTemplate;
+
+    public SearchIndexPublisher(RabbitTemplate rabbitTemplate) {
+        this.rabbitTemplate = rabbitTemplate;
+    }
+
+    public void publish(SearchIndexMessage msg) {
+        try {
+            rabbitTemplate.convertAndSend(RabbitConfig.SEARCH_INDEX_EXCHANGE, "", msg);
+        } catch (Exception ex) {
+            // Local index is already updated; other nodes pick the change up on their next rebuild
+            log.warn("Could not broadcast search index change {} #{}: {}", msg.kind(), msg.id(), ex.getMessage());
+        }
+    }
+}
@@ -6,6 +6,7 @@ import com.mmo.mq.dto.SellerRegistrationMessage;
 import com.mmo.repository.UserRepository;
 import com.mmo.service.EmailService;
 import com.mmo.service.NotificationService;
+import com.mmo.service.SearchIndexService;
 import com.mmo.service.SystemConfigurationService;
 import com.mmo.util.EmailTemplate;
 import jakarta.persistence.EntityManager;
@@ -28,6 +29,7 @@ public class SellerRegistrationListener {
     private final NotificationService notificationService;
     private final SystemConfigurationService systemConfigurationService;
     private final EmailService emailService;
+    private final SearchIndexService searchIndexService;
 
     @PersistenceContext
     private EntityManager entityManager;
@@ -35,11 +37,13 @@ public class SellerRegistrationListener {
     public SellerRegistrationListener(UserRepository userRepository,
                                       NotificationService notificationService,
                                       SystemConfigurationService systemConfigurationService,
-                                      EmailService emailService) {
+                                      EmailService emailService,
+                                      SearchIndexService searchIndexService) {
         this.userRepository = userRepository;
         this.notificationService = notificationService;
         this.systemConfigurationService = systemConfigurationService;
         this.emailService = emailService;
+        this.searchIndexService = searchIndexService;
     }
 
     @Transactional
@@ -130,6 +134,7 @@ public class SellerRegistrationListener {
             if (description != null) shop.setDescription(description);
             entityManager.merge(shop);
         }
+        searchIndexService.indexShop(shop);
         return shop;
     }
 }
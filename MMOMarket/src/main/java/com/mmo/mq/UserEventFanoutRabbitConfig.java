@@ -0,0 +1,28 @@
+package com.mmo.mq;
+
+import org.springframework.amqp.core.*;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+// User event fan-out: one server-named, auto-delete queue per node bound to the user events fanout exchange
+@Configuration
+@ConditionalOnProperty(name = "events.fanout.mode", havingValue = "rabbit", matchIfMissing = true)
+public class UserEventFanoutRabbitConfig {
+
+    @Bean
+    public FanoutExchange userEventsExchange() {
+        return new FanoutExchange(RabbitConfig.USER_EVENTS_EXCHANGE, true, false);
+    }
+
+    // Non-durable: a node only needs events while its SSE connections are open, missed ones are caught up over HTTP
+    @Bean
+    public Queue userEventsQueue() {
+        return new AnonymousQueue();
+    }
+
+    @Bean
+    public Binding userEventsBinding(Queue userEventsQueue, FanoutExchange userEventsExchange) {
+        return BindingBuilder.bind(userEventsQueue).to(userEventsExchange);
+    }
+}
@@ -0,0 +1,32 @@
+package com.mmo.mq;
+
+import com.mmo.mq.dto.UserEventMessage;
+import com.mmo.service.UserEventStreamService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConditionalOnProperty(name = "events.fanout.mode", havingValue = "rabbit", matchIfMissing = true)
+public class UserEventListener {
+
+    private final UserEventStreamService userEventStreamService;
+    private final Counter receivedCounter;
+
+    public UserEventListener(UserEventStreamService userEventStreamService, MeterRegistry meterRegistry) {
+        this.userEventStreamService = userEventStreamService;
+        this.receivedCounter = Counter.builder("events.fanout.received")
+                .description("User events received from other nodes")
+                .register(meterRegistry);
+    }
+
+    @RabbitListener(queues = "#{userEventsQueue.name}")
+    public void handle(UserEventMessage msg) {
+        if (msg == null || msg.userIds() == null || msg.type() == null || msg.payload() == null
+                || RabbitConfig.NODE_ID.equals(msg.originNode())) return;
+        receivedCounter.increment();
+        userEventStreamService.deliverLocal(msg.userIds(), msg.type(), msg.payload());
+    }
+}
@@ -0,0 +1,12 @@
+package com.mmo.mq.dto;
+
+import java.util.List;
+
+/**
+ * Broadcast after system configuration changes so other nodes drop their cached values.
+ * originNode lets the sender ignore its own message.
+ */
+public record ConfigInvalidationMessage(
+        String originNode,
+        List<String> keys
+) {}
@@ -0,0 +1,15 @@
+package com.mmo.mq.dto;
+
+/**
+ * Broadcast after an incremental search index change so every node applies it to its own in-memory index.
+ * kind is "product" or "shop"; removed drops the document, otherwise name/description are indexed as is.
+ * originNode lets the sender ignore its own message.
+ */
+public record SearchIndexMessage(
+        String originNode,
+        String kind,
+        Long id,
+        boolean removed,
+        String name,
+        String description
+) {}
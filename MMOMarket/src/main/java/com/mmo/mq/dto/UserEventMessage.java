@@ -0,0 +1,15 @@
+package com.mmo.mq.dto;
+
+import java.util.List;
+
+/**
+ * User event (chat message, notification, order status, balance change) fanned out to every web node so it
+ * reaches the SSE connections held by other nodes. payload is the JSON the clients receive, serialized once
+ * by the publishing node. originNode lets the sender ignore its own event (it already delivered locally).
+ */
+public record UserEventMessage(
+        String originNode,
+        List<Long> userIds,
+        String type,
+        String payload
+) {}
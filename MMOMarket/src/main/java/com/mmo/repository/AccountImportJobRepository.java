@@ -0,0 +1,59 @@
+package com.mmo.repository;
+
+import com.mmo.entity.AccountImportJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Date;
+import java.util.List;
+
+public interface AccountImportJobRepository extends JpaRepository<AccountImportJob, Long> {
+
+    // Called in the chunk transaction, right after the chunk's accounts were inserted
+    @Modifying
+    @Query(value = "UPDATE AccountImportJobs SET processed_rows = :processed, created_count = :created, " +
+            "skipped_count = :skipped WHERE id = :id", nativeQuery = true)
+    int updateProgress(@Param("id") Long id,
+                       @Param("processed") long processed,
+                       @Param("created") long created,
+                       @Param("skipped") long skipped);
+
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE AccountImportJobs SET status = :status, error_message = :error WHERE id = :id", nativeQuery = true)
+    int updateStatus(@Param("id") Long id, @Param("status") String status, @Param("error") String error);
+
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE AccountImportJobs SET total_rows = :total WHERE id = :id", nativeQuery = true)
+    int updateTotalRows(@Param("id") Long id, @Param("total") long total);
+
+    // Claims a job for a run: only one thread of the staging node moves it from a resumable state to RUNNING
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE AccountImportJobs SET status = 'RUNNING', error_message = NULL, updated_at = NOW() " +
+            "WHERE id = :id AND node_id = :nodeId " +
+            "AND (status IN ('PENDING', 'FAILED') OR (status = 'RUNNING' AND updated_at < :staleBefore))",
+            nativeQuery = true)
+    int claim(@Param("id") Long id, @Param("nodeId") String nodeId, @Param("staleBefore") Date staleBefore);
+
+    // A resume requested on another node: back to PENDING so the staging node's recoverStalled runs it
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE AccountImportJobs SET status = 'PENDING', error_message = NULL " +
+            "WHERE id = :id AND status = 'FAILED'", nativeQuery = true)
+    int requeue(@Param("id") Long id);
+
+    // This node's jobs never started (executor full, node restarted) or whose runner stopped updating progress;
+    // the staged file only exists on this node (idx_import_node_status_updated)
+    @Query(value = "SELECT id FROM AccountImportJobs WHERE node_id = :nodeId AND (" +
+            "(status = 'PENDING' AND updated_at < :pendingBefore) OR (status = 'RUNNING' AND updated_at < :staleBefore)) " +
+            "ORDER BY id LIMIT :limit", nativeQuery = true)
+    List<Long> findRecoverableIds(@Param("nodeId") String nodeId,
+                                  @Param("pendingBefore") Date pendingBefore,
+                                  @Param("staleBefore") Date staleBefore,
+                                  @Param("limit") int limit);
+}
@@ -0,0 +1,81 @@
+package com.mmo.repository;
+
+import com.mmo.entity.ConversationThread;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Date;
+import java.util.List;
+
+public interface ConversationThreadRepository extends JpaRepository<ConversationThread, Long> {
+
+    // Sidebar: one row per partner, newest activity first
+    interface ConversationSummaryProjection {
+        Long getPartnerId();
+        String getPartnerName();
+        String getLastMessage();
+        Date getLastMessageTime();
+        Integer getIsSentByMe();  // Integer for MySQL TINYINT
+        Integer getUnreadCount();
+    }
+
+    // Each branch is an indexed range read on (user_x_id, last_message_at)
+    @Query(value = """
+            SELECT t.user_b_id AS partnerId, u.full_name AS partnerName, t.last_message AS lastMessage,
+                   t.last_message_at AS lastMessageTime, (t.last_sender_id = :userId) AS isSentByMe,
+                   t.unread_a AS unreadCount, t.last_chat_id AS lastChatId
+            FROM ConversationThreads t
+            JOIN Users u ON u.id = t.user_b_id
+            WHERE t.user_a_id = :userId
+            UNION ALL
+            SELECT t.user_a_id AS partnerId, u.full_name AS partnerName, t.last_message AS lastMessage,
+                   t.last_message_at AS lastMessageTime, (t.last_sender_id = :userId) AS isSentByMe,
+                   t.unread_b AS unreadCount, t.last_chat_id AS lastChatId
+            FROM ConversationThreads t
+            JOIN Users u ON u.id = t.user_a_id
+            WHERE t.user_b_id = :userId
+            ORDER BY lastMessageTime DESC, lastChatId DESC
+            """,
+            nativeQuery = true)
+    List<ConversationSummaryProjection> findSummaries(@Param("userId") Long userId);
+
+    // Called in the send transaction right after the Chat insert. The row lock taken by the upsert serializes
+    // concurrent sends of a pair; the latest message only moves forward (by chat id) and unread counts add up.
+    @Modifying
+    @Query(value = """
+            INSERT INTO ConversationThreads (user_a_id, user_b_id, last_chat_id, last_sender_id, last_message,
+                                             last_message_at, unread_a, unread_b)
+            VALUES (:userA, :userB, :chatId, :senderId, :preview, NOW(), :incA, :incB)
+            ON DUPLICATE KEY UPDATE
+                unread_a = unread_a + :incA,
+                unread_b = unread_b + :incB,
+                last_sender_id = IF(:chatId > last_chat_id, :senderId, last_sender_id),
+                last_message = IF(:chatId > last_chat_id, :preview, last_message),
+                last_message_at = IF(:chatId > last_chat_id, NOW(), last_message_at),
+                last_chat_id = GREATEST(last_chat_id, :chatId)
+            """,
+            nativeQuery = true)
+    int upsertOnMessage(@Param("userA") Long userA,
+                        @Param("userB") Long userB,
+                        @Param("chatId") Long chatId,
+                        @Param("senderId") Long senderId,
+                        @Param("preview") String preview,
+                        @Param("incA") int incA,
+                        @Param("incB") int incB);
+
+    // Reset the reader's side of the pair when the conversation is opened
+    @Transactional
+    @Modifying
+    @Query(value = """
+            UPDATE ConversationThreads
+            SET unread_a = IF(user_a_id = :readerId, 0, unread_a),
+                unread_b = IF(user_b_id = :readerId, 0, unread_b)
+            WHERE user_a_id = :userA AND user_b_id = :userB
+              AND ((user_a_id = :readerId AND unread_a > 0) OR (user_b_id = :readerId AND unread_b > 0))
+            """,
+            nativeQuery = true)
+    int markRead(@Param("userA") Long userA, @Param("userB") Long userB, @Param("readerId") Long readerId);
+}
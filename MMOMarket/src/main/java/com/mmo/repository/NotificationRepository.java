@@ -1,5 +1,6 @@
 package com.mmo.repository;
 
+import com.mmo.dto.HeaderNotificationItem;
 import com.mmo.entity.Notification;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -7,7 +8,10 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
 
 public interface NotificationRepository extends JpaRepository<Notification, Long> {
@@ -34,6 +38,13 @@ public interface NotificationRepository extends JpaRepository<Notification, Long
 
     List<Notification> findTop20ByUser_IdAndStatusOrderByCreatedAtDesc(Long userId, String status);
 
+    // Header dropdown rows as detached DTOs (cached and shared across requests by HeaderBadgeCache);
+    // same idx_notifications_user_status range as the count below
+    @Query("SELECT new com.mmo.dto.HeaderNotificationItem(n.id, n.title, n.content, n.status, n.createdAt) " +
+           "FROM Notification n WHERE n.user.id = :userId AND n.status = 'Unread' AND n.isDelete = false " +
+           "ORDER BY n.createdAt DESC")
+    List<HeaderNotificationItem> findUnreadHeaderItems(@Param("userId") Long userId, Pageable pageable);
+
     List<Notification> findTop20ByUser_EmailAndStatusAndIsDeleteOrderByCreatedAtDesc(String email, String status, boolean isDelete);
 
     List<Notification> findTop20ByUser_EmailAndStatusOrderByCreatedAtDesc(String email, String status);
@@ -72,6 +83,31 @@ public interface NotificationRepository extends JpaRepository<Notification, Long
                                    @Param("fromStatus") String fromStatus,
                                    @Param("toStatus") String toStatus);
 
+    // Role broadcast: one row per active user of the role, written by a single statement (see NotificationWriter)
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO Notifications (user_id, title, content, status, created_at, updated_at, isDelete) " +
+            "SELECT u.id, :title, :content, 'Unread', NOW(), NOW(), 0 FROM Users u " +
+            "WHERE LOWER(u.role) = LOWER(:role) AND u.isDelete = 0", nativeQuery = true)
+    int insertForRole(@Param("role") String role, @Param("title") String title, @Param("content") String content);
+
+    // Retention: read notifications untouched since the cutoff, oldest first (idx_notifications_status_updated).
+    // Locked until the archive chunk commits; SKIP LOCKED lets a second node take the next rows.
+    @Query(value = "SELECT n.id FROM Notifications n WHERE n.status = 'Readed' AND n.updated_at < :cutoff " +
+            "ORDER BY n.updated_at, n.id LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<Long> lockArchivableIds(@Param("cutoff") Date cutoff, @Param("limit") int limit);
+
+    @Modifying
+    @Query(value = "INSERT INTO NotificationsArchive (id, user_id, title, content, status, created_at, updated_at, " +
+            "created_by, isDelete, archived_at) " +
+            "SELECT n.id, n.user_id, n.title, n.content, n.status, n.created_at, n.updated_at, n.created_by, n.isDelete, NOW() " +
+            "FROM Notifications n WHERE n.id IN (:ids)", nativeQuery = true)
+    int copyToArchive(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query(value = "DELETE FROM Notifications WHERE id IN (:ids)", nativeQuery = true)
+    int deleteByIdIn(@Param("ids") Collection<Long> ids);
+
     @Query("SELECT n FROM Notification n WHERE n.user.email = :email AND (LOWER(n.title) LIKE LOWER(CONCAT('%', :search, '%')) OR LOWER(n.content) LIKE LOWER(CONCAT('%', :search, '%'))) ORDER BY n.createdAt DESC")
     Page<Notification> findByUser_EmailAndTitleContainingIgnoreCaseOrContentContainingIgnoreCaseOrderByCreatedAtDesc(@Param("email") String email, @Param("search") String search, Pageable pageable);
 
@@ -1,12 +1,18 @@
 package com.mmo.repository;
 
 import com.mmo.entity.Orders;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface OrdersRepository extends JpaRepository<Orders, Long> {
@@ -20,6 +26,13 @@ public interface OrdersRepository extends JpaRepository<Orders, Long> {
     @Query("SELECT o FROM Orders o JOIN FETCH o.product p WHERE o.customerId = :customerId AND LOWER(p.name) LIKE LOWER(CONCAT('%', :search, '%'))")
     Page<Orders> findByCustomerIdAndProductNameContaining(@Param("customerId") Long customerId, @Param("search") String search, Pageable pageable);
 
+    // Orders of one buy-account batch, locked so a redelivered message cannot be fulfilled twice in parallel.
+    // Read-only: the batch writes the outcome with JDBC, so Hibernate must not flush the entities again
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
+    @Query("SELECT o FROM Orders o WHERE o.id IN :ids ORDER BY o.id")
+    List<Orders> findBatchForUpdate(@Param("ids") Collection<Long> ids);
+
     List<Orders> findByTransactionId(Long transactionId);
     // NEW: count completed purchases for a customer-product pair (to enforce 1 review per purchase)
     long countByCustomerIdAndProductIdAndStatus(Long customerId, Long productId, Orders.QueueStatus status);
@@ -0,0 +1,76 @@
+package com.mmo.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dynamic JPQL listing paged in the database: the filters are written once and shared by a COUNT query
+ * and a projection query limited with setFirstResult/setMaxResults, so only one page is ever loaded.
+ * The FROM clause must use plain joins since it is reused by the count query; entity pages that need
+ * associations add them with fetchJoin(), which only the page query uses.
+ * The ORDER BY should end with the id so rows with equal sort values don't move between pages.
+ */
+public class PagedJpqlQuery {
+
+    private final String countExpression;
+    private final String from;
+    private final StringBuilder where = new StringBuilder(" WHERE 1=1");
+    private final Map<String, Object> params = new LinkedHashMap<>();
+    private String fetchJoins = "";
+    private String orderBy = "";
+
+    // countExpression e.g. "COUNT(w)", from e.g. "FROM Withdrawal w JOIN w.seller s"
+    public PagedJpqlQuery(String countExpression, String from) {
+        this.countExpression = countExpression;
+        this.from = " " + from;
+    }
+
+    public PagedJpqlQuery where(String condition) {
+        where.append(" AND (").append(condition).append(")");
+        return this;
+    }
+
+    public PagedJpqlQuery where(String condition, String param, Object value) {
+        where(condition);
+        params.put(param, value);
+        return this;
+    }
+
+    // fetchJoins e.g. "JOIN FETCH p.seller JOIN FETCH p.category" (to-one associations only, paging stays in SQL)
+    public PagedJpqlQuery fetchJoin(String fetchJoins) {
+        this.fetchJoins = " " + fetchJoins;
+        return this;
+    }
+
+    // orderBy e.g. "w.createdAt DESC, w.id DESC"
+    public PagedJpqlQuery orderBy(String orderBy) {
+        this.orderBy = " ORDER BY " + orderBy;
+        return this;
+    }
+
+    public <T> Page<T> fetch(EntityManager entityManager, String select, Class<T> type, int page, int size) {
+        PageRequest pageable = PageRequest.of(Math.max(page, 0), Math.max(size, 1));
+
+        TypedQuery<Long> countQuery = entityManager.createQuery("SELECT " + countExpression + from + where, Long.class);
+        params.forEach(countQuery::setParameter);
+        long total = countQuery.getSingleResult();
+        if (total == 0 || pageable.getOffset() >= total) {
+            return new PageImpl<>(List.of(), pageable, total);
+        }
+
+        TypedQuery<T> query = entityManager.createQuery("SELECT " + select + from + fetchJoins + where + orderBy, type);
+        params.forEach(query::setParameter);
+        List<T> content = query
+                .setFirstResult((int) pageable.getOffset())
+                .setMaxResults(pageable.getPageSize())
+                .getResultList();
+        return new PageImpl<>(content, pageable, total);
+    }
+}
@@ -1,5 +1,6 @@
 package com.mmo.repository;
 
+import com.mmo.dto.ProductSearchCard;
 import com.mmo.entity.Product;
 
 import org.springframework.data.domain.Pageable;
@@ -9,88 +10,62 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface ProductRepository extends JpaRepository<Product, Long> {
 
+    // Transactions.status is stored upper-case under a case-insensitive collation: compare it directly
+    // (no LOWER()) so MySQL can use idx_tx_status.
+
     // Override findById to include EntityGraph
     @EntityGraph(value = "Product.withSellerAndCategory", type = EntityGraph.EntityGraphType.FETCH)
     Optional<Product> findById(Long id);
 
-    @EntityGraph(value = "Product.withSellerAndCategory", type = EntityGraph.EntityGraphType.FETCH)
-    @Query("SELECT p FROM Product p JOIN p.category c JOIN ProductVariant pv ON p.id = pv.product.id " +
-            "WHERE p.isDelete = false AND pv.isDelete = false AND pv.price BETWEEN :minPrice AND :maxPrice")
-    List<Product> findAllProducts(@Param("minPrice") Long minPrice, @Param("maxPrice") Long maxPrice, Pageable pageable);
-
-    // Order by total units sold (COUNT completed transactions), not coin amount
+    // Order by total units sold (ProductStats.soldCount = completed transactions), not coin amount
     @EntityGraph(value = "Product.withSellerAndCategory", type = EntityGraph.EntityGraphType.FETCH)
     @Query("SELECT p FROM Product p " +
-           "LEFT JOIN Transaction t ON p.id = t.product.id AND t.isDelete = false AND LOWER(t.status) = 'completed' " +
+           "LEFT JOIN ProductStats s ON s.productId = p.id " +
            "WHERE p.isDelete = false " +
-           "GROUP BY p.id " +
-           "ORDER BY COUNT(t.id) DESC")
+           "ORDER BY COALESCE(s.soldCount, 0) DESC, p.id DESC")
     List<Product> findTopSellingProducts(Pageable pageable);
 
     // Total units sold for a product: count of completed transactions
     @Query("SELECT COALESCE(COUNT(t.id), 0) FROM Transaction t " +
-           "WHERE t.product.id = :productId AND t.isDelete = false AND LOWER(t.status) = 'completed'")
+           "WHERE t.product.id = :productId AND t.isDelete = false AND t.status = 'COMPLETED'")
     Long getTotalSoldForProduct(@Param("productId") Long productId);
 
     // Total units sold for a seller: count of completed transactions across all products
     @Query("SELECT COALESCE(COUNT(t.id), 0) FROM Transaction t JOIN t.product p " +
-           "WHERE p.seller.id = :sellerId AND t.isDelete = false AND LOWER(t.status) = 'completed'")
+           "WHERE p.seller.id = :sellerId AND t.isDelete = false AND t.status = 'COMPLETED'")
     Long getTotalSoldForSeller(@Param("sellerId") Long sellerId);
 
     @EntityGraph(value = "Product.withSellerAndCategory", type = EntityGraph.EntityGraphType.FETCH)
-    @Query("SELECT p FROM Product p JOIN p.category c JOIN ProductVariant pv ON p.id = pv.product.id " +
-            "WHERE c.id = :categoryId AND p.isDelete = false AND pv.isDelete = false " +
-            "AND pv.price BETWEEN :minPrice AND :maxPrice")
-    List<Product> findByCategoryId(@Param("categoryId") Long categoryId,
-                                   @Param("minPrice") Long minPrice,
-                                   @Param("maxPrice") Long maxPrice,
-                                   Pageable pageable);
-
-    @EntityGraph(value = "Product.withSellerAndCategory", type = EntityGraph.EntityGraphType.FETCH)
-    @Query("SELECT p FROM Product p JOIN ProductVariant pv ON p.id = pv.product.id " +
-            "WHERE p.seller.id = :sellerId AND p.isDelete = false AND pv.isDelete = false")
+    // EXISTS instead of a join so a product with several variants is returned once
+    @Query("SELECT p FROM Product p " +
+            "WHERE p.seller.id = :sellerId AND p.isDelete = false " +
+            "AND EXISTS (SELECT 1 FROM ProductVariant pv WHERE pv.product.id = p.id AND pv.isDelete = false)")
     List<Product> findBySellerId(@Param("sellerId") Long sellerId);
 
-    @EntityGraph(value = "Product.withSellerAndCategory", type = EntityGraph.EntityGraphType.FETCH)
-    @Query("SELECT DISTINCT p FROM Product p " +
-            "JOIN ProductVariant pv ON p.id = pv.product.id " +
-            "WHERE p.seller.id = :sellerId AND p.isDelete = false AND pv.isDelete = false " +
-            "AND pv.price BETWEEN :minPrice AND :maxPrice")
-    List<Product> findBySellerWithPrice(@Param("sellerId") Long sellerId,
-                                        @Param("minPrice") Long minPrice,
-                                        @Param("maxPrice") Long maxPrice,
-                                        Pageable pageable);
-
-    @EntityGraph(value = "Product.withSellerAndCategory", type = EntityGraph.EntityGraphType.FETCH)
-    @Query("SELECT DISTINCT p FROM Product p " +
-            "JOIN p.category c " +
-            "JOIN ProductVariant pv ON p.id = pv.product.id " +
-            "WHERE p.seller.id = :sellerId AND c.id = :categoryId " +
-            "AND p.isDelete = false AND pv.isDelete = false " +
-            "AND pv.price BETWEEN :minPrice AND :maxPrice")
-    List<Product> findBySellerAndCategoryWithPrice(@Param("sellerId") Long sellerId,
-                                                   @Param("categoryId") Long categoryId,
-                                                   @Param("minPrice") Long minPrice,
-                                                   @Param("maxPrice") Long maxPrice,
-                                                   Pageable pageable);
-
     @Query("SELECT COUNT(p) FROM Product p WHERE p.seller.id = :sellerId AND p.isDelete = false")
     Long countBySellerId(@Param("sellerId") Long sellerId);
 
     @Query("SELECT p FROM Product p " +
-           "LEFT JOIN Transaction t ON p.id = t.product.id AND t.isDelete = false AND LOWER(t.status) = 'completed' " +
+           "LEFT JOIN ProductStats s ON s.productId = p.id " +
            "WHERE p.seller.id = :sellerId AND p.isDelete = false " +
-           "GROUP BY p.id " +
-           "ORDER BY COUNT(t.id) DESC")
+           "ORDER BY COALESCE(s.soldCount, 0) DESC, p.id DESC")
     List<Product> findTopSellingProductsBySeller(@Param("sellerId") Long sellerId, Pageable pageable);
 
     @Query("SELECT COALESCE(COUNT(t.id), 0) FROM Transaction t " +
-           "WHERE t.product.id = :productId AND t.isDelete = false AND LOWER(t.status) = 'completed'")
+           "WHERE t.product.id = :productId AND t.isDelete = false AND t.status = 'COMPLETED'")
     Long countSalesForProduct(@Param("productId") Long productId);
+
+    // Search cards for a set of product ids, with shop name/id resolved in the same query
+    @Query("SELECT new com.mmo.dto.ProductSearchCard(p.id, p.name, p.image, s.id, si.id, si.shopName, s.fullName) " +
+           "FROM Product p JOIN p.seller s " +
+           "LEFT JOIN ShopInfo si ON si.user.id = s.id AND si.isDelete = false " +
+           "WHERE p.id IN :ids AND p.isDelete = false")
+    List<ProductSearchCard> findSearchCardsByIds(@Param("ids") Collection<Long> ids);
 }
@@ -0,0 +1,74 @@
+package com.mmo.repository;
+
+import com.mmo.entity.ProductStats;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface ProductStatsRepository extends JpaRepository<ProductStats, Long> {
+
+    List<ProductStats> findByProductIdIn(Collection<Long> productIds);
+
+    // Create the counter row lazily so the delta updates below always have a target
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO ProductStats (product_id) VALUES (:productId)", nativeQuery = true)
+    int ensureRow(@Param("productId") Long productId);
+
+    @Modifying
+    @Query("UPDATE ProductStats s SET s.soldCount = s.soldCount + :delta WHERE s.productId = :productId")
+    int addSold(@Param("productId") Long productId, @Param("delta") long delta);
+
+    @Modifying
+    @Query("UPDATE ProductStats s SET s.ratingSum = s.ratingSum + :sumDelta, s.ratingCount = s.ratingCount + :countDelta " +
+           "WHERE s.productId = :productId")
+    int addRating(@Param("productId") Long productId, @Param("sumDelta") long sumDelta, @Param("countDelta") long countDelta);
+
+    @Modifying
+    @Query("UPDATE ProductStats s SET s.availableStock = CASE WHEN s.availableStock + :delta < 0 THEN 0 ELSE s.availableStock + :delta END " +
+           "WHERE s.productId = :productId")
+    int addStock(@Param("productId") Long productId, @Param("delta") long delta);
+
+    // Re-derive price/stock after variant or account edits (cheap: both subqueries only touch the product's variants,
+    // stock is the sum of the per-variant counters). Flush first so changes made earlier in the same transaction are visible.
+    @Modifying(flushAutomatically = true)
+    @Query(value = "UPDATE ProductStats ps SET " +
+           "ps.min_price = (SELECT MIN(v.price) FROM ProductVariants v WHERE v.product_id = ps.product_id AND v.isDelete = 0), " +
+           "ps.available_stock = (SELECT COALESCE(SUM(v.available_stock), 0) FROM ProductVariants v " +
+           "WHERE v.product_id = ps.product_id AND v.isDelete = 0) " +
+           "WHERE ps.product_id = :productId", nativeQuery = true)
+    int refreshInventory(@Param("productId") Long productId);
+
+    // Full recompute for an id range, used by the nightly reconciliation.
+    // Transactions.status uses a case-insensitive collation, so a plain comparison matches and can use idx_tx_status.
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO ProductStats (product_id, sold_count, rating_sum, rating_count, min_price, available_stock) " +
+           "SELECT p.id, " +
+           "(SELECT COUNT(*) FROM Transactions t WHERE t.product_id = p.id AND t.isDelete = 0 AND t.status = 'COMPLETED'), " +
+           "(SELECT COALESCE(SUM(r.rating), 0) FROM Reviews r WHERE r.product_id = p.id AND r.isDelete = 0), " +
+           "(SELECT COUNT(*) FROM Reviews r WHERE r.product_id = p.id AND r.isDelete = 0), " +
+           "(SELECT MIN(v.price) FROM ProductVariants v WHERE v.product_id = p.id AND v.isDelete = 0), " +
+           "(SELECT COUNT(*) FROM ProductVariantAccounts a JOIN ProductVariants v ON v.id = a.variant_id " +
+           "WHERE v.product_id = p.id AND v.isDelete = 0 AND a.isDelete = 0 AND a.status = 'Available') " +
+           "FROM Products p WHERE p.id > :fromId AND p.id <= :toId " +
+           "ON DUPLICATE KEY UPDATE sold_count = VALUES(sold_count), rating_sum = VALUES(rating_sum), " +
+           "rating_count = VALUES(rating_count), min_price = VALUES(min_price), available_stock = VALUES(available_stock)",
+           nativeQuery = true)
+    int recomputeRange(@Param("fromId") Long fromId, @Param("toId") Long toId);
+
+    @Query("SELECT COALESCE(MAX(p.id), 0) FROM Product p")
+    Long findMaxProductId();
+
+    // Seller totals: rows of [sellerId, soldCount, ratingSum, ratingCount]
+    @Query("SELECT p.seller.id, COALESCE(SUM(s.soldCount), 0), COALESCE(SUM(s.ratingSum), 0), COALESCE(SUM(s.ratingCount), 0) " +
+           "FROM ProductStats s JOIN Product p ON p.id = s.productId " +
+           "WHERE p.seller.id IN :sellerIds GROUP BY p.seller.id")
+    List<Object[]> sumBySellerIds(@Param("sellerIds") Collection<Long> sellerIds);
+}
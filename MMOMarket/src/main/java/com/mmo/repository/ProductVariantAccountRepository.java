@@ -1,14 +1,14 @@
 package com.mmo.repository;
 
 import com.mmo.entity.ProductVariantAccount;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
-import jakarta.persistence.LockModeType;
-import org.springframework.data.domain.Pageable;
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
 import java.util.Optional;
 
@@ -18,14 +18,70 @@ public interface ProductVariantAccountRepository extends JpaRepository<ProductVa
     // count available accounts for a variant (isDelete = false and status = 'Available')
     long countByVariant_IdAndIsDeleteFalseAndStatus(Long variantId, String status);
 
+    // Listing rows without account_data: nothing to decrypt, ciphertext never leaves the database
+    interface AccountStatusView {
+        Long getId();
+        Boolean getActivated();
+        Date getActivatedAt();
+    }
+
+    // Seller listing page: ciphertext only, decrypted by the caller for the rows it shows
+    interface AccountCipherView {
+        Long getId();
+        String getAccountData();
+        String getStatus();
+        Date getCreatedAt();
+    }
+
     // find delivered accounts for a transaction (exclude soft-deleted)
     List<ProductVariantAccount> findByTransaction_IdAndIsDeleteFalse(Long transactionId);
 
+    // Delivered accounts of an order for the order page: id and activation state only
+    @Query("SELECT a.id AS id, a.isActivated AS activated, a.activatedAt AS activatedAt FROM ProductVariantAccount a " +
+            "WHERE a.transaction.id = :transactionId AND a.isDelete = false ORDER BY a.id")
+    List<AccountStatusView> findDeliveredStatus(@Param("transactionId") Long transactionId);
+
+    @Query("SELECT a.id AS id, a.accountData AS accountData, a.status AS status, a.createdAt AS createdAt " +
+            "FROM ProductVariantAccount a WHERE a.variant.id = :variantId AND a.isDelete = false " +
+            "AND (:status IS NULL OR a.status = :status) ORDER BY a.createdAt DESC")
+    List<AccountCipherView> findPageForSeller(@Param("variantId") Long variantId,
+                                              @Param("status") String status,
+                                              Pageable pageable);
+
+    @Query("SELECT COUNT(a) FROM ProductVariantAccount a WHERE a.variant.id = :variantId AND a.isDelete = false " +
+            "AND (:status IS NULL OR a.status = :status)")
+    long countForSeller(@Param("variantId") Long variantId, @Param("status") String status);
+
+    // Seller edit: another live account of the variant with the same username (fingerprint match, no decryption)
+    @Query(value = "SELECT COUNT(*) FROM ProductVariantAccounts WHERE username_fp = :fingerprint AND isDelete = 0 " +
+            "AND variant_id = :variantId AND id <> :excludeId", nativeQuery = true)
+    long countSameUsernameInVariant(@Param("variantId") Long variantId,
+                                    @Param("fingerprint") String fingerprint,
+                                    @Param("excludeId") Long excludeId);
+
     // find single delivered account by id and transaction id (exclude soft-deleted)
     Optional<ProductVariantAccount> findByIdAndTransaction_IdAndIsDeleteFalse(Long id, Long transactionId);
 
-    // Locked fetch: pick first N available accounts for update (prevents races during allocation)
-    @Lock(LockModeType.PESSIMISTIC_WRITE)
-    @Query("SELECT p FROM ProductVariantAccount p WHERE p.variant.id = :variantId AND p.isDelete = false AND p.status = 'Available' ORDER BY p.id ASC")
-    List<ProductVariantAccount> findAvailableForUpdate(@Param("variantId") Long variantId, Pageable pageable);
+    // Locked allocation for concurrent buyers: rows already locked by another consumer are skipped instead of waited on,
+    // so parallel orders of the same variant claim disjoint accounts (MySQL 8 SKIP LOCKED, uses idx_variant_id_status).
+    // Trade-off: rows locked by a transaction that later rolls back count as missing, so a short result is not proof of
+    // no stock; callers compare with VariantStockService.countAvailableCommitted and retry later instead of waiting
+    @Query(value = "SELECT * FROM ProductVariantAccounts WHERE variant_id = :variantId AND isDelete = 0 AND status = 'Available' " +
+            "ORDER BY id ASC LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<ProductVariantAccount> claimAvailableSkipLocked(@Param("variantId") Long variantId, @Param("limit") int limit);
+
+    // Same lock as claimAvailableSkipLocked, ids only: the batched buy path marks the rows Sold with one JDBC batch
+    @Query(value = "SELECT id FROM ProductVariantAccounts WHERE variant_id = :variantId AND isDelete = 0 AND status = 'Available' " +
+            "ORDER BY id ASC LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<Long> claimAvailableIdsSkipLocked(@Param("variantId") Long variantId, @Param("limit") int limit);
+
+    // Duplicate check for uploads: which of these username fingerprints already exist in the category.
+    // One idx_username_fp probe per fingerprint; the category comes from the joined product, so moving a product
+    // to another category needs no rewrite of its accounts
+    @Query(value = "SELECT DISTINCT a.username_fp FROM ProductVariantAccounts a " +
+            "JOIN ProductVariants v ON v.id = a.variant_id " +
+            "JOIN Products p ON p.id = v.product_id " +
+            "WHERE a.username_fp IN (:fingerprints) AND a.isDelete = 0 AND p.category_id = :categoryId", nativeQuery = true)
+    List<String> findExistingFingerprints(@Param("categoryId") Long categoryId,
+                                          @Param("fingerprints") Collection<String> fingerprints);
 }
@@ -2,6 +2,10 @@ package com.mmo.repository;
 
 import com.mmo.entity.ProductVariant;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 
@@ -16,6 +20,39 @@ public interface ProductVariantRepository extends JpaRepository<ProductVariant,
     // Count active (non-deleted) variants across all products of a seller
     long countByProduct_Seller_IdAndIsDeleteFalse(Long sellerId);
 
+    // [productId, categoryId, variant name, isDelete] without loading the entity graph (background jobs have no session)
+    @Query("SELECT v.product.id, v.product.category.id, v.variantName, v.isDelete FROM ProductVariant v WHERE v.id = :id")
+    List<Object[]> findImportTarget(@Param("id") Long variantId);
+
+    // ===== Available stock counter (ProductVariants.available_stock) =====
+
+    // Primary-key read, no scan over ProductVariantAccounts
+    @Query("SELECT v.availableStock FROM ProductVariant v WHERE v.id = :id")
+    Long findAvailableStock(@Param("id") Long variantId);
+
+    @Modifying
+    @Query(value = "UPDATE ProductVariants SET available_stock = GREATEST(available_stock + :delta, 0) WHERE id = :id", nativeQuery = true)
+    int addAvailableStock(@Param("id") Long variantId, @Param("delta") long delta);
+
+    // Drift check for an id range: rows of [variantId, counter, actual Available count]
+    @Query(value = "SELECT x.id, x.available_stock, x.actual FROM (" +
+            "SELECT v.id, v.available_stock, " +
+            "(SELECT COUNT(*) FROM ProductVariantAccounts a WHERE a.variant_id = v.id AND a.isDelete = 0 AND a.status = 'Available') AS actual " +
+            "FROM ProductVariants v WHERE v.id > :fromId AND v.id <= :toId) x " +
+            "WHERE x.available_stock <> x.actual", nativeQuery = true)
+    List<Object[]> findStockDrift(@Param("fromId") Long fromId, @Param("toId") Long toId);
+
+    // Repair: recount in place (the counted rows are read under lock by the UPDATE)
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE ProductVariants v SET v.available_stock = " +
+            "(SELECT COUNT(*) FROM ProductVariantAccounts a WHERE a.variant_id = v.id AND a.isDelete = 0 AND a.status = 'Available') " +
+            "WHERE v.id IN (:ids)", nativeQuery = true)
+    int recountAvailableStock(@Param("ids") List<Long> variantIds);
+
+    @Query("SELECT COALESCE(MAX(v.id), 0) FROM ProductVariant v")
+    Long findMaxVariantId();
+
     // Optionally add an ordered variant lookup if needed by views/controllers:
     // List<ProductVariant> findByProductIdAndIsDeleteFalseOrderByPriceAsc(Long productId);
 }
@@ -1,7 +1,13 @@
 package com.mmo.repository;
 
+import com.mmo.dto.ShopSearchCard;
 import com.mmo.entity.ShopInfo;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface ShopInfoRepository extends JpaRepository<ShopInfo, Long> {
@@ -11,6 +17,14 @@ public interface ShopInfoRepository extends JpaRepository<ShopInfo, Long> {
     // fallback convenience
     Optional<ShopInfo> findByUser_Id(Long userId);
 
+    // Batch lookup for listing pages (one query per page instead of one per product)
+    List<ShopInfo> findByUser_IdIn(Collection<Long> userIds);
+
     // NEW: find by shop name (case-insensitive) for slug support
     Optional<ShopInfo> findFirstByShopNameIgnoreCaseAndIsDeleteFalse(String shopName);
+
+    // Search cards for a set of shop ids
+    @Query("SELECT new com.mmo.dto.ShopSearchCard(s.id, s.shopName, s.user.id) FROM ShopInfo s " +
+           "WHERE s.id IN :ids AND s.isDelete = false")
+    List<ShopSearchCard> findSearchCardsByIds(@Param("ids") Collection<Long> ids);
 }
@@ -2,9 +2,11 @@ package com.mmo.repository;
 
 import com.mmo.entity.Transaction;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 
@@ -50,4 +52,28 @@ public interface TransactionRepository extends JpaRepository<Transaction, Long>
 
     // New: find escrow transactions whose release date passed
     List<Transaction> findByStatusAndEscrowReleaseDateBefore(String status, Date before);
+
+    // Escrow release chunk: next due ESCROW rows after the id cursor, excluding transactions with an open complaint.
+    // Rows of [id, seller_id, product_id, coinSeller]; walks idx_tx_status in id order.
+    String RELEASABLE_ESCROW_SQL = "SELECT t.id, t.seller_id, t.product_id, t.coinSeller FROM Transactions t " +
+            "WHERE t.status = 'ESCROW' AND t.escrow_release_date < :now AND t.id > :afterId " +
+            "AND NOT EXISTS (SELECT 1 FROM Complaints c WHERE c.transaction_id = t.id " +
+            "AND c.status IN ('NEW', 'IN_PROGRESS', 'PENDING_CONFIRMATION', 'ESCALATED')) " +
+            "ORDER BY t.id LIMIT :limit";
+
+    @Query(value = RELEASABLE_ESCROW_SQL, nativeQuery = true)
+    List<Object[]> findReleasableEscrow(@Param("afterId") Long afterId, @Param("now") Date now, @Param("limit") int limit);
+
+    // Same rows, locked until the chunk commits so a concurrent complaint/refund can't interleave
+    @Query(value = RELEASABLE_ESCROW_SQL + " FOR UPDATE", nativeQuery = true)
+    List<Object[]> lockReleasableEscrow(@Param("afterId") Long afterId, @Param("now") Date now, @Param("limit") int limit);
+
+    @Query(value = "SELECT COUNT(*) FROM Transactions t WHERE t.status = 'ESCROW' AND t.escrow_release_date < :now " +
+            "AND EXISTS (SELECT 1 FROM Complaints c WHERE c.transaction_id = t.id " +
+            "AND c.status IN ('NEW', 'IN_PROGRESS', 'PENDING_CONFIRMATION', 'ESCALATED'))", nativeQuery = true)
+    long countDueEscrowWithOpenComplaint(@Param("now") Date now);
+
+    @Modifying
+    @Query("UPDATE Transaction t SET t.status = 'COMPLETED' WHERE t.id IN :ids AND t.status = 'ESCROW'")
+    int markEscrowCompleted(@Param("ids") Collection<Long> ids);
 }
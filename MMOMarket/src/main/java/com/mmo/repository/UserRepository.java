@@ -7,6 +7,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.data.domain.Pageable;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -17,10 +18,30 @@ public interface UserRepository extends JpaRepository<User, Long> {
 
     Optional<User> findByEmail(String email);
 
+    // Recipients of a role broadcast (same filter as NotificationRepository.insertForRole)
+    @Query("SELECT u.id FROM User u WHERE LOWER(u.role) = LOWER(:role) AND u.isDelete = false")
+    List<Long> findActiveIdsByRole(@Param("role") String role);
+
+    // Current balance for balance-changed events (reads the column, not a possibly stale managed entity)
+    @Query("SELECT COALESCE(u.coins, 0) FROM User u WHERE u.id = :id")
+    Long findCoinsById(@Param("id") Long id);
+
+    // [userId, coins] for several users at once
+    @Query("SELECT u.id, COALESCE(u.coins, 0) FROM User u WHERE u.id IN :ids")
+    List<Object[]> findCoinsByIds(@Param("ids") Collection<Long> ids);
+
     @Modifying
     @Query("UPDATE User u SET u.coins = COALESCE(u.coins,0) + :delta WHERE u.id = :id")
     int addCoins(@Param("id") Long id, @Param("delta") Long delta);
 
+    // Escrow release: credit every seller of the given transactions with one statement (amounts summed per seller)
+    @Modifying
+    @Query(value = "UPDATE Users u JOIN (" +
+            "SELECT t.seller_id, SUM(t.coinSeller) AS total FROM Transactions t " +
+            "WHERE t.id IN (:txIds) AND t.coinSeller > 0 GROUP BY t.seller_id) x ON x.seller_id = u.id " +
+            "SET u.coins = COALESCE(u.coins, 0) + x.total", nativeQuery = true)
+    int addCoinsForTransactions(@Param("txIds") Collection<Long> txIds);
+
     // Atomic deduction with guard to prevent negative balance; returns number of rows updated (0 if insufficient)
     @Modifying
     @Query("UPDATE User u SET u.coins = COALESCE(u.coins,0) - :amount WHERE u.id = :id AND COALESCE(u.coins,0) >= :amount")
@@ -46,10 +67,11 @@ public interface UserRepository extends JpaRepository<User, Long> {
                     "LEFT JOIN Reviews r ON p.id = r.product_id " +
                     "WHERE u.role = 'customer' AND u.shop_status = 'active' AND u.isDelete = 0 " +
                     "GROUP BY u.id, u.full_name " +
-                    "ORDER BY totalProductsSold DESC, averageRating DESC",
+                    "ORDER BY totalProductsSold DESC, averageRating DESC " +
+                    "LIMIT :limit",
             nativeQuery = true
     )
-    List<Object[]> findReputableSellers();
+    List<Object[]> findReputableSellers(@Param("limit") int limit);
 
     @Query("SELECT u FROM User u WHERE u.isDelete = false AND u.id <> :excludeId ORDER BY LOWER(COALESCE(u.fullName, '')) ASC, u.id ASC")
     List<User> listUsers(@Param("excludeId") Long excludeId, Pageable pageable);
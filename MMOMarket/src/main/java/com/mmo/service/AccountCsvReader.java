@@ -0,0 +1,101 @@
+package com.mmo.service;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Streams the account CSV (header "Account|Seri,Password|PIN" or one of the accepted aliases) one row at a time,
+ * so files of any size are read with constant memory. Rows where both cells are empty are skipped;
+ * rowIndex is the 1-based data row number in the file.
+ */
+public class AccountCsvReader implements Closeable {
+
+    public record Row(String username, String password, int rowIndex) {
+        // exactly one of the two cells is missing
+        public boolean invalid() {
+            return (username == null || username.isEmpty()) ^ (password == null || password.isEmpty());
+        }
+    }
+
+    private final BufferedReader reader;
+    private int usernameCol = -1;
+    private int passwordCol = -1;
+    private int rowIndex = 0;
+
+    public AccountCsvReader(InputStream in) throws IOException {
+        this.reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        String header = reader.readLine();
+        if (header == null) return;
+        String[] cols = splitCsv(header);
+        for (int i = 0; i < cols.length; i++) {
+            String c = normalizeHeader(cols[i]);
+            if (usernameCol < 0 && isUsernameHeader(c)) usernameCol = i;
+            if (passwordCol < 0 && isPasswordHeader(c)) passwordCol = i;
+        }
+    }
+
+    public boolean hasKnownHeader() {
+        return usernameCol >= 0 && passwordCol >= 0;
+    }
+
+    // Next non-empty row (values trimmed), or null at the end of the file
+    public Row next() throws IOException {
+        if (!hasKnownHeader()) return null;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            rowIndex++;
+            String[] arr = splitCsv(line);
+            String u = trim(usernameCol < arr.length ? arr[usernameCol] : "");
+            String p = trim(passwordCol < arr.length ? arr[passwordCol] : "");
+            if (u.isEmpty() && p.isEmpty()) continue; // ignore fully empty
+            return new Row(u, p, rowIndex);
+        }
+        return null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private static String trim(String s) {
+        return s == null ? "" : s.trim();
+    }
+
+    private static String[] splitCsv(String line) {
+        List<String> cols = new ArrayList<>();
+        StringBuilder cur = new StringBuilder();
+        boolean inQ = false;
+        for (int i = 0; i < line.length(); i++) {
+            char ch = line.charAt(i);
+            if (ch == '"') { inQ = !inQ; continue; }
+            if (ch == ',' && !inQ) { cols.add(cur.toString()); cur.setLength(0); continue; }
+            cur.append(ch);
+        }
+        cols.add(cur.toString());
+        return cols.toArray(new String[0]);
+    }
+
+    // Header normalization and matching (accept Account|Seri and Password|PIN)
+    private static String normalizeHeader(String s) {
+        if (s == null) return "";
+        String lower = s.toLowerCase(Locale.ROOT).trim();
+        StringBuilder sb = new StringBuilder(lower.length());
+        for (int i = 0; i < lower.length(); i++) {
+            char ch = lower.charAt(i);
+            if ((ch >= 'a' && ch <= 'z') || (ch >= '0' && ch <= '9')) sb.append(ch);
+        }
+        return sb.toString();
+    }
+
+    private static boolean isUsernameHeader(String key) {
+        return key.equals("username") || key.equals("user") || key.equals("account") || key.equals("accounts") || key.equals("acc") || key.equals("seri") || key.equals("accountseri");
+    }
+
+    private static boolean isPasswordHeader(String key) {
+        return key.equals("password") || key.equals("pass") || key.equals("pwd") || key.equals("pin") || key.equals("passwordpin");
+    }
+}
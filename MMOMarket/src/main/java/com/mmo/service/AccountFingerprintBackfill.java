@@ -0,0 +1,95 @@
+package com.mmo.service;
+
+import com.mmo.util.EncryptionUtil;
+import com.mmo.util.UsernameFingerprint;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fills ProductVariantAccounts.username_fp for accounts created before the column existed. Walks the rows with
+ * a NULL fingerprint in id order (idx_username_fp), decrypting each one once; until it has finished, duplicate
+ * checks do not see those legacy accounts. Stops querying once a pass finds nothing left.
+ * A row whose ciphertext does not decrypt (key misconfiguration) is never fingerprinted: it stays NULL, the run
+ * stops at it and the next run retries from there, so the backfill cannot complete until the keys are fixed.
+ */
+@Component
+public class AccountFingerprintBackfill {
+
+    private static final Logger log = LoggerFactory.getLogger(AccountFingerprintBackfill.class);
+
+    private static final String SELECT_SQL =
+            "SELECT id, account_data FROM ProductVariantAccounts " +
+            "WHERE username_fp IS NULL AND isDelete = 0 AND id > ? ORDER BY id LIMIT ?";
+
+    private static final String UPDATE_SQL =
+            "UPDATE ProductVariantAccounts SET username_fp = ? WHERE id = ? AND username_fp IS NULL";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${account-fingerprint.backfill.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${account-fingerprint.backfill.chunk-size:1000}")
+    private int chunkSize = 1000;
+
+    @Value("${account-fingerprint.backfill.max-chunks-per-run:50}")
+    private int maxChunksPerRun = 50;
+
+    // Rows that cannot be fingerprinted (empty data) keep NULL; the cursor moves past them
+    private long lastId = 0;
+    private volatile boolean completed = false;
+
+    public AccountFingerprintBackfill(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Scheduled(fixedDelayString = "${account-fingerprint.backfill.interval-ms:60000}", initialDelay = 30000)
+    public void backfill() {
+        if (!enabled || completed) return;
+        long filled = 0;
+        for (int chunk = 0; chunk < maxChunksPerRun; chunk++) {
+            List<Map<String, Object>> rows = jdbcTemplate.queryForList(SELECT_SQL, lastId, chunkSize);
+            if (rows.isEmpty()) {
+                completed = true;
+                log.info("Username fingerprint backfill completed");
+                break;
+            }
+            List<Object[]> updates = new ArrayList<>(rows.size());
+            boolean blocked = false;
+            for (Map<String, Object> row : rows) {
+                long id = ((Number) row.get("id")).longValue();
+                String plain;
+                try {
+                    plain = plainOf((String) row.get("account_data"));
+                } catch (RuntimeException ex) {
+                    log.warn("Username fingerprint backfill stopped at account {}: {}", id, ex.getMessage());
+                    blocked = true;
+                    break;
+                }
+                lastId = Math.max(lastId, id);
+                String fp = UsernameFingerprint.ofAccountData(plain);
+                if (fp != null) updates.add(new Object[]{fp, id});
+            }
+            if (!updates.isEmpty()) {
+                jdbcTemplate.batchUpdate(UPDATE_SQL, updates);
+                filled += updates.size();
+            }
+            if (blocked) break;
+        }
+        if (filled > 0) log.info("Username fingerprint backfill: {} account(s) fingerprinted, cursor at id {}", filled, lastId);
+    }
+
+    // Same rule as ProductVariantAccount: plaintext rows as they are, ciphertext that does not decrypt throws
+    private static String plainOf(String accountData) {
+        if (accountData == null || accountData.isEmpty()) return null;
+        return EncryptionUtil.toPlainText(accountData);
+    }
+}
@@ -0,0 +1,33 @@
+package com.mmo.service;
+
+import com.mmo.repository.AccountImportJobRepository;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/**
+ * One account import chunk = one database transaction: the chunk's accounts, the stock counter and the job's
+ * progress commit together, so after a crash the job resumes exactly after the last committed chunk.
+ * Kept apart from AccountImportService so each call goes through the transactional proxy.
+ */
+@Component
+public class AccountImportChunkWriter {
+
+    private final ProductVariantAccountService productVariantAccountService;
+    private final AccountImportJobRepository accountImportJobRepository;
+
+    public AccountImportChunkWriter(ProductVariantAccountService productVariantAccountService,
+                                    AccountImportJobRepository accountImportJobRepository) {
+        this.productVariantAccountService = productVariantAccountService;
+        this.accountImportJobRepository = accountImportJobRepository;
+    }
+
+    @Transactional
+    public int writeChunk(Long jobId, Long variantId, Long sellerId, List<String> plainData,
+                          long processed, long created, long skipped) {
+        int inserted = productVariantAccountService.insertAccounts(variantId, sellerId, plainData);
+        accountImportJobRepository.updateProgress(jobId, processed, created + inserted, skipped);
+        return inserted;
+    }
+}
@@ -0,0 +1,262 @@
+package com.mmo.service;
+
+import com.mmo.entity.AccountImportJob;
+import com.mmo.entity.ProductVariant;
+import com.mmo.entity.User;
+import com.mmo.repository.AccountImportJobRepository;
+import com.mmo.repository.ProductVariantRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Background import of a seller's account CSV. The upload is staged to a private directory and processed by
+ * accountImportExecutor in two streaming passes, so memory does not grow with the file:
+ * pass 1 validates every row (an invalid row fails the whole job, as the synchronous upload did),
+ * pass 2 dedupes each chunk against the category and inserts it in one transaction (AccountImportChunkWriter).
+ * Progress is committed with each chunk; a FAILED job, or a RUNNING one whose runner died, resumes after the
+ * last committed row. The staged file is on local disk, so a job belongs to the node that staged it (node_id,
+ * account-import.node-id, default the host name): only that node claims and recovers it.
+ */
+@Service
+public class AccountImportService {
+
+    private static final Logger log = LoggerFactory.getLogger(AccountImportService.class);
+
+    private final AccountImportJobRepository accountImportJobRepository;
+    private final ProductVariantRepository productVariantRepository;
+    private final ProductVariantAccountService productVariantAccountService;
+    private final AccountImportChunkWriter chunkWriter;
+    private final ProductStatsService productStatsService;
+    private final NotificationService notificationService;
+    private final Executor accountImportExecutor;
+    private final String nodeId;
+
+    @Value("${account-import.staging-dir:data/account-imports}")
+    private String stagingDir = "data/account-imports";
+
+    @Value("${account-import.chunk-size:1000}")
+    private int chunkSize = 1000;
+
+    @Value("${account-import.stale-after-ms:600000}")
+    private long staleAfterMs = 600000;
+
+    public AccountImportService(AccountImportJobRepository accountImportJobRepository,
+                                ProductVariantRepository productVariantRepository,
+                                ProductVariantAccountService productVariantAccountService,
+                                AccountImportChunkWriter chunkWriter,
+                                ProductStatsService productStatsService,
+                                NotificationService notificationService,
+                                @Qualifier("accountImportExecutor") Executor accountImportExecutor,
+                                @Value("${account-import.node-id:}") String nodeId) {
+        this.accountImportJobRepository = accountImportJobRepository;
+        this.productVariantRepository = productVariantRepository;
+        this.productVariantAccountService = productVariantAccountService;
+        this.chunkWriter = chunkWriter;
+        this.productStatsService = productStatsService;
+        this.notificationService = notificationService;
+        this.accountImportExecutor = accountImportExecutor;
+        this.nodeId = nodeId != null && !nodeId.isBlank() ? nodeId.trim() : hostName();
+    }
+
+    // Must survive restarts (the staged files do), so not a per-JVM random id
+    private static String hostName() {
+        String env = System.getenv("HOSTNAME");
+        if (env != null && !env.isBlank()) return env;
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (IOException ex) {
+            throw new IllegalStateException("Cannot determine host name, set account-import.node-id", ex);
+        }
+    }
+
+    // Stage the upload and queue the job; the caller must not hold a transaction (the runner reads the saved job)
+    public AccountImportJob start(User user, ProductVariant variant, MultipartFile file, boolean dedupe) throws IOException {
+        ProductVariantAccountService.checkCsvFile(file);
+        Path dir = Paths.get(stagingDir);
+        Files.createDirectories(dir);
+        Path staged = dir.resolve(UUID.randomUUID() + ".csv");
+        try (InputStream in = file.getInputStream()) {
+            Files.copy(in, staged);
+        }
+
+        AccountImportJob job = new AccountImportJob();
+        job.setVariantId(variant.getId());
+        job.setSellerId(user.getId());
+        job.setFileName(file.getOriginalFilename());
+        job.setStagedPath(staged.toString());
+        job.setNodeId(nodeId);
+        job.setDedupe(dedupe);
+        job = accountImportJobRepository.save(job);
+        submit(job.getId());
+        return job;
+    }
+
+    // Re-queue a FAILED (or stalled) job of the seller; returns false when the job is not resumable
+    public boolean resume(AccountImportJob job) {
+        if (AccountImportJob.COMPLETED.equals(job.getStatus())) return false;
+        if (AccountImportJob.RUNNING.equals(job.getStatus())
+                && job.getUpdatedAt() != null
+                && job.getUpdatedAt().getTime() > System.currentTimeMillis() - staleAfterMs) {
+            return false;
+        }
+        if (!nodeId.equals(job.getNodeId())) {
+            // The file is on another node: its recoverStalled picks the job up (a stale RUNNING one already is)
+            if (AccountImportJob.FAILED.equals(job.getStatus())) accountImportJobRepository.requeue(job.getId());
+            return true;
+        }
+        submit(job.getId());
+        return true;
+    }
+
+    public Optional<AccountImportJob> getJob(Long jobId) {
+        return accountImportJobRepository.findById(jobId);
+    }
+
+    // Picks up jobs left behind by a full executor or a restarted node
+    @Scheduled(fixedDelayString = "${account-import.recover-interval-ms:60000}",
+               initialDelayString = "${account-import.recover-interval-ms:60000}")
+    public void recoverStalled() {
+        long now = System.currentTimeMillis();
+        List<Long> ids = accountImportJobRepository.findRecoverableIds(
+                nodeId, new Date(now - 60000), new Date(now - staleAfterMs), 20);
+        ids.forEach(this::submit);
+    }
+
+    private void submit(Long jobId) {
+        try {
+            accountImportExecutor.execute(() -> run(jobId));
+        } catch (RejectedExecutionException ex) {
+            // Stays PENDING; recoverStalled retries it
+            log.warn("Account import job {} not queued: executor saturated", jobId);
+        }
+    }
+
+    void run(Long jobId) {
+        // Only one runner per job, also across nodes
+        if (accountImportJobRepository.claim(jobId, nodeId, new Date(System.currentTimeMillis() - staleAfterMs)) == 0) return;
+        AccountImportJob job = accountImportJobRepository.findById(jobId).orElse(null);
+        if (job == null) return;
+        try {
+            importFile(job);
+        } catch (Exception ex) {
+            String message = ex.getMessage() != null ? ex.getMessage() : ex.getClass().getSimpleName();
+            log.warn("Account import job {} failed: {}", jobId, message);
+            accountImportJobRepository.updateStatus(jobId, AccountImportJob.FAILED,
+                    message.length() > 500 ? message.substring(0, 500) : message);
+            notificationService.createNotificationForUser(job.getSellerId(), "Account import failed",
+                    "Import of " + job.getFileName() + " stopped: " + message);
+        }
+    }
+
+    private void importFile(AccountImportJob job) throws IOException {
+        Path path = Paths.get(job.getStagedPath());
+        if (!Files.exists(path)) {
+            throw new IllegalStateException("Uploaded file is no longer available. Please upload it again.");
+        }
+        List<Object[]> target = productVariantRepository.findImportTarget(job.getVariantId());
+        if (target.isEmpty() || Boolean.TRUE.equals(target.get(0)[3])) {
+            throw new IllegalStateException("Variant not found");
+        }
+        Long productId = ((Number) target.get(0)[0]).longValue();
+        Long categoryId = ((Number) target.get(0)[1]).longValue();
+        String variantName = (String) target.get(0)[2];
+
+        // Pass 1: validate the whole file before inserting anything
+        long total = 0, invalid = 0;
+        try (AccountCsvReader reader = new AccountCsvReader(Files.newInputStream(path))) {
+            AccountCsvReader.Row r;
+            while ((r = reader.next()) != null) {
+                total++;
+                if (r.invalid()) invalid++;
+            }
+        }
+        if (invalid > 0) {
+            throw new IllegalArgumentException("File has " + invalid + " invalid row(s) where Account or Password is missing. Please fix and try again.");
+        }
+        accountImportJobRepository.updateTotalRows(job.getId(), total);
+
+        // Pass 2: rows committed by an earlier run are skipped. Each chunk is checked against the category with one
+        // fingerprint lookup; earlier chunks are already committed, so repeats across chunks are found there too
+        ImportProgress progress = new ImportProgress(job.getProcessedRows(), job.getCreatedCount(), job.getSkippedCount());
+        long seen = 0;
+        List<AccountCsvReader.Row> batch = new ArrayList<>(chunkSize);
+        try (AccountCsvReader reader = new AccountCsvReader(Files.newInputStream(path))) {
+            AccountCsvReader.Row r;
+            while ((r = reader.next()) != null) {
+                if (++seen <= progress.processed) continue;
+                batch.add(r);
+                if (batch.size() >= chunkSize) {
+                    writeChunk(job, categoryId, batch, seen, progress);
+                    batch.clear();
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            writeChunk(job, categoryId, batch, seen, progress);
+        }
+        long created = progress.created;
+        long skipped = progress.skipped;
+
+        productStatsService.refreshInventory(productId);
+        accountImportJobRepository.updateStatus(job.getId(), AccountImportJob.COMPLETED, null);
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ex) {
+            log.warn("Could not delete staged import file {}: {}", path, ex.getMessage());
+        }
+        notificationService.createNotificationForUser(job.getSellerId(), "Account import completed",
+                "Variant " + variantName + ": " + created + " account(s) added, " + skipped + " duplicate(s) skipped.");
+    }
+
+    private void writeChunk(AccountImportJob job, Long categoryId, List<AccountCsvReader.Row> batch,
+                            long processedAfter, ImportProgress progress) {
+        Set<String> existing = Set.of();
+        if (job.isDedupe()) {
+            List<String> usernames = new ArrayList<>(batch.size());
+            for (AccountCsvReader.Row r : batch) usernames.add(r.username());
+            existing = productVariantAccountService.findExistingUsernames(categoryId, usernames);
+        }
+        Set<String> seenInChunk = new HashSet<>();
+        List<String> data = new ArrayList<>(batch.size());
+        long skippedNow = 0;
+        for (AccountCsvReader.Row r : batch) {
+            if (job.isDedupe() && (existing.contains(r.username()) || !seenInChunk.add(r.username()))) {
+                skippedNow++;
+                continue;
+            }
+            data.add(r.username() + ":" + r.password());
+        }
+        progress.skipped += skippedNow;
+        progress.created += chunkWriter.writeChunk(job.getId(), job.getVariantId(), job.getSellerId(), data,
+                processedAfter, progress.created, progress.skipped);
+        progress.processed = processedAfter;
+    }
+
+    // Committed position of a run: rows handled so far and their outcome
+    private static final class ImportProgress {
+        long processed;
+        long created;
+        long skipped;
+
+        ImportProgress(long processed, long created, long skipped) {
+            this.processed = processed;
+            this.created = created;
+            this.skipped = skipped;
+        }
+    }
+}
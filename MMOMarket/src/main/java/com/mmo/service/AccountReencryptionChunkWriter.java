@@ -0,0 +1,191 @@
+package com.mmo.service;
+
+import com.mmo.util.EncryptionUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * One re-encryption chunk = one database transaction: the rewritten rows and the checkpoint commit together,
+ * so an interrupted walk continues after the last committed id. The checkpoint row is locked for the chunk,
+ * which also keeps two nodes from walking the same range.
+ * The checkpoint row also holds the runtime switches shared by every node: enabled (pause/resume) and
+ * max_rows_per_second. The throttle is enforced through next_chunk_at, the earliest time any node may start the
+ * next chunk, so the rate is the same however many nodes run the walk. The properties only seed a new row.
+ * Kept apart from AccountReencryptionService so each call goes through the transactional proxy.
+ */
+@Component
+public class AccountReencryptionChunkWriter {
+
+    private static final Logger log = LoggerFactory.getLogger(AccountReencryptionChunkWriter.class);
+
+    static final String CHECKPOINT = "ProductVariantAccounts.account_data";
+
+    // Optimistic: a row edited by a seller since it was read is left alone (already written with the current key)
+    private static final String UPDATE_SQL =
+            "UPDATE ProductVariantAccounts SET account_data = ? WHERE id = ? AND account_data = ?";
+
+    private static final String SEED_SQL =
+            "INSERT IGNORE INTO ReencryptionCheckpoints (name, target_key_id, enabled, max_rows_per_second) " +
+            "VALUES (?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Executor reencryptionExecutor;
+
+    // Initial values of the shared switches, used only when the checkpoint row is created
+    @Value("${account-reencryption.enabled:true}")
+    private boolean seedEnabled = true;
+
+    @Value("${account-reencryption.max-rows-per-second:2000}")
+    private int seedMaxRowsPerSecond = 2000;
+
+    // paused: switched off in the checkpoint row; waitMs > 0: throttled, nothing done, retry after waitMs
+    public record ChunkResult(long lastId, int scanned, int rewritten, int failed, boolean done,
+                              boolean paused, long waitMs) {
+
+        static ChunkResult finished(long lastId) {
+            return new ChunkResult(lastId, 0, 0, 0, true, false, 0L);
+        }
+    }
+
+    private record Rewrite(long id, String oldData, String newData) {}
+
+    public AccountReencryptionChunkWriter(JdbcTemplate jdbcTemplate,
+                                          @Qualifier("reencryptionExecutor") Executor reencryptionExecutor) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.reencryptionExecutor = reencryptionExecutor;
+    }
+
+    @Transactional
+    public ChunkResult reencryptNextChunk(String targetKeyId, int chunkSize, int parallelism) {
+        jdbcTemplate.update(SEED_SQL, CHECKPOINT, targetKeyId, seedEnabled, seedMaxRowsPerSecond);
+        Map<String, Object> checkpoint = jdbcTemplate.queryForMap(
+                "SELECT target_key_id, last_id, rows_failed, completed_at, enabled, max_rows_per_second, NOW(3) AS now_at, " +
+                "GREATEST(TIMESTAMPDIFF(MICROSECOND, NOW(3), next_chunk_at), 0) DIV 1000 AS wait_ms " +
+                "FROM ReencryptionCheckpoints WHERE name = ? FOR UPDATE",
+                CHECKPOINT);
+        long checkpointLastId = ((Number) checkpoint.get("last_id")).longValue();
+        if (!isTrue(checkpoint.get("enabled"))) {
+            return new ChunkResult(checkpointLastId, 0, 0, 0, true, true, 0L);
+        }
+        if (!targetKeyId.equals(checkpoint.get("target_key_id"))) {
+            // A new key became current: walk the whole table again
+            jdbcTemplate.update("UPDATE ReencryptionCheckpoints SET target_key_id = ?, last_id = 0, rows_rewritten = 0, " +
+                    "rows_failed = 0, failed_last_pass = 0, completed_at = NULL WHERE name = ?", targetKeyId, CHECKPOINT);
+        } else if (checkpoint.get("completed_at") != null) {
+            return ChunkResult.finished(checkpointLastId);
+        } else if (checkpoint.get("wait_ms") != null && ((Number) checkpoint.get("wait_ms")).longValue() > 0) {
+            // Another node (or this one) ran a chunk too recently for the shared throttle
+            return new ChunkResult(checkpointLastId, 0, 0, 0, false, false,
+                    ((Number) checkpoint.get("wait_ms")).longValue());
+        }
+        long lastId = targetKeyId.equals(checkpoint.get("target_key_id")) ? checkpointLastId : 0L;
+
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                "SELECT id, account_data FROM ProductVariantAccounts WHERE id > ? ORDER BY id LIMIT ?",
+                lastId, chunkSize);
+        if (rows.isEmpty()) {
+            long failedThisPass = targetKeyId.equals(checkpoint.get("target_key_id"))
+                    ? ((Number) checkpoint.get("rows_failed")).longValue() : 0L;
+            if (failedThisPass == 0) {
+                jdbcTemplate.update("UPDATE ReencryptionCheckpoints SET completed_at = NOW(), failed_last_pass = 0 " +
+                        "WHERE name = ?", CHECKPOINT);
+            } else {
+                // Never complete while rows are still on an old key: the operator would retire a key that is still
+                // needed. Start another pass (rewritten rows are skipped by a prefix check) once the keys are fixed
+                log.warn("Account re-encryption pass to key {} left {} row(s) unreadable; starting another pass",
+                        targetKeyId, failedThisPass);
+                jdbcTemplate.update("UPDATE ReencryptionCheckpoints SET last_id = 0, rows_failed = 0, failed_last_pass = ? " +
+                        "WHERE name = ?", failedThisPass, CHECKPOINT);
+            }
+            // Either way this run stops here; the next pass starts on the next tick
+            return ChunkResult.finished(lastId);
+        }
+
+        List<Object[]> pending = new ArrayList<>();
+        for (Map<String, Object> row : rows) {
+            String data = (String) row.get("account_data");
+            if (data != null && EncryptionUtil.needsReencryption(data)) {
+                pending.add(new Object[]{((Number) row.get("id")).longValue(), data});
+            }
+        }
+        long chunkLastId = ((Number) rows.get(rows.size() - 1).get("id")).longValue();
+
+        // AES-GCM is the expensive part: spread the rows over the worker threads, keep the JDBC work on this one
+        List<Rewrite> rewrites = new ArrayList<>(pending.size());
+        int slice = Math.max(1, (pending.size() + parallelism - 1) / Math.max(parallelism, 1));
+        List<CompletableFuture<List<Rewrite>>> futures = new ArrayList<>();
+        for (int from = 0; from < pending.size(); from += slice) {
+            List<Object[]> part = pending.subList(from, Math.min(from + slice, pending.size()));
+            futures.add(CompletableFuture.supplyAsync(() -> reencrypt(part), reencryptionExecutor));
+        }
+        for (CompletableFuture<List<Rewrite>> f : futures) {
+            rewrites.addAll(f.join());
+        }
+        int failed = pending.size() - rewrites.size();
+
+        int rewritten = 0;
+        if (!rewrites.isEmpty()) {
+            int[][] counts = jdbcTemplate.batchUpdate(UPDATE_SQL, rewrites, rewrites.size(), (ps, r) -> {
+                ps.setString(1, r.newData());
+                ps.setLong(2, r.id());
+                ps.setString(3, r.oldData());
+            });
+            for (int[] batch : counts) {
+                for (int c : batch) {
+                    // MySQL may report SUCCESS_NO_INFO (-2) for batched statements
+                    if (c > 0 || c == java.sql.Statement.SUCCESS_NO_INFO) rewritten++;
+                }
+            }
+        }
+
+        // This chunk started at now_at: no node starts the next one before rows / max_rows_per_second has passed
+        int limit = ((Number) checkpoint.get("max_rows_per_second")).intValue();
+        long pauseMicros = limit > 0 ? rows.size() * 1_000_000L / limit : 0L;
+        jdbcTemplate.update("UPDATE ReencryptionCheckpoints SET last_id = ?, rows_rewritten = rows_rewritten + ?, " +
+                "rows_failed = rows_failed + ?, next_chunk_at = TIMESTAMPADD(MICROSECOND, ?, ?) WHERE name = ?",
+                chunkLastId, rewritten, failed, pauseMicros, checkpoint.get("now_at"), CHECKPOINT);
+        return new ChunkResult(chunkLastId, rows.size(), rewritten, failed, false, false, 0L);
+    }
+
+    // Runtime switches from the actuator endpoint; null leaves a value unchanged. Every node reads them per chunk
+    @Transactional
+    public void updateSettings(String targetKeyId, Boolean enabled, Integer maxRowsPerSecond) {
+        jdbcTemplate.update(SEED_SQL, CHECKPOINT, targetKeyId, seedEnabled, seedMaxRowsPerSecond);
+        jdbcTemplate.update("UPDATE ReencryptionCheckpoints SET enabled = COALESCE(?, enabled), " +
+                "max_rows_per_second = COALESCE(?, max_rows_per_second) WHERE name = ?",
+                enabled, maxRowsPerSecond, CHECKPOINT);
+    }
+
+    // TINYINT(1) comes back as Boolean or as a number depending on the driver settings
+    static boolean isTrue(Object flag) {
+        return flag instanceof Boolean b ? b : flag instanceof Number n && n.intValue() != 0;
+    }
+
+    private static List<Rewrite> reencrypt(List<Object[]> part) {
+        List<Rewrite> out = new ArrayList<>(part.size());
+        for (Object[] row : part) {
+            long id = (Long) row[0];
+            String data = (String) row[1];
+            try {
+                // Rows stored before encryption was introduced are still plaintext: encrypt them as they are
+                String plain = EncryptionUtil.isEncrypted(data) ? EncryptionUtil.decrypt(data) : data;
+                out.add(new Rewrite(id, data, EncryptionUtil.encrypt(plain)));
+            } catch (RuntimeException ex) {
+                // Unknown key id or corrupt ciphertext: leave the row, count it, keep going
+                log.warn("Account {} could not be re-encrypted: {}", id, ex.getMessage());
+            }
+        }
+        return out;
+    }
+}
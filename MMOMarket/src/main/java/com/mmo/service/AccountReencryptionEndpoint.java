@@ -0,0 +1,38 @@
+package com.mmo.service;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * /actuator/reencryption: progress of the account re-encryption walk (GET), pause/resume and throttle (POST,
+ * JSON body {"enabled": false} and/or {"maxRowsPerSecond": 500}). Admin only, see SecurityConfig. The POST is
+ * CSRF-protected like any other session-authenticated write: send the admin session's token (_csrf.token, as
+ * rendered into the admin pages) in the X-CSRF-TOKEN header.
+ */
+@Component
+@Endpoint(id = "reencryption")
+public class AccountReencryptionEndpoint {
+
+    private final AccountReencryptionService accountReencryptionService;
+
+    public AccountReencryptionEndpoint(AccountReencryptionService accountReencryptionService) {
+        this.accountReencryptionService = accountReencryptionService;
+    }
+
+    @ReadOperation
+    public Map<String, Object> progress() {
+        return accountReencryptionService.progress();
+    }
+
+    @WriteOperation
+    public Map<String, Object> update(@Nullable Boolean enabled, @Nullable Integer maxRowsPerSecond) {
+        if (enabled != null) accountReencryptionService.setEnabled(enabled);
+        if (maxRowsPerSecond != null) accountReencryptionService.setMaxRowsPerSecond(maxRowsPerSecond);
+        return accountReencryptionService.progress();
+    }
+}
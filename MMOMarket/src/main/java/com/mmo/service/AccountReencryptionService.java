@@ -0,0 +1,129 @@
+package com.mmo.service;
+
+import com.mmo.util.EncryptionUtil;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rewrites ProductVariantAccounts.account_data under the current encryption key after a key rotation (and encrypts
+ * any row still stored as plaintext). The table is walked by id in chunks (AccountReencryptionChunkWriter, one
+ * transaction per chunk) with the checkpoint in ReencryptionCheckpoints, so a restart or another node continues
+ * where the walk stopped; once the walk for the current key id completes, ticks are a single checkpoint read.
+ * A pass that leaves unreadable rows does not complete: the walk starts over until every row is on the current key.
+ * Rows are not locked for the walk: reads keep working on old and new ciphertext alike.
+ * Throttled to max-rows-per-second across all nodes; pause/resume and the throttle live in the checkpoint row,
+ * so a change through AccountReencryptionEndpoint applies to every node from its next chunk.
+ */
+@Service
+public class AccountReencryptionService {
+
+    private static final Logger log = LoggerFactory.getLogger(AccountReencryptionService.class);
+
+    private final AccountReencryptionChunkWriter chunkWriter;
+    private final JdbcTemplate jdbcTemplate;
+    private final Counter rewrittenCounter;
+    private final Counter failedCounter;
+
+    @Value("${account-reencryption.chunk-size:500}")
+    private int chunkSize = 500;
+
+    @Value("${account-reencryption.threads:4}")
+    private int threads = 4;
+
+    @Value("${account-reencryption.max-chunks-per-run:200}")
+    private int maxChunksPerRun = 200;
+
+    public AccountReencryptionService(AccountReencryptionChunkWriter chunkWriter,
+                                      JdbcTemplate jdbcTemplate,
+                                      MeterRegistry meterRegistry) {
+        this.chunkWriter = chunkWriter;
+        this.jdbcTemplate = jdbcTemplate;
+        this.rewrittenCounter = Counter.builder("accounts.reencryption.rewritten")
+                .description("Account rows rewritten under the current encryption key")
+                .register(meterRegistry);
+        this.failedCounter = Counter.builder("accounts.reencryption.failures")
+                .description("Account rows that could not be decrypted for re-encryption")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${account-reencryption.interval-ms:60000}",
+               initialDelayString = "${account-reencryption.initial-delay-ms:30000}")
+    public void runScheduled() {
+        String targetKeyId = EncryptionUtil.currentKeyId();
+        try {
+            for (int i = 0; i < maxChunksPerRun; i++) {
+                AccountReencryptionChunkWriter.ChunkResult result =
+                        chunkWriter.reencryptNextChunk(targetKeyId, chunkSize, threads);
+                if (result.waitMs() > 0) {
+                    // Shared throttle: sleep outside the chunk transaction, then compete for the next chunk
+                    Thread.sleep(result.waitMs());
+                    continue;
+                }
+                rewrittenCounter.increment(result.rewritten());
+                failedCounter.increment(result.failed());
+                if (result.done()) {
+                    if (result.scanned() == 0 && !result.paused() && i > 0) {
+                        log.info("Account re-encryption to key {} completed", targetKeyId);
+                    }
+                    return;
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (Exception ex) {
+            // Checkpoint holds the last committed chunk; the next tick retries from there
+            log.warn("Account re-encryption stopped: {}", ex.getMessage());
+        }
+    }
+
+    public Map<String, Object> progress() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("currentKeyId", EncryptionUtil.currentKeyId());
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                "SELECT target_key_id, last_id, rows_rewritten, rows_failed, failed_last_pass, completed_at, updated_at, " +
+                "enabled, max_rows_per_second FROM ReencryptionCheckpoints WHERE name = ?",
+                AccountReencryptionChunkWriter.CHECKPOINT);
+        Long maxId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM ProductVariantAccounts", Long.class);
+        out.put("maxId", maxId);
+        if (!rows.isEmpty()) {
+            Map<String, Object> checkpoint = rows.get(0);
+            // The values every node runs with, not this node's
+            out.put("enabled", AccountReencryptionChunkWriter.isTrue(checkpoint.get("enabled")));
+            out.put("maxRowsPerSecond", checkpoint.get("max_rows_per_second"));
+            out.put("targetKeyId", checkpoint.get("target_key_id"));
+            out.put("lastId", checkpoint.get("last_id"));
+            out.put("rowsRewritten", checkpoint.get("rows_rewritten"));
+            out.put("rowsFailed", checkpoint.get("rows_failed"));
+            out.put("rowsFailedLastPass", checkpoint.get("failed_last_pass"));
+            out.put("completedAt", checkpoint.get("completed_at"));
+            out.put("updatedAt", checkpoint.get("updated_at"));
+            // Only done when every row is on the current key: retiring the old key before that loses data
+            out.put("done", checkpoint.get("completed_at") != null
+                    && ((Number) checkpoint.get("rows_failed")).longValue() == 0
+                    && EncryptionUtil.currentKeyId().equals(checkpoint.get("target_key_id")));
+        } else {
+            out.put("done", false);
+        }
+        return out;
+    }
+
+    public void setEnabled(boolean enabled) {
+        chunkWriter.updateSettings(EncryptionUtil.currentKeyId(), enabled, null);
+        log.info("Account re-encryption {} on all nodes", enabled ? "resumed" : "paused");
+    }
+
+    public void setMaxRowsPerSecond(int maxRowsPerSecond) {
+        chunkWriter.updateSettings(EncryptionUtil.currentKeyId(), null, maxRowsPerSecond);
+        log.info("Account re-encryption throttle set to {} rows/s on all nodes", maxRowsPerSecond);
+    }
+}
@@ -5,32 +5,45 @@ import com.mmo.dto.ConversationSummaryDto;
 import com.mmo.entity.Chat;
 import com.mmo.entity.User;
 import com.mmo.repository.ChatRepository;
+import com.mmo.repository.ConversationThreadRepository;
 import com.mmo.repository.UserRepository;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
 @Service
 public class ChatService {
+    private static final int PREVIEW_LENGTH = 255;
+    private static final int MAX_HISTORY_PAGE = 200;
+    // Admin accounts change rarely; the support admin is looked up again after this
+    private static final long SUPPORT_ADMIN_TTL_MS = 5 * 60_000L;
+
     private final ChatRepository chatRepository;
+    private final ConversationThreadRepository conversationThreadRepository;
     private final UserRepository userRepository;
-    private final ChatSseService chatSseService;
+    private final UserEventStreamService userEventStreamService;
     private final NotificationService notificationService;
 
-    public ChatService(ChatRepository chatRepository, UserRepository userRepository,
-                      ChatSseService chatSseService, NotificationService notificationService) {
+    private record SupportAdmin(Long id, String name, long loadedAt) {}
+
+    private volatile SupportAdmin supportAdmin;
+
+    public ChatService(ChatRepository chatRepository, ConversationThreadRepository conversationThreadRepository,
+                      UserRepository userRepository, UserEventStreamService userEventStreamService,
+                      NotificationService notificationService) {
         this.chatRepository = chatRepository;
+        this.conversationThreadRepository = conversationThreadRepository;
         this.userRepository = userRepository;
-        this.chatSseService = chatSseService;
+        this.userEventStreamService = userEventStreamService;
         this.notificationService = notificationService;
     }
 
     public List<ConversationSummaryDto> listConversations(Long currentUserId) {
-        List<ChatRepository.ConversationSummaryProjection> rows = chatRepository.findConversationSummaries(currentUserId);
+        List<ConversationThreadRepository.ConversationSummaryProjection> rows = conversationThreadRepository.findSummaries(currentUserId);
         List<ConversationSummaryDto> list = new ArrayList<>();
-        for (ChatRepository.ConversationSummaryProjection p : rows) {
+        for (ConversationThreadRepository.ConversationSummaryProjection p : rows) {
             ConversationSummaryDto dto = new ConversationSummaryDto();
             dto.setPartnerId(p.getPartnerId());
             String name = p.getPartnerName();
@@ -41,6 +54,7 @@ public class ChatService {
             // Convert Integer (0/1) to boolean for MySQL TINYINT compatibility
             Integer sentByMe = p.getIsSentByMe();
             dto.setSentByMe(sentByMe != null && sentByMe != 0);
+            dto.setUnreadCount(p.getUnreadCount() != null ? p.getUnreadCount() : 0);
             dto.setAdmin(false);
             list.add(dto);
         }
@@ -51,23 +65,14 @@ public class ChatService {
         String roleUpper = myRole.toUpperCase(Locale.ROOT);
         if (roleUpper.startsWith("ROLE_")) roleUpper = roleUpper.substring(5);
 
-        // Find first active admin (ADMIN or ROLE_ADMIN) by smallest ID
-        List<User> admins = new ArrayList<>();
-        admins.addAll(userRepository.findByRoleIgnoreCaseAndIsDelete("ADMIN", false));
-        admins.addAll(userRepository.findByRoleIgnoreCaseAndIsDelete("ROLE_ADMIN", false));
-        // Remove duplicates by ID
-        Map<Long, User> adminMap = admins.stream().collect(Collectors.toMap(User::getId, u -> u, (a,b)->a));
-        User firstAdmin = adminMap.values().stream()
-                .sorted(Comparator.comparing(User::getId))
-                .findFirst().orElse(null);
-
-        if (firstAdmin == null) {
+        SupportAdmin admin = getSupportAdmin();
+        if (admin == null) {
             // No admin accounts found; return the list as-is
             return list;
         }
 
-        Long adminId = firstAdmin.getId();
-        String adminName = Optional.ofNullable(firstAdmin.getFullName()).filter(s -> !s.isBlank()).orElse("Admin");
+        Long adminId = admin.id();
+        String adminName = admin.name();
 
         // Mark admin entry if present
         int adminIndex = -1;
@@ -104,10 +109,30 @@ public class ChatService {
         return list;
     }
 
-    public List<ChatMessageDto> getMessages(Long currentUserId, Long partnerId) {
+    /**
+     * One page of a conversation, always in ascending id order.
+     * No cursor: the latest {@code limit} messages (opening the conversation, marks it read).
+     * beforeId: the {@code limit} messages just older than it (lazy load on scroll up); a short page means the start was reached.
+     * afterId: up to {@code limit} messages newer than it (catch-up after an SSE reconnect); a full page means call again.
+     */
+    public List<ChatMessageDto> getMessages(Long currentUserId, Long partnerId, Long beforeId, Long afterId, int limit) {
         validatePair(currentUserId, partnerId);
-        List<Chat> msgs = chatRepository.findConversation(currentUserId, partnerId);
-        List<ChatMessageDto> out = new ArrayList<>();
+        PageRequest page = PageRequest.of(0, Math.min(Math.max(limit, 1), MAX_HISTORY_PAGE));
+
+        List<Chat> msgs;
+        if (afterId != null) {
+            msgs = chatRepository.findConversationAfter(currentUserId, partnerId, afterId, page);
+        } else {
+            msgs = new ArrayList<>(chatRepository.findConversationBefore(currentUserId, partnerId,
+                    beforeId != null ? beforeId : Long.MAX_VALUE, page));
+            Collections.reverse(msgs);
+        }
+        // The reader is looking at the newest messages
+        if (beforeId == null) {
+            conversationThreadRepository.markRead(Math.min(currentUserId, partnerId), Math.max(currentUserId, partnerId), currentUserId);
+        }
+
+        List<ChatMessageDto> out = new ArrayList<>(msgs.size());
         for (Chat c : msgs) out.add(new ChatMessageDto(c));
         return out;
     }
@@ -127,10 +152,11 @@ public class ChatService {
         chat.setMessage(message.trim());
         chat.setDelete(false);
         Chat saved = chatRepository.save(chat);
+        touchThread(saved);
         ChatMessageDto dto = new ChatMessageDto(saved);
 
         // Broadcast to both sender and receiver via SSE
-        chatSseService.broadcast(dto);
+        userEventStreamService.publishChat(dto);
 
         // Send notification to receiver
         try {
@@ -174,8 +200,9 @@ public class ChatService {
         chat.setDelete(false);
 
         Chat saved = chatRepository.save(chat);
+        touchThread(saved);
         ChatMessageDto dto = new ChatMessageDto(saved);
-        chatSseService.broadcast(dto);
+        userEventStreamService.publishChat(dto);
 
         // Send notification to receiver
         try {
@@ -212,6 +239,43 @@ public class ChatService {
         return dto;
     }
 
+    // Keep the pair's ConversationThread row in step with the message just inserted (same transaction)
+    private void touchThread(Chat saved) {
+        Long senderId = saved.getSender().getId();
+        Long receiverId = saved.getReceiver().getId();
+        Long userA = Math.min(senderId, receiverId);
+        Long userB = Math.max(senderId, receiverId);
+        String preview = saved.getMessage();
+        if (preview != null && preview.length() > PREVIEW_LENGTH) {
+            preview = preview.substring(0, PREVIEW_LENGTH - 3) + "...";
+        }
+        conversationThreadRepository.upsertOnMessage(userA, userB, saved.getId(), senderId, preview,
+                receiverId.equals(userA) ? 1 : 0,
+                receiverId.equals(userB) ? 1 : 0);
+    }
+
+    // First active admin (ADMIN or ROLE_ADMIN) by smallest ID, cached for SUPPORT_ADMIN_TTL_MS
+    private SupportAdmin getSupportAdmin() {
+        SupportAdmin cached = supportAdmin;
+        if (cached != null && System.currentTimeMillis() - cached.loadedAt() < SUPPORT_ADMIN_TTL_MS) {
+            return cached.id() != null ? cached : null;
+        }
+        List<User> admins = new ArrayList<>();
+        admins.addAll(userRepository.findByRoleIgnoreCaseAndIsDelete("ADMIN", false));
+        admins.addAll(userRepository.findByRoleIgnoreCaseAndIsDelete("ROLE_ADMIN", false));
+        User firstAdmin = admins.stream()
+                .min(Comparator.comparing(User::getId))
+                .orElse(null);
+        // A missing admin is cached too (id null) so the role queries don't run on every sidebar load
+        SupportAdmin fresh = firstAdmin == null
+                ? new SupportAdmin(null, null, System.currentTimeMillis())
+                : new SupportAdmin(firstAdmin.getId(),
+                        Optional.ofNullable(firstAdmin.getFullName()).filter(s -> !s.isBlank()).orElse("Admin"),
+                        System.currentTimeMillis());
+        supportAdmin = fresh;
+        return fresh.id() != null ? fresh : null;
+    }
+
     private void validatePair(Long a, Long b) {
         if (a == null || b == null) throw new IllegalArgumentException("Invalid user(s)");
         if (a.equals(b)) throw new IllegalArgumentException("Cannot chat with yourself");
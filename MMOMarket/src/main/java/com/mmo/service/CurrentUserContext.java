@@ -0,0 +1,68 @@
+package com.mmo.service;
+
+import com.mmo.entity.User;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
+import org.springframework.security.oauth2.core.user.OAuth2User;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.annotation.RequestScope;
+
+/**
+ * Resolves the logged-in User once per HTTP request.
+ * GlobalModelAttributes and controllers share the same instance, so a page view does a single
+ * findByEmail instead of one per @ModelAttribute method and controller helper.
+ */
+@Component
+@RequestScope
+public class CurrentUserContext {
+
+    private final AuthService authService;
+
+    private boolean resolved;
+    private User user;
+
+    public CurrentUserContext(AuthService authService) {
+        this.authService = authService;
+    }
+
+    public User getUser() {
+        return getUser(SecurityContextHolder.getContext().getAuthentication());
+    }
+
+    public User getUser(Authentication authentication) {
+        if (resolved) return user;
+        resolved = true;
+        user = load(authentication);
+        return user;
+    }
+
+    // Email used for lookups: OAuth2 "email" attribute when present, otherwise the principal name
+    public static String resolveEmail(Authentication authentication) {
+        if (authentication == null || !authentication.isAuthenticated()) return null;
+        if (authentication instanceof OAuth2AuthenticationToken oauth2Token) {
+            String mail = oauth2Token.getPrincipal().getAttribute("email");
+            if (mail != null) return mail;
+        }
+        if ("anonymousUser".equals(authentication.getPrincipal())) return null;
+        return authentication.getName();
+    }
+
+    private User load(Authentication authentication) {
+        String email = resolveEmail(authentication);
+        if (email == null) return null;
+        User found = authService.findByEmail(email);
+        if (found == null && authentication instanceof OAuth2AuthenticationToken oauth2Token) {
+            // Nếu người dùng không tồn tại, tạo mới
+            OAuth2User oauthUser = oauth2Token.getPrincipal();
+            User newUser = new User();
+            newUser.setEmail(email);
+            newUser.setFullName(oauthUser.getAttribute("name"));
+            newUser.setRole("CUSTOMER");
+            newUser.setVerified(true); // Mặc định là đã xác thực
+            newUser.setCoins(0L); // Khởi tạo coins là 0
+            found = authService.saveUser(newUser);
+        }
+        return found;
+    }
+}
@@ -0,0 +1,67 @@
+package com.mmo.service;
+
+import com.mmo.repository.TransactionRepository;
+import com.mmo.repository.UserRepository;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.*;
+
+/**
+ * One escrow release chunk = one database transaction. Kept apart from EscrowReleaseScheduler so each call
+ * goes through the transactional proxy and commits on return; a failing chunk rolls back only itself.
+ */
+@Component
+public class EscrowReleaseChunkWriter {
+
+    private final TransactionRepository transactionRepository;
+    private final UserRepository userRepository;
+    private final ProductStatsService productStatsService;
+
+    public EscrowReleaseChunkWriter(TransactionRepository transactionRepository,
+                                    UserRepository userRepository,
+                                    ProductStatsService productStatsService) {
+        this.transactionRepository = transactionRepository;
+        this.userRepository = userRepository;
+        this.productStatsService = productStatsService;
+    }
+
+    public record ReleasedRow(Long transactionId, Long sellerId, Long productId, long coinSeller) {}
+
+    // Locks the next releasable rows, credits sellers with one aggregated UPDATE and marks the rows COMPLETED
+    @Transactional
+    public List<ReleasedRow> releaseNextChunk(long afterId, Date now, int limit) {
+        List<ReleasedRow> rows = toRows(transactionRepository.lockReleasableEscrow(afterId, now, limit));
+        if (rows.isEmpty()) return rows;
+
+        List<Long> ids = new ArrayList<>(rows.size());
+        Map<Long, Long> soldByProduct = new HashMap<>();
+        for (ReleasedRow r : rows) {
+            ids.add(r.transactionId());
+            if (r.productId() != null) soldByProduct.merge(r.productId(), 1L, Long::sum);
+        }
+
+        userRepository.addCoinsForTransactions(ids);
+        transactionRepository.markEscrowCompleted(ids);
+        soldByProduct.forEach(productStatsService::recordCompletedSales);
+        return rows;
+    }
+
+    // Dry run: same selection, nothing locked or written
+    @Transactional(readOnly = true)
+    public List<ReleasedRow> previewNextChunk(long afterId, Date now, int limit) {
+        return toRows(transactionRepository.findReleasableEscrow(afterId, now, limit));
+    }
+
+    private static List<ReleasedRow> toRows(List<Object[]> raw) {
+        List<ReleasedRow> rows = new ArrayList<>(raw.size());
+        for (Object[] r : raw) {
+            rows.add(new ReleasedRow(
+                    ((Number) r[0]).longValue(),
+                    r[1] != null ? ((Number) r[1]).longValue() : null,
+                    r[2] != null ? ((Number) r[2]).longValue() : null,
+                    r[3] != null ? ((Number) r[3]).longValue() : 0L));
+        }
+        return rows;
+    }
+}
@@ -1,18 +1,22 @@
 package com.mmo.service;
 
 import com.mmo.entity.Complaint;
-import com.mmo.entity.Transaction;
 import com.mmo.repository.ComplaintRepository;
 import com.mmo.repository.TransactionRepository;
 import com.mmo.repository.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.util.Date;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Component
 public class EscrowReleaseScheduler {
@@ -20,79 +24,147 @@ public class EscrowReleaseScheduler {
 
     private final TransactionRepository transactionRepository;
     private final ComplaintRepository complaintRepository;
-    private final UserRepository userRepository;
     private final NotificationService notificationService;
+    private final EscrowReleaseChunkWriter chunkWriter;
+    private final HomePageCache homePageCache;
+    private final UserRepository userRepository;
+    private final UserEventStreamService userEventStreamService;
+
+    private final Timer chunkTimer;
+    private final Counter releasedCounter;
+    private final Counter releasedCoinsCounter;
+    private final AtomicLong lastRunRowsPerSecond = new AtomicLong();
+
+    @Value("${escrow.release.chunk-size:500}")
+    private int chunkSize = 500;
+
+    // Log what would be released without writing anything
+    @Value("${escrow.release.dry-run:false}")
+    private boolean dryRun;
 
     public EscrowReleaseScheduler(TransactionRepository transactionRepository,
                                   ComplaintRepository complaintRepository,
+                                  NotificationService notificationService,
+                                  EscrowReleaseChunkWriter chunkWriter,
+                                  HomePageCache homePageCache,
                                   UserRepository userRepository,
-                                  NotificationService notificationService) {
+                                  UserEventStreamService userEventStreamService,
+                                  MeterRegistry meterRegistry) {
         this.transactionRepository = transactionRepository;
         this.complaintRepository = complaintRepository;
-        this.userRepository = userRepository;
         this.notificationService = notificationService;
+        this.chunkWriter = chunkWriter;
+        this.homePageCache = homePageCache;
+        this.userRepository = userRepository;
+        this.userEventStreamService = userEventStreamService;
+        this.chunkTimer = Timer.builder("escrow.release.chunk")
+                .description("Latency of one escrow release chunk (select, credit, complete, commit)")
+                .register(meterRegistry);
+        this.releasedCounter = Counter.builder("escrow.release.transactions")
+                .description("Escrow transactions released to sellers")
+                .register(meterRegistry);
+        this.releasedCoinsCounter = Counter.builder("escrow.release.coins")
+                .description("Coins credited to sellers by the escrow release")
+                .register(meterRegistry);
+        meterRegistry.gauge("escrow.release.last_run.rows_per_second", lastRunRowsPerSecond);
     }
 
     // Run hourly
-    @Transactional
+    // Not @Transactional: each chunk commits on its own (see EscrowReleaseChunkWriter)
     @Scheduled(cron = "0 0 * * * *")
 //    @Scheduled(cron = "0 */1 * * * *")
     public void releaseEscrow() {
         Date now = new Date();
-        List<Transaction> due = transactionRepository.findByStatusAndEscrowReleaseDateBefore("ESCROW", now);
-        if (due.isEmpty()) return;
-        log.info("Escrow release scan found {} transactions due", due.size());
-        for (Transaction tx : due) {
+        int limit = Math.max(chunkSize, 1);
+        long start = System.nanoTime();
+        long afterId = 0L;
+        long released = 0L;
+        long coins = 0L;
+        int chunks = 0;
+
+        while (true) {
+            List<EscrowReleaseChunkWriter.ReleasedRow> rows;
+            long chunkStart = System.nanoTime();
             try {
-                // Check if there is an open complaint linked to this transaction
-                // Open complaints: NEW, IN_PROGRESS, PENDING_CONFIRMATION, or ESCALATED
-                boolean hasOpenComplaint = false;
-                try {
-                    hasOpenComplaint = complaintRepository.existsByTransactionIdAndStatus(tx.getId(), Complaint.ComplaintStatus.NEW)
-                            || complaintRepository.existsByTransactionIdAndStatus(tx.getId(), Complaint.ComplaintStatus.IN_PROGRESS)
-                            || complaintRepository.existsByTransactionIdAndStatus(tx.getId(), Complaint.ComplaintStatus.PENDING_CONFIRMATION)
-                            || complaintRepository.existsByTransactionIdAndStatus(tx.getId(), Complaint.ComplaintStatus.ESCALATED);
-                } catch (Exception ignored) {}
-
-                if (hasOpenComplaint) {
-                    log.info("Skipping tx {} due to open complaint", tx.getId());
-                    continue;
-                }
-
-                // If no open complaint exists (including RESOLVED, CLOSED_BY_ADMIN, CANCELLED, or NO complaint at all)
-                // and escrow period has passed -> release money to seller
-                releaseMoneyToSeller(tx);
-
+                // Open complaints (NEW, IN_PROGRESS, PENDING_CONFIRMATION, ESCALATED) are excluded by the chunk query itself
+                rows = dryRun ? chunkWriter.previewNextChunk(afterId, now, limit)
+                              : chunkWriter.releaseNextChunk(afterId, now, limit);
             } catch (Exception ex) {
-                log.error("Failed to release tx {}: {}", tx.getId(), ex.getMessage(), ex);
+                // The chunk rolled back; stop here and let the next run pick the same rows up again
+                log.error("Escrow release chunk after tx #{} failed: {}", afterId, ex.getMessage(), ex);
+                break;
             }
+            if (rows.isEmpty()) break;
+            chunkTimer.record(System.nanoTime() - chunkStart, TimeUnit.NANOSECONDS);
+            chunks++;
+
+            long chunkCoins = 0L;
+            for (EscrowReleaseChunkWriter.ReleasedRow r : rows) chunkCoins += Math.max(r.coinSeller(), 0L);
+            released += rows.size();
+            coins += chunkCoins;
+            afterId = rows.get(rows.size() - 1).transactionId();
+
+            if (dryRun) {
+                log.info("[dry-run] Escrow chunk #{}: would release {} transactions (up to #{}) for {} coins",
+                        chunks, rows.size(), afterId, chunkCoins);
+            } else {
+                releasedCounter.increment(rows.size());
+                releasedCoinsCounter.increment(chunkCoins);
+                notifySellers(rows);
+            }
+            if (rows.size() < limit) break;
+        }
+
+        double seconds = Math.max((System.nanoTime() - start) / 1_000_000_000.0, 0.001);
+        if (!dryRun) lastRunRowsPerSecond.set(Math.round(released / seconds));
+        // Completed sales move the best-seller ranking
+        if (!dryRun && released > 0) homePageCache.markStale();
+        if (released > 0 || dryRun) {
+            long blocked = 0L;
+            try { blocked = transactionRepository.countDueEscrowWithOpenComplaint(now); } catch (Exception ignored) {}
+            log.info("{}Escrow release: {} transactions, {} coins in {} chunks, {} ms ({} rows/s); {} held by open complaints",
+                    dryRun ? "[dry-run] " : "", released, coins, chunks, Math.round(seconds * 1000),
+                    Math.round(released / seconds), blocked);
         }
     }
 
     /**
-     * Helper method to release money to seller
-     * Business rule: After 3 days with no open complaint, money is automatically released to seller
+     * Business rule: After 3 days with no open complaint, money is automatically released to seller.
+     * One notification and one balance-changed event per seller per chunk, sent after the chunk committed.
      */
-    private void releaseMoneyToSeller(Transaction tx) {
-        tx.setStatus("COMPLETED");
-        transactionRepository.save(tx);
-
-        if (tx.getSeller() != null && tx.getCoinSeller() != null && tx.getCoinSeller() > 0) {
-            userRepository.addCoins(tx.getSeller().getId(), tx.getCoinSeller());
-            log.info("Released {} coins to seller #{} for transaction #{}",
-                    tx.getCoinSeller(), tx.getSeller().getId(), tx.getId());
-
+    private void notifySellers(List<EscrowReleaseChunkWriter.ReleasedRow> rows) {
+        Map<Long, List<EscrowReleaseChunkWriter.ReleasedRow>> bySeller = new LinkedHashMap<>();
+        for (EscrowReleaseChunkWriter.ReleasedRow r : rows) {
+            if (r.sellerId() == null || r.coinSeller() <= 0) continue;
+            bySeller.computeIfAbsent(r.sellerId(), k -> new ArrayList<>()).add(r);
+        }
+        if (bySeller.isEmpty()) return;
+        // Balances of all credited sellers in one query
+        Map<Long, Long> coinsBySeller = new HashMap<>();
+        try {
+            for (Object[] row : userRepository.findCoinsByIds(bySeller.keySet())) {
+                coinsBySeller.put(((Number) row[0]).longValue(), ((Number) row[1]).longValue());
+            }
+        } catch (Exception e) {
+            log.warn("Could not read seller balances for escrow release events: {}", e.getMessage());
+        }
+        bySeller.forEach((sellerId, sellerRows) -> {
+            long total = sellerRows.stream().mapToLong(EscrowReleaseChunkWriter.ReleasedRow::coinSeller).sum();
+            String message;
+            if (sellerRows.size() == 1) {
+                message = "Your sale has been released from escrow. You received " +
+                        String.format("%,d", total) + " coins. Transaction #" + sellerRows.get(0).transactionId();
+            } else {
+                message = sellerRows.size() + " sales have been released from escrow. You received " +
+                        String.format("%,d", total) + " coins in total.";
+            }
+            userEventStreamService.publishBalanceChanged(sellerId, coinsBySeller.get(sellerId), total);
             try {
-                notificationService.createNotificationForUser(
-                        tx.getSeller().getId(),
-                        "Payout received",
-                        "Your sale has been released from escrow. You received " +
-                        String.format("%,d", tx.getCoinSeller()) + " coins. Transaction #" + tx.getId()
-                );
+                notificationService.createNotificationForUser(sellerId, "Payout received", message);
             } catch (Exception e) {
-                log.error("Failed to notify seller for tx {}", tx.getId(), e);
+                log.error("Failed to notify seller #{} for escrow release", sellerId, e);
             }
-        }
+        });
     }
 
     /**
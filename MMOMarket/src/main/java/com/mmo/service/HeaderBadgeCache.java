@@ -0,0 +1,151 @@
+package com.mmo.service;
+
+import com.mmo.dto.HeaderNotificationItem;
+import com.mmo.entity.User;
+import com.mmo.repository.NotificationRepository;
+import com.mmo.repository.ProductRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Short-lived per-user cache of the header badges rendered on every page:
+ * unread notification count, the latest 20 unread notifications and the seller quick stats.
+ * Notification writes and mark-as-read invalidate the user's entry; seller stats simply expire with the TTL.
+ * Entries hold detached DTOs only (shared by concurrent requests). Each invalidation bumps the generation of the
+ * user's stripe, and a load that raced with one is not kept, so a reader cannot put back a value older than the
+ * invalidation. The stripes are a fixed array, so memory does not grow with the users ever invalidated.
+ */
+@Service
+public class HeaderBadgeCache {
+
+    // Power of two; users sharing a stripe only cost each other a discarded load, never a stale entry
+    private static final int GENERATION_STRIPES = 4096;
+
+    private final NotificationRepository notificationRepository;
+    private final ProductRepository productRepository;
+    private final ProductStatsService productStatsService;
+
+    private final Map<Long, Badges> notificationBadges = new ConcurrentHashMap<>();
+    private final Map<Long, SellerQuickStats> sellerStats = new ConcurrentHashMap<>();
+    // Invalidation count per stripe of user ids (see stripe)
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+
+    @Value("${header.badge.cache-ttl-ms:30000}")
+    private long ttlMs = 30_000L;
+
+    public HeaderBadgeCache(NotificationRepository notificationRepository,
+                            ProductRepository productRepository,
+                            ProductStatsService productStatsService) {
+        this.notificationRepository = notificationRepository;
+        this.productRepository = productRepository;
+        this.productStatsService = productStatsService;
+    }
+
+    public record Badges(long unreadCount, List<HeaderNotificationItem> notifications, long loadedAt) {}
+
+    public record SellerQuickStats(double avgRating, long productCount, long loadedAt) {}
+
+    public Badges getBadges(User user) {
+        if (user == null || user.getId() == null) return new Badges(0L, Collections.emptyList(), 0L);
+        Badges cached = notificationBadges.get(user.getId());
+        if (cached != null && !expired(cached.loadedAt())) return cached;
+        Long userId = user.getId();
+        int stripe = stripe(userId);
+        long generation = generations.get(stripe);
+        Badges fresh = loadBadges(user);
+        notificationBadges.put(userId, fresh);
+        // An invalidation during the load may have removed the entry before the put: drop what was put back
+        if (generations.get(stripe) != generation) notificationBadges.remove(userId, fresh);
+        return fresh;
+    }
+
+    public SellerQuickStats getSellerQuickStats(User user) {
+        if (user == null || user.getId() == null) return new SellerQuickStats(0.0, 0L, 0L);
+        SellerQuickStats cached = sellerStats.get(user.getId());
+        if (cached != null && !expired(cached.loadedAt())) return cached;
+        SellerQuickStats fresh = loadSellerStats(user);
+        sellerStats.put(user.getId(), fresh);
+        return fresh;
+    }
+
+    // Called after a notification is created or marked read for this user. Inside a transaction the change is not
+    // visible yet, so the entry is dropped again after commit (a request in between may have cached the old state)
+    public void invalidate(Long userId) {
+        if (userId == null) return;
+        drop(userId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    drop(userId);
+                }
+            });
+        }
+    }
+
+    // Bulk form for role broadcasts and flushed notification batches: one commit callback for all users
+    public void invalidate(Collection<Long> userIds) {
+        if (userIds == null || userIds.isEmpty()) return;
+        userIds.forEach(this::drop);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    userIds.forEach(HeaderBadgeCache.this::drop);
+                }
+            });
+        }
+    }
+
+    private void drop(Long userId) {
+        generations.incrementAndGet(stripe(userId));
+        notificationBadges.remove(userId);
+    }
+
+    private static int stripe(Long userId) {
+        return Long.hashCode(userId) & (GENERATION_STRIPES - 1);
+    }
+
+    // Drop expired entries so users who stopped browsing don't pin memory
+    @Scheduled(fixedDelay = 60_000L)
+    public void evictExpired() {
+        notificationBadges.values().removeIf(b -> expired(b.loadedAt()));
+        sellerStats.values().removeIf(s -> expired(s.loadedAt()));
+    }
+
+    private boolean expired(long loadedAt) {
+        return System.currentTimeMillis() - loadedAt >= ttlMs;
+    }
+
+    private Badges loadBadges(User user) {
+        // Load latest unread notifications only (for dropdown). Both reads are ranges of
+        // idx_notifications_user_status (user_id, status, isDelete, created_at) bounded by the user's unread rows.
+        List<HeaderNotificationItem> notifications = notificationRepository
+                .findUnreadHeaderItems(user.getId(), PageRequest.of(0, 20));
+        if (notifications == null) notifications = Collections.emptyList();
+
+        long unreadCount = notificationRepository
+                .countByUser_IdAndStatusAndIsDelete(user.getId(), "Unread", false);
+        return new Badges(unreadCount, List.copyOf(notifications), System.currentTimeMillis());
+    }
+
+    private SellerQuickStats loadSellerStats(User user) {
+        Long productCount = null;
+        try { productCount = productRepository.countBySellerId(user.getId()); } catch (Exception ignored) {}
+        if (productCount == null) productCount = 0L;
+        double avg = 0.0;
+        try { avg = productStatsService.getSellerTotals(user.getId()).averageRating(); } catch (Exception ignored) {}
+        return new SellerQuickStats(Math.round(avg * 10.0) / 10.0, productCount, System.currentTimeMillis());
+    }
+}
@@ -0,0 +1,209 @@
+package com.mmo.service;
+
+import com.mmo.entity.Category;
+import com.mmo.entity.Product;
+import com.mmo.entity.ShopInfo;
+import com.mmo.entity.User;
+import com.mmo.repository.ShopInfoRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Precomputed homepage model (popular categories, best sellers, reputable sellers) shared by every visitor.
+ * Requests always read the current snapshot; when it is older than the TTL or has been marked stale by a
+ * purchase, review or product change, one background refresh is started and the old snapshot keeps being
+ * served until the new one is ready. Only the very first request (empty cache) waits for a load.
+ */
+@Service
+public class HomePageCache {
+
+    private static final Logger log = LoggerFactory.getLogger(HomePageCache.class);
+
+    private static final int BEST_SELLER_LIMIT = 4;
+
+    private final CategoryService categoryService;
+    private final ProductService productService;
+    private final ShopService shopService;
+    private final ShopInfoRepository shopInfoRepository;
+    private final Executor refreshExecutor;
+
+    private final AtomicBoolean refreshing = new AtomicBoolean(false);
+    private volatile HomePageModel snapshot;
+    private volatile boolean stale;
+
+    @Value("${homepage.cache.ttl-ms:60000}")
+    private long ttlMs = 60_000L;
+
+    public HomePageCache(CategoryService categoryService,
+                         ProductService productService,
+                         ShopService shopService,
+                         ShopInfoRepository shopInfoRepository,
+                         @Qualifier("cacheRefreshExecutor") Executor refreshExecutor) {
+        this.categoryService = categoryService;
+        this.productService = productService;
+        this.shopService = shopService;
+        this.shopInfoRepository = shopInfoRepository;
+        this.refreshExecutor = refreshExecutor;
+    }
+
+    public record HomePageModel(List<Category> categories,
+                                List<Map<String, Object>> bestSellers,
+                                List<Map<String, Object>> reputableSellers,
+                                long loadedAt) {}
+
+    public HomePageModel get() {
+        HomePageModel current = snapshot;
+        if (current == null) {
+            return loadNow();
+        }
+        if (stale || System.currentTimeMillis() - current.loadedAt() >= ttlMs) {
+            refreshAsync();
+        }
+        return current;
+    }
+
+    // Called after purchases, reviews and product changes; the next visitor triggers the refresh
+    public void markStale() {
+        stale = true;
+    }
+
+    @Scheduled(fixedDelayString = "${homepage.cache.refresh-interval-ms:300000}",
+            initialDelayString = "${homepage.cache.refresh-interval-ms:300000}")
+    public void scheduledRefresh() {
+        refreshAsync();
+    }
+
+    private synchronized HomePageModel loadNow() {
+        if (snapshot == null) {
+            snapshot = load();
+        }
+        return snapshot;
+    }
+
+    private void refreshAsync() {
+        if (!refreshing.compareAndSet(false, true)) return;
+        try {
+            refreshExecutor.execute(() -> {
+                try {
+                    snapshot = load();
+                } catch (Exception ex) {
+                    log.error("Homepage cache refresh failed, keeping previous snapshot", ex);
+                } finally {
+                    refreshing.set(false);
+                }
+            });
+        } catch (RuntimeException rejected) {
+            refreshing.set(false);
+            log.warn("Homepage cache refresh not scheduled: {}", rejected.getMessage());
+        }
+    }
+
+    private HomePageModel load() {
+        long start = System.currentTimeMillis();
+        // Cleared before loading so a change made during the load marks the new snapshot stale again
+        stale = false;
+
+        List<Category> categories = categoryService.getPopularCategories();
+        List<Map<String, Object>> bestSellers = productService.getTopSellingProducts(BEST_SELLER_LIMIT);
+        addShopIds(bestSellers);
+        List<Map<String, Object>> reputableSellers = toSellerRows(shopService.getReputableSellers());
+
+        HomePageModel model = new HomePageModel(
+                categories != null ? List.copyOf(categories) : List.of(),
+                bestSellers != null ? List.copyOf(bestSellers) : List.of(),
+                List.copyOf(reputableSellers),
+                System.currentTimeMillis());
+        log.debug("Homepage cache loaded in {} ms", System.currentTimeMillis() - start);
+        return model;
+    }
+
+    // Best sellers link to /shop?id=..., resolved for all items with one ShopInfo query
+    private void addShopIds(List<Map<String, Object>> bestSellers) {
+        if (bestSellers == null || bestSellers.isEmpty()) return;
+        Set<Long> sellerIds = new HashSet<>();
+        for (Map<String, Object> it : bestSellers) {
+            if (it != null && it.get("product") instanceof Product p
+                    && p.getSeller() != null && p.getSeller().getId() != null) {
+                sellerIds.add(p.getSeller().getId());
+            }
+        }
+        if (sellerIds.isEmpty()) return;
+
+        Map<Long, ShopInfo> shopBySeller = new HashMap<>();
+        try {
+            for (ShopInfo si : shopInfoRepository.findByUser_IdIn(sellerIds)) {
+                if (si.getUser() == null) continue;
+                // prefer the non-deleted shop when a seller has several rows
+                shopBySeller.merge(si.getUser().getId(), si, (a, b) -> a.isDelete() && !b.isDelete() ? b : a);
+            }
+        } catch (Exception ignored) {}
+
+        for (Map<String, Object> it : bestSellers) {
+            if (it == null || it.get("shopId") != null || !(it.get("product") instanceof Product p)) continue;
+            User seller = p.getSeller();
+            ShopInfo si = seller != null ? shopBySeller.get(seller.getId()) : null;
+            if (si == null) continue;
+            it.put("shopId", si.getId());
+            // also backfill shopName if absent
+            if (it.get("shopName") == null || String.valueOf(it.get("shopName")).isBlank()) {
+                String fallbackName = si.getShopName();
+                if (fallbackName == null || fallbackName.isBlank()) {
+                    fallbackName = seller.getFullName() != null && !seller.getFullName().isBlank()
+                            ? seller.getFullName()
+                            : seller.getEmail();
+                }
+                it.put("shopName", fallbackName != null ? fallbackName : "Shop");
+            }
+        }
+    }
+
+    // Flat rows for the template (keys: id, shopId, fullName, shopName, email, avatar, ratingAverage, totalSold, successRate).
+    // ShopService already resolved shopName/shopId from ShopInfo, so only the user fallbacks are applied here.
+    private List<Map<String, Object>> toSellerRows(List<Map<String, Object>> sellers) {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        if (sellers == null) return rows;
+        for (Map<String, Object> s : sellers) {
+            Long userId = null;
+            String fullName = (String) s.getOrDefault("fullName", "Seller");
+            String email = (String) s.getOrDefault("email", "");
+
+            if (s.get("seller") instanceof User user) {
+                userId = user.getId();
+                fullName = user.getFullName();
+                email = user.getEmail();
+            } else {
+                Object sid = s.get("sellerId");
+                if (sid instanceof Number) userId = ((Number) sid).longValue();
+                if (userId == null && s.get("id") instanceof Number id) userId = id.longValue();
+            }
+
+            String shopName = s.get("shopName") instanceof String name ? name : null;
+            if (shopName == null || shopName.isBlank()) {
+                shopName = fullName != null && !fullName.isBlank() ? fullName : email;
+            }
+
+            Map<String, Object> m = new HashMap<>();
+            m.put("id", userId);
+            m.put("fullName", fullName);
+            m.put("shopName", shopName);
+            if (s.containsKey("shopId")) {
+                m.put("shopId", s.get("shopId"));
+            }
+            m.put("email", email);
+            m.put("avatar", s.getOrDefault("avatar", "/images/default-avatar.svg"));
+            m.put("ratingAverage", s.getOrDefault("averageRating", s.getOrDefault("ratingAverage", 0)));
+            m.put("totalSold", s.getOrDefault("totalSold", 0));
+            m.put("successRate", s.getOrDefault("successRate", 0));
+            rows.add(m);
+        }
+        return rows;
+    }
+}
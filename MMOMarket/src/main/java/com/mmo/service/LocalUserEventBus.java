@@ -0,0 +1,17 @@
+package com.mmo.service;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+// Single-node mode (events.fanout.mode=local): there are no other nodes, local delivery is all there is
+@Component
+@ConditionalOnProperty(name = "events.fanout.mode", havingValue = "local")
+public class LocalUserEventBus implements UserEventBus {
+
+    @Override
+    public void publish(List<Long> userIds, String type, String payload) {
+        // nothing to forward
+    }
+}
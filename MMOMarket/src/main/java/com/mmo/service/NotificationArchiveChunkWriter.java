@@ -0,0 +1,31 @@
+package com.mmo.service;
+
+import com.mmo.repository.NotificationRepository;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * One notification archive chunk = one database transaction (same split as EscrowReleaseChunkWriter):
+ * the rows are copied to NotificationsArchive and removed from Notifications together, or not at all.
+ */
+@Component
+public class NotificationArchiveChunkWriter {
+
+    private final NotificationRepository notificationRepository;
+
+    public NotificationArchiveChunkWriter(NotificationRepository notificationRepository) {
+        this.notificationRepository = notificationRepository;
+    }
+
+    // Returns the number of rows removed from Notifications; archive=false only deletes (retention mode=delete)
+    @Transactional
+    public int archiveNextChunk(Date cutoff, int limit, boolean archive) {
+        List<Long> ids = notificationRepository.lockArchivableIds(cutoff, limit);
+        if (ids.isEmpty()) return 0;
+        if (archive) notificationRepository.copyToArchive(ids);
+        return notificationRepository.deleteByIdIn(ids);
+    }
+}
@@ -0,0 +1,89 @@
+package com.mmo.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps Notifications small: read notifications not touched for read-ttl-days are moved to NotificationsArchive
+ * (or deleted, mode=delete) in chunks. Unread notifications are never archived, so the header badge and dropdown
+ * only ever range over a user's live rows.
+ */
+@Component
+public class NotificationRetentionJob {
+    private static final Logger log = LoggerFactory.getLogger(NotificationRetentionJob.class);
+
+    private final NotificationArchiveChunkWriter chunkWriter;
+    private final Timer chunkTimer;
+    private final Counter archivedCounter;
+
+    @Value("${notification.retention.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${notification.retention.read-ttl-days:30}")
+    private int readTtlDays = 30;
+
+    // archive: copy to NotificationsArchive then delete; delete: delete only
+    @Value("${notification.retention.mode:archive}")
+    private String mode = "archive";
+
+    @Value("${notification.retention.chunk-size:1000}")
+    private int chunkSize = 1000;
+
+    // Upper bound per run so a large backlog is worked off over several nights instead of one long job
+    @Value("${notification.retention.max-chunks-per-run:500}")
+    private int maxChunksPerRun = 500;
+
+    public NotificationRetentionJob(NotificationArchiveChunkWriter chunkWriter, MeterRegistry meterRegistry) {
+        this.chunkWriter = chunkWriter;
+        this.chunkTimer = Timer.builder("notifications.archive.chunk")
+                .description("Latency of one notification archive chunk (lock, copy, delete, commit)")
+                .register(meterRegistry);
+        this.archivedCounter = Counter.builder("notifications.archived")
+                .description("Read notifications removed from the live table by retention")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(cron = "${notification.retention.cron:0 30 3 * * *}")
+    public void archiveReadNotifications() {
+        if (!enabled || readTtlDays <= 0) return;
+        Date cutoff = new Date(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(readTtlDays));
+        boolean archive = !"delete".equalsIgnoreCase(mode);
+        int limit = Math.max(chunkSize, 1);
+        long start = System.nanoTime();
+        long removed = 0L;
+        int chunks = 0;
+
+        while (chunks < maxChunksPerRun) {
+            int moved;
+            long chunkStart = System.nanoTime();
+            try {
+                moved = chunkWriter.archiveNextChunk(cutoff, limit, archive);
+            } catch (Exception ex) {
+                // The chunk rolled back; the next run retries the same rows
+                log.error("Notification archive chunk failed: {}", ex.getMessage(), ex);
+                break;
+            }
+            if (moved == 0) break;
+            chunkTimer.record(System.nanoTime() - chunkStart, TimeUnit.NANOSECONDS);
+            archivedCounter.increment(moved);
+            removed += moved;
+            chunks++;
+            if (moved < limit) break;
+        }
+
+        if (removed > 0) {
+            log.info("Notification retention: {} read notifications older than {} days {} in {} chunks, {} ms",
+                    removed, readTtlDays, archive ? "archived" : "deleted", chunks,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        }
+    }
+}
@@ -1,9 +1,7 @@
 package com.mmo.service;
 
 import com.mmo.entity.Notification;
-import com.mmo.entity.User;
 import com.mmo.repository.NotificationRepository;
-import com.mmo.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -11,9 +9,6 @@ import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
-import java.util.Date;
-import java.util.List;
-
 @Service
 public class NotificationServiceImpl implements NotificationService {
 
@@ -21,7 +16,7 @@ public class NotificationServiceImpl implements NotificationService {
     private NotificationRepository notificationRepository;
 
     @Autowired
-    private UserRepository userRepository;
+    private NotificationWriter notificationWriter;
 
     @Override
     public Page<Notification> getNotificationsForUser(String email, String status, String search, Pageable pageable) {
@@ -40,48 +35,21 @@ public class NotificationServiceImpl implements NotificationService {
         }
     }
 
+    // Buffered and written in batches by NotificationWriter; returns without touching the database
     @Override
-    @Async("notificationExecutor")
     public void createNotificationForUser(Long userId, String title, String content) {
-        User user = null;
         try {
-            user = userRepository.findById(userId).orElse(null);
-        } catch (Exception ignored) {}
-        if (user == null) {
-            // can't create notification without user reference; bail silently
-            return;
+            notificationWriter.enqueue(userId, title, content);
+        } catch (Exception ignored) {
+            // best-effort: swallow exceptions to not break caller flow
         }
-        Notification n = new Notification();
-        n.setUser(user);
-        n.setTitle(title);
-        n.setContent(content);
-        n.setStatus("Unread");
-        n.setCreatedAt(new Date());
-        n.setUpdatedAt(new Date());
-        notificationRepository.save(n);
     }
 
     @Override
     @Async("notificationExecutor")
     public void createNotificationForRole(String role, String title, String content) {
         try {
-            List<User> users = userRepository.findByRoleIgnoreCaseAndIsDelete(role, false);
-            if (users == null || users.isEmpty()) return;
-            Date now = new Date();
-            for (User user : users) {
-                try {
-                    Notification n = new Notification();
-                    n.setUser(user);
-                    n.setTitle(title);
-                    n.setContent(content);
-                    n.setStatus("Unread");
-                    n.setCreatedAt(now);
-                    n.setUpdatedAt(now);
-                    notificationRepository.save(n);
-                } catch (Exception ignored) {
-                    // continue creating for other users
-                }
-            }
+            notificationWriter.insertForRole(role, title, content);
         } catch (Exception ignored) {
             // best-effort: swallow exceptions to not break caller flow
         }
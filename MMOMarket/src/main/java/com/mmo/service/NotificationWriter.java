@@ -0,0 +1,224 @@
+package com.mmo.service;
+
+import com.mmo.repository.NotificationRepository;
+import com.mmo.repository.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Write path for notifications. Per-user notifications are buffered in memory and flushed as one JDBC batch
+ * insert, either when batch-size rows are waiting (flush handed to notificationExecutor) or every
+ * flush-interval-ms. Only the user id is needed, no User is loaded. Role broadcasts are a single INSERT ... SELECT.
+ * Backpressure: when notificationExecutor is saturated (CallerRunsPolicy), or the buffer is full, the caller flushes
+ * itself, so producers slow down instead of notifications being dropped.
+ * A flush may run on a producer's thread, inside the producer's transaction: every insert runs in its own
+ * REQUIRES_NEW transaction, so a producer that rolls back cannot take other users' buffered notifications with it.
+ */
+@Component
+public class NotificationWriter {
+
+    private static final Logger log = LoggerFactory.getLogger(NotificationWriter.class);
+
+    private static final String INSERT_SQL =
+            "INSERT INTO Notifications (user_id, title, content, status, created_at, updated_at, isDelete) " +
+            "VALUES (?, ?, ?, 'Unread', ?, ?, 0)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NotificationRepository notificationRepository;
+    private final UserRepository userRepository;
+    private final HeaderBadgeCache headerBadgeCache;
+    private final UserEventStreamService userEventStreamService;
+    private final Executor notificationExecutor;
+    private final TransactionTemplate ownTransaction;
+    private final BlockingQueue<PendingNotification> buffer;
+
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+    private final Object flushLock = new Object();
+
+    private final DistributionSummary flushSize;
+    private final Timer flushTimer;
+    private final Counter writtenCounter;
+    private final Counter failedCounter;
+    private final Counter callerFlushCounter;
+
+    @Value("${notification.writer.batch-size:200}")
+    private int batchSize = 200;
+
+    private record PendingNotification(Long userId, String title, String content, Date createdAt) {}
+
+    private record NotificationKey(String title, String content, Date createdAt) {}
+
+    public NotificationWriter(JdbcTemplate jdbcTemplate,
+                              NotificationRepository notificationRepository,
+                              UserRepository userRepository,
+                              HeaderBadgeCache headerBadgeCache,
+                              UserEventStreamService userEventStreamService,
+                              @Qualifier("notificationExecutor") Executor notificationExecutor,
+                              @Value("${notification.writer.buffer-capacity:10000}") int bufferCapacity,
+                              PlatformTransactionManager transactionManager,
+                              MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.notificationRepository = notificationRepository;
+        this.userRepository = userRepository;
+        this.headerBadgeCache = headerBadgeCache;
+        this.userEventStreamService = userEventStreamService;
+        this.notificationExecutor = notificationExecutor;
+        this.ownTransaction = new TransactionTemplate(transactionManager);
+        this.ownTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.buffer = new ArrayBlockingQueue<>(Math.max(bufferCapacity, 1));
+        Gauge.builder("notifications.buffer.size", buffer, Collection::size)
+                .description("Notifications waiting to be flushed")
+                .register(meterRegistry);
+        this.flushSize = DistributionSummary.builder("notifications.flush.size")
+                .description("Rows written per notification flush")
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder("notifications.flush")
+                .description("Latency of one notification batch insert")
+                .register(meterRegistry);
+        this.writtenCounter = Counter.builder("notifications.written")
+                .description("Notifications inserted (batched and role broadcasts)")
+                .register(meterRegistry);
+        this.failedCounter = Counter.builder("notifications.write.failures")
+                .description("Notifications that could not be inserted")
+                .register(meterRegistry);
+        this.callerFlushCounter = Counter.builder("notifications.flush.caller_runs")
+                .description("Flushes run on the producing thread because the buffer was full")
+                .register(meterRegistry);
+    }
+
+    public void enqueue(Long userId, String title, String content) {
+        if (userId == null || title == null) return;
+        PendingNotification pending = new PendingNotification(userId, title, content, new Date());
+        while (!buffer.offer(pending)) {
+            // Buffer full: drain it on this thread, then retry
+            callerFlushCounter.increment();
+            flush();
+        }
+        if (buffer.size() >= batchSize) {
+            requestFlush();
+        }
+    }
+
+    // All active users of a role in one statement; returns the number of notifications created
+    public int insertForRole(String role, String title, String content) {
+        long start = System.nanoTime();
+        int inserted = notificationRepository.insertForRole(role, title, content);
+        flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        flushSize.record(inserted);
+        writtenCounter.increment(inserted);
+        if (inserted > 0) {
+            // Same payload for every member: one event on the fanout exchange, not one per user
+            List<Long> userIds = userRepository.findActiveIdsByRole(role);
+            headerBadgeCache.invalidate(userIds);
+            userEventStreamService.publishNotification(userIds, title, content, new Date());
+        }
+        return inserted;
+    }
+
+    @Scheduled(fixedDelayString = "${notification.writer.flush-interval-ms:250}")
+    public void scheduledFlush() {
+        if (!buffer.isEmpty()) flush();
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    private void requestFlush() {
+        if (!flushScheduled.compareAndSet(false, true)) return;
+        // notificationExecutor saturated: CallerRunsPolicy runs this on the producer, which pays for the flush
+        notificationExecutor.execute(() -> {
+            try {
+                flush();
+            } finally {
+                flushScheduled.set(false);
+            }
+        });
+    }
+
+    // One flush at a time keeps batches full and rows in arrival order
+    private void flush() {
+        synchronized (flushLock) {
+            List<PendingNotification> batch = new ArrayList<>(batchSize);
+            while (buffer.drainTo(batch, batchSize) > 0) {
+                write(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<PendingNotification> batch) {
+        long start = System.nanoTime();
+        List<PendingNotification> written;
+        try {
+            ownTransaction.executeWithoutResult(status ->
+                    jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), (ps, n) -> {
+                        Timestamp at = new Timestamp(n.createdAt().getTime());
+                        ps.setLong(1, n.userId());
+                        ps.setString(2, n.title());
+                        ps.setString(3, n.content());
+                        ps.setTimestamp(4, at);
+                        ps.setTimestamp(5, at);
+                    }));
+            written = batch;
+        } catch (Exception ex) {
+            // Typically one row references a deleted user: write the rows one by one and skip the bad ones
+            log.warn("Notification batch of {} failed ({}), retrying row by row", batch.size(), ex.getMessage());
+            written = writeIndividually(batch);
+        }
+        flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        flushSize.record(written.size());
+        writtenCounter.increment(written.size());
+
+        // Producers often notify many users with the same text at once: one event per distinct notification
+        Map<NotificationKey, List<Long>> groups = new LinkedHashMap<>();
+        Set<Long> users = new HashSet<>();
+        for (PendingNotification n : written) {
+            users.add(n.userId());
+            groups.computeIfAbsent(new NotificationKey(n.title(), n.content(), n.createdAt()), k -> new ArrayList<>())
+                    .add(n.userId());
+        }
+        headerBadgeCache.invalidate(users);
+        groups.forEach((key, userIds) ->
+                userEventStreamService.publishNotification(userIds, key.title(), key.content(), key.createdAt()));
+    }
+
+    private List<PendingNotification> writeIndividually(List<PendingNotification> batch) {
+        List<PendingNotification> written = new ArrayList<>(batch.size());
+        for (PendingNotification n : batch) {
+            try {
+                Timestamp at = new Timestamp(n.createdAt().getTime());
+                ownTransaction.executeWithoutResult(status ->
+                        jdbcTemplate.update(INSERT_SQL, n.userId(), n.title(), n.content(), at, at));
+                written.add(n);
+            } catch (Exception ex) {
+                failedCounter.increment();
+                log.warn("Dropping notification for user {}: {}", n.userId(), ex.getMessage());
+            }
+        }
+        return written;
+    }
+}
@@ -1,6 +1,7 @@
 package com.mmo.service;
 
 import com.mmo.entity.Product;
+import com.mmo.entity.ProductStats;
 import com.mmo.entity.ProductVariant;
 import com.mmo.repository.ProductRepository;
 import com.mmo.repository.ProductVariantRepository;
@@ -14,7 +15,11 @@ import com.mmo.entity.ShopInfo;
 import com.mmo.repository.ShopInfoRepository;
 import com.mmo.util.TierNameUtil;
 
+import com.mmo.repository.PagedJpqlQuery;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 
@@ -29,6 +34,9 @@ public class ProductService {
     @Autowired
     private ProductRepository productRepository;
 
+    @PersistenceContext
+    private EntityManager entityManager;
+
     @Autowired
     private ReviewRepository reviewRepository;
 
@@ -47,6 +55,10 @@ public class ProductService {
     @Autowired
     private ShopService shopService;
 
+    // Denormalized sold/rating/price counters for listing pages
+    @Autowired
+    private ProductStatsService productStatsService;
+
     // Resolve shop name: prefer ShopInfo.shopName -> seller.fullName -> seller.email -> "Shop"
     private String resolveShopName(Product p) {
         if (p == null || p.getSeller() == null) return "Shop";
@@ -75,215 +87,131 @@ public class ProductService {
         return "Shop";
     }
 
-    public List<Map<String, Object>> getTopSellingProducts(int limit) {
-        List<Product> products = productRepository.findTopSellingProducts(PageRequest.of(0, limit));
+    // Listing row per product: price/sold/rating come from ProductStats in a single batch lookup.
+    // Price is the lowest active variant price.
+    private List<Map<String, Object>> toListingRows(List<Product> products) {
+        Map<Long, ProductStats> stats = productStatsService.getStats(
+                products.stream().map(Product::getId).collect(Collectors.toList()));
+        Map<Long, String> shopNames = resolveShopNames(products);
         List<Map<String, Object>> result = new ArrayList<>();
         for (Product p : products) {
+            ProductStats st = stats.get(p.getId());
             Map<String, Object> map = new HashMap<>();
             map.put("product", p);
-
-            List<ProductVariant> variants = productVariantRepository.findByProductIdAndIsDeleteFalse(p.getId());
-            Long price = !variants.isEmpty() ? variants.get(0).getPrice() : 0L;
-            map.put("price", price);
-
-            Long totalSold = productRepository.getTotalSoldForProduct(p.getId());
-            map.put("totalSold", totalSold != null ? totalSold : 0);
-
-            Double avgRating = reviewRepository.getAverageRatingByProduct(p.getId());
-            map.put("averageRating", avgRating != null ? avgRating : 0.0);
-
+            map.put("price", st.getMinPrice() != null ? st.getMinPrice() : 0L);
+            map.put("totalSold", st.getSoldCount());
+            map.put("averageRating", st.getAverageRating());
             // replace old fallback "Unknown Shop"
-            map.put("shopName", resolveShopName(p));
-
+            map.put("shopName", shopNames.getOrDefault(p.getId(), "Shop"));
             result.add(map);
         }
         return result;
     }
 
-    public List<Map<String, Object>> getProductsByCategory(Long categoryId, Long minPrice, Long maxPrice, String sort, Integer minRating) {
-        // Defaults
-        if (minPrice == null) minPrice = 0L;
-        if (maxPrice == null) maxPrice = 999999999L; // Set to very high value
-        if (sort == null || sort.isBlank()) sort = "newest";
-        if (minRating == null) minRating = 0;
-
-        // Fetch unsorted page (we will sort in-memory using computed values)
-        PageRequest page = PageRequest.of(0, 20);
-
-        List<Product> products;
-        if (categoryId == null || categoryId <= 0) {
-            products = productRepository.findAllProducts(minPrice, maxPrice, page);
-        } else {
-            products = productRepository.findByCategoryId(categoryId, minPrice, maxPrice, page);
+    // Same precedence as resolveShopName, with one ShopInfo query for the whole list
+    private Map<Long, String> resolveShopNames(List<Product> products) {
+        Set<Long> sellerIds = new HashSet<>();
+        for (Product p : products) {
+            if (p.getSeller() != null && p.getSeller().getId() != null) sellerIds.add(p.getSeller().getId());
         }
-
-        // Build result with aggregates
-        List<Map<String, Object>> result = new ArrayList<>();
+        Map<Long, ShopInfo> shopBySeller = new HashMap<>();
+        if (!sellerIds.isEmpty()) {
+            try {
+                for (ShopInfo si : shopInfoRepository.findByUser_IdIn(sellerIds)) {
+                    if (si.getUser() == null) continue;
+                    // prefer the non-deleted shop when a seller has several rows
+                    shopBySeller.merge(si.getUser().getId(), si, (a, b) -> a.isDelete() && !b.isDelete() ? b : a);
+                }
+            } catch (Exception ignored) {}
+        }
+        Map<Long, String> names = new HashMap<>();
         for (Product p : products) {
-            Map<String, Object> map = new HashMap<>();
-            map.put("product", p);
-
-            List<ProductVariant> variants = productVariantRepository.findByProductIdAndIsDeleteFalse(p.getId());
-            Long price = !variants.isEmpty() ? variants.get(0).getPrice() : 0L;
-            map.put("price", price);
-
-            Long totalSold = productRepository.getTotalSoldForProduct(p.getId());
-            map.put("totalSold", totalSold != null ? totalSold : 0);
-
-            Double avgRating = reviewRepository.getAverageRatingByProduct(p.getId());
-            map.put("averageRating", avgRating != null ? avgRating : 0.0);
-
-            // replace old fallback "Unknown Shop"
-            map.put("shopName", resolveShopName(p));
-
-            result.add(map);
+            String name = "Shop";
+            if (p.getSeller() != null) {
+                ShopInfo si = shopBySeller.get(p.getSeller().getId());
+                if (si != null && si.getShopName() != null && !si.getShopName().isBlank()) {
+                    name = si.getShopName();
+                } else if (p.getSeller().getFullName() != null && !p.getSeller().getFullName().isBlank()) {
+                    name = p.getSeller().getFullName();
+                } else if (p.getSeller().getEmail() != null && !p.getSeller().getEmail().isBlank()) {
+                    name = p.getSeller().getEmail();
+                }
+            }
+            names.put(p.getId(), name);
         }
+        return names;
+    }
 
-        // Filter by minimum rating if requested
-        int minRatingVal = (minRating != null) ? minRating : 0;
-        if (minRatingVal > 0) {
-            final int finalMinRating = minRatingVal;
-            result.removeIf(item -> ((Double) item.get("averageRating")) < finalMinRating);
+    /**
+     * Listing engine for category and shop pages: price range, minimum rating, name filter, sort and page
+     * boundaries all run in SQL over Products JOIN ProductStats, so a page costs one count + one page query
+     * (+ the batch stats/shop lookups in toListingRows) whatever the catalog size.
+     * Price is the listing price (lowest active variant price); products without an active variant have none
+     * and are not listed.
+     */
+    private Page<Product> findListingPage(Long sellerId, Long categoryId, Long minPrice, Long maxPrice,
+                                          Integer minRating, String nameQuery, String sort, int page, int size) {
+        PagedJpqlQuery q = new PagedJpqlQuery("COUNT(p)", "FROM Product p JOIN ProductStats s ON s.productId = p.id")
+                .fetchJoin("JOIN FETCH p.seller JOIN FETCH p.category")
+                .where("p.isDelete = false")
+                .where("s.minPrice IS NOT NULL");
+        if (sellerId != null) q.where("p.seller.id = :sellerId", "sellerId", sellerId);
+        if (categoryId != null && categoryId > 0) q.where("p.category.id = :categoryId", "categoryId", categoryId);
+        if (minPrice != null) q.where("s.minPrice >= :minPrice", "minPrice", minPrice);
+        if (maxPrice != null) q.where("s.minPrice <= :maxPrice", "maxPrice", maxPrice);
+        // average >= minRating without dividing: ratingSum >= minRating * ratingCount
+        if (minRating != null && minRating > 0) {
+            q.where("s.ratingCount > 0 AND s.ratingSum >= :minRating * s.ratingCount", "minRating", minRating.longValue());
+        }
+        if (nameQuery != null && !nameQuery.isBlank()) {
+            q.where("LOWER(p.name) LIKE :nameQuery", "nameQuery", "%" + nameQuery.toLowerCase().trim() + "%");
         }
 
-        // In-memory sorting: price, rating, newest
         if ("price-low-to-high".equalsIgnoreCase(sort)) {
-            result.sort(Comparator.comparingLong(a -> (Long) a.get("price")));
+            q.orderBy("s.minPrice ASC, p.id DESC");
         } else if ("price-high-to-low".equalsIgnoreCase(sort)) {
-            result.sort((a, b) -> Long.compare((Long) b.get("price"), (Long) a.get("price")));
+            q.orderBy("s.minPrice DESC, p.id DESC");
         } else if ("rating".equalsIgnoreCase(sort)) {
-            result.sort((a, b) -> Double.compare((Double) b.get("averageRating"), (Double) a.get("averageRating")));
-        } else { // newest default - requires product.createdAt
-            result.sort((a, b) -> {
-                Product pa = (Product) a.get("product");
-                Product pb = (Product) b.get("product");
-                Comparable ca = (Comparable) (pa.getCreatedAt() != null ? pa.getCreatedAt() : 0);
-                Comparable cb = (Comparable) (pb.getCreatedAt() != null ? pb.getCreatedAt() : 0);
-                return cb.compareTo(ca);
-            });
+            q.orderBy("CASE WHEN s.ratingCount > 0 THEN s.ratingSum * 1.0 / s.ratingCount ELSE 0 END DESC, s.ratingCount DESC, p.id DESC");
+        } else if ("best-selling".equalsIgnoreCase(sort)) {
+            q.orderBy("s.soldCount DESC, p.id DESC");
+        } else { // newest
+            q.orderBy("p.createdAt DESC, p.id DESC");
         }
+        return q.fetch(entityManager, "p", Product.class, page, size);
+    }
 
-        return result;
+    public List<Map<String, Object>> getTopSellingProducts(int limit) {
+        List<Product> products = productRepository.findTopSellingProducts(PageRequest.of(0, limit));
+        return toListingRows(products);
+    }
+
+    public List<Map<String, Object>> getProductsByCategory(Long categoryId, Long minPrice, Long maxPrice, String sort, Integer minRating) {
+        if (sort == null || sort.isBlank()) sort = "newest";
+        List<Product> products = findListingPage(null, categoryId, minPrice, maxPrice, minRating, null, sort, 0, 20).getContent();
+        return toListingRows(products);
     }
 
     // New method with pagination support
     public Map<String, Object> getProductsByCategoryWithPagination(Long categoryId, Long minPrice, Long maxPrice,
                                                                      String sort, Integer minRating, int page, int size) {
-        // Defaults
-        if (minPrice == null) minPrice = 0L;
-        if (maxPrice == null) maxPrice = 999999999L; // Set to very high value
         if (sort == null || sort.isBlank()) sort = "newest";
-        if (minRating == null) minRating = 0;
-
-        // Fetch ALL products first (needed for rating filter and sorting)
-        PageRequest fetchAll = PageRequest.of(0, 1000); // Fetch up to 1000 products
-
-        List<Product> products;
-        if (categoryId == null || categoryId <= 0) {
-            products = productRepository.findAllProducts(minPrice, maxPrice, fetchAll);
-        } else {
-            products = productRepository.findByCategoryId(categoryId, minPrice, maxPrice, fetchAll);
-        }
-
-        // Build result with aggregates
-        List<Map<String, Object>> allResults = new ArrayList<>();
-        for (Product p : products) {
-            Map<String, Object> map = new HashMap<>();
-            map.put("product", p);
-
-            List<ProductVariant> variants = productVariantRepository.findByProductIdAndIsDeleteFalse(p.getId());
-            Long price = !variants.isEmpty() ? variants.get(0).getPrice() : 0L;
-            map.put("price", price);
-
-            Long totalSold = productRepository.getTotalSoldForProduct(p.getId());
-            map.put("totalSold", totalSold != null ? totalSold : 0);
-
-            Double avgRating = reviewRepository.getAverageRatingByProduct(p.getId());
-            map.put("averageRating", avgRating != null ? avgRating : 0.0);
-
-            map.put("shopName", resolveShopName(p));
-
-            allResults.add(map);
-        }
 
-        // Filter by minimum rating
-        int minRatingVal = (minRating != null) ? minRating : 0;
-        if (minRatingVal > 0) {
-            final int finalMinRating = minRatingVal;
-            allResults.removeIf(item -> ((Double) item.get("averageRating")) < finalMinRating);
-        }
-
-        // In-memory sorting
-        if ("price-low-to-high".equalsIgnoreCase(sort)) {
-            allResults.sort(Comparator.comparingLong(a -> (Long) a.get("price")));
-        } else if ("price-high-to-low".equalsIgnoreCase(sort)) {
-            allResults.sort((a, b) -> Long.compare((Long) b.get("price"), (Long) a.get("price")));
-        } else if ("rating".equalsIgnoreCase(sort)) {
-            allResults.sort((a, b) -> Double.compare((Double) b.get("averageRating"), (Double) a.get("averageRating")));
-        } else { // newest default
-            allResults.sort((a, b) -> {
-                Product pa = (Product) a.get("product");
-                Product pb = (Product) b.get("product");
-                Comparable ca = (Comparable) (pa.getCreatedAt() != null ? pa.getCreatedAt() : 0);
-                Comparable cb = (Comparable) (pb.getCreatedAt() != null ? pb.getCreatedAt() : 0);
-                return cb.compareTo(ca);
-            });
-        }
-
-        // Apply pagination manually
-        int totalElements = allResults.size();
-        int totalPages = (int) Math.ceil((double) totalElements / size);
-        int startIndex = page * size;
-        int endIndex = Math.min(startIndex + size, totalElements);
-
-        List<Map<String, Object>> pagedResults = new ArrayList<>();
-        if (startIndex < totalElements) {
-            pagedResults = allResults.subList(startIndex, endIndex);
-        }
+        Page<Product> productPage = findListingPage(null, categoryId, minPrice, maxPrice, minRating, null, sort, page, size);
 
         // Build response
         Map<String, Object> response = new HashMap<>();
-        response.put("content", pagedResults);
-        response.put("totalElements", totalElements);
-        response.put("totalPages", totalPages);
+        response.put("content", toListingRows(productPage.getContent()));
+        response.put("totalElements", (int) productPage.getTotalElements());
+        response.put("totalPages", productPage.getTotalPages());
         response.put("currentPage", page);
         response.put("pageSize", size);
-
-        // Debug logging
-        System.out.println("=== PAGINATION DEBUG ===");
-        System.out.println("Total Elements: " + totalElements);
-        System.out.println("Total Pages: " + totalPages);
-        System.out.println("Current Page: " + page);
-        System.out.println("Page Size: " + size);
-        System.out.println("Paged Results: " + pagedResults.size());
-        System.out.println("========================");
-
         return response;
     }
 
     public List<Map<String, Object>> getProductsBySeller(Long sellerId) {
         List<Product> products = productRepository.findBySellerId(sellerId);
-        List<Map<String, Object>> result = new ArrayList<>();
-        for (Product p : products) {
-            Map<String, Object> map = new HashMap<>();
-            map.put("product", p);
-
-            List<ProductVariant> variants = productVariantRepository.findByProductIdAndIsDeleteFalse(p.getId());
-            Long price = !variants.isEmpty() ? variants.get(0).getPrice() : 0L;
-            map.put("price", price);
-
-            Long totalSold = productRepository.getTotalSoldForProduct(p.getId());
-            map.put("totalSold", totalSold != null ? totalSold : 0);
-
-            Double avgRating = reviewRepository.getAverageRatingByProduct(p.getId());
-            map.put("averageRating", avgRating != null ? avgRating : 0.0);
-
-            // replace old fallback "Unknown Shop"
-            map.put("shopName", resolveShopName(p));
-
-            result.add(map);
-        }
-        return result;
+        return toListingRows(products);
     }
 
     public Map<String, Object> getSellerProductsWithFilters(Long sellerId,
@@ -295,91 +223,16 @@ public class ProductService {
                                                                   String query,
                                                                   int page,
                                                                   int size) {
-        if (minPrice == null) minPrice = 0L;
-        if (maxPrice == null) maxPrice = 999999999L; // Set to very high value to include all products
         if (sort == null || sort.isBlank()) sort = "newest";
-        if (minRating == null) minRating = 0;
 
-        // Fetch all products first for filtering
-        PageRequest pageRequest = PageRequest.of(0, 1000);
-
-        List<Product> products;
-        if (categoryId == null || categoryId <= 0) {
-            products = productRepository.findBySellerWithPrice(sellerId, minPrice, maxPrice, pageRequest);
-        } else {
-            products = productRepository.findBySellerAndCategoryWithPrice(sellerId, categoryId, minPrice, maxPrice, pageRequest);
-        }
-
-        List<Map<String, Object>> result = new ArrayList<>();
-        for (Product p : products) {
-            Map<String, Object> map = new HashMap<>();
-            map.put("product", p);
-
-            List<ProductVariant> variants = productVariantRepository.findByProductIdAndIsDeleteFalse(p.getId());
-            Long price = !variants.isEmpty() ? variants.get(0).getPrice() : 0L;
-            map.put("price", price);
-
-            Long totalSold = productRepository.getTotalSoldForProduct(p.getId());
-            map.put("totalSold", totalSold != null ? totalSold : 0);
-
-            Double avgRating = reviewRepository.getAverageRatingByProduct(p.getId());
-            map.put("averageRating", avgRating != null ? avgRating : 0.0);
-
-            // replace old fallback "Unknown Shop"
-            map.put("shopName", resolveShopName(p));
-
-            result.add(map);
-        }
-
-        if (minRating != null && minRating > 0) {
-            int finalMin = minRating;
-            result.removeIf(item -> ((Double) item.get("averageRating")) < finalMin);
-        }
-
-        // Filter by text query (product name) if provided (case-insensitive)
-        if (query != null && !query.isBlank()) {
-            String qLower = query.toLowerCase().trim();
-            result.removeIf(item -> {
-                Product prod = (Product) item.get("product");
-                String name = prod.getName() != null ? prod.getName().toLowerCase() : "";
-                return !name.contains(qLower);
-            });
-        }
-
-        // In-memory sorting
-        if ("price-low-to-high".equalsIgnoreCase(sort)) {
-            result.sort(Comparator.comparingLong(a -> (Long) a.get("price")));
-        } else if ("price-high-to-low".equalsIgnoreCase(sort)) {
-            result.sort((a, b) -> Long.compare((Long) b.get("price"), (Long) a.get("price")));
-        } else if ("rating".equalsIgnoreCase(sort)) {
-            result.sort((a, b) -> Double.compare((Double) b.get("averageRating"), (Double) a.get("averageRating")));
-        } else { // newest
-            result.sort((a, b) -> {
-                Product pa = (Product) a.get("product");
-                Product pb = (Product) b.get("product");
-                Comparable ca = (Comparable) (pa.getCreatedAt() != null ? pa.getCreatedAt() : 0);
-                Comparable cb = (Comparable) (pb.getCreatedAt() != null ? pb.getCreatedAt() : 0);
-                return cb.compareTo(ca);
-            });
-        }
-
-        // Calculate pagination
-        int totalItems = result.size();
-        int totalPages = totalItems > 0 ? (int) Math.ceil((double) totalItems / size) : 0;
-        int start = page * size;
-        int end = Math.min(start + size, totalItems);
-
-        List<Map<String, Object>> paginatedResult = new ArrayList<>();
-        if (start < totalItems) {
-            paginatedResult = result.subList(start, end);
-        }
+        Page<Product> productPage = findListingPage(sellerId, categoryId, minPrice, maxPrice, minRating, query, sort, page, size);
 
         // Return map with products and pagination info
         Map<String, Object> response = new HashMap<>();
-        response.put("products", paginatedResult);
+        response.put("products", toListingRows(productPage.getContent()));
         response.put("currentPage", page);
-        response.put("totalPages", totalPages);
-        response.put("totalItems", totalItems);
+        response.put("totalPages", productPage.getTotalPages());
+        response.put("totalItems", (int) productPage.getTotalElements());
         response.put("pageSize", size);
 
         return response;
@@ -418,22 +271,19 @@ public class ProductService {
         // raw variants from DB
         List<ProductVariant> rawVariants = productVariantRepository.findByProductIdAndIsDeleteFalse(p.getId());
 
-        // build DTO list with stock and sold counted from ProductVariantAccount
+        // build DTO list: stock from the variant's counter, sold counted from ProductVariantAccount
         List<ProductVariantDto> variantsWithStock = new ArrayList<>();
         for (ProductVariant v : rawVariants) {
-            long stock = 0L;
+            long stock = v.getAvailableStock() != null ? v.getAvailableStock() : 0L;
             long sold = 0L;
-            try { stock = productVariantAccountRepository.countByVariant_IdAndIsDeleteFalseAndStatus(v.getId(), "Available"); } catch (Exception ignored) {}
             try { sold = productVariantAccountRepository.countByVariant_IdAndIsDeleteFalseAndStatus(v.getId(), "Sold"); } catch (Exception ignored) {}
             variantsWithStock.add(new ProductVariantDto(v.getId(), v.getVariantName(), v.getPrice(), stock, sold, v.isDelete()));
         }
         model.put("variants", variantsWithStock);
 
-        Long totalSold = productRepository.getTotalSoldForProduct(p.getId());
-        model.put("totalSold", totalSold != null ? totalSold : 0);
-
-        Double avgRating = reviewRepository.getAverageRatingByProduct(p.getId());
-        model.put("avgRating", avgRating != null ? Math.round(avgRating * 10.0) / 10.0 : 0.0);
+        ProductStats stats = productStatsService.getStats(p.getId());
+        model.put("totalSold", stats.getSoldCount());
+        model.put("avgRating", Math.round(stats.getAverageRating() * 10.0) / 10.0);
 
         List<com.mmo.entity.Review> reviews = reviewRepository.findByProductIdAndIsDeleteFalseOrderByCreatedAtDesc(p.getId());
         model.put("reviews", reviews);
@@ -457,8 +307,7 @@ public class ProductService {
         // NEW: seller total sold (count of Completed transactions across all products of this seller)
         Long shopTotalSold = 0L;
         if (p.getSeller() != null && p.getSeller().getId() != null) {
-            Long s = productRepository.getTotalSoldForSeller(p.getSeller().getId());
-            shopTotalSold = (s != null) ? s : 0L;
+            shopTotalSold = productStatsService.getSellerTotals(p.getSeller().getId()).soldCount();
         }
         model.put("shopTotalSold", shopTotalSold);
 
@@ -495,12 +344,8 @@ public class ProductService {
         // Collect candidates: prefer same category, add top selling as extras
         List<Product> candidates = new ArrayList<>();
         if (base.getCategory() != null) {
-            candidates.addAll(productRepository.findByCategoryId(
-                    base.getCategory().getId(),
-                    0L,
-                    500000L,
-                    PageRequest.of(0, Math.max(limit * 5, 20))
-            ));
+            candidates.addAll(findListingPage(null, base.getCategory().getId(), 0L, 500000L, null, null,
+                    "newest", 0, Math.max(limit * 5, 20)).getContent());
         }
         // add some top selling products as cross-category candidates
         candidates.addAll(productRepository.findTopSellingProducts(PageRequest.of(0, Math.max(limit * 3, 10))));
@@ -515,6 +360,9 @@ public class ProductService {
         List<Product> candidateList = new ArrayList<>(unique.values());
         if (candidateList.isEmpty()) return List.of();
 
+        Map<Long, ProductStats> stats = productStatsService.getStats(
+                candidateList.stream().map(Product::getId).collect(Collectors.toList()));
+
         // Compute score = 0.7 * nameSimilarity + 0.3 * categoryMatch
         String baseName = base.getName();
         List<Map.Entry<Product, Double>> scored = candidateList.stream().map(p -> {
@@ -529,9 +377,7 @@ public class ProductService {
         scored.sort((a, b) -> {
             int cmp = Double.compare(b.getValue(), a.getValue());
             if (cmp != 0) return cmp;
-            Long soldA = productRepository.getTotalSoldForProduct(a.getKey().getId());
-            Long soldB = productRepository.getTotalSoldForProduct(b.getKey().getId());
-            return Long.compare(soldB != null ? soldB : 0L, soldA != null ? soldA : 0L);
+            return Long.compare(stats.get(b.getKey().getId()).getSoldCount(), stats.get(a.getKey().getId()).getSoldCount());
         });
 
         // Build result maps for top 'limit' items
@@ -555,15 +401,10 @@ public class ProductService {
             if (relatedImg == null) relatedImg = placeholder;
             m.put("displayImage", relatedImg);
 
-            List<ProductVariant> variants = productVariantRepository.findByProductIdAndIsDeleteFalse(rp.getId());
-            Long price = variants.isEmpty() ? 0L : variants.get(0).getPrice();
-            m.put("price", price);
-
-            Double ar = reviewRepository.getAverageRatingByProduct(rp.getId());
-            m.put("averageRating", ar != null ? Math.round(ar * 10.0) / 10.0 : 0.0);
-
-            Long totalSold = productRepository.getTotalSoldForProduct(rp.getId());
-            m.put("totalSold", totalSold != null ? totalSold : 0);
+            ProductStats st = stats.get(rp.getId());
+            m.put("price", st.getMinPrice() != null ? st.getMinPrice() : 0L);
+            m.put("averageRating", Math.round(st.getAverageRating() * 10.0) / 10.0);
+            m.put("totalSold", st.getSoldCount());
 
             related.add(m);
         }
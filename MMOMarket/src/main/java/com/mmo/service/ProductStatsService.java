@@ -0,0 +1,128 @@
+package com.mmo.service;
+
+import com.mmo.entity.ProductStats;
+import com.mmo.repository.ProductStatsRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.*;
+
+/**
+ * Maintains the ProductStats counters (sold count, rating sum/count, min variant price, available stock).
+ * Write methods join the caller's transaction so a counter only moves when the purchase/review/variant
+ * change that caused it commits. A nightly job recomputes everything from the source tables to repair drift.
+ */
+@Service
+public class ProductStatsService {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductStatsService.class);
+
+    private static final long RECONCILE_CHUNK = 500L;
+
+    private final ProductStatsRepository productStatsRepository;
+
+    public ProductStatsService(ProductStatsRepository productStatsRepository) {
+        this.productStatsRepository = productStatsRepository;
+    }
+
+    public record SellerTotals(long soldCount, long ratingSum, long ratingCount) {
+        public double averageRating() {
+            return ratingCount > 0 ? (double) ratingSum / ratingCount : 0.0;
+        }
+    }
+
+    // Escrow released -> transactions COMPLETED (the release job passes one count per product per chunk)
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordCompletedSales(Long productId, long count) {
+        if (productId == null || count <= 0) return;
+        productStatsRepository.ensureRow(productId);
+        productStatsRepository.addSold(productId, count);
+    }
+
+    // Accounts moved from Available to Sold by the buy listener
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordAccountsSold(Long productId, long quantity) {
+        if (productId == null || quantity <= 0) return;
+        productStatsRepository.ensureRow(productId);
+        productStatsRepository.addStock(productId, -quantity);
+    }
+
+    @Transactional
+    public void recordReviewAdded(Long productId, int rating) {
+        if (productId == null) return;
+        productStatsRepository.ensureRow(productId);
+        productStatsRepository.addRating(productId, rating, 1L);
+    }
+
+    @Transactional
+    public void recordReviewChanged(Long productId, int oldRating, int newRating) {
+        if (productId == null || oldRating == newRating) return;
+        productStatsRepository.ensureRow(productId);
+        productStatsRepository.addRating(productId, (long) newRating - oldRating, 0L);
+    }
+
+    // Variant created/repriced/hidden or accounts uploaded/deleted: re-derive price and stock from the source rows
+    @Transactional
+    public void refreshInventory(Long productId) {
+        if (productId == null) return;
+        productStatsRepository.ensureRow(productId);
+        productStatsRepository.refreshInventory(productId);
+    }
+
+    // Missing rows (products never sold/reviewed and not yet reconciled) come back as zeroed stats
+    @Transactional(readOnly = true)
+    public Map<Long, ProductStats> getStats(Collection<Long> productIds) {
+        Map<Long, ProductStats> out = new HashMap<>();
+        if (productIds == null || productIds.isEmpty()) return out;
+        for (ProductStats s : productStatsRepository.findByProductIdIn(new HashSet<>(productIds))) {
+            out.put(s.getProductId(), s);
+        }
+        for (Long id : productIds) {
+            if (id != null) out.putIfAbsent(id, new ProductStats(id));
+        }
+        return out;
+    }
+
+    @Transactional(readOnly = true)
+    public ProductStats getStats(Long productId) {
+        if (productId == null) return new ProductStats();
+        return productStatsRepository.findById(productId).orElseGet(() -> new ProductStats(productId));
+    }
+
+    @Transactional(readOnly = true)
+    public Map<Long, SellerTotals> getSellerTotals(Collection<Long> sellerIds) {
+        Map<Long, SellerTotals> out = new HashMap<>();
+        if (sellerIds == null || sellerIds.isEmpty()) return out;
+        for (Object[] r : productStatsRepository.sumBySellerIds(new HashSet<>(sellerIds))) {
+            out.put(((Number) r[0]).longValue(), new SellerTotals(
+                    ((Number) r[1]).longValue(), ((Number) r[2]).longValue(), ((Number) r[3]).longValue()));
+        }
+        return out;
+    }
+
+    public SellerTotals getSellerTotals(Long sellerId) {
+        if (sellerId == null) return new SellerTotals(0L, 0L, 0L);
+        return getSellerTotals(List.of(sellerId)).getOrDefault(sellerId, new SellerTotals(0L, 0L, 0L));
+    }
+
+    // Nightly full recompute in id ranges; each range commits on its own so no statement locks the whole table
+    @Scheduled(cron = "${product-stats.reconcile-cron:0 30 3 * * *}")
+    public void reconcileAll() {
+        long start = System.currentTimeMillis();
+        try {
+            long maxId = productStatsRepository.findMaxProductId();
+            long rows = 0L;
+            for (long from = 0L; from < maxId; from += RECONCILE_CHUNK) {
+                rows += productStatsRepository.recomputeRange(from, Math.min(from + RECONCILE_CHUNK, maxId));
+            }
+            log.info("ProductStats reconciled up to product #{} ({} rows touched) in {} ms",
+                    maxId, rows, System.currentTimeMillis() - start);
+        } catch (Exception ex) {
+            log.error("ProductStats reconciliation failed: {}", ex.getMessage(), ex);
+        }
+    }
+}
@@ -1,22 +1,44 @@
 package com.mmo.service;
 
 import com.mmo.entity.ProductVariant;
-import com.mmo.entity.ProductVariantAccount;
 import com.mmo.entity.User;
-import jakarta.persistence.EntityManager;
-import jakarta.persistence.PersistenceContext;
+import com.mmo.repository.ProductVariantAccountRepository;
+import com.mmo.util.EncryptionUtil;
+import com.mmo.util.UsernameFingerprint;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.*;
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
 
 @Service
 public class ProductVariantAccountService {
 
-    @PersistenceContext
-    private EntityManager entityManager;
+    // Rows kept for the file preview; the totals still cover the whole file
+    private static final int PREVIEW_ROWS = 300;
+
+    // Fingerprints per duplicate lookup (size of the IN list)
+    private static final int LOOKUP_BATCH = 1000;
+
+    private static final String INSERT_SQL =
+            "INSERT INTO ProductVariantAccounts (variant_id, account_data, username_fp, status, is_activated, created_by, isDelete) " +
+            "VALUES (?, ?, ?, 'Available', 0, ?, 0)";
+
+    private final VariantStockService variantStockService;
+    private final ProductVariantAccountRepository productVariantAccountRepository;
+    private final JdbcTemplate jdbcTemplate;
+
+    public ProductVariantAccountService(VariantStockService variantStockService,
+                                        ProductVariantAccountRepository productVariantAccountRepository,
+                                        JdbcTemplate jdbcTemplate) {
+        this.variantStockService = variantStockService;
+        this.productVariantAccountRepository = productVariantAccountRepository;
+        this.jdbcTemplate = jdbcTemplate;
+    }
 
     // Generate a .csv template with headers: Account|Seri, Password|PIN
     public byte[] buildTemplateCsv() {
@@ -47,100 +69,107 @@ public class ProductVariantAccountService {
         if (invalidCount > 0) {
             throw new IllegalArgumentException("Data has " + invalidCount + " invalid row(s) where Account or Password is missing. Please fix and try again.");
         }
-        Set<String> existingUsernames = loadExistingUsernamesForCategory(variant);
-        int created = 0, skipped = 0;
+        // r.duplicate covers both repeats within the payload and accounts already in the category
+        List<String> toInsert = new ArrayList<>();
+        int skipped = 0;
         for (AccountRow r : normalized) {
-            String uname = usernameKey(r);
-            boolean isDup = r.duplicate || existingUsernames.contains(uname);
-            if (dedupe && isDup) { skipped++; continue; }
-            ProductVariantAccount acc = new ProductVariantAccount();
-            acc.setVariant(variant);
-            acc.setPlainAccountData(buildAccountData(r)); // Will be encrypted automatically
-            acc.setStatus("Available");
-            acc.setDelete(false);
-            acc.setCreatedBy(user.getId());
-            entityManager.persist(acc);
-            created++;
-            existingUsernames.add(uname);
+            if (dedupe && r.duplicate) { skipped++; continue; }
+            toInsert.add(buildAccountData(r));
         }
+        int created = insertAccounts(variant.getId(), user.getId(), toInsert);
         return new UploadResult(created, skipped);
     }
 
-    // Preview upload: parse file, mark duplicates/invalid, return summary rows (limited)
+    // Preview upload: stream the file, mark duplicates/invalid, return summary rows (limited to the first PREVIEW_ROWS)
     public PreviewResult previewUpload(User user, ProductVariant variant, MultipartFile file, boolean dedupe) throws IOException {
-        List<AccountRow> normalized = parseAndNormalize(file);
-        markDuplicatesByUsername(normalized, variant);
-        int invalidCount = 0;
-        for (AccountRow r : normalized) if (r.invalid) invalidCount++;
-        int max = Math.min(300, normalized.size());
-        List<PreviewRow> rows = new ArrayList<>(max);
-        int duplicateCount = 0;
-        for (int i = 0; i < max; i++) {
-            AccountRow r = normalized.get(i);
-            if (r.duplicate) duplicateCount++;
-            rows.add(new PreviewRow(nullToEmpty(r.username), nullToEmpty(r.password), r.duplicate, r.invalid, r.originalIndex));
-        }
-        if (normalized.size() > max) {
-            for (int i = max; i < normalized.size(); i++) if (normalized.get(i).duplicate) duplicateCount++;
+        checkCsvFile(file);
+        Long categoryId = categoryIdOf(variant);
+        Set<String> seenUsernames = new HashSet<>();
+        List<PreviewRow> rows = new ArrayList<>();
+        List<AccountCsvReader.Row> batch = new ArrayList<>(LOOKUP_BATCH);
+        int[] counts = new int[3]; // count, duplicateCount, invalidCount
+        try (AccountCsvReader reader = new AccountCsvReader(file.getInputStream())) {
+            AccountCsvReader.Row r;
+            while ((r = reader.next()) != null) {
+                batch.add(r);
+                if (batch.size() >= LOOKUP_BATCH) {
+                    previewBatch(categoryId, batch, seenUsernames, rows, counts);
+                    batch.clear();
+                }
+            }
         }
-        return new PreviewResult(normalized.size(), duplicateCount, invalidCount, rows);
+        previewBatch(categoryId, batch, seenUsernames, rows, counts);
+        return new PreviewResult(counts[0], counts[1], counts[2], rows);
     }
 
-    // Confirm upload: persist ProductVariantAccount entries (skip duplicates if dedupe). Block if invalid rows exist.
-    public UploadResult confirmUpload(User user, ProductVariant variant, MultipartFile file, boolean dedupe) throws IOException {
-        List<AccountRow> normalized = parseAndNormalize(file);
-        markDuplicatesByUsername(normalized, variant);
-        // Validate: both username and password are required per row
-        long invalidCount = normalized.stream().filter(r -> r.invalid).count();
-        if (invalidCount > 0) {
-            throw new IllegalArgumentException("File has " + invalidCount + " invalid row(s) where Account or Password is missing. Please fix and try again.");
+    private void previewBatch(Long categoryId, List<AccountCsvReader.Row> batch, Set<String> seenUsernames,
+                              List<PreviewRow> rows, int[] counts) {
+        if (batch.isEmpty()) return;
+        List<String> usernames = new ArrayList<>(batch.size());
+        for (AccountCsvReader.Row r : batch) usernames.add(r.username());
+        Set<String> existing = findExistingUsernames(categoryId, usernames);
+        for (AccountCsvReader.Row r : batch) {
+            counts[0]++;
+            boolean invalid = r.invalid();
+            // duplicate within the file itself or against the category (by username)
+            boolean duplicate = !r.username().isEmpty()
+                    && (!seenUsernames.add(r.username()) || existing.contains(r.username()));
+            if (invalid) counts[2]++;
+            if (duplicate) counts[1]++;
+            if (rows.size() < PREVIEW_ROWS) {
+                rows.add(new PreviewRow(r.username(), r.password(), duplicate, invalid, r.rowIndex()));
+            }
         }
-        // Load existing usernames for the entire category
-        Set<String> existingUsernames = loadExistingUsernamesForCategory(variant);
-        int created = 0;
-        int skipped = 0;
-        for (AccountRow r : normalized) {
-            String uname = usernameKey(r);
-            boolean isDup = r.duplicate || existingUsernames.contains(uname);
-            if (dedupe && isDup) { skipped++; continue; }
-            ProductVariantAccount acc = new ProductVariantAccount();
-            acc.setVariant(variant);
-            acc.setPlainAccountData(buildAccountData(r)); // Will be encrypted automatically
-            acc.setStatus("Available");
-            acc.setDelete(false);
-            acc.setCreatedBy(user.getId());
-            entityManager.persist(acc);
-            created++;
-            existingUsernames.add(uname); // avoid re-creating same username again in same batch
+    }
+
+    /**
+     * Usernames (of the given ones) that already exist on a non-deleted account anywhere in the category.
+     * Matches keyed fingerprints through idx_username_fp in IN-list batches, so nothing is decrypted.
+     */
+    public Set<String> findExistingUsernames(Long categoryId, Collection<String> usernames) {
+        Set<String> existing = new HashSet<>();
+        if (categoryId == null || usernames == null || usernames.isEmpty()) return existing;
+        Map<String, List<String>> byFingerprint = new HashMap<>();
+        for (String u : usernames) {
+            String fp = UsernameFingerprint.of(u);
+            if (fp != null) byFingerprint.computeIfAbsent(fp, k -> new ArrayList<>(1)).add(u);
+        }
+        List<String> fingerprints = new ArrayList<>(byFingerprint.keySet());
+        for (int from = 0; from < fingerprints.size(); from += LOOKUP_BATCH) {
+            List<String> slice = fingerprints.subList(from, Math.min(from + LOOKUP_BATCH, fingerprints.size()));
+            for (String fp : productVariantAccountRepository.findExistingFingerprints(categoryId, slice)) {
+                existing.addAll(byFingerprint.getOrDefault(fp, List.of()));
+            }
         }
-        return new UploadResult(created, skipped);
+        return existing;
+    }
+
+    /**
+     * Insert plain "username:password" entries as Available accounts of a variant with one JDBC batch.
+     * Encryption and the username fingerprint are CPU bound and run in parallel; the insert itself is a single batched statement
+     * (IDENTITY ids rule out Hibernate's insert batching). Runs in the caller's transaction, together with the stock counter.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public int insertAccounts(Long variantId, Long createdBy, List<String> plainData) {
+        if (plainData == null || plainData.isEmpty()) return 0;
+        List<String[]> encrypted = plainData.parallelStream()
+                .map(data -> new String[]{EncryptionUtil.encrypt(data), UsernameFingerprint.ofAccountData(data)})
+                .toList();
+        jdbcTemplate.batchUpdate(INSERT_SQL, encrypted, encrypted.size(), (ps, row) -> {
+            ps.setLong(1, variantId);
+            ps.setString(2, row[0]);
+            ps.setString(3, row[1]);
+            if (createdBy != null) ps.setLong(4, createdBy); else ps.setNull(4, java.sql.Types.BIGINT);
+        });
+        variantStockService.recordAdded(variantId, encrypted.size());
+        return encrypted.size();
     }
 
     // ===== Internal helpers =====
-    private List<AccountRow> parseAndNormalize(MultipartFile file) throws IOException {
+    static void checkCsvFile(MultipartFile file) throws IOException {
         if (file == null || file.isEmpty()) throw new IOException("No file uploaded");
         String name = file.getOriginalFilename() != null ? file.getOriginalFilename().toLowerCase() : "";
         if (!name.endsWith(".csv")) throw new IOException("Only .csv is accepted. Please use the provided CSV template.");
-        List<AccountRow> rows = parseCsv(file);
-        List<AccountRow> normalized = new ArrayList<>();
-        for (AccountRow r : rows) {
-            if (r == null) continue;
-            String u = safeTrim(r.username);
-            String p = safeTrim(r.password);
-            if ((u == null || u.isEmpty()) && (p == null || p.isEmpty())) continue; // ignore fully empty
-            AccountRow nr = new AccountRow(u, p, r.originalIndex);
-            // mark invalid if exactly one is missing
-            nr.invalid = (u == null || u.isEmpty()) ^ (p == null || p.isEmpty());
-            normalized.add(nr);
-        }
-        // mark duplicates within file itself (by username)
-        Set<String> seenUsernames = new HashSet<>();
-        for (AccountRow r : normalized) {
-            String uname = usernameKey(r);
-            if (uname.isEmpty()) continue; // invalid or empty, already flagged above
-            if (!seenUsernames.add(uname)) r.duplicate = true;
-        }
-        return normalized;
     }
 
     private List<AccountRow> normalizeRows(List<SimpleRow> rows) {
@@ -168,83 +197,22 @@ public class ProductVariantAccountService {
     }
 
     private void markDuplicatesByUsername(List<AccountRow> rows, ProductVariant variant) {
-        Set<String> existingUsernames = loadExistingUsernamesForCategory(variant);
+        List<String> usernames = new ArrayList<>(rows.size());
+        for (AccountRow r : rows) usernames.add(usernameKey(r));
+        Set<String> existingUsernames = findExistingUsernames(categoryIdOf(variant), usernames);
         for (AccountRow r : rows) {
             String uname = usernameKey(r);
             if (!uname.isEmpty() && existingUsernames.contains(uname)) r.duplicate = true;
         }
     }
 
-    /**
-     * Load existing usernames across the entire category (all products and variants in the same category)
-     */
-    private Set<String> loadExistingUsernamesForCategory(ProductVariant variant) {
+    // Duplicates are checked across the entire category (all products and variants in the same category)
+    private static Long categoryIdOf(ProductVariant variant) {
         try {
-            // Get the category ID from the variant's product
-            Long categoryId = variant.getProduct().getCategory().getId();
-
-            // Query all accounts across all variants in the same category
-            // Load entities to decrypt account data automatically
-            List<ProductVariantAccount> accounts = entityManager.createQuery(
-                    "select a from ProductVariantAccount a " +
-                    "where a.variant.product.category.id = :categoryId " +
-                    "and a.isDelete = false",
-                    ProductVariantAccount.class)
-                    .setParameter("categoryId", categoryId)
-                    .getResultList();
-
-            Set<String> usernames = new HashSet<>();
-            if (accounts != null) {
-                for (ProductVariantAccount acc : accounts) {
-                    String s = acc.getPlainAccountData(); // Automatically decrypted
-                    if (s == null) continue;
-                    int idx = s.indexOf(':');
-                    String u = idx >= 0 ? s.substring(0, idx) : s;
-                    if (u != null) usernames.add(u.trim());
-                }
-            }
-            return usernames;
+            return variant.getProduct().getCategory().getId();
         } catch (Exception e) {
-            return new HashSet<>();
-        }
-    }
-
-    private List<AccountRow> parseCsv(MultipartFile file) throws IOException {
-        List<AccountRow> out = new ArrayList<>();
-        try (BufferedReader br = new BufferedReader(new InputStreamReader(file.getInputStream(), StandardCharsets.UTF_8))) {
-            String header = br.readLine(); if (header == null) return out;
-            String[] cols = splitCsv(header);
-            int uIdx = -1; int pIdx = -1;
-            for (int i = 0; i < cols.length; i++) {
-                String c = normalizeHeader(cols[i]);
-                if (uIdx < 0 && isUsernameHeader(c)) uIdx = i;
-                if (pIdx < 0 && isPasswordHeader(c)) pIdx = i;
-            }
-            if (uIdx < 0 || pIdx < 0) return out;
-            String line; int rowIndex = 1; // data row index starting from 1 after header
-            while ((line = br.readLine()) != null) {
-                String[] arr = splitCsv(line);
-                String u = uIdx < arr.length ? arr[uIdx] : "";
-                String p = pIdx < arr.length ? arr[pIdx] : "";
-                out.add(new AccountRow(u, p, rowIndex));
-                rowIndex++;
-            }
+            return null;
         }
-        return out;
-    }
-
-    private String[] splitCsv(String line) {
-        List<String> cols = new ArrayList<>();
-        StringBuilder cur = new StringBuilder();
-        boolean inQ = false;
-        for (int i = 0; i < line.length(); i++) {
-            char ch = line.charAt(i);
-            if (ch == '"') { inQ = !inQ; continue; }
-            if (ch == ',' && !inQ) { cols.add(cur.toString()); cur.setLength(0); continue; }
-            cur.append(ch);
-        }
-        cols.add(cur.toString());
-        return cols.toArray(new String[0]);
     }
 
     private static String nullToEmpty(String s) { return s == null ? "" : s; }
@@ -252,24 +220,6 @@ public class ProductVariantAccountService {
     private static String usernameKey(AccountRow r){ return r.username==null? "" : r.username.trim(); }
     private static String buildAccountData(AccountRow r){ String u = r.username==null? "" : r.username.trim(); String p = r.password==null? "" : r.password.trim(); return u + ":" + p; }
 
-    // Header normalization and matching (accept Account|Seri and Password|PIN)
-    private String normalizeHeader(String s) {
-        if (s == null) return "";
-        String lower = s.toLowerCase(Locale.ROOT).trim();
-        StringBuilder sb = new StringBuilder(lower.length());
-        for (int i = 0; i < lower.length(); i++) {
-            char ch = lower.charAt(i);
-            if ((ch >= 'a' && ch <= 'z') || (ch >= '0' && ch <= '9')) sb.append(ch);
-        }
-        return sb.toString();
-    }
-    private boolean isUsernameHeader(String key) {
-        return key.equals("username") || key.equals("user") || key.equals("account") || key.equals("accounts") || key.equals("acc") || key.equals("seri") || key.equals("accountseri");
-    }
-    private boolean isPasswordHeader(String key) {
-        return key.equals("password") || key.equals("pass") || key.equals("pwd") || key.equals("pin") || key.equals("passwordpin");
-    }
-
     // Data holders
     private static class AccountRow { String username; String password; boolean duplicate; boolean invalid; int originalIndex; AccountRow(String u, String p, int idx){ this.username=u; this.password=p; this.duplicate=false; this.invalid=false; this.originalIndex = idx; } }
 
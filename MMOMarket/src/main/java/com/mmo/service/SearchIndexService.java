@@ -0,0 +1,368 @@
+package com.mmo.service;
+
+import com.mmo.entity.Product;
+import com.mmo.entity.ShopInfo;
+import com.mmo.mq.RabbitConfig;
+import com.mmo.mq.SearchIndexPublisher;
+import com.mmo.mq.dto.SearchIndexMessage;
+import jakarta.persistence.EntityManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * In-process inverted index over Product name/description and ShopInfo.shopName.
+ * Tokens are lower-cased and diacritic-folded (Vietnamese "điện thoại" matches "dien thoai"),
+ * and every query term is matched as a prefix of indexed tokens.
+ * The index is built on startup, updated incrementally from the seller flows and
+ * rebuilt periodically to pick up changes made by bulk/admin paths.
+ * Incremental changes are applied on this node right away and broadcast after commit over the
+ * search.index.updates fanout (SearchIndexPublisher/SearchIndexListener), so every node's index sees them.
+ * A rebuild scans without holding the lock; changes applied meanwhile are recorded and replayed into the
+ * fresh index under the write lock before the swap, so the rebuild cannot undo them.
+ */
+@Service
+public class SearchIndexService {
+
+    private static final Logger log = LoggerFactory.getLogger(SearchIndexService.class);
+
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern NON_ALNUM = Pattern.compile("[^a-z0-9]+");
+    private static final int LOAD_BATCH_SIZE = 1000;
+    // Terms shorter than this are matched exactly instead of as a prefix to avoid huge token scans
+    private static final int MIN_PREFIX_LENGTH = 2;
+
+    private static final int WEIGHT_NAME = 3;
+    private static final int WEIGHT_DESCRIPTION = 1;
+
+    private static final String KIND_PRODUCT = "product";
+    private static final String KIND_SHOP = "shop";
+
+    private final EntityManager em;
+    private final SearchIndexPublisher searchIndexPublisher;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Object rebuildLock = new Object();
+
+    private InvertedIndex products = new InvertedIndex();
+    private InvertedIndex shops = new InvertedIndex();
+
+    // Changes made while a rebuild scans (docId -> terms, null = removed); null when no rebuild runs. Guarded by lock
+    private Map<Long, Map<String, Integer>> productChanges;
+    private Map<Long, Map<String, Integer>> shopChanges;
+
+    public SearchIndexService(EntityManager em, SearchIndexPublisher searchIndexPublisher) {
+        this.em = em;
+        this.searchIndexPublisher = searchIndexPublisher;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        rebuild();
+    }
+
+    // Full rebuild repairs drift from paths that bypass the incremental hooks (bulk updates, admin bans)
+    @Scheduled(fixedDelayString = "${search.index.rebuild-interval-ms:1800000}",
+            initialDelayString = "${search.index.rebuild-interval-ms:1800000}")
+    public void scheduledRebuild() {
+        rebuild();
+    }
+
+    public void rebuild() {
+        synchronized (rebuildLock) {
+            lock.writeLock().lock();
+            try {
+                productChanges = new HashMap<>();
+                shopChanges = new HashMap<>();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            try {
+                rebuildFromDatabase();
+            } finally {
+                lock.writeLock().lock();
+                try {
+                    productChanges = null;
+                    shopChanges = null;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+        }
+    }
+
+    private void rebuildFromDatabase() {
+        long start = System.currentTimeMillis();
+        try {
+            InvertedIndex freshProducts = new InvertedIndex();
+            InvertedIndex freshShops = new InvertedIndex();
+
+            long lastId = 0L;
+            while (true) {
+                List<Object[]> rows = em.createQuery(
+                                "SELECT p.id, p.name, p.description FROM Product p " +
+                                        "WHERE p.isDelete = false AND p.id > :lastId ORDER BY p.id ASC", Object[].class)
+                        .setParameter("lastId", lastId)
+                        .setMaxResults(LOAD_BATCH_SIZE)
+                        .getResultList();
+                if (rows.isEmpty()) break;
+                for (Object[] r : rows) {
+                    Long id = (Long) r[0];
+                    freshProducts.put(id, productTerms((String) r[1], (String) r[2]));
+                    lastId = id;
+                }
+                if (rows.size() < LOAD_BATCH_SIZE) break;
+            }
+
+            lastId = 0L;
+            while (true) {
+                List<Object[]> rows = em.createQuery(
+                                "SELECT s.id, s.shopName FROM ShopInfo s " +
+                                        "WHERE s.isDelete = false AND s.id > :lastId ORDER BY s.id ASC", Object[].class)
+                        .setParameter("lastId", lastId)
+                        .setMaxResults(LOAD_BATCH_SIZE)
+                        .getResultList();
+                if (rows.isEmpty()) break;
+                for (Object[] r : rows) {
+                    Long id = (Long) r[0];
+                    freshShops.put(id, shopTerms((String) r[1]));
+                    lastId = id;
+                }
+                if (rows.size() < LOAD_BATCH_SIZE) break;
+            }
+
+            lock.writeLock().lock();
+            try {
+                // The scan may predate these changes: the latest change per document wins
+                replay(productChanges, freshProducts);
+                replay(shopChanges, freshShops);
+                products = freshProducts;
+                shops = freshShops;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            log.info("Search index rebuilt: {} products, {} shops in {} ms",
+                    freshProducts.size(), freshShops.size(), System.currentTimeMillis() - start);
+        } catch (Exception ex) {
+            log.error("Search index rebuild failed, keeping previous index", ex);
+        }
+    }
+
+    public void indexProduct(Product p) {
+        if (p == null || p.getId() == null) return;
+        if (p.isDelete()) {
+            removeProduct(p.getId());
+            return;
+        }
+        applyProduct(p.getId(), productTerms(p.getName(), p.getDescription()));
+        broadcast(new SearchIndexMessage(RabbitConfig.NODE_ID, KIND_PRODUCT, p.getId(), false,
+                p.getName(), p.getDescription()));
+    }
+
+    public void removeProduct(Long productId) {
+        if (productId == null) return;
+        applyProduct(productId, null);
+        broadcast(new SearchIndexMessage(RabbitConfig.NODE_ID, KIND_PRODUCT, productId, true, null, null));
+    }
+
+    public void indexShop(ShopInfo s) {
+        if (s == null || s.getId() == null) return;
+        if (s.isDelete()) {
+            removeShop(s.getId());
+            return;
+        }
+        applyShop(s.getId(), shopTerms(s.getShopName()));
+        broadcast(new SearchIndexMessage(RabbitConfig.NODE_ID, KIND_SHOP, s.getId(), false, s.getShopName(), null));
+    }
+
+    public void removeShop(Long shopId) {
+        if (shopId == null) return;
+        applyShop(shopId, null);
+        broadcast(new SearchIndexMessage(RabbitConfig.NODE_ID, KIND_SHOP, shopId, true, null, null));
+    }
+
+    // A change broadcast by another node (SearchIndexListener): apply it here without broadcasting again
+    public void applyRemote(SearchIndexMessage msg) {
+        if (msg.id() == null) return;
+        if (KIND_PRODUCT.equals(msg.kind())) {
+            applyProduct(msg.id(), msg.removed() ? null : productTerms(msg.name(), msg.description()));
+        } else if (KIND_SHOP.equals(msg.kind())) {
+            applyShop(msg.id(), msg.removed() ? null : shopTerms(msg.name()));
+        }
+    }
+
+    // terms == null removes the document
+    private void applyProduct(Long productId, Map<String, Integer> terms) {
+        lock.writeLock().lock();
+        try {
+            apply(products, productId, terms);
+            if (productChanges != null) productChanges.put(productId, terms);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void applyShop(Long shopId, Map<String, Integer> terms) {
+        lock.writeLock().lock();
+        try {
+            apply(shops, shopId, terms);
+            if (shopChanges != null) shopChanges.put(shopId, terms);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static void apply(InvertedIndex index, Long docId, Map<String, Integer> terms) {
+        if (terms == null) index.remove(docId);
+        else index.put(docId, terms);
+    }
+
+    private static void replay(Map<Long, Map<String, Integer>> changes, InvertedIndex index) {
+        if (changes == null) return;
+        changes.forEach((docId, terms) -> apply(index, docId, terms));
+    }
+
+    // Other nodes only hear about the change once it is committed
+    private void broadcast(SearchIndexMessage msg) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    searchIndexPublisher.publish(msg);
+                }
+            });
+        } else {
+            searchIndexPublisher.publish(msg);
+        }
+    }
+
+    // Returns product ids ordered by relevance (best first)
+    public List<Long> searchProductIds(String q, int limit) {
+        List<String> terms = tokenize(q);
+        if (terms.isEmpty()) return Collections.emptyList();
+        lock.readLock().lock();
+        try {
+            return products.search(terms, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Returns shop ids ordered by relevance (best first)
+    public List<Long> searchShopIds(String q, int limit) {
+        List<String> terms = tokenize(q);
+        if (terms.isEmpty()) return Collections.emptyList();
+        lock.readLock().lock();
+        try {
+            return shops.search(terms, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static Map<String, Integer> productTerms(String name, String description) {
+        Map<String, Integer> terms = new HashMap<>();
+        for (String t : tokenize(name)) terms.merge(t, WEIGHT_NAME, Integer::sum);
+        for (String t : tokenize(description)) terms.merge(t, WEIGHT_DESCRIPTION, Integer::sum);
+        return terms;
+    }
+
+    private static Map<String, Integer> shopTerms(String shopName) {
+        Map<String, Integer> terms = new HashMap<>();
+        for (String t : tokenize(shopName)) terms.merge(t, WEIGHT_NAME, Integer::sum);
+        return terms;
+    }
+
+    // Lower-case, strip diacritics (including Vietnamese đ) and split on anything that is not a letter/digit
+    static List<String> tokenize(String text) {
+        if (text == null || text.isBlank()) return Collections.emptyList();
+        String folded = Normalizer.normalize(text, Normalizer.Form.NFD);
+        folded = COMBINING_MARKS.matcher(folded).replaceAll("");
+        folded = folded.replace('đ', 'd').replace('Đ', 'D').toLowerCase(Locale.ROOT);
+        List<String> out = new ArrayList<>();
+        for (String t : NON_ALNUM.split(folded)) {
+            if (!t.isEmpty()) out.add(t);
+        }
+        return out;
+    }
+
+    private static final class InvertedIndex {
+        // token -> (docId -> weight); sorted so prefix lookups are a subMap range scan
+        private final NavigableMap<String, Map<Long, Integer>> postings = new TreeMap<>();
+        private final Map<Long, Set<String>> docTokens = new HashMap<>();
+
+        int size() {
+            return docTokens.size();
+        }
+
+        void put(Long docId, Map<String, Integer> terms) {
+            remove(docId);
+            if (terms.isEmpty()) return;
+            for (Map.Entry<String, Integer> e : terms.entrySet()) {
+                postings.computeIfAbsent(e.getKey(), k -> new HashMap<>()).put(docId, e.getValue());
+            }
+            docTokens.put(docId, new HashSet<>(terms.keySet()));
+        }
+
+        void remove(Long docId) {
+            Set<String> tokens = docTokens.remove(docId);
+            if (tokens == null) return;
+            for (String t : tokens) {
+                Map<Long, Integer> docs = postings.get(t);
+                if (docs == null) continue;
+                docs.remove(docId);
+                if (docs.isEmpty()) postings.remove(t);
+            }
+        }
+
+        // Every term must match (AND); score = sum of matched token weights, exact matches boosted
+        List<Long> search(List<String> terms, int limit) {
+            Map<Long, Integer> scores = null;
+            for (String term : terms) {
+                Map<Long, Integer> termScores = new HashMap<>();
+                Map<String, Map<Long, Integer>> matches = term.length() < MIN_PREFIX_LENGTH
+                        ? exact(term)
+                        : postings.subMap(term, true, term + Character.MAX_VALUE, false);
+                for (Map.Entry<String, Map<Long, Integer>> m : matches.entrySet()) {
+                    boolean exact = m.getKey().length() == term.length();
+                    for (Map.Entry<Long, Integer> d : m.getValue().entrySet()) {
+                        int w = exact ? d.getValue() * 2 : d.getValue();
+                        termScores.merge(d.getKey(), w, Integer::sum);
+                    }
+                }
+                if (scores == null) {
+                    scores = termScores;
+                } else {
+                    scores.keySet().retainAll(termScores.keySet());
+                    for (Map.Entry<Long, Integer> e : scores.entrySet()) {
+                        e.setValue(e.getValue() + termScores.get(e.getKey()));
+                    }
+                }
+                if (scores.isEmpty()) return Collections.emptyList();
+            }
+            List<Map.Entry<Long, Integer>> ranked = new ArrayList<>(scores.entrySet());
+            // Higher score first, newer (higher id) first on ties
+            ranked.sort((a, b) -> {
+                int c = Integer.compare(b.getValue(), a.getValue());
+                return c != 0 ? c : Long.compare(b.getKey(), a.getKey());
+            });
+            List<Long> ids = new ArrayList<>(Math.min(limit, ranked.size()));
+            for (int i = 0; i < ranked.size() && i < limit; i++) ids.add(ranked.get(i).getKey());
+            return ids;
+        }
+
+        private Map<String, Map<Long, Integer>> exact(String term) {
+            Map<Long, Integer> docs = postings.get(term);
+            return docs == null ? Collections.emptyMap() : Map.of(term, docs);
+        }
+    }
+}
@@ -1,16 +1,17 @@
 package com.mmo.service;
 
+import com.mmo.dto.ProductSearchCard;
+import com.mmo.dto.ShopSearchCard;
+import com.mmo.entity.ProductStats;
 import com.mmo.entity.User;
-import com.mmo.entity.Product;
-import com.mmo.entity.ShopInfo;
+import com.mmo.repository.ProductRepository;
+import com.mmo.repository.ShopInfoRepository;
 import com.mmo.repository.UserRepository;
-import jakarta.persistence.EntityManager;
-import jakarta.persistence.TypedQuery;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.function.Function;
 
 @Service
 public class SearchService {
@@ -18,11 +19,21 @@ public class SearchService {
     private static final Logger log = LoggerFactory.getLogger(SearchService.class);
 
     private final UserRepository userRepository;
-    private final EntityManager em;
-
-    public SearchService(UserRepository userRepository, EntityManager em) {
+    private final SearchIndexService searchIndexService;
+    private final ProductRepository productRepository;
+    private final ShopInfoRepository shopInfoRepository;
+    private final ProductStatsService productStatsService;
+
+    public SearchService(UserRepository userRepository,
+                         SearchIndexService searchIndexService,
+                         ProductRepository productRepository,
+                         ShopInfoRepository shopInfoRepository,
+                         ProductStatsService productStatsService) {
         this.userRepository = userRepository;
-        this.em = em;
+        this.searchIndexService = searchIndexService;
+        this.productRepository = productRepository;
+        this.shopInfoRepository = shopInfoRepository;
+        this.productStatsService = productStatsService;
     }
 
     // search history persistence disabled — keep method as no-op so callers (if any) don't fail
@@ -35,100 +46,65 @@ public class SearchService {
         return Collections.emptyList();
     }
 
-    // Removed @Transactional: run search without opening a Spring transaction to avoid rollback-only issues
-    public Map<String, List<?>> searchProductsAndShops(String q, int maxResults) {
-        Map<String, List<?>> res = new HashMap<>();
-        if (q == null || q.trim().isEmpty()) {
-            res.put("products", Collections.emptyList());
-            res.put("shops", Collections.emptyList());
-            return res;
-        }
-        String pattern = "%" + q.trim().toLowerCase() + "%";
-
-        List<Product> products = Collections.emptyList();
-        List<ShopInfo> shops = Collections.emptyList();
-
+    // Removed @Transactional: run search without opening a Spring transaction to avoid rollback-only issues.
+    // Cost is constant per page: one index lookup, one projection query and one ProductStats lookup.
+    public List<ProductSearchCard> searchProductCards(String q, int maxResults) {
+        if (q == null || q.trim().isEmpty()) return Collections.emptyList();
         // Defensive: any error must not bubble and mark a transaction rollback-only
         try {
-            products = tryProductSearch(pattern, maxResults);
+            List<Long> ids = searchIndexService.searchProductIds(q, maxResults);
+            if (ids.isEmpty()) return Collections.emptyList();
+            List<ProductSearchCard> cards = orderByIds(productRepository.findSearchCardsByIds(ids), ids, ProductSearchCard::getId);
+
+            Map<Long, ProductStats> stats = productStatsService.getStats(ids);
+            for (ProductSearchCard c : cards) {
+                ProductStats st = stats.get(c.getId());
+                c.setPrice(st.getMinPrice() != null ? st.getMinPrice() : 0L);
+                c.setTotalSold(st.getSoldCount());
+                c.setAverageRating(Math.round(st.getAverageRating() * 10.0) / 10.0);
+            }
+            return cards;
         } catch (Throwable ex) {
             // log and continue with empty products
             log.error("Product search failed (safe fallback to empty list). Query: '{}'", q, ex);
-            products = Collections.emptyList();
-        }
-
-        try {
-            TypedQuery<ShopInfo> sq = em.createQuery(
-                    "SELECT s FROM ShopInfo s WHERE LOWER(s.shopName) LIKE :pat AND (s.isDelete = false OR s.isDelete IS NULL)",
-                    ShopInfo.class);
-            sq.setParameter("pat", pattern);
-            sq.setMaxResults(maxResults);
-            shops = sq.getResultList();
-        } catch (Throwable ex) {
-            log.error("Shop search failed (safe fallback to empty list). Query: '{}'", q, ex);
-            shops = Collections.emptyList();
+            return Collections.emptyList();
         }
-
-        res.put("products", products);
-        res.put("shops", shops);
-        return res;
     }
 
-    // Helper: try multiple candidate field names for product title/name and description
-    private List<Product> tryProductSearch(String pattern, int maxResults) {
-        List<String> titleCandidates = Arrays.asList("title", "name", "productName", "product_title", "productNameVn");
-        List<String> descCandidates = Arrays.asList("description", "shortDescription", "detail", "content", "desc");
-
-        // use JPA metamodel to check attribute presence before executing JPQL
-        for (String t : titleCandidates) {
-            for (String d : descCandidates) {
-                boolean hasT = hasAttributeOnProduct(t);
-                boolean hasD = hasAttributeOnProduct(d);
-                if (!hasT && !hasD) {
-                    continue; // skip if neither attribute exists
-                }
-
-                // build JPQL with only attributes that exist to avoid referencing non-existent paths
-                StringBuilder where = new StringBuilder("SELECT p FROM Product p WHERE (");
-                boolean firstClause = true;
-                if (hasT) {
-                    where.append("LOWER(p.").append(t).append(") LIKE :pat");
-                    firstClause = false;
-                }
-                if (hasD) {
-                    if (!firstClause) where.append(" OR ");
-                    where.append("LOWER(p.").append(d).append(") LIKE :pat");
-                }
-                where.append(") AND (p.isDelete = false OR p.isDelete IS NULL)");
+    public List<ShopSearchCard> searchShopCards(String q, int maxResults) {
+        if (q == null || q.trim().isEmpty()) return Collections.emptyList();
+        try {
+            List<Long> ids = searchIndexService.searchShopIds(q, maxResults);
+            if (ids.isEmpty()) return Collections.emptyList();
+            List<ShopSearchCard> cards = orderByIds(shopInfoRepository.findSearchCardsByIds(ids), ids, ShopSearchCard::getId);
 
-                String jpql = where.toString();
-                try {
-                    TypedQuery<Product> pq = em.createQuery(jpql, Product.class);
-                    pq.setParameter("pat", pattern);
-                    pq.setMaxResults(maxResults);
-                    return pq.getResultList();
-                } catch (Throwable ex) {
-                    // If execution still fails (very defensive), try next combination
-                    log.debug("Product JPQL execution failed for attributes [{} , {}]: {}", t, d, ex.toString());
-                }
+            Set<Long> sellerIds = new HashSet<>();
+            for (ShopSearchCard c : cards) {
+                if (c.getSellerId() != null) sellerIds.add(c.getSellerId());
+            }
+            if (sellerIds.isEmpty()) return cards;
+            Map<Long, ProductStatsService.SellerTotals> totals = productStatsService.getSellerTotals(sellerIds);
+            for (ShopSearchCard c : cards) {
+                ProductStatsService.SellerTotals t = totals.get(c.getSellerId());
+                c.setRatingAverage(t != null ? Math.round(t.averageRating() * 10.0) / 10.0 : 0.0);
+                c.setTotalSold(t != null ? t.soldCount() : 0L);
             }
+            return cards;
+        } catch (Throwable ex) {
+            log.error("Shop search failed (safe fallback to empty list). Query: '{}'", q, ex);
+            return Collections.emptyList();
         }
-        // No compatible field combination found or all queries returned nothing => safe empty list
-        return Collections.emptyList();
     }
 
-    // Null-safe check using JPA metamodel to ensure Product has that attribute
-    private boolean hasAttributeOnProduct(String attrName) {
-        if (attrName == null || attrName.isBlank()) return false;
-        try {
-            // defensive: getMetamodel may throw; catch Throwable at caller too
-            em.getMetamodel().entity(Product.class).getAttribute(attrName);
-            return true;
-        } catch (IllegalArgumentException ex) {
-            return false;
-        } catch (Throwable ex) {
-            log.debug("Metamodel attribute check failed for '{}': {}", attrName, ex.toString());
-            return false;
+    // Keep the relevance order returned by the index (IN queries come back in arbitrary order)
+    private static <T> List<T> orderByIds(List<T> rows, List<Long> ids, Function<T, Long> idOf) {
+        Map<Long, T> byId = new HashMap<>();
+        for (T row : rows) byId.put(idOf.apply(row), row);
+        List<T> ordered = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            T row = byId.get(id);
+            if (row != null) ordered.add(row);
         }
+        return ordered;
     }
 }
@@ -24,6 +24,8 @@ public class SepayWebhookService {
     private final UserRepository userRepository;
     private final CoinDepositRepository coinDepositRepository;
     private final NotificationRepository notificationRepository;
+    private final HeaderBadgeCache headerBadgeCache;
+    private final UserEventStreamService userEventStreamService;
 
     /**
      * Xử lý webhook nạp tiền từ SePay
@@ -105,6 +107,9 @@ public class SepayWebhookService {
             log.info("[SePay] Đã cập nhật số dư user: userId={}, {} -> {} (+{})",
                     user.getId(), oldBalance, newBalance, payload.getTransferAmount());
 
+            // Cập nhật số dư trên header theo thời gian thực (gửi sau khi transaction commit)
+            userEventStreamService.publishBalanceChanged(user.getId(), newBalance, payload.getTransferAmount());
+
         } catch (Exception e) {
             log.error("[SePay] Lỗi khi cập nhật số dư user: userId={}, sepayId={}",
                     user.getId(), sepayTransactionId, e);
@@ -142,6 +147,9 @@ public class SepayWebhookService {
         notification.setStatus("Unread");
         notification.setCreatedAt(new Date());
         notificationRepository.save(notification);
+        headerBadgeCache.invalidate(user.getId());
+        userEventStreamService.publishNotification(user.getId(), notification.getTitle(),
+                notification.getContent(), notification.getCreatedAt());
     }
 
     public User findUserByDepositCode(String depositCode) {
@@ -18,19 +18,28 @@ import java.lang.reflect.Method;
 @Service
 public class ShopService {
 
+    // Number of sellers shown in the homepage "Reputable Seller" section
+    private static final int REPUTABLE_SELLER_LIMIT = 3;
+
     private final UserRepository userRepository;
     private final ReviewRepository reviewRepository;
     private final ProductRepository productRepository;
     private final ShopInfoRepository shopInfoRepository;
+    private final SearchIndexService searchIndexService;
+    private final ProductStatsService productStatsService;
 
     public ShopService(UserRepository userRepository,
                        ReviewRepository reviewRepository,
                        ProductRepository productRepository,
-                       ShopInfoRepository shopInfoRepository) {
+                       ShopInfoRepository shopInfoRepository,
+                       SearchIndexService searchIndexService,
+                       ProductStatsService productStatsService) {
         this.userRepository = userRepository;
         this.reviewRepository = reviewRepository;
         this.productRepository = productRepository;
         this.shopInfoRepository = shopInfoRepository;
+        this.searchIndexService = searchIndexService;
+        this.productStatsService = productStatsService;
     }
 
     // Try to obtain review count for a product using common repository method names (safe reflection).
@@ -92,7 +101,13 @@ public class ShopService {
     public double getSellerAverageRating(Long sellerId) {
         if (sellerId == null) return 0.0;
 
-        // Primary: direct DB AVG over all reviews for this seller
+        // Primary: rating sum/count already aggregated in ProductStats
+        try {
+            ProductStatsService.SellerTotals totals = productStatsService.getSellerTotals(sellerId);
+            if (totals.ratingCount() > 0) return totals.averageRating();
+        } catch (Exception ignored) {}
+
+        // Fallback: direct DB AVG over all reviews for this seller
         try {
             Double avg = reviewRepository.getAverageRatingBySeller(sellerId);
             if (avg != null) return avg;
@@ -153,12 +168,27 @@ public class ShopService {
 
         List<Map<String, Object>> sellerData = new ArrayList<Map<String, Object>>();
         if (sellers != null && !sellers.isEmpty()) {
-            for (User seller : sellers) {
-                // Use centralized seller-level average across ALL reviews
-                double shopAvgRating = getSellerAverageRating(seller.getId());
+            // Seller-level sold/rating totals for every seller in one ProductStats query
+            Map<Long, ProductStatsService.SellerTotals> totalsBySeller = productStatsService.getSellerTotals(
+                    sellers.stream().map(User::getId).toList());
+            // Rank on the totals first so ShopInfo is only looked up for the sellers that are shown
+            List<User> ranked = new ArrayList<>(sellers);
+            ranked.sort((a, b) -> {
+                ProductStatsService.SellerTotals ta = totalsBySeller.get(a.getId());
+                ProductStatsService.SellerTotals tb = totalsBySeller.get(b.getId());
+                int bySold = Long.compare(tb != null ? tb.soldCount() : 0L, ta != null ? ta.soldCount() : 0L);
+                if (bySold != 0) return bySold;
+                return Double.compare(tb != null ? Math.round(tb.averageRating() * 10.0) / 10.0 : 0.0,
+                        ta != null ? Math.round(ta.averageRating() * 10.0) / 10.0 : 0.0);
+            });
+            if (ranked.size() > REPUTABLE_SELLER_LIMIT) {
+                ranked = ranked.subList(0, REPUTABLE_SELLER_LIMIT);
+            }
+            for (User seller : ranked) {
+                ProductStatsService.SellerTotals totals = totalsBySeller.get(seller.getId());
+                double shopAvgRating = totals != null ? totals.averageRating() : 0.0;
 
-                Long totalSold = productRepository.getTotalSoldForSeller(seller.getId());
-                if (totalSold == null) totalSold = 0L;
+                Long totalSold = totals != null ? totals.soldCount() : 0L;
                 double successRate = shopAvgRating > 4.0 ? 90.0 : shopAvgRating > 3.0 ? 70.0 : shopAvgRating > 2.0 ? 50.0 : 30.0;
 
                 // Prefer ShopInfo for shop metadata (primary + fallback)
@@ -216,7 +246,7 @@ public class ShopService {
 
         // 2) Fallback: native reputable sellers ranking if above returns nothing
         if (sellerData.isEmpty()) {
-            List<Object[]> rows = userRepository.findReputableSellers();
+            List<Object[]> rows = userRepository.findReputableSellers(REPUTABLE_SELLER_LIMIT);
             for (Object[] row : rows) {
                 Long userId = ((Number) row[0]).longValue();
                 // row[2]=totalProductsSold, row[3]=averageRating from native query
@@ -290,9 +320,9 @@ public class ShopService {
             return Double.compare((Double) b.get("ratingAverage"), (Double) a.get("ratingAverage"));
         });
 
-        // Keep only top 5
-        if (sellerData.size() > 3) {
-            sellerData = new ArrayList<>(sellerData.subList(0, 3));
+        // Keep only the top sellers
+        if (sellerData.size() > REPUTABLE_SELLER_LIMIT) {
+            sellerData = new ArrayList<>(sellerData.subList(0, REPUTABLE_SELLER_LIMIT));
         }
 
         return sellerData;
@@ -321,6 +351,7 @@ public class ShopService {
             shop.setDeletedBy(deletedByUser);
         }
         shopInfoRepository.save(shop);
+        searchIndexService.removeShop(shop.getId());
     }
 
     public org.springframework.data.domain.Page<com.mmo.dto.ShopResponse> getDeletedShops(org.springframework.data.domain.Pageable pageable) {
@@ -336,6 +367,7 @@ public class ShopService {
         shop.setDelete(false);
         shop.setDeletedBy(null);
         shopInfoRepository.save(shop);
+        searchIndexService.indexShop(shop);
     }
 
 }
@@ -2,13 +2,21 @@ package com.mmo.service;
 
 import com.mmo.entity.SystemConfiguration;
 import com.mmo.entity.User;
+import com.mmo.mq.ConfigInvalidationPublisher;
 import com.mmo.repository.SystemConfigurationRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static com.mmo.constant.SystemConfigKeys.*;
 
@@ -16,9 +24,86 @@ import static com.mmo.constant.SystemConfigKeys.*;
 public class SystemConfigurationService {
 
     private final SystemConfigurationRepository repo;
-
-    public SystemConfigurationService(SystemConfigurationRepository repo) {
+    private final ConfigInvalidationPublisher invalidationPublisher;
+
+    // Whole-table snapshot (the table holds a handful of rows): key -> parsed value. Null = not loaded.
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>();
+    // Bumped on every invalidation so a load that raced with an update is not installed
+    private final AtomicLong generation = new AtomicLong();
+    private final Counter cacheHits;
+    private final Counter cacheMisses;
+
+    // Safety net for missed broadcasts or manual DB edits
+    @Value("${system.config.cache-ttl-ms:300000}")
+    private long cacheTtlMs = 300_000L;
+
+    public SystemConfigurationService(SystemConfigurationRepository repo,
+                                      ConfigInvalidationPublisher invalidationPublisher,
+                                      MeterRegistry meterRegistry) {
         this.repo = repo;
+        this.invalidationPublisher = invalidationPublisher;
+        this.cacheHits = Counter.builder("system.config.cache")
+                .tag("result", "hit")
+                .description("System configuration reads served from memory")
+                .register(meterRegistry);
+        this.cacheMisses = Counter.builder("system.config.cache")
+                .tag("result", "miss")
+                .description("System configuration reads that reloaded from the database")
+                .register(meterRegistry);
+    }
+
+    private record CachedValue(String value, BigDecimal decimal) {
+        static CachedValue of(String raw) {
+            String v = (raw == null || raw.trim().isEmpty()) ? null : raw.trim();
+            BigDecimal bd = null;
+            if (v != null) {
+                try { bd = new BigDecimal(v).setScale(2, RoundingMode.HALF_UP); } catch (NumberFormatException ignored) {}
+            }
+            return new CachedValue(v, bd);
+        }
+    }
+
+    private record Snapshot(Map<String, CachedValue> values, long loadedAt) {}
+
+    private Map<String, CachedValue> cachedValues() {
+        Snapshot snap = snapshot.get();
+        if (snap != null && System.currentTimeMillis() - snap.loadedAt() < cacheTtlMs) {
+            cacheHits.increment();
+            return snap.values();
+        }
+        cacheMisses.increment();
+        long gen = generation.get();
+        Map<String, CachedValue> values = new HashMap<>();
+        for (SystemConfiguration sc : repo.findAll()) {
+            values.put(sc.getConfigKey(), CachedValue.of(sc.getConfigValue()));
+        }
+        Snapshot fresh = new Snapshot(Collections.unmodifiableMap(values), System.currentTimeMillis());
+        if (generation.get() == gen) {
+            snapshot.compareAndSet(snap, fresh);
+        }
+        return fresh.values();
+    }
+
+    // Drop this node's cached values (called locally and by the RabbitMQ broadcast listener)
+    public void invalidateLocal() {
+        generation.incrementAndGet();
+        snapshot.set(null);
+    }
+
+    // Invalidate once the surrounding transaction commits so no reader can re-cache the old rows
+    private void invalidateAfterCommit(List<String> keys) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    invalidateLocal();
+                    invalidationPublisher.publish(keys);
+                }
+            });
+        } else {
+            invalidateLocal();
+            invalidationPublisher.publish(keys);
+        }
     }
 
     public static class DefaultDef {
@@ -59,13 +144,11 @@ public class SystemConfigurationService {
         return repo.findById(key);
     }
 
-    // Helper getters for typed access
+    // Helper getters for typed access (served from the in-memory snapshot)
     public String getStringValue(String key, String fallback) {
         try {
-            return repo.findById(key).map(SystemConfiguration::getConfigValue)
-                    .filter(v -> v != null && !v.trim().isEmpty())
-                    .map(String::trim)
-                    .orElse(fallback);
+            CachedValue cv = cachedValues().get(key);
+            return cv != null && cv.value() != null ? cv.value() : fallback;
         } catch (Exception e) {
             return fallback;
         }
@@ -73,10 +156,8 @@ public class SystemConfigurationService {
 
     public BigDecimal getDecimalValue(String key, BigDecimal fallback) {
         try {
-            String v = repo.findById(key).map(SystemConfiguration::getConfigValue).orElse(null);
-            if (v == null || v.trim().isEmpty()) return fallback;
-            BigDecimal bd = new BigDecimal(v.trim()).setScale(2, RoundingMode.HALF_UP);
-            return bd;
+            CachedValue cv = cachedValues().get(key);
+            return cv != null && cv.decimal() != null ? cv.decimal() : fallback;
         } catch (Exception e) {
             return fallback;
         }
@@ -89,6 +170,7 @@ public class SystemConfigurationService {
     @Transactional
     public void ensureDefaults() {
         Map<String, SystemConfiguration> current = getAllAsMap();
+        List<String> touched = new ArrayList<>();
         for (DefaultDef def : DEFAULTS) {
             if (!current.containsKey(def.key)) {
                 SystemConfiguration sc = new SystemConfiguration();
@@ -97,15 +179,20 @@ public class SystemConfigurationService {
                 sc.setDescription(def.description);
                 sc.setValueType(def.valueType);
                 repo.save(sc);
+                touched.add(def.key);
             } else {
                 // ensure description/valueType are up to date if null
                 SystemConfiguration sc = current.get(def.key);
                 boolean changed = false;
                 if (sc.getDescription() == null || sc.getDescription().isBlank()) { sc.setDescription(def.description); changed = true; }
                 if (sc.getValueType() == null || sc.getValueType().isBlank()) { sc.setValueType(def.valueType); changed = true; }
-                if (changed) repo.save(sc);
+                if (changed) {
+                    repo.save(sc);
+                    touched.add(def.key);
+                }
             }
         }
+        if (!touched.isEmpty()) invalidateAfterCommit(touched);
     }
 
     @Transactional
@@ -114,6 +201,7 @@ public class SystemConfigurationService {
         Map<String, String> errors = new LinkedHashMap<>();
         // Load existing
         Map<String, SystemConfiguration> all = getAllAsMap();
+        List<String> saved = new ArrayList<>();
         // Validate and apply
         for (DefaultDef def : DEFAULTS) {
             String key = def.key;
@@ -157,7 +245,9 @@ public class SystemConfigurationService {
             sc.setValueType(def.valueType);
             if (updatedBy != null) sc.setUpdatedBy(updatedBy);
             repo.save(sc);
+            saved.add(key);
         }
+        if (!saved.isEmpty()) invalidateAfterCommit(saved);
         return errors;
     }
 }
@@ -0,0 +1,14 @@
+package com.mmo.service;
+
+import java.util.List;
+
+/**
+ * Fan-out of user events to the other web nodes. UserEventStreamService delivers to the emitters it holds itself
+ * and hands the event to the bus; each node delivers what it receives to its own emitters.
+ * Selected with events.fanout.mode: "rabbit" (default, RabbitUserEventBus) or "local" (single node, no broker).
+ */
+public interface UserEventBus {
+
+    // payload is the already serialized JSON of the event, sent as is to every connection of the users
+    void publish(List<Long> userIds, String type, String payload);
+}
@@ -0,0 +1,425 @@
+package com.mmo.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mmo.dto.ChatMessageDto;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Date;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * One SSE stream per logged-in user carrying every real-time event the UI reacts to: chat messages,
+ * notifications, order status changes and balance changes, each as a named SSE event with a JSON payload.
+ * Pages share this single connection (see /js/user-events.js) instead of polling.
+ * publish() serializes the payload once, delivers to the connections of this node and hands the event to the
+ * UserEventBus so nodes holding the other connections deliver it too. Called inside a transaction, publishing
+ * waits for the commit so clients never see state that is rolled back.
+ * Delivery never writes on the caller's thread: every connection has a bounded outbound queue drained by
+ * sseDeliveryExecutor. On overflow the oldest frame is dropped; a connection that keeps overflowing is closed and
+ * the client catches up over HTTP on reconnect.
+ * A write to a half-dead client blocks its delivery thread until the socket write times out
+ * (server.tomcat.connection-timeout). checkStalledSends closes a connection whose write has been in flight for
+ * longer than events.sse.send-timeout-ms and adds one pool thread per blocked write (up to the pool's max size).
+ * Limit: as many stalled clients as the pool has core threads still delay every user of the node, for up to
+ * send-timeout-ms; once the max size is used up by blocked writes, until the socket timeout.
+ */
+@Service
+public class UserEventStreamService {
+    private static final Logger log = LoggerFactory.getLogger(UserEventStreamService.class);
+    private static final long DEFAULT_TIMEOUT = 60L * 60L * 1000L; // 1 hour
+
+    // SSE event names; chat keeps "message" so existing chat clients work unchanged
+    public static final String EVENT_CHAT = "message";
+    public static final String EVENT_NOTIFICATION = "notification";
+    public static final String EVENT_ORDER_STATUS = "order-status";
+    public static final String EVENT_BALANCE_CHANGED = "balance-changed";
+
+    private static final Set<ResponseBodyEmitter.DataWithMediaType> PING_FRAME = SseEmitter.event().comment("ping").build();
+
+    // userId -> connections (support multiple tabs/devices)
+    private final Map<Long, List<Connection>> connectionsByUser = new ConcurrentHashMap<>();
+
+    // Connections closed by checkStalledSends whose delivery thread is still stuck in the write
+    private final Set<Connection> blockedWrites = ConcurrentHashMap.newKeySet();
+
+    private final UserEventBus userEventBus;
+    private final ObjectMapper objectMapper;
+    private final Executor deliveryExecutor;
+
+    private final Timer sendTimer;
+    private final Counter droppedCounter;
+    private final Counter slowSendCounter;
+    private final Counter slowConsumerDisconnects;
+    private final Counter stalledSendDisconnects;
+    private final int baseDeliveryThreads;
+
+    // Frames buffered per connection before the oldest is dropped
+    @Value("${events.sse.queue-capacity:64}")
+    private int queueCapacity = 64;
+
+    // Frames dropped since the last successful send after which the connection is closed
+    @Value("${events.sse.max-dropped:128}")
+    private int maxDropped = 128;
+
+    @Value("${events.sse.slow-send-ms:1000}")
+    private long slowSendMs = 1000L;
+
+    // A write in flight for longer than this is treated as a stalled client
+    @Value("${events.sse.send-timeout-ms:5000}")
+    private long sendTimeoutMs = 5000L;
+
+    public UserEventStreamService(UserEventBus userEventBus,
+                                  ObjectMapper objectMapper,
+                                  @Qualifier("sseDeliveryExecutor") Executor deliveryExecutor,
+                                  MeterRegistry meterRegistry) {
+        this.userEventBus = userEventBus;
+        this.objectMapper = objectMapper;
+        this.deliveryExecutor = deliveryExecutor;
+        this.baseDeliveryThreads = deliveryExecutor instanceof ThreadPoolTaskExecutor t ? t.getCorePoolSize() : 0;
+        Gauge.builder("events.sse.connections", connectionsByUser, m -> m.values().stream().mapToInt(List::size).sum())
+                .description("Open user event SSE connections on this node")
+                .register(meterRegistry);
+        Gauge.builder("events.sse.users", connectionsByUser, Map::size)
+                .description("Users with at least one SSE connection on this node")
+                .register(meterRegistry);
+        Gauge.builder("events.sse.queue.depth", connectionsByUser,
+                        m -> m.values().stream().flatMap(List::stream).mapToInt(Connection::depth).sum())
+                .description("Frames waiting in the outbound queues of this node")
+                .register(meterRegistry);
+        Gauge.builder("events.sse.queue.max_depth", connectionsByUser,
+                        m -> m.values().stream().flatMap(List::stream).mapToInt(Connection::depth).max().orElse(0))
+                .description("Deepest outbound queue on this node (slowest consumer)")
+                .register(meterRegistry);
+        this.sendTimer = Timer.builder("events.sse.send")
+                .description("Time to write one frame to an SSE connection")
+                .register(meterRegistry);
+        this.droppedCounter = Counter.builder("events.sse.dropped")
+                .description("Frames dropped because a connection's outbound queue was full")
+                .register(meterRegistry);
+        this.slowSendCounter = Counter.builder("events.sse.slow_sends")
+                .description("Frame writes slower than events.sse.slow-send-ms")
+                .register(meterRegistry);
+        this.slowConsumerDisconnects = Counter.builder("events.sse.slow_consumer.disconnects")
+                .description("Connections closed because they kept overflowing their queue")
+                .register(meterRegistry);
+        this.stalledSendDisconnects = Counter.builder("events.sse.stalled.disconnects")
+                .description("Connections closed because a write stayed blocked longer than events.sse.send-timeout-ms")
+                .register(meterRegistry);
+    }
+
+    public SseEmitter subscribe(Long userId) {
+        SseEmitter emitter = new SseEmitter(DEFAULT_TIMEOUT);
+        Connection connection = new Connection(userId, emitter);
+        connectionsByUser.computeIfAbsent(userId, k -> new CopyOnWriteArrayList<>()).add(connection);
+
+        emitter.onCompletion(() -> {
+            log.debug("SSE completed for user: {}", userId);
+            removeConnection(connection);
+        });
+        emitter.onTimeout(() -> {
+            log.debug("SSE timeout for user: {}", userId);
+            removeConnection(connection);
+        });
+        emitter.onError(ex -> {
+            log.debug("SSE error for user {}: {}", userId, ex.getMessage());
+            removeConnection(connection);
+        });
+
+        // Send initial event to confirm connection (buffered until the response starts, never blocks)
+        try {
+            emitter.send(SseEmitter.event()
+                    .name("init")
+                    .data("connected", MediaType.TEXT_PLAIN));
+        } catch (IOException e) {
+            log.warn("Failed to send init event to user {}: {}", userId, e.getMessage());
+            removeConnection(connection);
+        }
+
+        return emitter;
+    }
+
+    // Chat message to both participants
+    public void publishChat(ChatMessageDto dto) {
+        if (dto == null) return;
+        List<Long> userIds = dto.getReceiverId() != null && !dto.getReceiverId().equals(dto.getSenderId())
+                ? List.of(dto.getSenderId(), dto.getReceiverId())
+                : List.of(dto.getSenderId());
+        publish(userIds, EVENT_CHAT, dto);
+    }
+
+    // New notification for the header of the user's open pages (badge + dropdown)
+    public void publishNotification(Long userId, String title, String content, Date createdAt) {
+        if (userId == null) return;
+        publishNotification(List.of(userId), title, content, createdAt);
+    }
+
+    // Same notification for many users (role broadcasts, flushed batches): one event, one bus message
+    public void publishNotification(List<Long> userIds, String title, String content, Date createdAt) {
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("title", title);
+        payload.put("content", content);
+        payload.put("createdAt", createdAt != null ? createdAt.getTime() : null);
+        publish(userIds, EVENT_NOTIFICATION, payload);
+    }
+
+    // coins is the balance after the change, delta what changed (negative for deductions)
+    public void publishBalanceChanged(Long userId, Long coins, long delta) {
+        if (userId == null || coins == null) return;
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("coins", coins);
+        payload.put("delta", delta);
+        publish(userId, EVENT_BALANCE_CHANGED, payload);
+    }
+
+    public void publish(Long userId, String type, Object payload) {
+        if (userId == null) return;
+        publish(List.of(userId), type, payload);
+    }
+
+    public void publish(List<Long> userIds, String type, Object payload) {
+        if (userIds == null || userIds.isEmpty() || type == null || payload == null) return;
+        List<Long> targets = userIds.stream().filter(Objects::nonNull).distinct().toList();
+        if (targets.isEmpty()) return;
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            log.error("Could not serialize {} event for users {}: {}", type, targets, e.getMessage());
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    dispatch(targets, type, json);
+                }
+            });
+        } else {
+            dispatch(targets, type, json);
+        }
+    }
+
+    // Delivery to the connections held by this node (own events and events fanned out by other nodes)
+    public void deliverLocal(List<Long> userIds, String type, String json) {
+        if (userIds == null || userIds.isEmpty()) return;
+        Set<ResponseBodyEmitter.DataWithMediaType> frame = null;
+        for (Long userId : userIds) {
+            List<Connection> list = userId != null ? connectionsByUser.get(userId) : null;
+            if (list == null || list.isEmpty()) continue;
+            // built lazily: most fanned-out events have no connection on this node
+            if (frame == null) frame = frame(type, json);
+            for (Connection c : list) {
+                c.offer(frame);
+            }
+        }
+    }
+
+    // SSE comment keeps idle connections open through proxies and surfaces emitters whose client went away
+    @Scheduled(fixedDelayString = "${events.sse.heartbeat-ms:25000}", initialDelayString = "${events.sse.heartbeat-ms:25000}")
+    public void heartbeat() {
+        connectionsByUser.values().forEach(list -> list.forEach(c -> c.offer(PING_FRAME)));
+    }
+
+    private void dispatch(List<Long> userIds, String type, String json) {
+        deliverLocal(userIds, type, json);
+        userEventBus.publish(userIds, type, json);
+    }
+
+    // Built once per event and shared by every connection it goes to
+    private static Set<ResponseBodyEmitter.DataWithMediaType> frame(String type, String json) {
+        return SseEmitter.event()
+                .name(type)
+                .data(json, MediaType.APPLICATION_JSON)
+                .build();
+    }
+
+    // Every second: drop connections stuck in a write and give the pool one extra thread per blocked write
+    @Scheduled(fixedDelayString = "${events.sse.stall-check-ms:1000}")
+    public void checkStalledSends() {
+        long now = System.nanoTime();
+        long timeout = TimeUnit.MILLISECONDS.toNanos(sendTimeoutMs);
+        for (List<Connection> list : connectionsByUser.values()) {
+            for (Connection c : list) {
+                long started = c.sendStartedAt;
+                if (started == 0L || now - started < timeout) continue;
+                log.info("Closing SSE connection of user {}: write blocked for more than {} ms", c.userId, sendTimeoutMs);
+                stalledSendDisconnects.increment();
+                // Not removeConnection: completing the emitter would wait for the blocked write. The drain thread
+                // completes it once the write returns
+                c.close();
+                unlist(c);
+                blockedWrites.add(c);
+            }
+        }
+        blockedWrites.removeIf(c -> c.sendStartedAt == 0L);
+        if (deliveryExecutor instanceof ThreadPoolTaskExecutor t) {
+            int wanted = Math.min(baseDeliveryThreads + blockedWrites.size(), t.getMaxPoolSize());
+            if (t.getCorePoolSize() != wanted) t.setCorePoolSize(wanted);
+        }
+    }
+
+    private void cleanupEmitter(SseEmitter emitter) {
+        try {
+            emitter.complete();
+        } catch (Exception ignored) {
+            // Emitter already completed or error - ignore silently
+        }
+    }
+
+    private void removeConnection(Connection connection) {
+        connection.close();
+        unlist(connection);
+        cleanupEmitter(connection.emitter);
+    }
+
+    private void unlist(Connection connection) {
+        List<Connection> list = connectionsByUser.get(connection.userId);
+        if (list != null) {
+            list.remove(connection);
+            if (list.isEmpty()) {
+                connectionsByUser.remove(connection.userId, list);
+            }
+        }
+    }
+
+    private static boolean isClientGone(IOException e) {
+        String errorMsg = e.getMessage();
+        return errorMsg != null && (errorMsg.contains("Broken pipe") ||
+                errorMsg.contains("Connection reset") ||
+                errorMsg.contains("connection was aborted") ||
+                errorMsg.contains("Connection closed"));
+    }
+
+    // One SSE connection: bounded frame queue with at most one drain task running on the delivery executor
+    private final class Connection {
+        private final Long userId;
+        private final SseEmitter emitter;
+        private final Deque<Set<ResponseBodyEmitter.DataWithMediaType>> queue = new ArrayDeque<>();
+        private final AtomicBoolean draining = new AtomicBoolean(false);
+        private volatile boolean closed;
+        // System.nanoTime() when the current write started, 0 when no write is in flight
+        private volatile long sendStartedAt;
+        private int droppedSinceSend;
+
+        private Connection(Long userId, SseEmitter emitter) {
+            this.userId = userId;
+            this.emitter = emitter;
+        }
+
+        private int depth() {
+            synchronized (queue) {
+                return queue.size();
+            }
+        }
+
+        private void offer(Set<ResponseBodyEmitter.DataWithMediaType> frame) {
+            if (closed) return;
+            boolean overflowing = false;
+            synchronized (queue) {
+                if (queue.size() >= queueCapacity) {
+                    queue.pollFirst(); // drop-oldest
+                    droppedCounter.increment();
+                    overflowing = ++droppedSinceSend >= maxDropped;
+                }
+                queue.addLast(frame);
+            }
+            if (overflowing) {
+                log.info("Closing slow SSE connection of user {} after {} dropped frames", userId, maxDropped);
+                slowConsumerDisconnects.increment();
+                removeConnection(this);
+                return;
+            }
+            if (draining.compareAndSet(false, true)) {
+                try {
+                    deliveryExecutor.execute(this::drain);
+                } catch (RuntimeException rejected) {
+                    draining.set(false);
+                    log.warn("SSE delivery rejected for user {}: {}", userId, rejected.getMessage());
+                    removeConnection(this);
+                }
+            }
+        }
+
+        private void drain() {
+            while (!closed) {
+                Set<ResponseBodyEmitter.DataWithMediaType> frame;
+                synchronized (queue) {
+                    frame = queue.pollFirst();
+                    if (frame == null) {
+                        // cleared under the lock so a concurrent offer() either sees it or its frame is polled here
+                        draining.set(false);
+                        return;
+                    }
+                }
+                long start = System.nanoTime();
+                sendStartedAt = start;
+                try {
+                    emitter.send(frame);
+                    synchronized (queue) {
+                        droppedSinceSend = 0;
+                    }
+                } catch (IOException e) {
+                    // Connection closed by client - this is normal, use debug level
+                    if (isClientGone(e)) {
+                        log.debug("Client disconnected for user {}: {}", userId, e.getMessage());
+                    } else {
+                        log.warn("IO error sending to user {}: {}", userId, e.getMessage());
+                    }
+                    removeConnection(this);
+                    break;
+                } catch (IllegalStateException e) {
+                    log.debug("Emitter already completed for user {}: {}", userId, e.getMessage());
+                    removeConnection(this);
+                    break;
+                } catch (Exception e) {
+                    log.error("Unexpected error sending to user {}: {}", userId, e.getMessage(), e);
+                    removeConnection(this);
+                    break;
+                } finally {
+                    sendStartedAt = 0L;
+                    long elapsed = System.nanoTime() - start;
+                    sendTimer.record(elapsed, TimeUnit.NANOSECONDS);
+                    if (elapsed >= TimeUnit.MILLISECONDS.toNanos(slowSendMs)) slowSendCounter.increment();
+                }
+            }
+            // Closed while a write was blocked (checkStalledSends): finish the response now that the write returned
+            if (closed) cleanupEmitter(emitter);
+            draining.set(false);
+        }
+
+        private void close() {
+            closed = true;
+            synchronized (queue) {
+                queue.clear();
+            }
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.mmo.service;
+
+import com.mmo.repository.ProductVariantAccountRepository;
+import com.mmo.repository.ProductVariantRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Maintains ProductVariants.available_stock, the number of Available (not deleted) accounts of a variant,
+ * so stock checks are a primary-key read instead of a COUNT over ProductVariantAccounts.
+ * Writers join the caller's transaction so the counter only moves when the account change commits.
+ * The counter is advisory: allocation still locks real account rows, and a periodic job repairs drift.
+ */
+@Service
+public class VariantStockService {
+
+    private static final Logger log = LoggerFactory.getLogger(VariantStockService.class);
+
+    private static final long RECONCILE_CHUNK = 1000L;
+
+    private final ProductVariantRepository productVariantRepository;
+    private final ProductVariantAccountRepository productVariantAccountRepository;
+
+    public VariantStockService(ProductVariantRepository productVariantRepository,
+                               ProductVariantAccountRepository productVariantAccountRepository) {
+        this.productVariantRepository = productVariantRepository;
+        this.productVariantAccountRepository = productVariantAccountRepository;
+    }
+
+    public long getAvailableStock(Long variantId) {
+        if (variantId == null) return 0L;
+        Long stock = productVariantRepository.findAvailableStock(variantId);
+        return stock != null ? stock : 0L;
+    }
+
+    // Available accounts as last committed, outside the caller's snapshot and without taking or waiting for locks.
+    // Rows another buyer has locked but not yet committed still count: after a short SKIP LOCKED claim, more
+    // committed rows than claimed means the rest are held by in-flight orders that may still roll back
+    @Transactional(propagation = Propagation.REQUIRES_NEW, isolation = Isolation.READ_COMMITTED, readOnly = true)
+    public long countAvailableCommitted(Long variantId) {
+        if (variantId == null) return 0L;
+        return productVariantAccountRepository.countByVariant_IdAndIsDeleteFalseAndStatus(variantId, "Available");
+    }
+
+    // Accounts uploaded (or restored to Available)
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordAdded(Long variantId, long quantity) {
+        if (variantId == null || quantity <= 0) return;
+        productVariantRepository.addAvailableStock(variantId, quantity);
+    }
+
+    // Accounts sold or deleted while Available
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordRemoved(Long variantId, long quantity) {
+        if (variantId == null || quantity <= 0) return;
+        productVariantRepository.addAvailableStock(variantId, -quantity);
+    }
+
+    // Every 30 minutes: compare counters with the real count per id range and recount the drifted variants
+    @Scheduled(cron = "${variant-stock.reconcile-cron:0 */30 * * * *}")
+    public void reconcile() {
+        long start = System.currentTimeMillis();
+        try {
+            long maxId = productVariantRepository.findMaxVariantId();
+            int repaired = 0;
+            for (long from = 0L; from < maxId; from += RECONCILE_CHUNK) {
+                List<Object[]> drift = productVariantRepository.findStockDrift(from, Math.min(from + RECONCILE_CHUNK, maxId));
+                if (drift.isEmpty()) continue;
+                List<Long> ids = new ArrayList<>(drift.size());
+                for (Object[] r : drift) {
+                    Long id = ((Number) r[0]).longValue();
+                    ids.add(id);
+                    log.warn("Variant #{} stock counter drifted: counter={}, actual={}", id, r[1], r[2]);
+                }
+                repaired += productVariantRepository.recountAvailableStock(ids);
+            }
+            if (repaired > 0) {
+                log.info("Variant stock reconciled: {} counters repaired in {} ms", repaired, System.currentTimeMillis() - start);
+            }
+        } catch (Exception ex) {
+            log.error("Variant stock reconciliation failed: {}", ex.getMessage(), ex);
+        }
+    }
+}
@@ -5,14 +5,32 @@ import javax.crypto.KeyGenerator;
 import javax.crypto.SecretKey;
 import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
-import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.security.SecureRandom;
-import java.util.Base64;
+import java.util.*;
 
 /**
  * AES-GCM Encryption utility for securing sensitive account data
- * Uses AES-256-GCM for authenticated encryption
+ * Uses AES-256-GCM for authenticated encryption. Key, IV generator and per-thread Cipher are set up once,
+ * so encrypt/decrypt only pay for the cipher work itself.
+ *
+ * Stored format: "v1:keyId:" + Base64([IV][Encrypted Data][Auth Tag]); the header is authenticated as GCM AAD.
+ * Data written before key ids existed is plain Base64 without a header and is decrypted with the legacy key.
+ *
+ * Keys (environment):
+ *   ENCRYPTION_KEY             current key (Base64), used for all new encryptions
+ *   ENCRYPTION_KEY_ID          its id (default "k1")
+ *   ENCRYPTION_OLD_KEYS        retired keys still readable: "id:base64,id:base64"
+ *   ENCRYPTION_LEGACY_KEY_ID   key of header-less data (default "k1", the id the original key had implicitly);
+ *                              startup fails when that key is not among the keys above
+ * Rotation without downtime:
+ *   1. on every node, add the new key to ENCRYPTION_OLD_KEYS and set ENCRYPTION_LEGACY_KEY_ID to the id of the
+ *      original key (keep "k1" if it never had another one);
+ *   2. make the new key current (ENCRYPTION_KEY/ENCRYPTION_KEY_ID), moving the previous key to ENCRYPTION_OLD_KEYS;
+ *   3. let AccountReencryptionService rewrite the old rows until /actuator/reencryption reports done
+ *      (done requires zero failed rows);
+ *   4. drop the previous key, except the legacy one: it also seeds UsernameFingerprint (unless
+ *      ACCOUNT_FINGERPRINT_KEY is set), so it stays in ENCRYPTION_OLD_KEYS.
  */
 public class EncryptionUtil {
 
@@ -21,10 +39,39 @@ public class EncryptionUtil {
     private static final int GCM_IV_LENGTH = 12; // bytes
     private static final int AES_KEY_SIZE = 256; // bits
 
+    private static final String VERSION_PREFIX = "v1:";
+    private static final String DEFAULT_KEY_ID = "k1";
+
     // Secret key - In production, this should be loaded from environment variable or key management service
     // DO NOT hardcode in production! Use: System.getenv("ENCRYPTION_KEY")
     private static final String SECRET_KEY_BASE64 = getSecretKey();
 
+    private static final String CURRENT_KEY_ID = keyIdOrDefault(System.getenv("ENCRYPTION_KEY_ID"), DEFAULT_KEY_ID);
+
+    // All readable keys by id, decoded once; SecretKeySpec is immutable and shared by all threads
+    private static final Map<String, SecretKeySpec> KEYS = loadKeys();
+
+    private static final SecretKeySpec CURRENT_KEY = KEYS.get(CURRENT_KEY_ID);
+
+    // Not the current id: after a rotation the header-less rows are still sealed with the original key
+    private static final String LEGACY_KEY_ID = requireLegacyKeyId();
+
+    // Header of everything encrypted with the current key, also its AAD
+    private static final String CURRENT_HEADER = VERSION_PREFIX + CURRENT_KEY_ID + ":";
+    private static final byte[] CURRENT_HEADER_BYTES = CURRENT_HEADER.getBytes(StandardCharsets.US_ASCII);
+
+    // One DRBG for all IVs (SecureRandom is thread-safe); creating and seeding one per call was the main cost
+    private static final SecureRandom IV_RANDOM = new SecureRandom();
+
+    // Cipher is not thread-safe but is cheap to re-init: one instance per thread, re-initialized with a fresh IV per call
+    private static final ThreadLocal<Cipher> CIPHER = ThreadLocal.withInitial(() -> {
+        try {
+            return Cipher.getInstance(ALGORITHM);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to create cipher", e);
+        }
+    });
+
     /**
      * Get encryption key from environment variable or generate a default one for development
      * In production, MUST use environment variable: ENCRYPTION_KEY
@@ -47,93 +94,200 @@ public class EncryptionUtil {
         }
     }
 
+    private static Map<String, SecretKeySpec> loadKeys() {
+        Map<String, SecretKeySpec> keys = new HashMap<>();
+        String old = System.getenv("ENCRYPTION_OLD_KEYS");
+        if (old != null && !old.isBlank()) {
+            for (String entry : old.split(",")) {
+                int sep = entry.indexOf(':');
+                if (sep <= 0) throw new IllegalStateException("ENCRYPTION_OLD_KEYS entries must be id:base64Key");
+                String id = keyIdOrDefault(entry.substring(0, sep), null);
+                keys.put(id, new SecretKeySpec(Base64.getDecoder().decode(entry.substring(sep + 1).trim()), "AES"));
+            }
+        }
+        keys.put(CURRENT_KEY_ID, new SecretKeySpec(Base64.getDecoder().decode(SECRET_KEY_BASE64), "AES"));
+        return Collections.unmodifiableMap(keys);
+    }
+
+    // A missing legacy key would make every header-less row (and every username fingerprint) unreadable: fail fast
+    private static String requireLegacyKeyId() {
+        String id = keyIdOrDefault(System.getenv("ENCRYPTION_LEGACY_KEY_ID"), DEFAULT_KEY_ID);
+        if (!KEYS.containsKey(id)) {
+            throw new IllegalStateException("Legacy encryption key '" + id + "' is not configured: keep it in "
+                    + "ENCRYPTION_OLD_KEYS or set ENCRYPTION_LEGACY_KEY_ID to the id of the original key");
+        }
+        return id;
+    }
+
+    // Key ids go into every stored value: short and without the ':' separator
+    private static String keyIdOrDefault(String id, String fallback) {
+        if (id == null || id.isBlank()) return fallback;
+        String trimmed = id.trim();
+        if (!trimmed.matches("[A-Za-z0-9_-]{1,16}")) {
+            throw new IllegalStateException("Invalid encryption key id: " + trimmed);
+        }
+        return trimmed;
+    }
+
     /**
-     * Encrypt sensitive data using AES-GCM
+     * Encrypt sensitive data using AES-GCM with the current key
      * @param plainText The data to encrypt
-     * @return Base64 encoded encrypted data with IV prepended
+     * @return "v1:keyId:" + Base64 encoded encrypted data with IV prepended
      */
     public static String encrypt(String plainText) {
         if (plainText == null || plainText.isEmpty()) {
             return plainText;
         }
+        byte[] sealed = seal(plainText.getBytes(StandardCharsets.UTF_8));
+        return CURRENT_HEADER + Base64.getEncoder().encodeToString(sealed);
+    }
 
+    /**
+     * Decrypt sensitive data using AES-GCM, with the key named in the header (or the legacy key)
+     * @param encryptedText value produced by encrypt, or header-less legacy Base64
+     * @return Decrypted plain text
+     */
+    public static String decrypt(String encryptedText) {
+        if (encryptedText == null || encryptedText.isEmpty()) {
+            return encryptedText;
+        }
         try {
-            // Decode the secret key
-            byte[] keyBytes = Base64.getDecoder().decode(SECRET_KEY_BASE64);
-            SecretKeySpec keySpec = new SecretKeySpec(keyBytes, "AES");
-
-            // Generate random IV
-            byte[] iv = new byte[GCM_IV_LENGTH];
-            SecureRandom random = new SecureRandom();
-            random.nextBytes(iv);
-
-            // Initialize cipher
-            Cipher cipher = Cipher.getInstance(ALGORITHM);
-            GCMParameterSpec parameterSpec = new GCMParameterSpec(GCM_TAG_LENGTH, iv);
-            cipher.init(Cipher.ENCRYPT_MODE, keySpec, parameterSpec);
-
-            // Encrypt the data
-            byte[] encryptedBytes = cipher.doFinal(plainText.getBytes(StandardCharsets.UTF_8));
+            byte[] plain;
+            if (encryptedText.startsWith(VERSION_PREFIX)) {
+                int end = encryptedText.indexOf(':', VERSION_PREFIX.length());
+                if (end < 0) throw new IllegalArgumentException("Malformed encryption header");
+                String header = encryptedText.substring(0, end + 1);
+                SecretKeySpec key = requireKey(encryptedText.substring(VERSION_PREFIX.length(), end));
+                plain = open(key, Base64.getDecoder().decode(encryptedText.substring(end + 1)),
+                        header.getBytes(StandardCharsets.US_ASCII));
+            } else {
+                plain = open(requireKey(LEGACY_KEY_ID), Base64.getDecoder().decode(encryptedText), null);
+            }
+            return new String(plain, StandardCharsets.UTF_8);
+        } catch (Exception e) {
+            throw new RuntimeException("Decryption failed - data may be corrupted or key is incorrect", e);
+        }
+    }
 
-            // Combine IV and encrypted data: [IV][Encrypted Data][Auth Tag]
-            ByteBuffer byteBuffer = ByteBuffer.allocate(iv.length + encryptedBytes.length);
-            byteBuffer.put(iv);
-            byteBuffer.put(encryptedBytes);
+    /**
+     * Plain text of a stored value: decrypted when it is ciphertext, as is when it predates encryption.
+     * Ciphertext that does not decrypt (missing key, corrupt data) throws instead of being passed through
+     * @param storedText account_data as stored
+     */
+    public static String toPlainText(String storedText) {
+        return isEncrypted(storedText) ? decrypt(storedText) : storedText;
+    }
 
-            // Encode to Base64 for storage
-            return Base64.getEncoder().encodeToString(byteBuffer.array());
+    /**
+     * Encrypt raw bytes (no Base64) with the current key
+     * @return ["v1:keyId:"][IV][Encrypted Data][Auth Tag]
+     */
+    public static byte[] encryptBytes(byte[] plain) {
+        byte[] sealed = seal(plain);
+        byte[] out = new byte[CURRENT_HEADER_BYTES.length + sealed.length];
+        System.arraycopy(CURRENT_HEADER_BYTES, 0, out, 0, CURRENT_HEADER_BYTES.length);
+        System.arraycopy(sealed, 0, out, CURRENT_HEADER_BYTES.length, sealed.length);
+        return out;
+    }
 
+    /**
+     * Decrypt raw bytes produced by encryptBytes
+     * @param data ["v1:keyId:"][IV][Encrypted Data][Auth Tag]
+     */
+    public static byte[] decryptBytes(byte[] data) {
+        try {
+            int headerLength = headerLength(data);
+            if (headerLength < 0) throw new IllegalArgumentException("Missing encryption header");
+            String keyId = new String(data, VERSION_PREFIX.length(), headerLength - VERSION_PREFIX.length() - 1, StandardCharsets.US_ASCII);
+            return open(requireKey(keyId), Arrays.copyOfRange(data, headerLength, data.length),
+                    Arrays.copyOf(data, headerLength));
         } catch (Exception e) {
-            throw new RuntimeException("Encryption failed", e);
+            throw new RuntimeException("Decryption failed - data may be corrupted or key is incorrect", e);
         }
     }
 
     /**
-     * Decrypt sensitive data using AES-GCM
-     * @param encryptedText Base64 encoded encrypted data with IV prepended
-     * @return Decrypted plain text
+     * Key id in the header of a stored value; null for header-less legacy data
      */
-    public static String decrypt(String encryptedText) {
-        if (encryptedText == null || encryptedText.isEmpty()) {
-            return encryptedText;
-        }
+    public static String keyIdOf(String encryptedText) {
+        if (encryptedText == null || !encryptedText.startsWith(VERSION_PREFIX)) return null;
+        int end = encryptedText.indexOf(':', VERSION_PREFIX.length());
+        return end < 0 ? null : encryptedText.substring(VERSION_PREFIX.length(), end);
+    }
 
-        try {
-            // Decode from Base64
-            byte[] decodedBytes = Base64.getDecoder().decode(encryptedText);
+    public static String currentKeyId() {
+        return CURRENT_KEY_ID;
+    }
 
-            // Extract IV and encrypted data
-            ByteBuffer byteBuffer = ByteBuffer.wrap(decodedBytes);
-            byte[] iv = new byte[GCM_IV_LENGTH];
-            byteBuffer.get(iv);
-            byte[] encryptedBytes = new byte[byteBuffer.remaining()];
-            byteBuffer.get(encryptedBytes);
+    // True when the value was not encrypted with the current key (legacy header-less data, retired key or plain text)
+    public static boolean needsReencryption(String encryptedText) {
+        return encryptedText != null && !encryptedText.isEmpty() && !encryptedText.startsWith(CURRENT_HEADER);
+    }
 
-            // Decode the secret key
-            byte[] keyBytes = Base64.getDecoder().decode(SECRET_KEY_BASE64);
-            SecretKeySpec keySpec = new SecretKeySpec(keyBytes, "AES");
+    // Base for keys derived from the encryption key (see UsernameFingerprint). The legacy key, not the current
+    // one, so derived values stay stable while the current key rotates
+    static byte[] secretKeyBytes() {
+        return requireKey(LEGACY_KEY_ID).getEncoded();
+    }
 
-            // Initialize cipher
-            Cipher cipher = Cipher.getInstance(ALGORITHM);
-            GCMParameterSpec parameterSpec = new GCMParameterSpec(GCM_TAG_LENGTH, iv);
-            cipher.init(Cipher.DECRYPT_MODE, keySpec, parameterSpec);
+    // [IV][Encrypted Data][Auth Tag] under the current key; cipher output is written right after the IV
+    private static byte[] seal(byte[] plain) {
+        try {
+            Cipher cipher = CIPHER.get();
+            byte[] iv = new byte[GCM_IV_LENGTH];
+            IV_RANDOM.nextBytes(iv);
+            cipher.init(Cipher.ENCRYPT_MODE, CURRENT_KEY, new GCMParameterSpec(GCM_TAG_LENGTH, iv));
+            cipher.updateAAD(CURRENT_HEADER_BYTES);
 
-            // Decrypt the data
-            byte[] decryptedBytes = cipher.doFinal(encryptedBytes);
-            return new String(decryptedBytes, StandardCharsets.UTF_8);
+            byte[] out = new byte[GCM_IV_LENGTH + cipher.getOutputSize(plain.length)];
+            System.arraycopy(iv, 0, out, 0, GCM_IV_LENGTH);
+            int written = cipher.doFinal(plain, 0, plain.length, out, GCM_IV_LENGTH);
+            return written + GCM_IV_LENGTH == out.length ? out : Arrays.copyOf(out, GCM_IV_LENGTH + written);
 
         } catch (Exception e) {
-            throw new RuntimeException("Decryption failed - data may be corrupted or key is incorrect", e);
+            throw new RuntimeException("Encryption failed", e);
+        }
+    }
+
+    // IV is read in place from the input array; aad is null for legacy data
+    private static byte[] open(SecretKeySpec key, byte[] data, byte[] aad) throws Exception {
+        if (data.length <= GCM_IV_LENGTH) {
+            throw new IllegalArgumentException("Encrypted data too short");
         }
+        Cipher cipher = CIPHER.get();
+        cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(GCM_TAG_LENGTH, data, 0, GCM_IV_LENGTH));
+        if (aad != null) cipher.updateAAD(aad);
+        return cipher.doFinal(data, GCM_IV_LENGTH, data.length - GCM_IV_LENGTH);
+    }
+
+    private static SecretKeySpec requireKey(String keyId) {
+        SecretKeySpec key = KEYS.get(keyId);
+        if (key == null) throw new IllegalStateException("Unknown encryption key id: " + keyId);
+        return key;
+    }
+
+    // Length of the "v1:keyId:" header at the start of data, or -1
+    private static int headerLength(byte[] data) {
+        if (data == null || data.length <= VERSION_PREFIX.length()) return -1;
+        for (int i = 0; i < VERSION_PREFIX.length(); i++) {
+            if (data[i] != VERSION_PREFIX.charAt(i)) return -1;
+        }
+        for (int i = VERSION_PREFIX.length(); i < Math.min(data.length, VERSION_PREFIX.length() + 17); i++) {
+            if (data[i] == ':') return i + 1;
+        }
+        return -1;
     }
 
     /**
-     * Check if a string appears to be encrypted (is valid Base64 and has expected structure)
+     * Check if a string appears to be encrypted (versioned header, or valid Base64 with the expected structure)
      */
     public static boolean isEncrypted(String text) {
         if (text == null || text.isEmpty()) {
             return false;
         }
+        if (keyIdOf(text) != null) {
+            return true;
+        }
 
         try {
             byte[] decoded = Base64.getDecoder().decode(text);
@@ -167,7 +321,7 @@ public class EncryptionUtil {
         System.out.println("Original: " + originalText);
 
         String encrypted = encrypt(originalText);
-        System.out.println("\nEncrypted (Base64): " + encrypted);
+        System.out.println("\nEncrypted (v1:" + CURRENT_KEY_ID + ": + Base64): " + encrypted);
         System.out.println("Encrypted length: " + encrypted.length());
 
         String decrypted = decrypt(encrypted);
@@ -181,4 +335,3 @@ public class EncryptionUtil {
         System.out.println(generateNewKey());
     }
 }
-
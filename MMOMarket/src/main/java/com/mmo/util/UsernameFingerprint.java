@@ -0,0 +1,68 @@
+package com.mmo.util;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.text.Normalizer;
+import java.util.Base64;
+import java.util.HexFormat;
+
+/**
+ * Keyed fingerprint of an account username (HMAC-SHA256, hex), stored in ProductVariantAccounts.username_fp
+ * so duplicate checks can match usernames with an indexed lookup instead of decrypting account_data.
+ * The HMAC key comes from ACCOUNT_FINGERPRINT_KEY (Base64) or, when unset, is derived from the legacy encryption
+ * key (which does not change when ENCRYPTION_KEY rotates);
+ * without the key a fingerprint cannot be brute-forced back into a username.
+ */
+public final class UsernameFingerprint {
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private static final SecretKeySpec KEY = loadKey();
+
+    // Mac is not thread-safe; imports fingerprint rows from a parallel stream
+    private static final ThreadLocal<Mac> MAC = ThreadLocal.withInitial(() -> newMac(KEY));
+
+    private UsernameFingerprint() {
+    }
+
+    private static SecretKeySpec loadKey() {
+        String key = System.getenv("ACCOUNT_FINGERPRINT_KEY");
+        if (key != null && !key.isEmpty()) {
+            return new SecretKeySpec(Base64.getDecoder().decode(key), ALGORITHM);
+        }
+        // Separate key derived from the encryption key, so the two purposes never share key material directly
+        Mac derive = newMac(new SecretKeySpec(EncryptionUtil.secretKeyBytes(), ALGORITHM));
+        return new SecretKeySpec(derive.doFinal("username-fingerprint".getBytes(StandardCharsets.UTF_8)), ALGORITHM);
+    }
+
+    private static Mac newMac(SecretKeySpec key) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac;
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to initialize username fingerprint", e);
+        }
+    }
+
+    // Same comparison the upload has always used (trimmed, exact case), plus Unicode NFC
+    public static String normalize(String username) {
+        if (username == null) return "";
+        return Normalizer.normalize(username.trim(), Normalizer.Form.NFC);
+    }
+
+    // null for an empty username
+    public static String of(String username) {
+        String normalized = normalize(username);
+        if (normalized.isEmpty()) return null;
+        return HexFormat.of().formatHex(MAC.get().doFinal(normalized.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    // Account data is stored as "username:password"
+    public static String ofAccountData(String plainAccountData) {
+        if (plainAccountData == null) return null;
+        int idx = plainAccountData.indexOf(':');
+        return of(idx >= 0 ? plainAccountData.substring(0, idx) : plainAccountData);
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Shared real-time event stream for the logged-in user.
+ * Opens one SSE connection to /events/stream per page and dispatches its named events
+ * (message, notification, order-status, balance-changed) to the handlers registered with
+ * window.mmoEvents.on(type, handler). Payloads are parsed JSON.
+ * onReconnect(handler) runs after the connection was re-established, so pages can catch up
+ * on anything missed while it was down.
+ */
+(function () {
+    if (window.mmoEvents) return;
+
+    const STREAM_URL = '/events/stream';
+    const RECONNECT_DELAY_MS = 3000;
+
+    const handlers = {};
+    const reconnectHandlers = [];
+    let source = null;
+    let connectedOnce = false;
+    let reconnectTimer = null;
+
+    function dispatch(type, raw) {
+        const list = handlers[type];
+        if (!list || !list.length) return;
+        let payload;
+        try {
+            payload = JSON.parse(raw);
+        } catch (e) {
+            console.error('Invalid ' + type + ' event payload', e);
+            return;
+        }
+        list.forEach(function (handler) {
+            try {
+                handler(payload);
+            } catch (e) {
+                console.error('Error in ' + type + ' event handler', e);
+            }
+        });
+    }
+
+    function listen(type) {
+        if (source) {
+            source.addEventListener(type, function (e) { dispatch(type, e.data); });
+        }
+    }
+
+    function connect() {
+        reconnectTimer = null;
+        source = new EventSource(STREAM_URL);
+
+        source.addEventListener('init', function () {
+            if (connectedOnce) {
+                reconnectHandlers.forEach(function (handler) {
+                    try { handler(); } catch (e) { console.error('Error in reconnect handler', e); }
+                });
+            }
+            connectedOnce = true;
+        });
+        Object.keys(handlers).forEach(listen);
+
+        source.onerror = function () {
+            // EventSource retries by itself only while the server keeps answering; reopen explicitly
+            if (source) source.close();
+            source = null;
+            if (!reconnectTimer) reconnectTimer = setTimeout(connect, RECONNECT_DELAY_MS);
+        };
+    }
+
+    window.mmoEvents = {
+        on: function (type, handler) {
+            if (!handlers[type]) {
+                handlers[type] = [];
+                listen(type);
+            }
+            handlers[type].push(handler);
+        },
+        onReconnect: function (handler) {
+            reconnectHandlers.push(handler);
+        }
+    };
+
+    window.addEventListener('beforeunload', function () {
+        if (source) source.close();
+    });
+
+    connect();
+})();
@@ -0,0 +1,185 @@
+package com.mmo.mq;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Orders/sec of account allocation for one hot variant, by consumer count: the old plain FOR UPDATE claim against
+ * the SKIP LOCKED claim of BuyAccountOrderProcessor. Each order is one transaction that claims its accounts, marks
+ * them Sold and writes an order row, like the buy path minus the coin and escrow writes.
+ * Needs a MySQL 8 database it may create scratch tables in, so it only runs when asked:
+ *   mvn test -Dtest=AccountClaimBenchmarkTest -Dbenchmark.mysql.url=jdbc:mysql://localhost:3306/mmo_bench
+ *            -Dbenchmark.mysql.user=root -Dbenchmark.mysql.password=...
+ * Also checks that no account is sold twice.
+ */
+@EnabledIfSystemProperty(named = "benchmark.mysql.url", matches = ".+")
+class AccountClaimBenchmarkTest {
+
+    private static final long VARIANT_ID = 1L;
+    private static final int ACCOUNTS = 20_000;
+    private static final int ORDERS = 4_000;
+    private static final int QUANTITY = 2;
+    private static final int[] CONSUMERS = {1, 2, 4, 8};
+
+    private static final String PLAIN_CLAIM =
+            "SELECT id FROM BenchVariantAccounts WHERE variant_id = ? AND isDelete = 0 AND status = 'Available' " +
+            "ORDER BY id ASC LIMIT ? FOR UPDATE";
+    private static final String SKIP_LOCKED_CLAIM = PLAIN_CLAIM + " SKIP LOCKED";
+
+    private static String url;
+    private static String user;
+    private static String password;
+
+    @BeforeAll
+    static void createTables() throws SQLException {
+        url = System.getProperty("benchmark.mysql.url");
+        user = System.getProperty("benchmark.mysql.user", "root");
+        password = System.getProperty("benchmark.mysql.password", "");
+        try (Connection c = connect(); Statement st = c.createStatement()) {
+            st.execute("DROP TABLE IF EXISTS BenchVariantAccounts");
+            st.execute("DROP TABLE IF EXISTS BenchOrders");
+            // Same columns and index the claim queries use on ProductVariantAccounts
+            st.execute("CREATE TABLE BenchVariantAccounts (id BIGINT AUTO_INCREMENT PRIMARY KEY, variant_id BIGINT NOT NULL, " +
+                    "status VARCHAR(20) NOT NULL, isDelete TINYINT(1) NOT NULL DEFAULT 0, order_id BIGINT NULL, " +
+                    "INDEX idx_variant_id_status (variant_id, status))");
+            st.execute("CREATE TABLE BenchOrders (id BIGINT AUTO_INCREMENT PRIMARY KEY, quantity INT NOT NULL)");
+        }
+    }
+
+    @AfterAll
+    static void dropTables() throws SQLException {
+        try (Connection c = connect(); Statement st = c.createStatement()) {
+            st.execute("DROP TABLE IF EXISTS BenchVariantAccounts");
+            st.execute("DROP TABLE IF EXISTS BenchOrders");
+        }
+    }
+
+    @Test
+    void ordersPerSecondByConsumerCount() throws Exception {
+        System.out.printf("%-12s %10s %14s%n", "consumers", "FOR UPDATE", "SKIP LOCKED");
+        for (int consumers : CONSUMERS) {
+            double plain = run(PLAIN_CLAIM, consumers);
+            double skipLocked = run(SKIP_LOCKED_CLAIM, consumers);
+            System.out.printf("%-12d %10.0f %14.0f   orders/s%n", consumers, plain, skipLocked);
+        }
+    }
+
+    // Fresh stock, then ORDERS orders spread over the consumers; returns orders/sec
+    private double run(String claimSql, int consumers) throws Exception {
+        seed();
+        AtomicInteger remaining = new AtomicInteger(ORDERS);
+        ExecutorService pool = Executors.newFixedThreadPool(consumers);
+        long start = System.nanoTime();
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < consumers; i++) {
+                futures.add(pool.submit(() -> {
+                    try (Connection c = connect()) {
+                        c.setAutoCommit(false);
+                        while (remaining.getAndDecrement() > 0) {
+                            placeOrder(c, claimSql);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> f : futures) f.get();
+        } finally {
+            pool.shutdown();
+        }
+        double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+        assertNoDoubleSale();
+        return ORDERS / seconds;
+    }
+
+    private static void placeOrder(Connection c, String claimSql) throws SQLException {
+        try {
+            long orderId;
+            try (PreparedStatement ps = c.prepareStatement("INSERT INTO BenchOrders (quantity) VALUES (?)",
+                    Statement.RETURN_GENERATED_KEYS)) {
+                ps.setInt(1, QUANTITY);
+                ps.executeUpdate();
+                try (ResultSet keys = ps.getGeneratedKeys()) {
+                    keys.next();
+                    orderId = keys.getLong(1);
+                }
+            }
+            List<Long> claimed = new ArrayList<>(QUANTITY);
+            try (PreparedStatement ps = c.prepareStatement(claimSql)) {
+                ps.setLong(1, VARIANT_ID);
+                ps.setInt(2, QUANTITY);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) claimed.add(rs.getLong(1));
+                }
+            }
+            try (PreparedStatement ps = c.prepareStatement(
+                    "UPDATE BenchVariantAccounts SET status = 'Sold', order_id = ? WHERE id = ?")) {
+                for (Long id : claimed) {
+                    ps.setLong(1, orderId);
+                    ps.setLong(2, id);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+            c.commit();
+        } catch (SQLException ex) {
+            c.rollback();
+            throw ex;
+        }
+    }
+
+    private static void seed() throws SQLException {
+        try (Connection c = connect(); Statement st = c.createStatement()) {
+            st.execute("TRUNCATE TABLE BenchVariantAccounts");
+            st.execute("TRUNCATE TABLE BenchOrders");
+            c.setAutoCommit(false);
+            try (PreparedStatement ps = c.prepareStatement(
+                    "INSERT INTO BenchVariantAccounts (variant_id, status) VALUES (?, 'Available')")) {
+                for (int i = 0; i < ACCOUNTS; i++) {
+                    ps.setLong(1, VARIANT_ID);
+                    ps.addBatch();
+                    if (i % 1000 == 999) ps.executeBatch();
+                }
+                ps.executeBatch();
+            }
+            c.commit();
+        }
+    }
+
+    // An account handed to two orders keeps only the last order id: fewer Sold rows, and an order short of accounts
+    private static void assertNoDoubleSale() throws SQLException {
+        try (Connection c = connect(); Statement st = c.createStatement()) {
+            try (ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM BenchVariantAccounts WHERE status = 'Sold'")) {
+                rs.next();
+                assertEquals((long) ORDERS * QUANTITY, rs.getLong(1));
+            }
+            try (ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM (SELECT order_id FROM BenchVariantAccounts " +
+                    "WHERE status = 'Sold' GROUP BY order_id HAVING COUNT(*) <> " + QUANTITY + ") short_orders")) {
+                rs.next();
+                assertEquals(0L, rs.getLong(1));
+            }
+        }
+    }
+
+    private static Connection connect() throws SQLException {
+        return DriverManager.getConnection(url + (url.contains("?") ? "&" : "?") + "rewriteBatchedStatements=true",
+                user, password);
+    }
+}
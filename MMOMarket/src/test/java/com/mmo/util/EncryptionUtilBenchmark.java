@@ -0,0 +1,130 @@
+package com.mmo.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH suite for EncryptionUtil: ops/sec and allocation per op (gc.alloc.rate.norm, GC profiler) of the String and
+ * byte[] APIs against the implementation it replaced, which decoded the key, created a SecureRandom and called
+ * Cipher.getInstance on every call (Baseline below, same key and payload).
+ * Runs only when asked, as a test so it needs no extra plugin:
+ *   mvn test -Dtest=EncryptionUtilBenchmark -Dbenchmark.jmh=true
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EncryptionUtilBenchmark {
+
+    // Typical "username:password" account row, and a larger multi-field one
+    @Param({"user_name_01:Sup3r-s3cret!", "login=user_name_01;password=Sup3r-s3cret!;email=user01@example.com;recovery=ABCD-EFGH-IJKL-MNOP"})
+    public String account;
+
+    private String sealed;
+    private byte[] plainBytes;
+    private byte[] sealedBytes;
+    private String baselineSealed;
+
+    @Setup
+    public void setUp() {
+        sealed = EncryptionUtil.encrypt(account);
+        plainBytes = account.getBytes(StandardCharsets.UTF_8);
+        sealedBytes = EncryptionUtil.encryptBytes(plainBytes);
+        baselineSealed = Baseline.encrypt(account);
+    }
+
+    @Benchmark
+    public String encrypt() {
+        return EncryptionUtil.encrypt(account);
+    }
+
+    @Benchmark
+    public String decrypt() {
+        return EncryptionUtil.decrypt(sealed);
+    }
+
+    @Benchmark
+    public byte[] encryptBytes() {
+        return EncryptionUtil.encryptBytes(plainBytes);
+    }
+
+    @Benchmark
+    public byte[] decryptBytes() {
+        return EncryptionUtil.decryptBytes(sealedBytes);
+    }
+
+    @Benchmark
+    public String baselineEncrypt() {
+        return Baseline.encrypt(account);
+    }
+
+    @Benchmark
+    public String baselineDecrypt() {
+        return Baseline.decrypt(baselineSealed);
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark.jmh", matches = "true")
+    void run() throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(EncryptionUtilBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+
+    // The previous EncryptionUtil code path: per-call key decode, SecureRandom and Cipher.getInstance
+    static final class Baseline {
+        private static final String KEY_BASE64 = Base64.getEncoder().encodeToString(EncryptionUtil.secretKeyBytes());
+
+        static String encrypt(String plainText) {
+            try {
+                byte[] keyBytes = Base64.getDecoder().decode(KEY_BASE64);
+                SecretKeySpec keySpec = new SecretKeySpec(keyBytes, "AES");
+                byte[] iv = new byte[12];
+                SecureRandom random = new SecureRandom();
+                random.nextBytes(iv);
+                Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+                cipher.init(Cipher.ENCRYPT_MODE, keySpec, new GCMParameterSpec(128, iv));
+                byte[] encryptedBytes = cipher.doFinal(plainText.getBytes(StandardCharsets.UTF_8));
+                ByteBuffer byteBuffer = ByteBuffer.allocate(iv.length + encryptedBytes.length);
+                byteBuffer.put(iv);
+                byteBuffer.put(encryptedBytes);
+                return Base64.getEncoder().encodeToString(byteBuffer.array());
+            } catch (Exception e) {
+                throw new RuntimeException("Encryption failed", e);
+            }
+        }
+
+        static String decrypt(String encryptedText) {
+            try {
+                ByteBuffer byteBuffer = ByteBuffer.wrap(Base64.getDecoder().decode(encryptedText));
+                byte[] iv = new byte[12];
+                byteBuffer.get(iv);
+                byte[] encryptedBytes = new byte[byteBuffer.remaining()];
+                byteBuffer.get(encryptedBytes);
+                byte[] keyBytes = Base64.getDecoder().decode(KEY_BASE64);
+                SecretKeySpec keySpec = new SecretKeySpec(keyBytes, "AES");
+                Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+                cipher.init(Cipher.DECRYPT_MODE, keySpec, new GCMParameterSpec(128, iv));
+                return new String(cipher.doFinal(encryptedBytes), StandardCharsets.UTF_8);
+            } catch (Exception e) {
+                throw new RuntimeException("Decryption failed", e);
+            }
+        }
+    }
+}
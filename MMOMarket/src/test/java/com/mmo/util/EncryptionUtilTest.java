@@ -0,0 +1,120 @@
+package com.mmo.util;
+
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EncryptionUtilTest {
+
+    private static final String ACCOUNT = "player_01:s3cr3t-Pässwörd";
+
+    @Test
+    void stringRoundTrip() {
+        String sealed = EncryptionUtil.encrypt(ACCOUNT);
+
+        assertTrue(sealed.startsWith("v1:" + EncryptionUtil.currentKeyId() + ":"));
+        assertEquals(EncryptionUtil.currentKeyId(), EncryptionUtil.keyIdOf(sealed));
+        assertTrue(EncryptionUtil.isEncrypted(sealed));
+        assertFalse(EncryptionUtil.needsReencryption(sealed));
+        assertEquals(ACCOUNT, EncryptionUtil.decrypt(sealed));
+    }
+
+    @Test
+    void freshIvPerEncryption() {
+        assertNotEquals(EncryptionUtil.encrypt(ACCOUNT), EncryptionUtil.encrypt(ACCOUNT));
+    }
+
+    @Test
+    void nullAndEmptyPassThrough() {
+        assertNull(EncryptionUtil.encrypt(null));
+        assertEquals("", EncryptionUtil.encrypt(""));
+        assertNull(EncryptionUtil.decrypt(null));
+        assertEquals("", EncryptionUtil.decrypt(""));
+    }
+
+    @Test
+    void bytesRoundTrip() {
+        byte[] plain = ACCOUNT.getBytes(StandardCharsets.UTF_8);
+        byte[] sealed = EncryptionUtil.encryptBytes(plain);
+
+        byte[] header = ("v1:" + EncryptionUtil.currentKeyId() + ":").getBytes(StandardCharsets.US_ASCII);
+        assertArrayEquals(header, Arrays.copyOf(sealed, header.length));
+        assertArrayEquals(plain, EncryptionUtil.decryptBytes(sealed));
+    }
+
+    @Test
+    void bytesWithoutHeaderAreRejected() {
+        byte[] sealed = EncryptionUtil.encryptBytes(ACCOUNT.getBytes(StandardCharsets.UTF_8));
+        byte[] headerless = Arrays.copyOfRange(sealed, ("v1:" + EncryptionUtil.currentKeyId() + ":").length(), sealed.length);
+
+        assertThrows(RuntimeException.class, () -> EncryptionUtil.decryptBytes(headerless));
+    }
+
+    @Test
+    void legacyHeaderlessValueDecryptsWithLegacyKey() throws Exception {
+        String legacy = legacyEncrypt(ACCOUNT);
+
+        assertNull(EncryptionUtil.keyIdOf(legacy));
+        assertTrue(EncryptionUtil.isEncrypted(legacy));
+        assertTrue(EncryptionUtil.needsReencryption(legacy));
+        assertEquals(ACCOUNT, EncryptionUtil.decrypt(legacy));
+    }
+
+    @Test
+    void tamperedCiphertextFails() {
+        String sealed = EncryptionUtil.encrypt(ACCOUNT);
+        int at = sealed.indexOf(':', 3) + 20; // inside the ciphertext, clear of the Base64 padding
+        String tampered = sealed.substring(0, at) + (sealed.charAt(at) == 'A' ? 'B' : 'A') + sealed.substring(at + 1);
+
+        assertThrows(RuntimeException.class, () -> EncryptionUtil.decrypt(tampered));
+    }
+
+    @Test
+    void headerIsAuthenticated() {
+        String sealed = EncryptionUtil.encrypt(ACCOUNT);
+        // Same ciphertext presented as header-less legacy data: the AAD no longer matches
+        String stripped = sealed.substring(sealed.indexOf(':', 3) + 1);
+
+        assertThrows(RuntimeException.class, () -> EncryptionUtil.decrypt(stripped));
+    }
+
+    @Test
+    void unknownKeyIdFails() {
+        String sealed = EncryptionUtil.encrypt(ACCOUNT);
+        String otherKey = "v1:zz-unknown:" + sealed.substring(sealed.indexOf(':', 3) + 1);
+
+        assertThrows(RuntimeException.class, () -> EncryptionUtil.decrypt(otherKey));
+    }
+
+    @Test
+    void toPlainTextKeepsPlaintextAndRejectsBrokenCiphertext() {
+        assertEquals(ACCOUNT, EncryptionUtil.toPlainText(ACCOUNT));
+        assertEquals(ACCOUNT, EncryptionUtil.toPlainText(EncryptionUtil.encrypt(ACCOUNT)));
+        assertNull(EncryptionUtil.toPlainText(null));
+
+        String broken = "v1:" + EncryptionUtil.currentKeyId() + ":" + Base64.getEncoder().encodeToString(new byte[32]);
+        assertThrows(RuntimeException.class, () -> EncryptionUtil.toPlainText(broken));
+    }
+
+    // The format written before key ids existed: Base64([IV][Encrypted Data][Auth Tag]), no header, no AAD
+    private static String legacyEncrypt(String plain) throws Exception {
+        byte[] iv = new byte[12];
+        new SecureRandom().nextBytes(iv);
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(EncryptionUtil.secretKeyBytes(), "AES"),
+                new GCMParameterSpec(128, iv));
+        byte[] sealed = cipher.doFinal(plain.getBytes(StandardCharsets.UTF_8));
+        byte[] out = new byte[iv.length + sealed.length];
+        System.arraycopy(iv, 0, out, 0, iv.length);
+        System.arraycopy(sealed, 0, out, iv.length, sealed.length);
+        return Base64.getEncoder().encodeToString(out);
+    }
+}